@@ -84,10 +84,13 @@ public class DbreCommands implements CommandMarker {
       @CliOption(key = "repository", mandatory = false, specifiedDefaultValue = "true",
           unspecifiedDefaultValue = "false", help = "Generate a repository for each entity") final boolean repository,
       @CliOption(key = "service", mandatory = false, specifiedDefaultValue = "true",
-          unspecifiedDefaultValue = "false", help = "Generate a service for each entity") final boolean service) {
+          unspecifiedDefaultValue = "false", help = "Generate a service for each entity") final boolean service,
+      @CliOption(key = "dryRun", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false",
+          help = "Only display the tables and entities that would be added, removed and changed") final boolean dryRun) {
 
     dbreOperations.reverseEngineerDatabase(schemas, destinationPackage, testAutomatically, view,
         includeTables, excludeTables, includeNonPortableAttributes, disableVersionFields,
-        disableGeneratedIdentifiers, repository, service);
+        disableGeneratedIdentifiers, repository, service, dryRun);
   }
 }
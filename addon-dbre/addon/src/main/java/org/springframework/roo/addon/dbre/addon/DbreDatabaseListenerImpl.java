@@ -27,6 +27,7 @@ import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.springframework.roo.addon.dbre.addon.model.Column;
 import org.springframework.roo.addon.dbre.addon.model.Database;
+import org.springframework.roo.addon.dbre.addon.model.DatabaseDiff;
 import org.springframework.roo.addon.dbre.addon.model.DbreModelService;
 import org.springframework.roo.addon.dbre.addon.model.Table;
 import org.springframework.roo.addon.jpa.addon.identifier.Identifier;
@@ -89,6 +90,11 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
   private TypeManagementService typeManagementService;
 
   private Map<JavaType, List<Identifier>> identifierResults;
+  /**
+   * The database last reverse engineered, which the next one is diffed
+   * against, or <code>null</code> to reverse engineer every table
+   */
+  private Database reverseEngineeredDatabase;
 
   private void createIdentifierClass(final JavaType identifierType) {
     final List<AnnotationMetadataBuilder> identifierAnnotations =
@@ -215,7 +221,6 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
   private void deserializeDatabase() {
     final Database database = getDbreModelService().getDatabase(true);
     if (database != null) {
-      identifierResults = new LinkedHashMap<JavaType, List<Identifier>>();
       reverseEngineer(database);
     }
   }
@@ -312,6 +317,36 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
     return new JavaType(entity.getFullyQualifiedTypeName() + PRIMARY_KEY_SUFFIX);
   }
 
+  /**
+   * Returns the table of the given DBRE-managed entity if it's unchanged
+   * since the database was last reverse engineered
+   * 
+   * @param managedEntity an existing DBRE-managed entity (required)
+   * @param database the database being reverse engineered (required)
+   * @param diff its differences from the one last reverse engineered
+   *            (required)
+   * @return <code>null</code> if the table has been added, changed or
+   *         removed, or the entity doesn't name it
+   */
+  private Table getUnchangedTable(final ClassOrInterfaceTypeDetails managedEntity,
+      final Database database, final DatabaseDiff diff) {
+    final AnnotationMetadata jpaAnnotation = getJpaAnnotation(managedEntity);
+    if (jpaAnnotation == null) {
+      return null;
+    }
+    final AnnotationAttributeValue<?> tableAttribute =
+        jpaAnnotation.getAttribute(new JavaSymbolName("table"));
+    if (tableAttribute == null || StringUtils.isBlank((String) tableAttribute.getValue())) {
+      return null;
+    }
+    final AnnotationAttributeValue<?> schemaAttribute =
+        jpaAnnotation.getAttribute(new JavaSymbolName("schema"));
+    final String schemaName = schemaAttribute != null ? (String) schemaAttribute.getValue() : null;
+
+    final Table table = database.getTable((String) tableAttribute.getValue(), schemaName);
+    return table == null || diff.isChanged(table) ? null : table;
+  }
+
   /**
    * Returns the JPA-related annotation on the given managed entity
    * 
@@ -475,8 +510,26 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
     }
   }
 
-  private void notify(final List<ClassOrInterfaceTypeDetails> entities) {
+  /**
+   * Notifies the metadata of the given entities, and of DBRE-managed
+   * identifiers, that they may have changed
+   * 
+   * @param entities the entities to notify (required)
+   * @param allIdentifiers whether to notify every managed identifier, rather
+   *            than just those of the given entities
+   */
+  private void notify(final List<ClassOrInterfaceTypeDetails> entities,
+      final boolean allIdentifiers) {
+    final Set<JavaType> identifierTypes = new HashSet<JavaType>();
+    if (!allIdentifiers) {
+      for (final ClassOrInterfaceTypeDetails entity : entities) {
+        identifierTypes.add(getIdentifierType(entity.getName()));
+      }
+    }
     for (final ClassOrInterfaceTypeDetails managedIdentifierType : getManagedIdentifiers()) {
+      if (!allIdentifiers && !identifierTypes.contains(managedIdentifierType.getName())) {
+        continue;
+      }
       final MetadataItem metadataItem =
           getMetadataService().evictAndGet(managedIdentifierType.getDeclaredByMetadataId());
       if (metadataItem != null) {
@@ -511,17 +564,38 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
     // Set the destination package in the database
     database.setDestinationPackage(destinationPackage);
 
+    // Only the entities of tables that differ from those last reverse
+    // engineered need updating, unless the options that apply to every
+    // table differ too
+    final DatabaseDiff diff =
+        reverseEngineeredDatabase == null || identifierResults == null ? null : new DatabaseDiff(
+            reverseEngineeredDatabase, database);
+    final boolean incremental = diff != null && !diff.isOptionsChanged();
+    reverseEngineeredDatabase = null;
+    if (!incremental) {
+      identifierResults = new LinkedHashMap<JavaType, List<Identifier>>();
+    }
+
     // Get tables from database
     final Set<Table> tables = new LinkedHashSet<Table>(database.getTables());
 
     // Manage existing entities with @RooDbManaged annotation
+    final List<ClassOrInterfaceTypeDetails> updatedEntities =
+        new ArrayList<ClassOrInterfaceTypeDetails>();
     for (final ClassOrInterfaceTypeDetails managedEntity : managedEntities) {
       // Remove table from set as each managed entity is processed.
       // The tables that remain in the set will be used for creation of
       // new entities later
+      final Table unchangedTable =
+          incremental ? getUnchangedTable(managedEntity, database, diff) : null;
+      if (unchangedTable != null) {
+        tables.remove(unchangedTable);
+        continue;
+      }
       final Table table = updateOrDeleteManagedEntity(managedEntity, database);
       if (table != null) {
         tables.remove(table);
+        updatedEntities.add(managedEntity);
       }
     }
 
@@ -577,8 +651,10 @@ public class DbreDatabaseListenerImpl extends AbstractHashCodeTrackingMetadataNo
     final List<ClassOrInterfaceTypeDetails> allEntities =
         new ArrayList<ClassOrInterfaceTypeDetails>();
     allEntities.addAll(newEntities);
-    allEntities.addAll(managedEntities);
-    notify(allEntities);
+    allEntities.addAll(incremental ? updatedEntities : managedEntities);
+    notify(allEntities, !incremental);
+
+    reverseEngineeredDatabase = database;
   }
 
   private Table updateOrDeleteManagedEntity(final ClassOrInterfaceTypeDetails managedEntity,
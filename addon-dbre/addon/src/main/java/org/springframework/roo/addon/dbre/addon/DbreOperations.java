@@ -54,10 +54,13 @@ public interface DbreOperations {
    *            identifier auto generation value
    * @param repository whether to generate a service layer for each entity
    * @param service whether to generate a repository layer for each entity
+   * @param dryRun whether to only display the tables that would be added,
+   *            removed and changed, and the entities that would be affected,
+   *            without changing anything
    */
   void reverseEngineerDatabase(Set<Schema> schemas, JavaPackage destinationPackage,
       boolean testAutomatically, boolean view, Set<String> includeTables,
       Set<String> excludeTables, boolean includeNonPortableAttributes,
       boolean disableVersionFields, boolean disableGeneratedIdentifiers, boolean repository,
-      boolean service);
+      boolean service, boolean dryRun);
 }
@@ -4,8 +4,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.StringUtils;
@@ -14,9 +17,11 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.addon.dbre.addon.model.Database;
+import org.springframework.roo.addon.dbre.addon.model.DatabaseDiff;
 import org.springframework.roo.addon.dbre.addon.model.DatabaseXmlUtils;
 import org.springframework.roo.addon.dbre.addon.model.DbreModelService;
 import org.springframework.roo.addon.dbre.addon.model.Schema;
+import org.springframework.roo.addon.dbre.addon.model.Table;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.FeatureNames;
@@ -64,6 +69,55 @@ public class DbreOperationsImpl implements DbreOperations {
     outputSchemaXml(database, schemas, file, true);
   }
 
+  /**
+   * Displays the differences between the given database and the one in the
+   * DBRE XML file, and what reverse engineering it would do
+   *
+   * @param database the freshly introspected database (required)
+   * @param introspectionNanos how long introspecting it took
+   */
+  private void displayDiff(final Database database, final long introspectionNanos) {
+    // Re-reading the stored database also evicts the introspected one
+    final Database storedDatabase = dbreModelService.getDatabase(true);
+    final DatabaseDiff diff = new DatabaseDiff(storedDatabase, database);
+    displayTables("added", diff.getAddedTables());
+    displayTables("removed", diff.getRemovedTables());
+    displayTables("changed", diff.getChangedTables());
+
+    final int added = diff.getAddedTables().size();
+    final List<String> creations = new ArrayList<String>();
+    creations.add(added + " entities");
+    if (database.isRepository()) {
+      creations.add(added + " repositories");
+    }
+    if (database.isService()) {
+      creations.add(added + " services");
+    }
+    if (database.isTestAutomatically()) {
+      creations.add(added + " integration tests");
+    }
+    final int updated =
+        diff.isOptionsChanged() ? database.getTables().size() - added : diff.getChangedTables()
+            .size();
+    LOGGER.info(String.format(
+        "Reverse engineering would create up to %s, update %d entities and delete %d, "
+            + "leaving %d unchanged (introspection took %d ms)%s",
+        StringUtils.join(creations, ", "), updated, diff.getRemovedTables().size(),
+        database.getTables().size() - added - updated,
+        TimeUnit.NANOSECONDS.toMillis(introspectionNanos),
+        diff.isOptionsChanged() ? "; every entity is updated as the options differ from "
+            + DbreModelService.DBRE_XML : ""));
+  }
+
+  private void displayTables(final String change, final Set<Table> tables) {
+    final List<String> tableNames = new ArrayList<String>();
+    for (final Table table : tables) {
+      tableNames.add(table.getFullyQualifiedTableName());
+    }
+    LOGGER.info(String.format("Tables %s (%d): %s", change, tables.size(),
+        StringUtils.join(tableNames, ", ")));
+  }
+
   public boolean isDbreInstallationPossible() {
     return projectOperations.isFocusedProjectAvailable()
         && projectOperations.isFeatureInstalled(FeatureNames.JPA);
@@ -101,10 +155,13 @@ public class DbreOperationsImpl implements DbreOperations {
       final JavaPackage destinationPackage, final boolean testAutomatically, final boolean view,
       final Set<String> includeTables, final Set<String> excludeTables,
       final boolean includeNonPortableAttributes, final boolean disableVersionFields,
-      final boolean disableGeneratedIdentifiers, final boolean repository, final boolean service) {
+      final boolean disableGeneratedIdentifiers, final boolean repository, final boolean service,
+      final boolean dryRun) {
     // Force it to refresh the database from the actual JDBC connection
+    final long introspectionStart = System.nanoTime();
     final Database database =
         dbreModelService.refreshDatabase(schemas, view, includeTables, excludeTables);
+    final long introspectionNanos = System.nanoTime() - introspectionStart;
     database.setModuleName(projectOperations.getFocusedModuleName());
     database.setRepository(repository);
     database.setService(service);
@@ -113,6 +170,10 @@ public class DbreOperationsImpl implements DbreOperations {
     database.setDisableVersionFields(disableVersionFields);
     database.setDisableGeneratedIdentifiers(disableGeneratedIdentifiers);
     database.setTestAutomatically(testAutomatically);
+    if (dryRun) {
+      displayDiff(database, introspectionNanos);
+      return;
+    }
     outputSchemaXml(database, schemas, null, false);
 
     // Update the pom.xml to add an exclusion for the DBRE XML file in the
@@ -214,7 +214,7 @@ public class DatabaseContentHandler extends DefaultHandler {
         new Table(attributes.getValue(DatabaseXmlUtils.NAME), new Schema(
             attributes.getValue("alias")));
     if (StringUtils.isNotBlank(attributes.getValue(DatabaseXmlUtils.DESCRIPTION))) {
-      table.setDescription(DatabaseXmlUtils.DESCRIPTION);
+      table.setDescription(attributes.getValue(DatabaseXmlUtils.DESCRIPTION));
     }
     return table;
   }
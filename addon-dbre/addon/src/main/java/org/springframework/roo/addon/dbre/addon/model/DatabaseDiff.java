@@ -0,0 +1,294 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The differences between a stored {@link Database} model, e.g. the one last
+ * reverse engineered, and a current one, e.g. freshly read from the DBRE XML
+ * file or introspected, in terms of the tables added, removed and changed.
+ * <p>
+ * A table has changed if its name, description, columns, keys or indices
+ * have, or if a table it has a foreign key to or from has been added,
+ * removed or changed, as the entities of related tables are generated from
+ * each other's keys. The reverse engineering options held by the model, e.g.
+ * whether to disable version fields, affect every table, so a change to them
+ * is reported separately rather than as a change to each table.
+ * <p>
+ * This class is immutable.
+ *
+ * @since 2.0
+ */
+public class DatabaseDiff {
+
+  /**
+   * Returns the contents of the given column as stored in the DBRE XML file
+   */
+  private static String getContents(final Column column) {
+    return String.format(
+        "name=%s, dataType=%s, typeName=%s, columnSize=%s, scale=%s, description=%s, "
+            + "primaryKey=%s, required=%s", column.getName(), column.getDataType(),
+        column.getTypeName(), column.getColumnSize(), column.getScale(),
+        getDescription(column.getDescription()), column.isPrimaryKey(), column.isRequired());
+  }
+
+  /**
+   * Returns the contents of the given foreign key as stored in the DBRE XML
+   * file
+   */
+  private static String getContents(final ForeignKey foreignKey) {
+    final StringBuilder references = new StringBuilder();
+    for (final Reference reference : foreignKey.getReferences()) {
+      references.append(String.format("[local=%s, foreign=%s]", reference.getLocalColumnName(),
+          reference.getForeignColumnName()));
+    }
+    return String.format(
+        "name=%s, foreignTableName=%s, foreignSchemaName=%s, onDelete=%s, onUpdate=%s, "
+            + "references=%s", foreignKey.getName(), foreignKey.getForeignTableName(),
+        StringUtils.defaultIfEmpty(foreignKey.getForeignSchemaName(),
+            DbreModelService.NO_SCHEMA_REQUIRED), foreignKey.getOnDelete(),
+        foreignKey.getOnUpdate(), references);
+  }
+
+  /**
+   * Returns the contents of the given index as stored in the DBRE XML file
+   */
+  private static String getContents(final Index index) {
+    final StringBuilder columns = new StringBuilder();
+    for (final IndexColumn column : index.getColumns()) {
+      columns.append('[').append(column.getName()).append(']');
+    }
+    return String.format("name=%s, unique=%s, columns=%s", index.getName(), index.isUnique(),
+        columns);
+  }
+
+  /**
+   * Returns the contents of the given table that entities are generated
+   * from, excluding the reverse engineering options that are copied into it
+   * from its database.
+   * <p>
+   * Only what the DBRE XML file stores is compared, so that a table read
+   * back from that file is the same as the one introspected before it was
+   * written, e.g. the catalog and the columns' default values are left out,
+   * as is whatever the {@link Database} derives from the rest, e.g. join
+   * tables.
+   */
+  private static String getContents(final Table table) {
+    final StringBuilder contents = new StringBuilder();
+    contents.append(String.format("name=%s, schema=%s, description=%s", table.getName(), table
+        .getSchema().getName(), getDescription(table.getDescription())));
+    for (final Column column : table.getColumns()) {
+      contents.append(", column=[").append(getContents(column)).append(']');
+    }
+    for (final ForeignKey importedKey : table.getImportedKeys()) {
+      contents.append(", importedKey=[").append(getContents(importedKey)).append(']');
+    }
+    for (final ForeignKey exportedKey : table.getExportedKeys()) {
+      contents.append(", exportedKey=[").append(getContents(exportedKey)).append(']');
+    }
+    for (final Index index : table.getIndices()) {
+      contents.append(", index=[").append(getContents(index)).append(']');
+    }
+    return contents.toString();
+  }
+
+  /**
+   * Returns the given description as read back from the DBRE XML file, which
+   * omits blank ones
+   */
+  private static String getDescription(final String description) {
+    return StringUtils.defaultIfBlank(description, "");
+  }
+
+  private static String getKey(final String schemaName, final String tableName) {
+    return schemaName + "." + tableName;
+  }
+
+  private static String getKey(final Table table) {
+    return getKey(table.getSchema().getName(), table.getName());
+  }
+
+  /** key: see {@link #getKey(Table)}, value: the table */
+  private static Map<String, Table> getTablesByKey(final Database database) {
+    final Map<String, Table> tablesByKey = new LinkedHashMap<String, Table>();
+    if (database != null) {
+      for (final Table table : database.getTables()) {
+        tablesByKey.put(getKey(table), table);
+      }
+    }
+    return tablesByKey;
+  }
+
+  private static boolean isOptionsChanged(final Database storedDatabase,
+      final Database currentDatabase) {
+    return storedDatabase == null
+        || !ObjectUtils.equals(storedDatabase.getDestinationPackage(),
+            currentDatabase.getDestinationPackage())
+        // The DBRE XML file stores no module name as an empty one
+        || !StringUtils.defaultString(storedDatabase.getModuleName()).equals(
+            StringUtils.defaultString(currentDatabase.getModuleName()))
+        || storedDatabase.hasMultipleSchemas() != currentDatabase.hasMultipleSchemas()
+        || storedDatabase.isDisableGeneratedIdentifiers() != currentDatabase
+            .isDisableGeneratedIdentifiers()
+        || storedDatabase.isDisableVersionFields() != currentDatabase.isDisableVersionFields()
+        || storedDatabase.isIncludeNonPortableAttributes() != currentDatabase
+            .isIncludeNonPortableAttributes()
+        || storedDatabase.isRepository() != currentDatabase.isRepository()
+        || storedDatabase.isService() != currentDatabase.isService()
+        || storedDatabase.isTestAutomatically() != currentDatabase.isTestAutomatically();
+  }
+
+  private final Set<Table> addedTables = new LinkedHashSet<Table>();
+  private final Set<Table> changedTables = new LinkedHashSet<Table>();
+  private final boolean optionsChanged;
+  private final Set<Table> removedTables = new LinkedHashSet<Table>();
+  private final int unchangedTableCount;
+
+  /**
+   * Constructor
+   *
+   * @param storedDatabase the database as it was (can be <code>null</code>
+   *            if there wasn't one, in which case every table is added)
+   * @param currentDatabase the database as it is now (required)
+   */
+  public DatabaseDiff(final Database storedDatabase, final Database currentDatabase) {
+    Validate.notNull(currentDatabase, "Current database required");
+    final Map<String, Table> storedTables = getTablesByKey(storedDatabase);
+    final Map<String, Table> currentTables = getTablesByKey(currentDatabase);
+
+    // The keys of the tables whose relations have to be regenerated
+    final Set<String> differentTables = new HashSet<String>();
+    for (final Table storedTable : storedTables.values()) {
+      if (!currentTables.containsKey(getKey(storedTable))) {
+        removedTables.add(storedTable);
+        differentTables.add(getKey(storedTable));
+      }
+    }
+    for (final Table currentTable : currentTables.values()) {
+      final Table storedTable = storedTables.get(getKey(currentTable));
+      if (storedTable == null) {
+        addedTables.add(currentTable);
+        differentTables.add(getKey(currentTable));
+      } else if (!getContents(storedTable).equals(getContents(currentTable))) {
+        changedTables.add(currentTable);
+        differentTables.add(getKey(currentTable));
+      }
+    }
+
+    // Tables related to those that differ are changed too
+    for (final Table currentTable : currentTables.values()) {
+      if (!differentTables.contains(getKey(currentTable))
+          && isRelatedToAny(currentTable, differentTables)) {
+        changedTables.add(currentTable);
+      }
+    }
+
+    optionsChanged = isOptionsChanged(storedDatabase, currentDatabase);
+    unchangedTableCount = currentTables.size() - addedTables.size() - changedTables.size();
+  }
+
+  /**
+   * Returns the tables of the current database that aren't in the stored one
+   *
+   * @return a non-<code>null</code> set
+   */
+  public Set<Table> getAddedTables() {
+    return Collections.unmodifiableSet(addedTables);
+  }
+
+  /**
+   * Returns the tables of the current database that are in the stored one
+   * but have changed
+   *
+   * @return a non-<code>null</code> set
+   */
+  public Set<Table> getChangedTables() {
+    return Collections.unmodifiableSet(changedTables);
+  }
+
+  /**
+   * Returns the tables of the stored database that aren't in the current one
+   *
+   * @return a non-<code>null</code> set
+   */
+  public Set<Table> getRemovedTables() {
+    return Collections.unmodifiableSet(removedTables);
+  }
+
+  /**
+   * Returns the number of tables of the current database that are the same
+   * as in the stored one
+   *
+   * @return zero or more
+   */
+  public int getUnchangedTableCount() {
+    return unchangedTableCount;
+  }
+
+  /**
+   * Indicates whether the given table of the current database has been added
+   * or changed
+   *
+   * @param table the table to check (required)
+   * @return see above
+   */
+  public boolean isChanged(final Table table) {
+    return addedTables.contains(table) || changedTables.contains(table);
+  }
+
+  /**
+   * Indicates whether neither the tables nor the reverse engineering options
+   * differ
+   *
+   * @return see above
+   */
+  public boolean isEmpty() {
+    return addedTables.isEmpty() && changedTables.isEmpty() && removedTables.isEmpty()
+        && !optionsChanged;
+  }
+
+  /**
+   * Indicates whether the reverse engineering options differ, e.g. the
+   * destination package or whether to generate repositories, which affect
+   * every table
+   *
+   * @return see above
+   */
+  public boolean isOptionsChanged() {
+    return optionsChanged;
+  }
+
+  private boolean isRelatedToAny(final Table table, final Set<String> tableKeys) {
+    final Set<ForeignKey> foreignKeys = new LinkedHashSet<ForeignKey>(table.getImportedKeys());
+    foreignKeys.addAll(table.getExportedKeys());
+    for (final ForeignKey foreignKey : foreignKeys) {
+      final String foreignSchemaName =
+          foreignKey.getForeignSchemaName() == null ? table.getSchema().getName() : foreignKey
+              .getForeignSchemaName();
+      if (tableKeys.contains(getKey(foreignSchemaName, foreignKey.getForeignTableName()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("added", addedTables.size());
+    builder.append("removed", removedTables.size());
+    builder.append("changed", changedTables.size());
+    builder.append("unchanged", unchangedTableCount);
+    builder.append("optionsChanged", optionsChanged);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
@@ -4,35 +4,98 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 
 /**
  * Creates a {@link Database database} model from a live database using JDBC.
+ * <p>
+ * The columns of a schema are read in one go when a good part of its tables
+ * are included, otherwise table by table. The keys and indices of each table
+ * can only be read table by table, so these are read over each of the given
+ * connections in parallel, across all the schemas.
  * 
  * @author Alan Stewart
  * @since 1.1
  */
 public class DatabaseIntrospector extends AbstractIntrospector {
 
-  private final Set<String> excludeTables;
-  private final Set<String> includeTables;
+  /**
+   * The columns of a schema are read in one go if at least this fraction of
+   * its tables is included
+   */
+  private static final double BULK_COLUMNS_THRESHOLD = 0.25;
+
+  private static String getDatabaseProductName(final DatabaseMetaData databaseMetaData) {
+    try {
+      return databaseMetaData.getDatabaseProductName();
+    } catch (final SQLException ignored) {
+      return null;
+    }
+  }
+
+  private static Connection getFirst(final List<Connection> connections) {
+    Validate.notEmpty(connections, "Connections required");
+    return connections.get(0);
+  }
+
+  private static String getTableKey(final String catalog, final String schemaName,
+      final String tableName) {
+    return catalog + "." + schemaName + "." + tableName;
+  }
+
+  private final List<Connection> connections;
+  private final String databaseProductName;
   private final Set<Schema> schemas;
+  private final TableNameFilter tableNameFilter;
   private final boolean view;
 
   public DatabaseIntrospector(final Connection connection, final Set<Schema> schemas,
       final boolean view, final Set<String> includeTables, final Set<String> excludeTables)
       throws SQLException {
-    super(connection);
+    this(Collections.singletonList(connection), schemas, view, includeTables, excludeTables);
+  }
+
+  /**
+   * Constructor for reading the tables over several connections in parallel
+   * 
+   * @param connections the connections to use, none of which may be used by
+   *            anything else in the meantime (at least one required)
+   * @param schemas the schemas to introspect
+   * @param view whether to include views
+   * @param includeTables the patterns of the tables to include (can be
+   *            empty)
+   * @param excludeTables the patterns of the tables to exclude (can be
+   *            empty)
+   * @throws SQLException
+   * @since 2.0
+   */
+  public DatabaseIntrospector(final List<Connection> connections, final Set<Schema> schemas,
+      final boolean view, final Set<String> includeTables, final Set<String> excludeTables)
+      throws SQLException {
+    super(getFirst(connections));
+    this.connections = connections;
     this.schemas = schemas;
     this.view = view;
-    this.includeTables = includeTables;
-    this.excludeTables = excludeTables;
+    tableNameFilter = new TableNameFilter(includeTables, excludeTables);
+    databaseProductName = getDatabaseProductName(databaseMetaData);
   }
 
   public Database createDatabase() throws SQLException {
@@ -40,6 +103,7 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     for (final Schema schema : schemas) {
       tables.addAll(getTables(schema));
     }
+    readTables(tables);
     return new Database(tables);
   }
 
@@ -92,10 +156,12 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     final String[] types =
         view ? new String[] {TableType.TABLE.name(), TableType.VIEW.name()}
             : new String[] {TableType.TABLE.name()};
-    final ResultSet rs =
-        databaseMetaData.getTables(null, getArtifact(schema.getName()), null, types);
+    final String schemaName = getArtifact(schema.getName());
+    final ResultSet rs = databaseMetaData.getTables(null, schemaName, null, types);
+    int schemaTableCount = 0;
     try {
       while (rs.next()) {
+        schemaTableCount++;
         final String tableName = rs.getString("TABLE_NAME");
 
         // Check for certain tables such as Oracle recycle bin tables,
@@ -104,23 +170,11 @@ public class DatabaseIntrospector extends AbstractIntrospector {
           continue;
         }
 
-        if (hasIncludedTable(tableName) && !hasExcludedTable(tableName)) {
+        if (tableNameFilter.isIncluded(tableName)) {
           final Table table = new Table(tableName, new Schema(rs.getString("TABLE_SCHEM")));
           table.setCatalog(rs.getString("TABLE_CAT"));
           table.setDescription(rs.getString("REMARKS"));
 
-          readColumns(table);
-          readForeignKeys(table, false);
-          readForeignKeys(table, true);
-          readIndices(table);
-
-          for (final String columnName : readPrimaryKeyNames(table)) {
-            final Column column = table.findColumn(columnName);
-            if (column != null) {
-              column.setPrimaryKey(true);
-            }
-          }
-
           tables.add(table);
         }
       }
@@ -128,81 +182,88 @@ public class DatabaseIntrospector extends AbstractIntrospector {
       rs.close();
     }
 
+    if (!tables.isEmpty() && tables.size() >= BULK_COLUMNS_THRESHOLD * schemaTableCount) {
+      readColumns(schemaName, tables);
+    }
+
     return tables;
   }
 
-  private boolean hasExcludedTable(final String tableName) {
-    if (excludeTables == null || excludeTables.isEmpty()) {
-      return false;
+  private boolean ignoreTables(final String tableName) {
+    boolean ignore = false;
+    if ("Oracle".equalsIgnoreCase(databaseProductName) && tableName.startsWith("BIN$")) {
+      ignore = true;
     }
-    return hasTable(excludeTables, tableName);
+    if ("MySQL".equalsIgnoreCase(databaseProductName) && tableName.equals("SEQUENCE")) {
+      ignore = true;
+    }
+    return ignore;
   }
 
-  private boolean hasIncludedTable(final String tableName) {
-    if (includeTables == null || includeTables.isEmpty()) {
-      return true;
-    }
-    return hasTable(includeTables, tableName);
+  private Column newColumn(final ResultSet rs) throws SQLException {
+    final Column column =
+        new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME"),
+            rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
+    column.setDescription(rs.getString("REMARKS"));
+    column.setDefaultValue(rs.getString("COLUMN_DEF"));
+    column.setRequired("NO".equalsIgnoreCase(rs.getString("IS_NULLABLE")));
+    return column;
   }
 
-  private boolean hasTable(final Set<String> tables, final String tableName) {
-    for (final String table : tables) {
-      final String regex = table.replaceAll("\\*", ".*").replaceAll("\\?", ".?");
-      final Pattern pattern = Pattern.compile(regex);
-      if (pattern.matcher(tableName).matches()) {
-        return true;
-      }
+  /**
+   * Reads the columns of all the given tables of the given schema in one go.
+   */
+  private void readColumns(final String schemaName, final Collection<Table> tables)
+      throws SQLException {
+    final Map<String, Table> tablesByKey = new HashMap<String, Table>();
+    for (final Table table : tables) {
+      tablesByKey.put(
+          getTableKey(table.getCatalog(), table.getSchema().getName(), table.getName()), table);
     }
-    return false;
-  }
 
-  private boolean ignoreTables(final String tableName) {
-    boolean ignore = false;
+    final ResultSet rs = databaseMetaData.getColumns(null, schemaName, null, null);
     try {
-      if ("Oracle".equalsIgnoreCase(databaseMetaData.getDatabaseProductName())
-          && tableName.startsWith("BIN$")) {
-        ignore = true;
-      }
-      if ("MySQL".equalsIgnoreCase(databaseMetaData.getDatabaseProductName())
-          && tableName.equals("SEQUENCE")) {
-        ignore = true;
+      while (rs.next()) {
+        // Normalised like the schema of each table, e.g. null on MySQL
+        final String tableSchemaName = new Schema(rs.getString("TABLE_SCHEM")).getName();
+        final Table table =
+            tablesByKey.get(getTableKey(rs.getString("TABLE_CAT"), tableSchemaName,
+                rs.getString("TABLE_NAME")));
+        if (table != null) {
+          table.addColumn(newColumn(rs));
+        }
       }
-    } catch (final SQLException ignored) {
+    } finally {
+      rs.close();
     }
-    return ignore;
   }
 
-  private void readColumns(final Table table) throws SQLException {
+  private void readColumns(final Table table, final DatabaseMetaData metaData)
+      throws SQLException {
     final ResultSet rs =
-        databaseMetaData.getColumns(table.getCatalog(), table.getSchema().getName(),
-            table.getName(), null);
+        metaData.getColumns(table.getCatalog(), table.getSchema().getName(), table.getName(),
+            null);
     try {
       while (rs.next()) {
-        final Column column =
-            new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"),
-                rs.getString("TYPE_NAME"), rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
-        column.setDescription(rs.getString("REMARKS"));
-        column.setDefaultValue(rs.getString("COLUMN_DEF"));
-        column.setRequired("NO".equalsIgnoreCase(rs.getString("IS_NULLABLE")));
-
-        table.addColumn(column);
+        table.addColumn(newColumn(rs));
       }
     } finally {
       rs.close();
     }
   }
 
-  private void readForeignKeys(final Table table, final boolean exported) throws SQLException {
+  private void readForeignKeys(final Table table, final boolean exported,
+      final DatabaseMetaData metaData) throws SQLException {
     final Map<String, ForeignKey> foreignKeys = new LinkedHashMap<String, ForeignKey>();
 
     ResultSet rs;
     if (exported) {
       rs =
-          databaseMetaData.getExportedKeys(table.getCatalog(), table.getSchema().getName(),
+          metaData.getExportedKeys(table.getCatalog(), table.getSchema().getName(),
               table.getName());
     } else {
       rs =
-          databaseMetaData.getImportedKeys(table.getCatalog(), table.getSchema().getName(),
+          metaData.getImportedKeys(table.getCatalog(), table.getSchema().getName(),
               table.getName());
     }
 
@@ -212,7 +273,7 @@ public class DatabaseIntrospector extends AbstractIntrospector {
         final String foreignTableName = rs.getString(exported ? "FKTABLE_NAME" : "PKTABLE_NAME");
         final String key = name + "_" + foreignTableName;
 
-        if (!hasExcludedTable(foreignTableName)) {
+        if (!tableNameFilter.isExcluded(foreignTableName)) {
           final ForeignKey foreignKey = new ForeignKey(name, foreignTableName);
           foreignKey.setForeignSchemaName(StringUtils.defaultIfEmpty(
               rs.getString(exported ? "FKTABLE_SCHEM" : "PKTABLE_SCHEM"),
@@ -247,7 +308,8 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     }
   }
 
-  private void readIndices(final Table table) throws SQLException {
+  private void readIndices(final Table table, final DatabaseMetaData metaData)
+      throws SQLException {
     final Set<Index> indices = new LinkedHashSet<Index>();
 
     ResultSet rs;
@@ -256,7 +318,7 @@ public class DatabaseIntrospector extends AbstractIntrospector {
       // attempting to retrieve indices for deleted tables that exist in
       // Oracle's recycle bin
       rs =
-          databaseMetaData.getIndexInfo(table.getCatalog(), table.getSchema().getName(),
+          metaData.getIndexInfo(table.getCatalog(), table.getSchema().getName(),
               table.getName(), false, false);
     } catch (final SQLException e) {
       return;
@@ -294,11 +356,12 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     }
   }
 
-  private Set<String> readPrimaryKeyNames(final Table table) throws SQLException {
+  private Set<String> readPrimaryKeyNames(final Table table, final DatabaseMetaData metaData)
+      throws SQLException {
     final Set<String> columnNames = new LinkedHashSet<String>();
 
     final ResultSet rs =
-        databaseMetaData.getPrimaryKeys(table.getCatalog(), table.getSchema().getName(),
+        metaData.getPrimaryKeys(table.getCatalog(), table.getSchema().getName(),
             table.getName());
     try {
       while (rs.next()) {
@@ -310,4 +373,76 @@ public class DatabaseIntrospector extends AbstractIntrospector {
 
     return columnNames;
   }
+
+  /**
+   * Reads the rest of the given table, i.e. whatever hasn't been read from
+   * its schema as a whole.
+   */
+  private void readTable(final Table table, final DatabaseMetaData metaData) throws SQLException {
+    if (table.getColumns().isEmpty()) {
+      readColumns(table, metaData);
+    }
+    readForeignKeys(table, false, metaData);
+    readForeignKeys(table, true, metaData);
+    readIndices(table, metaData);
+
+    for (final String columnName : readPrimaryKeyNames(table, metaData)) {
+      final Column column = table.findColumn(columnName);
+      if (column != null) {
+        column.setPrimaryKey(true);
+      }
+    }
+  }
+
+  /**
+   * Reads the rest of the given tables, using one thread per connection.
+   */
+  private void readTables(final Collection<Table> tables) throws SQLException {
+    final Queue<Table> queue = new ConcurrentLinkedQueue<Table>(tables);
+    if (connections.size() == 1 || tables.size() < 2) {
+      readTables(queue, databaseMetaData);
+      return;
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(connections.size());
+    try {
+      final List<Future<Void>> readers = new ArrayList<Future<Void>>();
+      for (final Connection connection : connections) {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        readers.add(executor.submit(new Callable<Void>() {
+          public Void call() throws SQLException {
+            readTables(queue, metaData);
+            return null;
+          }
+        }));
+      }
+      for (final Future<Void> reader : readers) {
+        try {
+          reader.get();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while introspecting the database", e);
+        } catch (final ExecutionException e) {
+          // Stops the other readers
+          queue.clear();
+          if (e.getCause() instanceof SQLException) {
+            throw (SQLException) e.getCause();
+          }
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void readTables(final Queue<Table> tables, final DatabaseMetaData metaData)
+      throws SQLException {
+    for (Table table = tables.poll(); table != null; table = tables.poll()) {
+      readTable(table, metaData);
+    }
+  }
 }
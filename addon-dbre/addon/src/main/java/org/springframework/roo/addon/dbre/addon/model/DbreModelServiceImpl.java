@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -51,6 +52,9 @@ public class DbreModelServiceImpl implements DbreModelService {
 
   private static final Logger LOGGER = HandlerUtils.getLogger(DbreModelServiceImpl.class);
 
+  /** The most connections over which to introspect a database */
+  private static final int MAX_INTROSPECTION_CONNECTIONS = 4;
+
   protected void activate(final ComponentContext cContext) {
     this.context = cContext.getBundleContext();
   }
@@ -222,18 +226,31 @@ public class DbreModelServiceImpl implements DbreModelService {
       final Set<String> includeTables, final Set<String> excludeTables) {
     Validate.notNull(schemas, "Schemas required");
 
-    Connection connection = null;
+    final List<Connection> connections = new ArrayList<Connection>();
     try {
-      connection = getConnection(true);
+      connections.add(getConnection(true));
+      try {
+        while (connections.size() < MAX_INTROSPECTION_CONNECTIONS) {
+          final Connection connection = getConnection(false);
+          if (connection == null) {
+            break;
+          }
+          connections.add(connection);
+        }
+      } catch (final RuntimeException ignored) {
+        // The database may limit the number of connections
+      }
       final DatabaseIntrospector introspector =
-          new DatabaseIntrospector(connection, schemas, view, includeTables, excludeTables);
+          new DatabaseIntrospector(connections, schemas, view, includeTables, excludeTables);
       final Database database = introspector.createDatabase();
       cacheDatabase(database);
       return database;
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     } finally {
-      getConnectionProvider().closeConnection(connection);
+      for (final Connection connection : connections) {
+        getConnectionProvider().closeConnection(connection);
+      }
     }
   }
 
@@ -0,0 +1,77 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The tables to include in and exclude from a {@link DatabaseIntrospector
+ * database introspection}, given by patterns in which "*" matches any
+ * characters and "?" matches at most one.
+ * <p>
+ * Each set of patterns is compiled once, into a single regular expression,
+ * rather than once per pattern for every table name it's matched against.
+ * This class is immutable.
+ *
+ * @since 2.0
+ */
+class TableNameFilter {
+
+  /**
+   * Compiles the given patterns into one that matches whatever any of them
+   * matches.
+   *
+   * @return <code>null</code> if there are no patterns
+   */
+  private static Pattern compile(final Set<String> tableNamePatterns) {
+    if (tableNamePatterns == null || tableNamePatterns.isEmpty()) {
+      return null;
+    }
+    final StringBuilder regex = new StringBuilder();
+    for (final String tableNamePattern : tableNamePatterns) {
+      if (regex.length() > 0) {
+        regex.append('|');
+      }
+      regex.append("(?:")
+          .append(tableNamePattern.replaceAll("\\*", ".*").replaceAll("\\?", ".?")).append(')');
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  private final Pattern excludePattern;
+  private final Pattern includePattern;
+
+  /**
+   * Constructor
+   *
+   * @param includeTables the patterns of the tables to include; all tables
+   *            are included if there are none (can be <code>null</code>)
+   * @param excludeTables the patterns of the tables to exclude (can be
+   *            <code>null</code>)
+   */
+  TableNameFilter(final Set<String> includeTables, final Set<String> excludeTables) {
+    excludePattern = compile(excludeTables);
+    includePattern = compile(includeTables);
+  }
+
+  /**
+   * Indicates whether the given table is excluded, regardless of whether
+   * it's included.
+   *
+   * @param tableName the name of the table (required)
+   * @return see above
+   */
+  boolean isExcluded(final String tableName) {
+    return excludePattern != null && excludePattern.matcher(tableName).matches();
+  }
+
+  /**
+   * Indicates whether the given table is included and not excluded.
+   *
+   * @param tableName the name of the table (required)
+   * @return see above
+   */
+  boolean isIncluded(final String tableName) {
+    return (includePattern == null || includePattern.matcher(tableName).matches())
+        && !isExcluded(tableName);
+  }
+}
@@ -0,0 +1,175 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Unit test of {@link DatabaseDiff}
+ *
+ * @since 2.0
+ */
+public class DatabaseDiffTest {
+
+  private static final Schema SCHEMA = new Schema("PUBLIC");
+
+  private static Database database(final Table... tables) {
+    return new Database(new LinkedHashSet<Table>(Arrays.asList(tables)));
+  }
+
+  /**
+   * Returns a database like one introspected via JDBC, which has details
+   * that the DBRE XML file doesn't store
+   */
+  private static Database introspectedDatabase() {
+    final Table owner = owner("EMAIL");
+    owner.setCatalog("PETCLINIC");
+    owner.setDescription("The owners of the pets");
+    owner.findColumn("ID").setAutoIncrement(true);
+    owner.findColumn("EMAIL").setDefaultValue("'unknown'");
+    final Index index = new Index("UK_OWNER_EMAIL");
+    index.setUnique(true);
+    index.addColumn(new IndexColumn("EMAIL"));
+    owner.addIndex(index);
+    final ForeignKey exportedKey = new ForeignKey("FK_PET_OWNER", "PET");
+    exportedKey.setExported(true);
+    exportedKey.setForeignSchemaName(SCHEMA.getName());
+    exportedKey.addReference(new Reference("ID", "OWNER_ID"));
+    owner.addExportedKey(exportedKey);
+
+    final Table pet = pet();
+    pet.setCatalog("PETCLINIC");
+    pet.setDescription("");
+    return database(owner, pet);
+  }
+
+  private static Set<String> names(final String... names) {
+    return new LinkedHashSet<String>(Arrays.asList(names));
+  }
+
+  private static Set<String> names(final Set<Table> tables) {
+    final Set<String> names = new LinkedHashSet<String>();
+    for (final Table table : tables) {
+      names.add(table.getName());
+    }
+    return names;
+  }
+
+  private static Table owner(final String... extraColumns) {
+    final Table owner = table("OWNER", "ID", "NAME");
+    for (final String extraColumn : extraColumns) {
+      owner.addColumn(new Column(extraColumn, Types.VARCHAR, "VARCHAR", 30, 0));
+    }
+    return owner;
+  }
+
+  private static Table pet() {
+    final Table pet = table("PET", "ID", "OWNER_ID");
+    final ForeignKey foreignKey = new ForeignKey("FK_PET_OWNER", "OWNER");
+    foreignKey.setForeignSchemaName(SCHEMA.getName());
+    foreignKey.addReference(new Reference("OWNER_ID", "ID"));
+    pet.addImportedKey(foreignKey);
+    return pet;
+  }
+
+  private static Table table(final String name, final String... columnNames) {
+    final Table table = new Table(name, SCHEMA);
+    for (final String columnName : columnNames) {
+      final Column column = new Column(columnName, Types.INTEGER, "INTEGER", 10, 0);
+      column.setPrimaryKey("ID".equals(columnName));
+      table.addColumn(column);
+    }
+    return table;
+  }
+
+  @Test
+  public void testAddedRemovedAndChangedTablesAreFound() {
+    final DatabaseDiff diff =
+        new DatabaseDiff(database(owner(), pet(), table("VET", "ID")), database(owner("EMAIL"),
+            pet(), table("VISIT", "ID")));
+
+    assertEquals(names("VISIT"), names(diff.getAddedTables()));
+    assertEquals(names("VET"), names(diff.getRemovedTables()));
+    // The pet table is unchanged, but has a foreign key to the owner table
+    assertEquals(names("OWNER", "PET"), names(diff.getChangedTables()));
+    assertEquals(0, diff.getUnchangedTableCount());
+    assertFalse(diff.isOptionsChanged());
+    assertFalse(diff.isEmpty());
+  }
+
+  @Test
+  public void testEqualDatabasesHaveNoDifferences() {
+    final DatabaseDiff diff =
+        new DatabaseDiff(database(owner(), pet()), database(owner(), pet()));
+
+    assertTrue(diff.isEmpty());
+    assertEquals(2, diff.getUnchangedTableCount());
+  }
+
+  @Test
+  public void testEveryTableIsAddedWithoutAStoredDatabase() {
+    final DatabaseDiff diff = new DatabaseDiff(null, database(owner(), pet()));
+
+    assertEquals(names("OWNER", "PET"), names(diff.getAddedTables()));
+    assertTrue(diff.getChangedTables().isEmpty());
+    assertTrue(diff.isOptionsChanged());
+  }
+
+  @Test
+  public void testIntrospectedDatabaseEqualsItsXml() {
+    final Database introspectedDatabase = introspectedDatabase();
+    final String xml =
+        XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(introspectedDatabase));
+    final Database storedDatabase =
+        DatabaseXmlUtils.readDatabase(new ByteArrayInputStream(xml.getBytes()));
+
+    final DatabaseDiff diff = new DatabaseDiff(storedDatabase, introspectedDatabase);
+
+    assertTrue(diff.isEmpty());
+    assertEquals(2, diff.getUnchangedTableCount());
+  }
+
+  @Test
+  public void testOptionsAreDiffedSeparatelyFromTables() {
+    final Database currentDatabase = database(owner(), pet());
+    currentDatabase.setRepository(true);
+
+    final DatabaseDiff diff = new DatabaseDiff(database(owner(), pet()), currentDatabase);
+
+    assertTrue(diff.isOptionsChanged());
+    assertTrue(diff.getChangedTables().isEmpty());
+    assertEquals(2, diff.getUnchangedTableCount());
+  }
+
+  @Test
+  public void testTableDescriptionsAreDiffed() {
+    final Table owner = owner();
+    owner.setDescription("The owners of the pets");
+
+    final DatabaseDiff diff = new DatabaseDiff(database(owner(), pet()), database(owner, pet()));
+
+    assertEquals(names("OWNER", "PET"), names(diff.getChangedTables()));
+  }
+
+  @Test
+  public void testUnrelatedTablesAreUnchanged() {
+    final Database storedDatabase = database(owner(), pet(), table("VET", "ID"));
+    final Database currentDatabase = database(owner(), pet(), table("VET", "ID", "NAME"));
+
+    final DatabaseDiff diff = new DatabaseDiff(storedDatabase, currentDatabase);
+
+    assertEquals(names("VET"), names(diff.getChangedTables()));
+    assertFalse(diff.isChanged(currentDatabase.getTable("OWNER", SCHEMA.getName())));
+    assertTrue(diff.isChanged(currentDatabase.getTable("VET", SCHEMA.getName())));
+    assertEquals(2, diff.getUnchangedTableCount());
+  }
+}
@@ -0,0 +1,173 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DatabaseIntrospector}
+ *
+ * @since 2.0
+ */
+public class DatabaseIntrospectorTest {
+
+  /**
+   * An in-memory database with the given tables, each having an ID and a
+   * NAME column
+   */
+  private static class FakeDatabase implements InvocationHandler {
+
+    private final String catalog;
+    private int columnQueries;
+    private final String schemaName;
+    private final List<String> tableNames;
+
+    FakeDatabase(final String catalog, final String schemaName, final String... tableNames) {
+      this.catalog = catalog;
+      this.schemaName = schemaName;
+      this.tableNames = new ArrayList<String>();
+      Collections.addAll(this.tableNames, tableNames);
+    }
+
+    Connection getConnection() {
+      final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, this);
+      return proxy(Connection.class, new InvocationHandler() {
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+          return "getMetaData".equals(method.getName()) ? metaData : null;
+        }
+      });
+    }
+
+    private List<Map<String, Object>> getColumns(final String tableNamePattern) {
+      columnQueries++;
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      for (final String tableName : tableNames) {
+        if (tableNamePattern == null || tableNamePattern.equals(tableName)) {
+          for (final String columnName : new String[] {"ID", "NAME"}) {
+            final Map<String, Object> row = getTableRow(tableName);
+            row.put("COLUMN_NAME", columnName);
+            row.put("DATA_TYPE", Types.VARCHAR);
+            row.put("TYPE_NAME", "VARCHAR");
+            row.put("COLUMN_SIZE", 255);
+            row.put("IS_NULLABLE", "YES");
+            rows.add(row);
+          }
+        }
+      }
+      return rows;
+    }
+
+    private Map<String, Object> getTableRow(final String tableName) {
+      final Map<String, Object> row = new HashMap<String, Object>();
+      row.put("TABLE_CAT", catalog);
+      row.put("TABLE_SCHEM", schemaName);
+      row.put("TABLE_NAME", tableName);
+      return row;
+    }
+
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+      final String name = method.getName();
+      if ("getTables".equals(name)) {
+        final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (final String tableName : tableNames) {
+          rows.add(getTableRow(tableName));
+        }
+        return resultSet(rows);
+      }
+      if ("getColumns".equals(name)) {
+        return resultSet(getColumns((String) args[2]));
+      }
+      if (method.getReturnType() == ResultSet.class) {
+        return resultSet(Collections.<Map<String, Object>> emptyList());
+      }
+      if ("getDatabaseProductName".equals(name)) {
+        return "MySQL";
+      }
+      return method.getReturnType() == boolean.class ? false : null;
+    }
+  }
+
+  private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        handler));
+  }
+
+  /**
+   * Returns a forward-only result set over the given rows
+   */
+  private static ResultSet resultSet(final List<Map<String, Object>> rows) {
+    final Iterator<Map<String, Object>> iterator = rows.iterator();
+    return proxy(ResultSet.class, new InvocationHandler() {
+      private Map<String, Object> row;
+
+      public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        final String name = method.getName();
+        if ("next".equals(name)) {
+          row = iterator.hasNext() ? iterator.next() : null;
+          return row != null;
+        }
+        if ("getString".equals(name)) {
+          return (String) row.get(args[0]);
+        }
+        if ("getInt".equals(name)) {
+          final Object value = row.get(args[0]);
+          return value == null ? 0 : value;
+        }
+        return null;
+      }
+    });
+  }
+
+  private void assertColumnsReadInOneGo(final Database database, final FakeDatabase fake) {
+    assertEquals(2, database.getTables().size());
+    for (final Table table : database.getTables()) {
+      assertEquals(2, table.getColumns().size());
+      assertNotNull(table.findColumn("NAME"));
+    }
+    assertEquals(1, fake.columnQueries);
+  }
+
+  private Database introspect(final FakeDatabase database, final String schemaName)
+      throws Exception {
+    return new DatabaseIntrospector(database.getConnection(), Collections.singleton(new Schema(
+        schemaName)), false, null, null).createDatabase();
+  }
+
+  @Test
+  public void testColumnsOfTablesWithSchemaAreReadInOneGo() throws Exception {
+    final FakeDatabase fake = new FakeDatabase(null, "PUBLIC", "OWNER", "PET");
+
+    // Invoke
+    final Database database = introspect(fake, "PUBLIC");
+
+    // Check
+    assertColumnsReadInOneGo(database, fake);
+  }
+
+  @Test
+  public void testColumnsOfTablesWithoutSchemaAreReadInOneGo() throws Exception {
+    // As on MySQL, which has catalogs instead of schemas
+    final FakeDatabase fake = new FakeDatabase("petclinic", null, "OWNER", "PET");
+
+    // Invoke
+    final Database database = introspect(fake, DbreModelService.NO_SCHEMA_REQUIRED);
+
+    // Check
+    assertColumnsReadInOneGo(database, fake);
+  }
+}
@@ -0,0 +1,53 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link TableNameFilter}
+ *
+ * @since 2.0
+ */
+public class TableNameFilterTest {
+
+  private static Set<String> patterns(final String... patterns) {
+    return new HashSet<String>(Arrays.asList(patterns));
+  }
+
+  @Test
+  public void testEveryTableIsIncludedWithoutPatterns() {
+    final TableNameFilter filter = new TableNameFilter(null, Collections.<String>emptySet());
+
+    assertTrue(filter.isIncluded("OWNER"));
+    assertFalse(filter.isExcluded("OWNER"));
+  }
+
+  @Test
+  public void testExcludedTablesAreNotIncluded() {
+    final TableNameFilter filter = new TableNameFilter(patterns("OWN*"), patterns("*_AUD"));
+
+    assertTrue(filter.isIncluded("OWNER"));
+    assertFalse(filter.isIncluded("OWNER_AUD"));
+    assertTrue(filter.isExcluded("PET_AUD"));
+  }
+
+  @Test
+  public void testTablesMatchingAnyPatternAreIncluded() {
+    final TableNameFilter filter = new TableNameFilter(patterns("OWNER", "PET?", "VIS*"), null);
+
+    assertTrue(filter.isIncluded("OWNER"));
+    assertTrue(filter.isIncluded("PET"));
+    assertTrue(filter.isIncluded("PETS"));
+    assertTrue(filter.isIncluded("VISIT"));
+    assertFalse(filter.isIncluded("OWNERS"));
+    assertFalse(filter.isIncluded("PETSS"));
+    assertFalse(filter.isIncluded("VET"));
+  }
+}
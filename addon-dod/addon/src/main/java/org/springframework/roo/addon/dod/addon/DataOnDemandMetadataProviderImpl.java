@@ -268,7 +268,8 @@ public class DataOnDemandMetadataProviderImpl extends AbstractMemberDiscoveringI
     final Iterable<ClassOrInterfaceTypeDetails> dataOnDemandTypes =
         getTypeLocationService().findClassesOrInterfaceDetailsWithAnnotation(ROO_DATA_ON_DEMAND);
 
-    final List<MethodMetadata> mutatorMethods = memberDetails.getMethods();
+    final List<MethodMetadata> mutatorMethods =
+        new ArrayList<MethodMetadata>(memberDetails.getMethods());
     // To avoid unnecessary rewriting of the DoD ITD we sort the mutators by
     // method name to provide a consistent ordering
     Collections.sort(mutatorMethods, new NaturalOrderComparator<MethodMetadata>() {
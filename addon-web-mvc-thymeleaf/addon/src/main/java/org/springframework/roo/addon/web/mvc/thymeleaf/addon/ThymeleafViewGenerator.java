@@ -1,6 +1,5 @@
 package org.springframework.roo.addon.web.mvc.thymeleaf.addon;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
@@ -250,11 +249,8 @@ public class ThymeleafViewGenerator extends AbstractFreeMarkerViewGenerationServ
   }
 
   @Override
-  public void writeDoc(Document document, String viewPath) {
-    // Write doc on disk
-    if (document != null && StringUtils.isNotBlank(viewPath)) {
-      getFileManager().createOrUpdateTextFileIfRequired(viewPath, document.html(), false);
-    }
+  public String serialize(Document document) {
+    return document.html();
   }
 
   @Override
@@ -10,6 +10,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
@@ -36,6 +38,7 @@ import org.springframework.roo.classpath.details.annotations.StringAttributeValu
 import org.springframework.roo.classpath.persistence.PersistenceMemberLocator;
 import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.model.JpaJavaType;
 import org.springframework.roo.model.Jsr303JavaType;
@@ -50,6 +53,15 @@ import org.springframework.roo.support.osgi.ServiceInstaceManager;
  * This abstract class implements MVCViewGenerationService interface that
  * provides all necessary elements to generate views inside project.
  *
+ * Generating a view only gathers what it needs from the project; rendering
+ * it, and merging it with the existing one, runs on a pool of threads, and
+ * the file manager writes the rendered views in the order they were
+ * generated when it commits. As a result, rendering must not use services
+ * that aren't thread safe, see {@link #prepareRendering(ViewContext)}.
+ *
+ * A view isn't rendered at all if it's unchanged since it was last rendered
+ * from the same inputs, see {@link ViewFingerprints}.
+ *
  * @param <DOC>
  *
  * @author Juan Carlos García
@@ -58,12 +70,71 @@ import org.springframework.roo.support.osgi.ServiceInstaceManager;
 @Component(componentAbstract = true)
 public abstract class AbstractViewGenerationService<DOC> implements MVCViewGenerationService {
 
+  /**
+   * Renders a view on the {@link #RENDERING_POOL}, either from scratch or
+   * merged with the existing one, using a copy of the {@link ViewContext} it
+   * was generated with, as later views keep changing the original. Merging
+   * sets the user managed code of the view items, so any items that the
+   * generating thread keeps using, e.g. because they're also extra
+   * parameters of the context, have to be copied for the renderer via
+   * {@link ViewContext#copyItems(Object)}.
+   */
+  private abstract class ViewRenderer implements Callable<String> {
+    private final ViewContext ctx;
+    private final boolean exists;
+    private final String fingerprint;
+    private long rendering;
+    private final String viewName;
+
+    /**
+     * Constructor
+     *
+     * @param viewName the path of the view (required)
+     * @param ctx the context of the view (required)
+     * @param inputs everything else the view is rendered from
+     */
+    ViewRenderer(final String viewName, final ViewContext ctx, final Object... inputs) {
+      this.ctx = new ViewContext(ctx);
+      this.viewName = viewName;
+      exists = existsFile(viewName);
+      fingerprint = ViewFingerprints.getFingerprint(this.ctx, inputs);
+    }
+
+    public String call() {
+      final String contents;
+      if (exists) {
+        contents = serialize(update(loadExistingDoc(viewName), ctx));
+      } else {
+        contents = serialize(create(ctx));
+      }
+      viewFingerprints.record(viewName, rendering, fingerprint, contents);
+      return contents;
+    }
+
+    /**
+     * Renders the view when it doesn't exist yet
+     */
+    abstract DOC create(ViewContext ctx);
+
+    /**
+     * Renders the view merged with the existing one
+     */
+    abstract DOC update(DOC existingDoc, ViewContext ctx);
+  }
+
   // Max fields that will be included on generated view
   private static final int MAX_FIELDS_TO_ADD = 5;
 
   private static Logger LOGGER = HandlerUtils.getLogger(AbstractViewGenerationService.class);
 
+  /**
+   * Renders views, which depend on nothing but their {@link ViewContext} and
+   * the existing views, in parallel with their generation
+   */
+  private static final ForkJoinPool RENDERING_POOL = new ForkJoinPool();
+
   private ServiceInstaceManager serviceInstaceManager = new ServiceInstaceManager();
+  private final ViewFingerprints viewFingerprints = new ViewFingerprints();
 
   // ------------ OSGi component attributes ----------------
   protected BundleContext context;
@@ -91,7 +162,27 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
   protected abstract String getTemplatesLocation();
 
-  protected abstract void writeDoc(DOC document, String viewPath);
+  protected abstract String serialize(DOC document);
+
+  /**
+   * Called on the thread generating views before each is handed to the
+   * rendering pool, so that anything rendering needs from services that
+   * aren't thread safe can be looked up here and kept in the renderer's own
+   * context.
+   *
+   * @param ctx the copy of the view's context that it's rendered with
+   */
+  protected void prepareRendering(final ViewContext ctx) {
+    // To be overridden if needed
+  }
+
+  /**
+   * Has every view rendered again, even if its inputs are unchanged, e.g.
+   * because the templates have changed.
+   */
+  protected void forgetRenderedViews() {
+    viewFingerprints.clear();
+  }
 
   private static final String FIELD_SUFFIX = "field";
   private static final String TABLE_SUFFIX = "entity";
@@ -103,35 +194,35 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = entityDetails.getFields();
-    List<FieldItem> fields =
+    final List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), true, ctx, TABLE_SUFFIX);
-    List<DetailEntityItem> details =
+    final List<DetailEntityItem> details =
         getDetailsFieldViewItems(entityDetails, ctx.getEntityName(), ctx, DETAIL_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/list")
             .concat(getViewsExtension());
 
-    EntityItem entityItem =
+    final EntityItem entityItem =
         new EntityItem(ctx.getEntityName(), ctx.getIdentifierField(), ctx.getControllerPath(),
             TABLE_SUFFIX);
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = mergeListView("list", loadExistingDoc(viewName), ctx, entityItem, fields, details);
-    } else {
-      ctx.addExtraParameter("entity", entityItem);
-      ctx.addExtraParameter("fields", fields);
-      ctx.addExtraParameter("details", details);
-      newDoc = process("list", ctx);
-    }
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(new ViewRenderer(viewName, ctx, "list", entityItem, fields, details) {
+      @Override
+      DOC create(final ViewContext ctx) {
+        ctx.addExtraParameter("entity", entityItem);
+        ctx.addExtraParameter("fields", fields);
+        ctx.addExtraParameter("details", details);
+        return process("list", ctx);
+      }
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+      @Override
+      DOC update(final DOC existingDoc, final ViewContext ctx) {
+        return mergeListView("list", existingDoc, ctx, entityItem, fields, details);
+      }
+    });
 
   }
 
@@ -149,24 +240,13 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
     ctx.addExtraParameter("details", details);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/show")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("show", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("show", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "show", ctx, fields);
 
   }
 
@@ -178,24 +258,13 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, FIELD_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/create")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("create", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("create", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "create", ctx, fields);
 
   }
 
@@ -207,24 +276,13 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, FIELD_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/edit")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("edit", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("edit", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "edit", ctx, fields);
 
   }
 
@@ -254,23 +312,13 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     path = StringUtils.uncapitalize(path);
     ctx.addExtraParameter("action", path);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat(finderName)
             .concat("Form").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("finderForm", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("finderForm", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "finderForm", ctx);
   }
 
   @Override
@@ -279,7 +327,7 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = returnTypeDetails.getFields();
-    List<FieldItem> fields =
+    final List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, StringUtils.EMPTY);
 
     // Build URL path to get data
@@ -298,200 +346,117 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     path = StringUtils.uncapitalize(path);
     ctx.addExtraParameter("finderPath", path);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat(finderName)
             .concat("List").concat(getViewsExtension());
 
-    EntityItem entityItem =
+    final EntityItem entityItem =
         new EntityItem(ctx.getEntityName(), ctx.getIdentifierField(), ctx.getControllerPath(),
             FINDER_SUFFIX);
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc =
-          mergeListView("finderList", loadExistingDoc(viewName), ctx, entityItem, fields,
-              new ArrayList<DetailEntityItem>());
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("finderList", ctx);
-    }
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(new ViewRenderer(viewName, ctx, "finderList", entityItem, fields) {
+      @Override
+      DOC create(final ViewContext ctx) {
+        ctx.addExtraParameter("fields", fields);
+        return process("finderList", ctx);
+      }
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+      @Override
+      DOC update(final DOC existingDoc, final ViewContext ctx) {
+        return mergeListView("finderList", existingDoc, ctx, entityItem, fields,
+            new ArrayList<DetailEntityItem>());
+      }
+    });
   }
 
   @Override
   public void addIndexView(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getViewsFolder(moduleName).concat("/index").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("index", loadExistingDoc(viewName), ctx);
-
-    } else {
-      newDoc = process("index", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "index", ctx);
 
   }
 
   @Override
   public void addLoginView(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getViewsFolder(moduleName).concat("/login").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("login", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("login", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "login", ctx);
 
   }
 
   @Override
   public void addAccessibilityView(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat("/accessibility").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("accessibility", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("accessibility", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "accessibility", ctx);
 
   }
 
   @Override
   public void addErrorView(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getViewsFolder(moduleName).concat("/error").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("error", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("error", ctx);
-    }
-
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "error", ctx);
 
   }
 
   @Override
   public void addDefaultLayout(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getLayoutsFolder(moduleName).concat("/default-layout").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("layouts/default-layout", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("layouts/default-layout", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "layouts/default-layout", ctx);
 
   }
 
   @Override
   public void addDefaultLayoutNoMenu(String moduleName, ViewContext ctx) {
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getLayoutsFolder(moduleName).concat("/default-layout-no-menu").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("layouts/default-layout-no-menu", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("layouts/default-layout-no-menu", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "layouts/default-layout-no-menu", ctx);
 
   }
 
   @Override
   public void addFooter(String moduleName, ViewContext ctx) {
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getFragmentsFolder(moduleName).concat("/footer").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/footer", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/footer", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/footer", ctx);
 
   }
 
   @Override
   public void addHeader(String moduleName, ViewContext ctx) {
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getFragmentsFolder(moduleName).concat("/header").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/header", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/header", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/header", ctx);
 
   }
 
@@ -581,8 +546,9 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     }
 
     // First of all, generate a list of MenuEntries based on existing
-    // controllers
-    List<MenuEntry> menuEntries = new ArrayList<MenuEntry>(mapMenuEntries.values());
+    // controllers, copied as the menu is rendered again for each controller
+    final List<MenuEntry> menuEntries =
+        ViewContext.copyItems(new ArrayList<MenuEntry>(mapMenuEntries.values()));
 
     // Generate ids to search when merge new and existing doc
     List<String> requiredIds = new ArrayList<String>();
@@ -590,84 +556,54 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
       requiredIds.add(entry.getPathPrefix().concat(entry.getEntityName()).concat("Entry"));
     }
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getFragmentsFolder(moduleName).concat("/menu").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = mergeMenu("fragments/menu", loadExistingDoc(viewName), ctx, menuEntries);
-    } else {
-      ctx.addExtraParameter("menuEntries", menuEntries);
-      newDoc = process("fragments/menu", ctx);
-    }
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(new ViewRenderer(viewName, ctx, "fragments/menu", menuEntries) {
+      @Override
+      DOC create(final ViewContext ctx) {
+        ctx.addExtraParameter("menuEntries", menuEntries);
+        return process("fragments/menu", ctx);
+      }
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+      @Override
+      DOC update(final DOC existingDoc, final ViewContext ctx) {
+        return mergeMenu("fragments/menu", existingDoc, ctx, menuEntries);
+      }
+    });
 
   }
 
   @Override
   public void addModal(String moduleName, ViewContext ctx) {
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName = getFragmentsFolder(moduleName).concat("/modal").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/modal", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/modal", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/modal", ctx);
 
   }
 
   @Override
   public void addModalConfirm(String moduleName, ViewContext ctx) {
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getFragmentsFolder(moduleName).concat("/modal-confirm").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/modal-confirm", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/modal-confirm", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/modal-confirm", ctx);
 
   }
 
   @Override
   public void addSessionLinks(String moduleName, ViewContext ctx) {
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getFragmentsFolder(moduleName).concat("/session-links").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/session-links", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/session-links", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/session-links", ctx);
 
   }
 
@@ -678,9 +614,6 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     List<I18n> installedLanguages = getI18nOperationsImpl().getInstalledLanguages(moduleName);
     ctx.addExtraParameter("languages", installedLanguages);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getFragmentsFolder(moduleName).concat("/languages").concat(getViewsExtension());
@@ -691,15 +624,8 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
       requiredIds.add(language.getLocale().getLanguage() + "Flag");
     }
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("fragments/languages", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("fragments/languages", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    // Render it, merged with the existing one if any, and write it on disk
+    writeView(viewName, "fragments/languages", ctx);
   }
 
   @Override
@@ -1048,6 +974,67 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
   }
 
+  /**
+   * Renders the given view on the {@link #RENDERING_POOL} and has the file
+   * manager write it once rendered, unless it's unchanged since it was last
+   * rendered from the same inputs.
+   *
+   * @param renderer the renderer of the view (required)
+   */
+  private void writeView(final ViewRenderer renderer) {
+    prepareRendering(renderer.ctx);
+    if (viewFingerprints.isUnchanged(renderer.viewName, renderer.fingerprint)) {
+      return;
+    }
+    renderer.rendering = viewFingerprints.startRendering(renderer.viewName);
+    getFileManager().createOrUpdateTextFileIfRequired(renderer.viewName,
+        RENDERING_POOL.submit(renderer));
+  }
+
+  /**
+   * Renders the given view from the given template, merged with the existing
+   * view if any, and has the file manager write it once rendered.
+   *
+   * @param viewName the path of the view (required)
+   * @param templateName the name of the template (required)
+   * @param ctx the context of the view (required)
+   */
+  private void writeView(final String viewName, final String templateName, final ViewContext ctx) {
+    writeView(new ViewRenderer(viewName, ctx, templateName) {
+      @Override
+      DOC create(final ViewContext ctx) {
+        return process(templateName, ctx);
+      }
+
+      @Override
+      DOC update(final DOC existingDoc, final ViewContext ctx) {
+        return merge(templateName, existingDoc, ctx);
+      }
+    });
+  }
+
+  /**
+   * As {@link #writeView(String, String, ViewContext)}, for a view of the
+   * given fields.
+   */
+  private void writeView(final String viewName, final String templateName,
+      final ViewContext ctx, final List<FieldItem> viewFields) {
+    // The fields can be extra parameters of the context too
+    final List<FieldItem> fields = ViewContext.copyItems(viewFields);
+    writeView(new ViewRenderer(viewName, ctx, templateName, fields) {
+      @Override
+      DOC create(final ViewContext ctx) {
+        ctx.addExtraParameter("fields", fields);
+        return process(templateName, ctx);
+      }
+
+      @Override
+      DOC update(final DOC existingDoc, final ViewContext ctx) {
+        return merge(templateName, existingDoc, ctx, fields);
+      }
+    });
+  }
+
   /**
    * This method load the provided file and get its content in String format.
    *
@@ -1086,6 +1073,10 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     return serviceInstaceManager.getServiceInstance(this, FileManager.class);
   }
 
+  public FileMonitorService getFileMonitorService() {
+    return serviceInstaceManager.getServiceInstance(this, FileMonitorService.class);
+  }
+
   public TypeLocationService getTypeLocationService() {
     return serviceInstaceManager.getServiceInstance(this, TypeLocationService.class);
   }
@@ -1106,4 +1097,12 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
   public PluralService getPluralService() {
     return serviceInstaceManager.getServiceInstance(this, PluralService.class);
   }
+
+  /**
+   * Returns how many views have been rendered or skipped.
+   */
+  @Override
+  public String toString() {
+    return viewFingerprints.toString();
+  }
 }
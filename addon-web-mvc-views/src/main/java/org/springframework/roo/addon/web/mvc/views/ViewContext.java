@@ -1,9 +1,15 @@
 package org.springframework.roo.addon.web.mvc.views;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.roo.addon.web.mvc.views.components.DetailEntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.EntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+import org.springframework.roo.addon.web.mvc.views.components.MenuEntry;
+
 /**
  * This class contains all necessary information about views.
  * 
@@ -15,6 +21,39 @@ import java.util.Map;
  */
 public class ViewContext {
 
+  /**
+   * Returns a copy of the given view items, i.e. {@link FieldItem}s,
+   * {@link EntityItem}s and {@link MenuEntry}s or lists of them, whose user
+   * managed code can be set independently of that of the given ones. Any
+   * other value is returned as is.
+   *
+   * @param items the items to copy (can be <code>null</code>)
+   * @return the copy
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T copyItems(T items) {
+    if (items instanceof FieldItem) {
+      return (T) new FieldItem((FieldItem) items);
+    }
+    if (items instanceof DetailEntityItem) {
+      return (T) new DetailEntityItem((DetailEntityItem) items);
+    }
+    if (items instanceof EntityItem) {
+      return (T) new EntityItem((EntityItem) items);
+    }
+    if (items instanceof MenuEntry) {
+      return (T) new MenuEntry((MenuEntry) items);
+    }
+    if (items instanceof List) {
+      final List<Object> copy = new ArrayList<Object>();
+      for (final Object item : (List<?>) items) {
+        copy.add(copyItems(item));
+      }
+      return (T) copy;
+    }
+    return items;
+  }
+
   // Project information
   private String projectName;
   private String description;
@@ -37,6 +76,34 @@ public class ViewContext {
   // Security information
   private boolean securityEnabled;
 
+  // Rendering information
+  private String templatesLocation;
+
+  public ViewContext() {}
+
+  /**
+   * Copy constructor, for a context whose extra parameters, including any
+   * view items among them, can be changed independently of those of the
+   * given one
+   *
+   * @param other the context to copy (required)
+   */
+  public ViewContext(ViewContext other) {
+    this.projectName = other.projectName;
+    this.description = other.description;
+    this.version = other.version;
+    this.controllerPath = other.controllerPath;
+    this.identifierField = other.identifierField;
+    this.modelAttribute = other.modelAttribute;
+    this.modelAttributeName = other.modelAttributeName;
+    this.entityName = other.entityName;
+    for (final Map.Entry<String, Object> extraParameter : other.extraInformation.entrySet()) {
+      this.extraInformation.put(extraParameter.getKey(), copyItems(extraParameter.getValue()));
+    }
+    this.securityEnabled = other.securityEnabled;
+    this.templatesLocation = other.templatesLocation;
+  }
+
   public String getControllerPath() {
     return controllerPath;
   }
@@ -125,4 +192,16 @@ public class ViewContext {
     this.securityEnabled = securityEnabled;
   }
 
+  /**
+   * @return the location of the project's templates at the time the view was
+   *         handed over for rendering (can be <code>null</code>)
+   */
+  public String getTemplatesLocation() {
+    return templatesLocation;
+  }
+
+  public void setTemplatesLocation(String templatesLocation) {
+    this.templatesLocation = templatesLocation;
+  }
+
 }
@@ -0,0 +1,270 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The fingerprints of the inputs from which an
+ * {@link AbstractViewGenerationService} last rendered each view, i.e. its
+ * {@link ViewContext} and the fields, details, etc. it shows, together with a
+ * digest of the contents rendered from them.
+ * <p>
+ * Rendering a view is skipped if its inputs have the same fingerprint as
+ * last time and the view still has the contents rendered then, as it would
+ * be rendered the same way again. Any other change to the view, e.g. by the
+ * user, has it rendered and merged as usual. Once a view's contents have been
+ * found unchanged, its size and last modified time are remembered, and it's
+ * only read again once either of them changes.
+ * <p>
+ * A view's fingerprint is forgotten as soon as it's submitted for rendering
+ * again, see {@link #startRendering(String)}. Otherwise a view rendered from
+ * new inputs, but not yet written, could be skipped when generated from the
+ * old inputs again, leaving the pending write of the new inputs' contents
+ * in place.
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 2.0
+ */
+class ViewFingerprints {
+
+  private static class RenderedView {
+    final String contentsSha;
+    final String fingerprint;
+    // The size and time of the view when last found to have the contents,
+    // guarded by the ViewFingerprints; 0 if not found yet
+    long lastModified;
+    long length;
+
+    RenderedView(final String fingerprint, final String contentsSha) {
+      this.contentsSha = contentsSha;
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  // The coarsest resolution of last modified times, that of FAT file systems
+  private static final long TIMESTAMP_RESOLUTION = 2000;
+
+  /** The package of the types whose fields are fingerprinted */
+  private static final String VIEWS_PACKAGE = StringUtils.substringBeforeLast(
+      ViewContext.class.getName(), ".").concat(".");
+
+  /**
+   * Appends the given value to the given fingerprint.
+   *
+   * @return <code>false</code> if the value can't be fingerprinted
+   */
+  private static boolean append(final StringBuilder fingerprint, final Object value)
+      throws IllegalAccessException {
+    if (value == null || value instanceof CharSequence || value instanceof Number
+        || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+      fingerprint.append(value).append(';');
+      return true;
+    }
+    if (value instanceof Map) {
+      final Map<String, Object> sortedMap = new TreeMap<String, Object>();
+      for (final Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        sortedMap.put(String.valueOf(entry.getKey()), entry.getValue());
+      }
+      fingerprint.append('{');
+      for (final Entry<String, Object> entry : sortedMap.entrySet()) {
+        fingerprint.append(entry.getKey()).append('=');
+        if (!append(fingerprint, entry.getValue())) {
+          return false;
+        }
+      }
+      fingerprint.append('}');
+      return true;
+    }
+    if (value instanceof Collection) {
+      fingerprint.append('[');
+      for (final Object element : (Collection<?>) value) {
+        if (!append(fingerprint, element)) {
+          return false;
+        }
+      }
+      fingerprint.append(']');
+      return true;
+    }
+    if (!value.getClass().getName().startsWith(VIEWS_PACKAGE)) {
+      // Not known to have no state other than its fields
+      return false;
+    }
+    fingerprint.append(value.getClass().getName()).append('(');
+    for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+      for (final Field field : type.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+          field.setAccessible(true);
+          fingerprint.append(field.getName()).append('=');
+          if (!append(fingerprint, field.get(value))) {
+            return false;
+          }
+        }
+      }
+    }
+    fingerprint.append(')');
+    return true;
+  }
+
+  /**
+   * Returns the fingerprint of the given inputs of a view, which must be
+   * taken before rendering the view changes any of them.
+   *
+   * @param ctx the context of the view (required)
+   * @param inputs the other inputs of the view, e.g. its template's name and
+   *            fields
+   * @return <code>null</code> if any of them can't be fingerprinted, in which
+   *         case the view is always rendered
+   */
+  static String getFingerprint(final ViewContext ctx, final Object... inputs) {
+    final StringBuilder fingerprint = new StringBuilder();
+    try {
+      if (!append(fingerprint, ctx)) {
+        return null;
+      }
+      for (final Object input : inputs) {
+        if (!append(fingerprint, input)) {
+          return null;
+        }
+      }
+    } catch (final IllegalAccessException e) {
+      return null;
+    }
+    return DigestUtils.shaHex(fingerprint.toString());
+  }
+
+  private long lastRendering;
+  private long regenerated;
+  /** key: the path of a view, value: how it was last rendered */
+  private final Map<String, RenderedView> renderedViews = new HashMap<String, RenderedView>();
+  /** key: the path of a view, value: the rendering of it in progress */
+  private final Map<String, Long> renderings = new HashMap<String, Long>();
+  private long skipped;
+
+  /**
+   * Forgets how every view was rendered, e.g. because their templates have
+   * changed.
+   */
+  synchronized void clear() {
+    renderedViews.clear();
+    renderings.clear();
+  }
+
+  /**
+   * Indicates whether the given view needn't be rendered again, as it was
+   * last rendered from inputs with the given fingerprint, and is unchanged
+   * since.
+   *
+   * @param viewPath the path of the view (required)
+   * @param fingerprint the fingerprint of its current inputs (can be
+   *            <code>null</code>)
+   * @return see above
+   */
+  boolean isUnchanged(final String viewPath, final String fingerprint) {
+    final RenderedView renderedView;
+    synchronized (this) {
+      renderedView = renderedViews.get(viewPath);
+    }
+    boolean unchanged = false;
+    if (fingerprint != null && renderedView != null
+        && renderedView.fingerprint.equals(fingerprint)) {
+      final File view = new File(viewPath);
+      // Taken before reading the view, so that a change while reading it
+      // changes them
+      final long lastModified = view.lastModified();
+      final long length = view.length();
+      synchronized (this) {
+        unchanged =
+            lastModified != 0 && renderedView.lastModified == lastModified
+                && renderedView.length == length;
+      }
+      if (!unchanged) {
+        try {
+          final String contents = FileUtils.readFileToString(view);
+          unchanged = renderedView.contentsSha.equals(DigestUtils.shaHex(contents));
+        } catch (final IOException ignored) {
+          // Render it again
+        }
+        // Unless the view could still change without its size or time
+        // changing
+        if (unchanged && System.currentTimeMillis() >= lastModified + TIMESTAMP_RESOLUTION) {
+          synchronized (this) {
+            renderedView.lastModified = lastModified;
+            renderedView.length = length;
+          }
+        }
+      }
+    }
+    synchronized (this) {
+      if (unchanged) {
+        skipped++;
+      } else {
+        regenerated++;
+      }
+    }
+    return unchanged;
+  }
+
+  /**
+   * Records that the given rendering of the given view has completed, unless
+   * the view has been submitted for rendering again since.
+   *
+   * @param viewPath the path of the view (required)
+   * @param rendering the rendering, as returned by
+   *            {@link #startRendering(String)}
+   * @param fingerprint the fingerprint of the inputs it was rendered from
+   *            (can be <code>null</code>)
+   * @param contents the contents it was rendered as (required)
+   */
+  void record(final String viewPath, final long rendering, final String fingerprint,
+      final String contents) {
+    final RenderedView renderedView =
+        fingerprint == null ? null : new RenderedView(fingerprint, DigestUtils.shaHex(contents));
+    synchronized (this) {
+      final Long currentRendering = renderings.get(viewPath);
+      if (currentRendering == null || currentRendering != rendering) {
+        // Superseded by a later rendering, or forgotten
+        return;
+      }
+      renderings.remove(viewPath);
+      if (renderedView != null) {
+        renderedViews.put(viewPath, renderedView);
+      }
+    }
+  }
+
+  /**
+   * Forgets how the given view was last rendered, as it's about to be
+   * rendered again, and supersedes any rendering of it in progress.
+   *
+   * @param viewPath the path of the view (required)
+   * @return the new rendering, to pass to
+   *         {@link #record(String, long, String, String)}
+   */
+  synchronized long startRendering(final String viewPath) {
+    renderedViews.remove(viewPath);
+    renderings.put(viewPath, ++lastRendering);
+    return lastRendering;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("views", renderedViews.size());
+    builder.append("skipped", skipped);
+    builder.append("regenerated", regenerated);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
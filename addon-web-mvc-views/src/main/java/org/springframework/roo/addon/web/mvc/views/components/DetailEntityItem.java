@@ -33,6 +33,19 @@ public class DetailEntityItem extends EntityItem {
     buildDetailItemId(suffixId);
   }
 
+  /**
+   * Copy constructor, for a detail whose user managed code can be set
+   * independently of that of the given one
+   *
+   * @param other the detail to copy (required)
+   */
+  public DetailEntityItem(DetailEntityItem other) {
+    super(other);
+    this.tabLinkCode = other.tabLinkCode;
+    this.fieldName = other.fieldName;
+    this.fieldNameCapitalized = other.fieldNameCapitalized;
+  }
+
   /**
    * Builds the id of the specified detail
    *
@@ -76,6 +76,24 @@ public class EntityItem {
     this.z = calculateZ();
   }
 
+  /**
+   * Copy constructor, for an entity whose user managed code can be set
+   * independently of that of the given one
+   *
+   * @param other the entity to copy (required)
+   */
+  public EntityItem(EntityItem other) {
+    this.entityName = other.entityName;
+    this.userManaged = other.userManaged;
+    this.codeManaged = other.codeManaged;
+    this.entityItemId = other.entityItemId;
+    this.javascriptCode =
+        other.javascriptCode == null ? null : new HashMap<String, String>(other.javascriptCode);
+    this.configuration =
+        other.configuration == null ? null : new HashMap<String, Object>(other.configuration);
+    this.z = other.z;
+  }
+
 
   /**
    * Builds the id of the specified field and adds it to the entity label
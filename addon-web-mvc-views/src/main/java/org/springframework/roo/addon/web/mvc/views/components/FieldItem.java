@@ -106,6 +106,28 @@ public class FieldItem {
     this.z = calculateZ();
   }
 
+  /**
+   * Copy constructor, for a field whose user managed code can be set
+   * independently of that of the given one
+   *
+   * @param other the field to copy (required)
+   */
+  public FieldItem(FieldItem other) {
+    this.fieldName = other.fieldName;
+    this.fieldNameCapitalized = other.fieldNameCapitalized;
+    this.label = other.label;
+    this.type = other.type;
+    this.configuration =
+        other.configuration == null ? null : new HashMap<String, Object>(other.configuration);
+    this.userManaged = other.userManaged;
+    this.codeManaged = other.codeManaged;
+    this.entityName = other.entityName;
+    this.fieldId = other.fieldId;
+    this.javascriptCode =
+        other.javascriptCode == null ? null : new HashMap<String, String>(other.javascriptCode);
+    this.z = other.z;
+  }
+
   /**
      * Builds the label of the specified field and adds it to the entity label
      *
@@ -40,6 +40,25 @@ public class MenuEntry {
     this.z = calculateZ();
   }
 
+  /**
+   * Copy constructor, for a menu entry whose user managed code can be set
+   * independently of that of the given one
+   *
+   * @param other the menu entry to copy (required)
+   */
+  public MenuEntry(MenuEntry other) {
+    this.entityName = other.entityName;
+    this.path = other.path;
+    this.pathPrefix = other.pathPrefix;
+    this.entityLabel = other.entityLabel;
+    this.entityPluralLabel = other.entityPluralLabel;
+    this.userManaged = other.userManaged;
+    this.codeManaged = other.codeManaged;
+    this.finderNamesAndPaths = other.finderNamesAndPaths;
+    this.id = other.id;
+    this.z = other.z;
+  }
+
   public String getEntityName() {
     return entityName;
   }
@@ -1,6 +1,5 @@
 package org.springframework.roo.addon.web.mvc.views.template.engines;
 
-import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
@@ -17,14 +16,12 @@ import org.apache.felix.scr.annotations.Reference;
 import org.springframework.roo.addon.web.mvc.views.AbstractViewGenerationService;
 import org.springframework.roo.addon.web.mvc.views.ViewContext;
 import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.support.osgi.OSGiUtils;
 import org.springframework.roo.support.util.FileUtils;
 
-import freemarker.template.Configuration;
 import freemarker.template.Template;
-import freemarker.template.TemplateExceptionHandler;
-import freemarker.template.Version;
 
 @Component(componentAbstract = true)
 public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
@@ -33,6 +30,10 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
   @Reference
   FileManager fileManager;
 
+  private FreeMarkerTemplateEngine templateEngine;
+  // Only used by the thread generating views
+  private String templatesLocation;
+
   protected abstract Class<?> getResourceLoaderClass();
 
   protected boolean checkTemplates(String location, String templateName) {
@@ -45,16 +46,13 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
 
     try {
 
-      Configuration cfg = new Configuration(new Version(2, 3, 23));
-      cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+      final FreeMarkerTemplateEngine templateEngine = getTemplateEngine();
 
       // Check if exists some template. If not, use classpath to locate the template
-      if (checkTemplates(getTemplatesLocation(), templateName)) {
-        // Process using FreeMarker and setDirectoryForTemplateLoading
-        cfg.setDirectoryForTemplateLoading(new File(getTemplatesLocation()));
-      } else {
-        // Process using FreeMarker and setClassForTemplateLoading
-        cfg.setClassForTemplateLoading(getResourceLoaderClass(), "templates");
+      final String templatesLocation = ctx.getTemplatesLocation();
+      String templatesDirectory = null;
+      if (templatesLocation != null && checkTemplates(templatesLocation, templateName)) {
+        templatesDirectory = templatesLocation;
       }
 
       // Prepare the template input:
@@ -88,9 +86,11 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
         input.put(extraInformation.getKey(), extraInformation.getValue());
       }
 
-      Template template = cfg.getTemplate(templateName.concat(".ftl"));
+      Template template = templateEngine.getTemplate(templateName, templatesDirectory);
       StringBuilderWriter writer = new StringBuilderWriter();
+      final long renderStart = System.nanoTime();
       template.process(input, writer);
+      templateEngine.recordRender(templateName, System.nanoTime() - renderStart);
       writer.close();
 
       content = writer.toString();
@@ -112,6 +112,38 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
 
   }
 
+  /**
+   * Looks up the project's templates location for the given view, and
+   * discards any of its templates that have changed since the last view was
+   * rendered, in which case every view is rendered again.
+   */
+  @Override
+  protected void prepareRendering(final ViewContext ctx) {
+    final String previousTemplatesLocation = templatesLocation;
+    templatesLocation = getTemplatesLocation();
+    ctx.setTemplatesLocation(templatesLocation);
+    boolean templatesChanged = !templatesLocation.equals(previousTemplatesLocation);
+    final FileMonitorService fileMonitorService = getFileMonitorService();
+    if (fileMonitorService != null
+        && getTemplateEngine().invalidate(
+            fileMonitorService.getDirtyFiles(getClass().getName()))) {
+      templatesChanged = true;
+    }
+    if (templatesChanged) {
+      forgetRenderedViews();
+    }
+  }
+
+  /**
+   * @return this service's template engine (never <code>null</code>)
+   */
+  private synchronized FreeMarkerTemplateEngine getTemplateEngine() {
+    if (templateEngine == null) {
+      templateEngine = new FreeMarkerTemplateEngine(getResourceLoaderClass());
+    }
+    return templateEngine;
+  }
+
   /**
    * This method will copy the contents of a directory to another if the
    * resource does not already exist in the target directory
@@ -164,4 +196,12 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
     }
   }
 
+  /**
+   * Returns how many views have been rendered or skipped, and how often and
+   * how fast each template has been rendered.
+   */
+  @Override
+  public synchronized String toString() {
+    return super.toString() + " " + templateEngine;
+  }
 }
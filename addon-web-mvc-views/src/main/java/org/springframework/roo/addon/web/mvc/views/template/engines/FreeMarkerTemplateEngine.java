@@ -0,0 +1,157 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.Version;
+
+/**
+ * The FreeMarker {@link Configuration}s of an
+ * {@link AbstractFreeMarkerViewGenerationService}, kept for as long as the
+ * service is active, so that each template is read and compiled once rather
+ * than for every view generated from it.
+ * <p>
+ * Templates are loaded either from the service's bundle or from the
+ * project's templates directory. The bundle's templates can't change while
+ * it's active, and those in the project's directory are discarded when the
+ * file monitor reports a change within it, so FreeMarker is told never to
+ * check either for changes itself.
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 2.0
+ */
+class FreeMarkerTemplateEngine {
+
+  private static class TemplateStatistics {
+    long renderNanos;
+    long renders;
+  }
+
+  private static final Version VERSION = new Version(2, 3, 23);
+
+  private static Configuration newConfiguration() {
+    final Configuration configuration = new Configuration(VERSION);
+    configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+    configuration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+    return configuration;
+  }
+
+  private Configuration bundleConfiguration;
+  private Configuration directoryConfiguration;
+  private String directoryPath;
+  private long invalidations;
+  private final Class<?> resourceLoaderClass;
+  /** key: template name, value: how it has been rendered */
+  private final Map<String, TemplateStatistics> statistics =
+      new TreeMap<String, TemplateStatistics>();
+
+  /**
+   * Constructor
+   *
+   * @param resourceLoaderClass the class relative to whose package the
+   *            bundle's templates are in a "templates" directory (required)
+   */
+  FreeMarkerTemplateEngine(final Class<?> resourceLoaderClass) {
+    this.resourceLoaderClass = resourceLoaderClass;
+  }
+
+  private synchronized Configuration getConfiguration(final String templatesDirectory)
+      throws IOException {
+    if (templatesDirectory == null) {
+      if (bundleConfiguration == null) {
+        bundleConfiguration = newConfiguration();
+        bundleConfiguration.setClassForTemplateLoading(resourceLoaderClass, "templates");
+      }
+      return bundleConfiguration;
+    }
+    if (directoryConfiguration == null || !templatesDirectory.equals(directoryPath)) {
+      final Configuration configuration = newConfiguration();
+      configuration.setDirectoryForTemplateLoading(new File(templatesDirectory));
+      directoryConfiguration = configuration;
+      directoryPath = templatesDirectory;
+    }
+    return directoryConfiguration;
+  }
+
+  /**
+   * Returns the compiled template with the given name.
+   *
+   * @param templateName the name of the template, without its ".ftl"
+   *            extension (required)
+   * @param templatesDirectory the project's directory of templates, or
+   *            <code>null</code> to use those of the bundle
+   * @return a non-<code>null</code> template
+   * @throws IOException if the template can't be found, read or compiled
+   */
+  Template getTemplate(final String templateName, final String templatesDirectory)
+      throws IOException {
+    // FreeMarker caches compiled templates and is thread safe
+    return getConfiguration(templatesDirectory).getTemplate(templateName.concat(".ftl"));
+  }
+
+  /**
+   * Discards the compiled templates of the project's directory if any of the
+   * given files are within it.
+   *
+   * @param changedFiles the canonical paths of the files that have changed
+   *            (required)
+   * @return whether any templates were discarded
+   */
+  synchronized boolean invalidate(final Collection<String> changedFiles) {
+    if (directoryConfiguration == null) {
+      return false;
+    }
+    final String prefix = directoryPath.endsWith(File.separator) ? directoryPath : directoryPath
+        + File.separator;
+    for (final String changedFile : changedFiles) {
+      if (changedFile.startsWith(prefix)) {
+        directoryConfiguration.clearTemplateCache();
+        invalidations++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records that the given template has been rendered.
+   *
+   * @param templateName the name of the template (required)
+   * @param nanoseconds how long rendering it took
+   */
+  synchronized void recordRender(final String templateName, final long nanoseconds) {
+    TemplateStatistics templateStatistics = statistics.get(templateName);
+    if (templateStatistics == null) {
+      templateStatistics = new TemplateStatistics();
+      statistics.put(templateName, templateStatistics);
+    }
+    templateStatistics.renders++;
+    templateStatistics.renderNanos += nanoseconds;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("invalidations", invalidations);
+    for (final Entry<String, TemplateStatistics> entry : statistics.entrySet()) {
+      final TemplateStatistics templateStatistics = entry.getValue();
+      final double meanMillis =
+          Math.round(1000.0 * templateStatistics.renderNanos / templateStatistics.renders
+              / TimeUnit.MILLISECONDS.toNanos(1)) / 1000.0;
+      builder.append(entry.getKey(), templateStatistics.renders + " renders, " + meanMillis
+          + " ms mean");
+    }
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
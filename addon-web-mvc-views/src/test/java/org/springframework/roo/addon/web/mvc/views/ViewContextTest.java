@@ -0,0 +1,81 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.roo.addon.web.mvc.views.components.DetailEntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+
+/**
+ * Unit test of {@link ViewContext}
+ *
+ * @since 2.0
+ */
+public class ViewContextTest {
+
+  @Test
+  public void testCopyHasIndependentViewItems() {
+    final ViewContext ctx = new ViewContext();
+    final FieldItem field = new FieldItem("name", "Owner", "field");
+    ctx.addExtraParameter("fields", Arrays.asList(field));
+    ctx.addExtraParameter("detail", new DetailEntityItem("pets", "detail"));
+    ctx.addExtraParameter("action", "/owners");
+
+    // Invoke
+    final ViewContext copy = new ViewContext(ctx);
+    @SuppressWarnings("unchecked")
+    final List<FieldItem> copiedFields = (List<FieldItem>) copy.getExtraInformation().get("fields");
+    copiedFields.get(0).setUserManaged(true);
+    copiedFields.get(0).setCodeManaged("<input id=\"name\"/>");
+
+    // Check
+    assertFalse(field.isUserManaged());
+    assertEquals("", field.getCodeManaged());
+    assertEquals(field.getFieldId(), copiedFields.get(0).getFieldId());
+    final DetailEntityItem copiedDetail =
+        (DetailEntityItem) copy.getExtraInformation().get("detail");
+    assertNotSame(ctx.getExtraInformation().get("detail"), copiedDetail);
+    assertEquals("pets", copiedDetail.getFieldName());
+    assertSame(ctx.getExtraInformation().get("action"), copy.getExtraInformation().get("action"));
+  }
+
+  @Test
+  public void testCopyItemsCopiesEveryItemOfAList() {
+    final List<FieldItem> fields =
+        Arrays.asList(new FieldItem("name", "Owner", "field"), new FieldItem("city", "Owner",
+            "field"));
+
+    // Invoke
+    final List<FieldItem> copy = ViewContext.copyItems(fields);
+
+    // Check
+    assertEquals(2, copy.size());
+    for (int i = 0; i < fields.size(); i++) {
+      assertNotSame(fields.get(i), copy.get(i));
+      assertEquals(fields.get(i).getFieldName(), copy.get(i).getFieldName());
+    }
+    copy.get(1).setUserManaged(true);
+    assertTrue(copy.get(1).isUserManaged());
+    assertFalse(fields.get(1).isUserManaged());
+  }
+
+  @Test
+  public void testCopyKeepsTheTemplatesLocationItWasRenderedWith() {
+    final ViewContext ctx = new ViewContext();
+    ctx.setTemplatesLocation("/project/.roo/templates");
+
+    // Invoke
+    final ViewContext copy = new ViewContext(ctx);
+    ctx.setTemplatesLocation("/other/.roo/templates");
+
+    // Check
+    assertEquals("/project/.roo/templates", copy.getTemplatesLocation());
+  }
+}
@@ -0,0 +1,128 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ViewFingerprints}
+ *
+ * @since 2.0
+ */
+public class ViewFingerprintsTest {
+
+  private static final String CONTENTS = "<html/>";
+  // Long enough ago for the view not to change within its timestamp
+  private static final long LONG_AGO = System.currentTimeMillis() - 60000;
+  private static final String NEW_FINGERPRINT = "new";
+  private static final String OLD_FINGERPRINT = "old";
+
+  private ViewFingerprints fingerprints;
+  private String viewPath;
+
+  @Before
+  public void setUp() throws Exception {
+    fingerprints = new ViewFingerprints();
+    final File view = File.createTempFile("ViewFingerprintsTest", ".html");
+    FileUtils.writeStringToFile(view, CONTENTS);
+    viewPath = view.getPath();
+  }
+
+  @After
+  public void tearDown() {
+    new File(viewPath).delete();
+  }
+
+  @Test
+  public void testRenderedViewIsUnchanged() {
+    fingerprints.record(viewPath, fingerprints.startRendering(viewPath), OLD_FINGERPRINT,
+        CONTENTS);
+
+    assertTrue(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+    assertFalse(fingerprints.isUnchanged(viewPath, NEW_FINGERPRINT));
+  }
+
+  @Test
+  public void testViewBeingRenderedAgainIsChanged() {
+    fingerprints.record(viewPath, fingerprints.startRendering(viewPath), OLD_FINGERPRINT,
+        CONTENTS);
+
+    // Invoke
+    fingerprints.startRendering(viewPath);
+
+    // Check
+    assertFalse(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+  }
+
+  @Test
+  public void testSupersededRenderingIsNotRecorded() {
+    final long oldRendering = fingerprints.startRendering(viewPath);
+    final long newRendering = fingerprints.startRendering(viewPath);
+
+    // Invoke
+    fingerprints.record(viewPath, oldRendering, OLD_FINGERPRINT, CONTENTS);
+
+    // Check
+    assertFalse(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+    fingerprints.record(viewPath, newRendering, NEW_FINGERPRINT, CONTENTS);
+    assertTrue(fingerprints.isUnchanged(viewPath, NEW_FINGERPRINT));
+  }
+
+  @Test
+  public void testViewChangedOnDiskIsChanged() throws Exception {
+    fingerprints.record(viewPath, fingerprints.startRendering(viewPath), OLD_FINGERPRINT,
+        CONTENTS);
+
+    // Invoke
+    FileUtils.writeStringToFile(new File(viewPath), "<html><body/></html>");
+
+    // Check
+    assertFalse(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+  }
+
+  @Test
+  public void testViewFoundUnchangedIsNotReadAgainUntilItsSizeOrTimeChanges()
+      throws Exception {
+    final File view = new File(viewPath);
+    view.setLastModified(LONG_AGO);
+    fingerprints.record(viewPath, fingerprints.startRendering(viewPath), OLD_FINGERPRINT,
+        CONTENTS);
+    assertTrue(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+
+    // Invoke: a change that keeps the size and time isn't seen
+    FileUtils.writeStringToFile(view, "<HTML/>");
+    view.setLastModified(LONG_AGO);
+    final boolean unchangedWithSameSizeAndTime =
+        fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT);
+    view.setLastModified(LONG_AGO + 1000);
+
+    // Check
+    assertTrue(unchangedWithSameSizeAndTime);
+    assertFalse(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+  }
+
+  @Test
+  public void testViewChangedWithinTimestampResolutionIsChanged() throws Exception {
+    // Set up: just written, so the view's time could still be that of a
+    // later change
+    final File view = new File(viewPath);
+    final long lastModified = System.currentTimeMillis() / 1000 * 1000;
+    view.setLastModified(lastModified);
+    fingerprints.record(viewPath, fingerprints.startRendering(viewPath), OLD_FINGERPRINT,
+        CONTENTS);
+    assertTrue(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+
+    // Invoke: another change of the same size, within the same second
+    FileUtils.writeStringToFile(view, "<HTML/>");
+    view.setLastModified(lastModified);
+
+    // Check
+    assertFalse(fingerprints.isUnchanged(viewPath, OLD_FINGERPRINT));
+  }
+}
@@ -0,0 +1,81 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link FreeMarkerTemplateEngine}
+ *
+ * @since 2.0
+ */
+public class FreeMarkerTemplateEngineTest {
+
+  private static final String TEMPLATE_NAME = "list";
+
+  private FreeMarkerTemplateEngine templateEngine;
+  private File templateFile;
+  private String templatesDirectory;
+
+  private String render() throws Exception {
+    final StringWriter writer = new StringWriter();
+    templateEngine.getTemplate(TEMPLATE_NAME, templatesDirectory).process(
+        Collections.singletonMap("entityName", "Owner"), writer);
+    return writer.toString();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    final File directory = File.createTempFile("FreeMarkerTemplateEngineTest", "");
+    directory.delete();
+    directory.mkdir();
+    templatesDirectory = directory.getCanonicalPath();
+    templateFile = new File(directory, TEMPLATE_NAME + ".ftl");
+    FileUtils.writeStringToFile(templateFile, "List of ${entityName}");
+    templateEngine = new FreeMarkerTemplateEngine(getClass());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(new File(templatesDirectory));
+  }
+
+  @Test
+  public void testEditedTemplateIsReloadedOnceReportedAsChanged() throws Exception {
+    assertEquals("List of Owner", render());
+    FileUtils.writeStringToFile(templateFile, "Owners: ${entityName}s");
+    // Not checked for changes until the file monitor reports them
+    assertEquals("List of Owner", render());
+
+    // Invoke
+    final boolean invalidated =
+        templateEngine.invalidate(Arrays.asList(templateFile.getCanonicalPath()));
+
+    // Check
+    assertTrue(invalidated);
+    assertEquals("Owners: Owners", render());
+  }
+
+  @Test
+  public void testChangesOutsideTheTemplatesDirectoryKeepTheTemplates() throws Exception {
+    assertEquals("List of Owner", render());
+
+    // Invoke
+    final boolean invalidated =
+        templateEngine.invalidate(Arrays.asList(templatesDirectory + "-other" + File.separator
+            + TEMPLATE_NAME + ".ftl"));
+
+    // Check
+    assertFalse(invalidated);
+  }
+}
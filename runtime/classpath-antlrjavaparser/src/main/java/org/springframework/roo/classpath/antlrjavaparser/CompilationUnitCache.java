@@ -0,0 +1,129 @@
+package org.springframework.roo.classpath.antlrjavaparser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.github.antlrjavaparser.api.CompilationUnit;
+
+/**
+ * A bounded cache of parsed {@link CompilationUnit}s, keyed by the canonical
+ * path of their source file and validated against the hash of its contents.
+ * <p>
+ * The least recently used units are evicted once the total length of the
+ * sources they were parsed from exceeds a budget, as the size of a parse tree
+ * is roughly proportional to that of its source. Cached units are shared, so
+ * callers must not modify them.
+ *
+ * @since 2.0
+ */
+class CompilationUnitCache {
+
+  private static class Entry {
+    final CompilationUnit compilationUnit;
+    final long hash;
+    final int length;
+
+    Entry(final CompilationUnit compilationUnit, final long hash, final int length) {
+      this.compilationUnit = compilationUnit;
+      this.hash = hash;
+      this.length = length;
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16,
+      0.75f, true);
+  private long hits;
+  private final long maxLength;
+  private long misses;
+  private long totalLength;
+
+  /**
+   * Constructor
+   *
+   * @param maxLength the total length of the sources whose parsed units can
+   *            be cached (must be positive)
+   */
+  CompilationUnitCache(final long maxLength) {
+    Validate.isTrue(maxLength > 0, "Maximum length must be positive");
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Returns the unit parsed from the given file, if it had the given
+   * contents.
+   *
+   * @param canonicalPath the file's canonical path
+   * @param hash the hash of its current contents
+   * @param length the length of its current contents
+   * @return the cached unit, or null if there is none for these contents
+   */
+  synchronized CompilationUnit get(final String canonicalPath, final long hash, final int length) {
+    final Entry entry = entries.get(canonicalPath);
+    if (entry == null || entry.hash != hash || entry.length != length) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.compilationUnit;
+  }
+
+  /**
+   * Indicates whether a unit parsed from the given contents is cached,
+   * without counting it as a hit or a miss.
+   */
+  synchronized boolean contains(final String canonicalPath, final long hash, final int length) {
+    final Entry entry = entries.get(canonicalPath);
+    return entry != null && entry.hash == hash && entry.length == length;
+  }
+
+  /**
+   * Caches the unit parsed from the given file's contents, replacing any
+   * previously parsed from it.
+   *
+   * @param canonicalPath the file's canonical path
+   * @param hash the hash of the contents that were parsed
+   * @param length the length of the contents that were parsed
+   * @param compilationUnit the parsed unit (required)
+   */
+  synchronized void put(final String canonicalPath, final long hash, final int length,
+      final CompilationUnit compilationUnit) {
+    final Entry previous =
+        entries.put(canonicalPath, new Entry(compilationUnit, hash, length));
+    if (previous != null) {
+      totalLength -= previous.length;
+    }
+    totalLength += length;
+
+    final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (totalLength > maxLength && entries.size() > 1) {
+      totalLength -= iterator.next().getValue().length;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Forgets the unit parsed from the given file, if any.
+   *
+   * @param canonicalPath the file's canonical path
+   */
+  synchronized void remove(final String canonicalPath) {
+    final Entry removed = entries.remove(canonicalPath);
+    if (removed != null) {
+      totalLength -= removed.length;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("units", entries.size());
+    builder.append("length", totalLength);
+    builder.append("hits", hits);
+    builder.append("misses", misses);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
@@ -6,10 +6,13 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,10 +35,13 @@ import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.ImportMetadata;
 import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataPhase;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.util.ContentHashUtils;
 
 import com.github.antlrjavaparser.ASTHelper;
 import com.github.antlrjavaparser.JavaParser;
@@ -58,6 +64,19 @@ import com.github.antlrjavaparser.api.type.ClassOrInterfaceType;
 @Service
 public class JavaParserTypeParsingService implements TypeParsingService {
 
+  /**
+   * The total length of the sources whose parsed compilation units are kept,
+   * around 4 million characters or a couple of thousand typical types
+   */
+  private static final long MAX_CACHED_SOURCE_LENGTH = 4L * 1024 * 1024;
+
+  private static final ForkJoinPool PARSING_POOL = new ForkJoinPool();
+
+  private final CompilationUnitCache compilationUnitCache = new CompilationUnitCache(
+      MAX_CACHED_SOURCE_LENGTH);
+
+  @Reference
+  MetadataLogger metadataLogger;
   @Reference
   MetadataService metadataService;
   @Reference
@@ -106,16 +125,21 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     Validate.notBlank(fileIdentifier, "Compilation unit path required");
     Validate.notBlank(declaredByMetadataId, "Declaring metadata ID required");
     Validate.notNull(typeName, "Java type to locate required");
-    final File file = new File(fileIdentifier);
-    String typeContents = "";
-    try {
-      typeContents = FileUtils.readFileToString(file);
-    } catch (final IOException ignored) {
-    }
+    final String typeContents = readContents(fileIdentifier);
     if (StringUtils.isBlank(typeContents)) {
       return null;
     }
-    return getTypeFromString(typeContents, declaredByMetadataId, typeName);
+    metadataLogger.startPhase(MetadataPhase.PARSE);
+    try {
+      return getTypeFromCompilationUnit(getCompilationUnit(fileIdentifier, typeContents),
+          declaredByMetadataId, typeName);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    } catch (final ParseException e) {
+      throw new IllegalStateException("Failed to parse " + typeName + " : " + e.getMessage());
+    } finally {
+      metadataLogger.stopPhase();
+    }
   }
 
   @Override
@@ -127,22 +151,103 @@ public class JavaParserTypeParsingService implements TypeParsingService {
 
     Validate.notBlank(declaredByMetadataId, "Declaring metadata ID required");
     Validate.notNull(typeName, "Java type to locate required");
+    metadataLogger.startPhase(MetadataPhase.PARSE);
     try {
-      final CompilationUnit compilationUnit =
-          JavaParser.parse(new ByteArrayInputStream(fileContents.getBytes()));
-      final TypeDeclaration typeDeclaration =
-          JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
-      if (typeDeclaration == null) {
-        return null;
-      }
-      return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
-          typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
-          .build();
+      return getTypeFromCompilationUnit(parse(fileContents), declaredByMetadataId, typeName);
     } catch (final IOException e) {
       throw new IllegalStateException(e);
     } catch (final ParseException e) {
       throw new IllegalStateException("Failed to parse " + typeName + " : " + e.getMessage());
+    } finally {
+      metadataLogger.stopPhase();
+    }
+  }
+
+  /**
+   * Returns the compilation unit parsed from the given file's contents,
+   * parsing and caching it unless it was already parsed from the same
+   * contents. The returned unit is shared and must not be modified.
+   * 
+   * @param fileIdentifier the canonical path of the file
+   * @param contents the file's current contents
+   * @return a non-<code>null</code> compilation unit
+   */
+  private CompilationUnit getCompilationUnit(final String fileIdentifier, final String contents)
+      throws IOException, ParseException {
+    final long hash = ContentHashUtils.hash(contents);
+    CompilationUnit compilationUnit =
+        compilationUnitCache.get(fileIdentifier, hash, contents.length());
+    if (compilationUnit == null) {
+      compilationUnit = parse(contents);
+      compilationUnitCache.put(fileIdentifier, hash, contents.length(), compilationUnit);
+    }
+    return compilationUnit;
+  }
+
+  private ClassOrInterfaceTypeDetails getTypeFromCompilationUnit(
+      final CompilationUnit compilationUnit, final String declaredByMetadataId,
+      final JavaType typeName) {
+    final TypeDeclaration typeDeclaration =
+        JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
+    if (typeDeclaration == null) {
+      return null;
     }
+    return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
+        typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
+        .build();
+  }
+
+  private CompilationUnit parse(final String contents) throws IOException, ParseException {
+    return JavaParser.parse(new ByteArrayInputStream(contents.getBytes()));
+  }
+
+  @Override
+  public void preParse(final Collection<String> fileIdentifiers) {
+    Validate.notNull(fileIdentifiers, "File identifiers required");
+    if (fileIdentifiers.size() < 2) {
+      // Not worth handing over to another thread
+      return;
+    }
+    final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    for (final String fileIdentifier : fileIdentifiers) {
+      tasks.add(PARSING_POOL.submit(new Runnable() {
+        public void run() {
+          preParse(fileIdentifier);
+        }
+      }));
+    }
+    for (final ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+  }
+
+  private void preParse(final String fileIdentifier) {
+    final String contents = readContents(fileIdentifier);
+    if (StringUtils.isBlank(contents)) {
+      return;
+    }
+    final long hash = ContentHashUtils.hash(contents);
+    if (compilationUnitCache.contains(fileIdentifier, hash, contents.length())) {
+      return;
+    }
+    try {
+      compilationUnitCache.put(fileIdentifier, hash, contents.length(), parse(contents));
+    } catch (final Exception ignored) {
+      // Reported when the type is actually requested
+    }
+  }
+
+  private String readContents(final String fileIdentifier) {
+    try {
+      return FileUtils.readFileToString(new File(fileIdentifier));
+    } catch (final IOException ignored) {
+      return "";
+    }
+  }
+
+  @Override
+  public String toString() {
+    return compilationUnitCache.toString();
   }
 
   /**
@@ -437,19 +542,15 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     Validate.notBlank(fileIdentifier, "Oringinal unit path required");
     Validate.notNull(cid, "Type details required");
 
-    // Load original compilation unit from file
-    final File file = new File(fileIdentifier);
-    String fileContents = "";
-    try {
-      fileContents = FileUtils.readFileToString(file);
-    } catch (final IOException ignored) {
-    }
+    // Load original compilation unit from file, parsing it afresh as it's
+    // about to be modified
+    final String fileContents = readContents(fileIdentifier);
     if (StringUtils.isBlank(fileContents)) {
       return getCompilationUnitContents(cid);
     }
     CompilationUnit compilationUnit;
     try {
-      compilationUnit = JavaParser.parse(new ByteArrayInputStream(fileContents.getBytes()));
+      compilationUnit = parse(fileContents);
 
     } catch (final IOException e) {
       throw new IllegalStateException(e);
@@ -461,7 +562,7 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     final String cidContents = getCompilationUnitContents(cid);
     CompilationUnit cidCompilationUnit;
     try {
-      cidCompilationUnit = JavaParser.parse(new ByteArrayInputStream(cidContents.getBytes()));
+      cidCompilationUnit = parse(cidContents);
 
     } catch (final IOException e) {
       throw new IllegalStateException(e);
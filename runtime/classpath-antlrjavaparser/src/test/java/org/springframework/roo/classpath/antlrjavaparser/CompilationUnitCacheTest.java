@@ -0,0 +1,100 @@
+package org.springframework.roo.classpath.antlrjavaparser;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.antlrjavaparser.api.CompilationUnit;
+
+/**
+ * Unit test of {@link CompilationUnitCache}
+ *
+ * @since 2.0
+ */
+public class CompilationUnitCacheTest {
+
+  private static final long HASH = 42;
+  private static final int LENGTH = 100;
+  private static final String PATH = "/project/src/main/java/com/example/Owner.java";
+
+  private CompilationUnitCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new CompilationUnitCache(3 * LENGTH);
+  }
+
+  @Test
+  public void testChangedContentsAreAMiss() {
+    cache.put(PATH, HASH, LENGTH, new CompilationUnit());
+
+    // Invoke and check
+    assertNull(cache.get(PATH, HASH + 1, LENGTH));
+    assertNull(cache.get(PATH, HASH, LENGTH + 1));
+    assertFalse(cache.contains(PATH, HASH + 1, LENGTH));
+    assertTrue(cache.toString(), cache.toString().contains("hits=0,misses=2"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedUnitsAreEvicted() {
+    final CompilationUnit first = new CompilationUnit();
+    cache.put("/First.java", HASH, LENGTH, first);
+    cache.put("/Second.java", HASH, LENGTH, new CompilationUnit());
+    cache.put("/Third.java", HASH, LENGTH, new CompilationUnit());
+    cache.get("/First.java", HASH, LENGTH);
+
+    // Invoke
+    cache.put("/Fourth.java", HASH, LENGTH, new CompilationUnit());
+
+    // Check
+    assertSame(first, cache.get("/First.java", HASH, LENGTH));
+    assertFalse(cache.contains("/Second.java", HASH, LENGTH));
+    assertTrue(cache.contains("/Third.java", HASH, LENGTH));
+    assertTrue(cache.contains("/Fourth.java", HASH, LENGTH));
+  }
+
+  @Test
+  public void testReparsedContentsReplaceTheOldUnit() {
+    cache.put(PATH, HASH, LENGTH, new CompilationUnit());
+    final CompilationUnit reparsed = new CompilationUnit();
+
+    // Invoke
+    cache.put(PATH, HASH + 1, LENGTH, reparsed);
+
+    // Check
+    assertNull(cache.get(PATH, HASH, LENGTH));
+    assertSame(reparsed, cache.get(PATH, HASH + 1, LENGTH));
+    assertTrue(cache.toString(), cache.toString().contains("units=1,length=" + LENGTH));
+  }
+
+  @Test
+  public void testRemovedUnitIsAMiss() {
+    cache.put(PATH, HASH, LENGTH, new CompilationUnit());
+
+    // Invoke
+    cache.remove(PATH);
+
+    // Check
+    assertNull(cache.get(PATH, HASH, LENGTH));
+    assertTrue(cache.toString(), cache.toString().contains("units=0,length=0"));
+  }
+
+  @Test
+  public void testUnchangedContentsAreAHit() {
+    final CompilationUnit compilationUnit = new CompilationUnit();
+    assertNull(cache.get(PATH, HASH, LENGTH));
+
+    // Invoke
+    cache.put(PATH, HASH, LENGTH, compilationUnit);
+
+    // Check
+    assertTrue(cache.contains(PATH, HASH, LENGTH));
+    assertSame(compilationUnit, cache.get(PATH, HASH, LENGTH));
+    assertSame(compilationUnit, cache.get(PATH, HASH, LENGTH));
+    assertTrue(cache.toString(), cache.toString().contains("hits=2,misses=1"));
+  }
+}
@@ -3,6 +3,9 @@ package org.springframework.roo.classpath.antlrjavaparser;
 import com.github.antlrjavaparser.JavaParser;
 import com.github.antlrjavaparser.api.CompilationUnit;
 import com.github.antlrjavaparser.api.body.TypeDeclaration;
+import java.io.File;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,11 +16,13 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.roo.classpath.TypeLocationService;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.antlrjavaparser.details.JavaParserClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaType;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.powermock.api.mockito.PowerMockito.mock;
@@ -41,6 +46,8 @@ public class JavaParserTypeParsingServiceTest {
   private static final String SOURCE_FILE = "package com.example;" + "" + "public class MyClass {}"
       + "" + "class TargetClass {}" + "" + "class OtherClass {}";
   @Mock
+  private MetadataLogger mockMetadataLogger;
+  @Mock
   private MetadataService mockMetadataService;
   @Mock
   private TypeLocationService mockTypeLocationService;
@@ -52,6 +59,7 @@ public class JavaParserTypeParsingServiceTest {
   public void setUp() throws Exception {
     MockitoAnnotations.initMocks(this);
     typeParsingService = new JavaParserTypeParsingService();
+    typeParsingService.metadataLogger = mockMetadataLogger;
     typeParsingService.metadataService = mockMetadataService;
     typeParsingService.typeLocationService = mockTypeLocationService;
   }
@@ -114,4 +122,54 @@ public class JavaParserTypeParsingServiceTest {
     // Check
     assertSame(mockClassOrInterfaceTypeDetails, locatedType);*/
   }
+
+  /**
+   * Returns a new temporary source file with the given contents
+   */
+  private File createSourceFile(final String contents) throws Exception {
+    final File file = File.createTempFile("JavaParserTypeParsingServiceTest", ".java");
+    file.deleteOnExit();
+    FileUtils.writeStringToFile(file, contents);
+    return file;
+  }
+
+  @Test
+  public void testGetTypeAtLocationReparsesChangedFile() throws Exception {
+    // Set up
+    final JavaType mockTargetType = mock(JavaType.class);
+    when(mockTargetType.getSimpleTypeName()).thenReturn("NoSuchType");
+    final File file = createSourceFile(SOURCE_FILE);
+    typeParsingService.getTypeAtLocation(file.getPath(), DECLARED_BY_MID, mockTargetType);
+    typeParsingService.getTypeAtLocation(file.getPath(), DECLARED_BY_MID, mockTargetType);
+    assertTrue(typeParsingService.toString(),
+        typeParsingService.toString().contains("hits=1,misses=1"));
+
+    // Invoke
+    FileUtils.writeStringToFile(file, SOURCE_FILE + "class AddedClass {}");
+    typeParsingService.getTypeAtLocation(file.getPath(), DECLARED_BY_MID, mockTargetType);
+
+    // Check
+    assertTrue(typeParsingService.toString(),
+        typeParsingService.toString().contains("units=1,length=" + file.length()
+            + ",hits=1,misses=2"));
+  }
+
+  @Test
+  public void testPreParseCachesEveryFile() throws Exception {
+    // Set up
+    final JavaType mockTargetType = mock(JavaType.class);
+    when(mockTargetType.getSimpleTypeName()).thenReturn("NoSuchType");
+    final File sourceFile = createSourceFile(SOURCE_FILE);
+    final File emptyFile = createSourceFile(EMPTY_FILE);
+
+    // Invoke
+    typeParsingService.preParse(Arrays.asList(sourceFile.getPath(), emptyFile.getPath()));
+
+    // Check
+    assertTrue(typeParsingService.toString(), typeParsingService.toString().contains("units=2"));
+    typeParsingService.getTypeAtLocation(sourceFile.getPath(), DECLARED_BY_MID, mockTargetType);
+    typeParsingService.getTypeAtLocation(emptyFile.getPath(), DECLARED_BY_MID, mockTargetType);
+    assertTrue(typeParsingService.toString(),
+        typeParsingService.toString().contains("hits=2,misses=0"));
+  }
 }
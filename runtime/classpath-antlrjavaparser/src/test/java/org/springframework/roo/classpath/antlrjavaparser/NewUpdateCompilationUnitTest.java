@@ -22,6 +22,7 @@ import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.FieldMetadataBuilder;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
@@ -64,6 +65,8 @@ public class NewUpdateCompilationUnitTest {
   private static final String ENUM_DECLARED_BY_MID =
       "MID:org.springframework.roo.classpath.PhysicalTypeIdentifier#SRC_MAIN_JAVA?AEnumerate";
 
+  @Mock
+  private MetadataLogger mockMetadataLogger;
   @Mock
   private MetadataService mockMetadataService;
   @Mock
@@ -76,6 +79,7 @@ public class NewUpdateCompilationUnitTest {
   public void setUp() throws Exception {
     MockitoAnnotations.initMocks(this);
     typeParsingService = new JavaParserTypeParsingService();
+    typeParsingService.metadataLogger = mockMetadataLogger;
     typeParsingService.metadataService = mockMetadataService;
     typeParsingService.typeLocationService = mockTypeLocationService;
   }
@@ -17,6 +17,7 @@ import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.DefaultPhysicalTypeMetadata;
+import org.springframework.roo.classpath.itd.MemberHoldingTypeDetailsWeigher;
 import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsBuilder;
 import org.springframework.roo.classpath.scanner.MemberDetailsDecorator;
@@ -26,6 +27,7 @@ import org.springframework.roo.file.monitor.event.FileOperation;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.metadata.MetadataWeigher;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.LogicalPath;
@@ -53,7 +55,7 @@ import org.springframework.roo.support.logging.HandlerUtils;
     referenceInterface = MemberDetailsDecorator.class,
     cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)})
 public class DefaultPhysicalTypeMetadataProvider implements PhysicalTypeMetadataProvider,
-    FileEventListener {
+    FileEventListener, MetadataWeigher {
 
   protected final static Logger LOGGER = HandlerUtils
       .getLogger(DefaultPhysicalTypeMetadataProvider.class);
@@ -73,6 +75,7 @@ public class DefaultPhysicalTypeMetadataProvider implements PhysicalTypeMetadata
       });
 
   private FileManager fileManager;
+  private final MetadataWeigher weigher = new MemberHoldingTypeDetailsWeigher();
   private MetadataDependencyRegistry metadataDependencyRegistry;
   private MetadataService metadataService;
   private ProjectOperations projectOperations;
@@ -88,6 +91,10 @@ public class DefaultPhysicalTypeMetadataProvider implements PhysicalTypeMetadata
     }
   }
 
+  public long weigh(final MetadataItem metadataItem) {
+    return weigher.weigh(metadataItem);
+  }
+
   public MetadataItem get(final String metadataIdentificationString) {
 
     if (fileManager == null) {
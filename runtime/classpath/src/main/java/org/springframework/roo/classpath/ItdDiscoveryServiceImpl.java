@@ -14,6 +14,9 @@ import org.springframework.roo.model.JavaType;
 
 /**
  * Implementation of {@link ItdDiscoveryService}.
+ * <p>
+ * Metadata providers may report and ask about ITDs on several threads at
+ * once, so every method is synchronized.
  * 
  * @author James Tyrrell
  * @since 1.2.0
@@ -27,7 +30,7 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
   private final Map<String, Map<String, MemberHoldingTypeDetails>> typeMap =
       new HashMap<String, Map<String, MemberHoldingTypeDetails>>();
 
-  public void addItdTypeDetails(final ItdTypeDetails itdTypeDetails) {
+  public synchronized void addItdTypeDetails(final ItdTypeDetails itdTypeDetails) {
     if (itdTypeDetails == null || itdTypeDetails.getGovernor() == null) {
       return;
     }
@@ -42,7 +45,8 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
     updateChanges(itdTypeDetails.getGovernor().getName(), false);
   }
 
-  public boolean haveItdsChanged(final String requestingClass, final JavaType javaType) {
+  public synchronized boolean haveItdsChanged(final String requestingClass,
+      final JavaType javaType) {
     Set<String> changesSinceLastRequest = changeMap.get(requestingClass);
     if (changesSinceLastRequest == null) {
       changesSinceLastRequest = new LinkedHashSet<String>(typeMap.keySet());
@@ -57,7 +61,7 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
     return false;
   }
 
-  public void removeItdTypeDetails(final String itdTypeDetailsId) {
+  public synchronized void removeItdTypeDetails(final String itdTypeDetailsId) {
     if (StringUtils.isBlank(itdTypeDetailsId)) {
       return;
     }
@@ -67,7 +71,8 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
       if (typeDetailsHashMap != null) {
         typeDetailsHashMap.remove(itdTypeDetailsId);
       }
-      updateChanges(new JavaType(type), true);
+      // The type has lost an ITD, which is as much a change as gaining one
+      updateChanges(new JavaType(type), false);
     }
   }
 
@@ -3,6 +3,10 @@ package org.springframework.roo.classpath;
 import static org.apache.commons.io.IOUtils.LINE_SEPARATOR;
 import static org.springframework.roo.shell.OptionContexts.INCLUDE_CURRENT_MODULE;
 
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
@@ -12,12 +16,17 @@ import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataLatencyStatistic;
 import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataPhase;
+import org.springframework.roo.metadata.MetadataScanProfile;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.metadata.MetadataTimingStatistic;
 import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.ProjectMetadata;
 import org.springframework.roo.project.ProjectOperations;
 import org.springframework.roo.project.maven.Pom;
@@ -35,9 +44,12 @@ public class MetadataCommands implements CommandMarker {
   private static final String METADATA_CACHE_COMMAND = "metadata cache";
   private static final String METADATA_FOR_ID_COMMAND = "metadata for id";
   private static final String METADATA_FOR_TYPE_COMMAND = "metadata for type";
+  private static final String METADATA_PROFILE_COMMAND = "metadata profile";
   private static final String METADATA_STATUS_COMMAND = "metadata status";
   private static final String METADATA_TRACE_COMMAND = "metadata trace";
 
+  @Reference
+  private FileManager fileManager;
   @Reference
   private MemberDetailsScanner memberDetailsScanner;
   @Reference
@@ -52,18 +64,29 @@ public class MetadataCommands implements CommandMarker {
   private TypeLocationService typeLocationService;
 
   @CliAvailabilityIndicator({METADATA_FOR_MODULE_COMMAND, METADATA_CACHE_COMMAND,
-      METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND, METADATA_STATUS_COMMAND,
-      METADATA_TRACE_COMMAND})
+      METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND, METADATA_PROFILE_COMMAND,
+      METADATA_STATUS_COMMAND, METADATA_TRACE_COMMAND})
   public boolean isModuleMetadataAvailable() {
     return projectOperations.getFocusedModule() != null;
   }
 
   @CliCommand(value = METADATA_CACHE_COMMAND,
       help = "Shows detailed metadata for the indicated type")
-  public String metadataCacheMaximum(@CliOption(key = {"maximumCapacity"}, mandatory = true,
-      help = "The maximum number of metadata items to cache (mandatory)") final int maxCapacity) {
-    Validate.isTrue(maxCapacity >= 100, "Maximum capacity must be 100 or greater");
-    metadataService.setMaxCapacity(maxCapacity);
+  public String metadataCacheMaximum(
+      @CliOption(key = {"maximumCapacity"}, mandatory = false,
+          help = "The maximum number of metadata items to cache") final Integer maxCapacity,
+      @CliOption(key = {"maximumBytes"}, mandatory = false,
+          help = "The approximate number of bytes that cached metadata may retain") final Long maxWeight) {
+    Validate.isTrue(maxCapacity != null || maxWeight != null,
+        "Either a maximum capacity or a maximum number of bytes is required");
+    if (maxCapacity != null) {
+      Validate.isTrue(maxCapacity >= 100, "Maximum capacity must be 100 or greater");
+      metadataService.setMaxCapacity(maxCapacity);
+    }
+    if (maxWeight != null) {
+      Validate.isTrue(maxWeight >= 1024 * 1024, "Maximum bytes must be 1048576 or greater");
+      metadataService.setMaxWeight(maxWeight);
+    }
     // Show them that the change has taken place
     return metadataTimings();
   }
@@ -152,13 +175,91 @@ public class MetadataCommands implements CommandMarker {
     return sb.toString();
   }
 
+  @CliCommand(value = METADATA_PROFILE_COMMAND,
+      help = "Shows latency percentiles per provider and a breakdown of recent scans by phase")
+  public String metadataProfile(@CliOption(key = {"export"}, mandatory = false,
+      help = "The file to write the profile to, in JSON format") final File file) {
+    if (file != null) {
+      try {
+        FileUtils.writeStringToFile(file, getProfileAsJson(), "UTF-8");
+      } catch (final IOException e) {
+        throw new IllegalStateException("Unable to write " + file.getAbsolutePath(), e);
+      }
+      return "Metadata profile written to " + file.getAbsolutePath();
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (final MetadataLatencyStatistic stat : metadataLogger.getLatencies()) {
+      sb.append(stat.toString()).append(LINE_SEPARATOR);
+    }
+    for (final MetadataScanProfile scan : metadataLogger.getScanProfiles()) {
+      sb.append(scan.toString()).append(LINE_SEPARATOR);
+    }
+    return sb.toString();
+  }
+
+  private String getProfileAsJson() {
+    final StringBuilder sb = new StringBuilder("{").append(LINE_SEPARATOR);
+    sb.append("  \"latencies\": [");
+    String separator = LINE_SEPARATOR;
+    for (final MetadataLatencyStatistic stat : metadataLogger.getLatencies()) {
+      sb.append(separator).append("    {\"name\": ").append(toJsonString(stat.getName()));
+      sb.append(", \"invocations\": ").append(stat.getInvocations());
+      sb.append(", \"p50\": ").append(stat.getPercentile(50));
+      sb.append(", \"p95\": ").append(stat.getPercentile(95));
+      sb.append(", \"p99\": ").append(stat.getPercentile(99));
+      sb.append(", \"max\": ").append(stat.getMaximum()).append("}");
+      separator = "," + LINE_SEPARATOR;
+    }
+    sb.append(LINE_SEPARATOR).append("  ],").append(LINE_SEPARATOR);
+    sb.append("  \"scans\": [");
+    separator = LINE_SEPARATOR;
+    for (final MetadataScanProfile scan : metadataLogger.getScanProfiles()) {
+      sb.append(separator).append("    {\"number\": ").append(scan.getNumber());
+      sb.append(", \"started\": ").append(scan.getStarted());
+      sb.append(", \"duration\": ").append(scan.getDuration());
+      sb.append(", \"phases\": {");
+      String phaseSeparator = "";
+      for (final MetadataPhase phase : MetadataPhase.values()) {
+        sb.append(phaseSeparator).append(toJsonString(phase.name().toLowerCase()));
+        sb.append(": {\"time\": ").append(scan.getTime(phase));
+        sb.append(", \"invocations\": ").append(scan.getInvocations(phase)).append("}");
+        phaseSeparator = ", ";
+      }
+      sb.append("}}");
+      separator = "," + LINE_SEPARATOR;
+    }
+    sb.append(LINE_SEPARATOR).append("  ]").append(LINE_SEPARATOR).append("}");
+    sb.append(LINE_SEPARATOR);
+    return sb.toString();
+  }
+
+  private String toJsonString(final String value) {
+    final StringBuilder sb = new StringBuilder("\"");
+    for (final char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
   @CliCommand(value = METADATA_STATUS_COMMAND, help = "Shows metadata statistics")
   public String metadataTimings() {
     final StringBuilder sb = new StringBuilder();
     for (final MetadataTimingStatistic stat : metadataLogger.getTimings()) {
       sb.append(stat.toString()).append(LINE_SEPARATOR);
     }
-    sb.append(metadataService.toString());
+    for (final MetadataCacheStatistic stat : metadataService.getCacheStatistics()) {
+      sb.append(stat.toString()).append(LINE_SEPARATOR);
+    }
+    sb.append(metadataDependencyRegistry.toString()).append(LINE_SEPARATOR);
+    sb.append(metadataService.toString()).append(LINE_SEPARATOR);
+    sb.append(memberDetailsScanner.toString()).append(LINE_SEPARATOR);
+    sb.append(fileManager.toString());
     return sb.toString();
   }
 
@@ -12,6 +12,12 @@ import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.maven.Pom;
 
+/**
+ * Implementation of {@link TypeCache}.
+ * <p>
+ * Metadata providers may look up and cache types on several threads at once,
+ * so every method is synchronized and returns copies rather than live views.
+ */
 @Component
 @Service
 public class TypeCacheImpl implements TypeCache {
@@ -29,12 +35,13 @@ public class TypeCacheImpl implements TypeCache {
   private final Map<String, String> typeNameToModuleNameMap = new HashMap<String, String>();
   private final Set<JavaType> types = new HashSet<JavaType>();
 
-  public void cacheFilePathAgainstTypeIdentifier(final String typeFilePath,
+  public synchronized void cacheFilePathAgainstTypeIdentifier(final String typeFilePath,
       final String typeIdentifier) {
     typeFilePathToMidMap.put(typeFilePath, typeIdentifier);
   }
 
-  public void cacheType(final String typeFilePath, final ClassOrInterfaceTypeDetails cid) {
+  public synchronized void cacheType(final String typeFilePath,
+      final ClassOrInterfaceTypeDetails cid) {
     Validate.notBlank(typeFilePath, "Module name required");
     Validate.notNull(cid, "Type details required");
 
@@ -53,7 +60,7 @@ public class TypeCacheImpl implements TypeCache {
     simpleTypeNameTypesMap.get(simpleTypeName).add(fullyQualifiedTypeName);
   }
 
-  public void cacheTypeAgainstModule(final Pom pom, final JavaType javaType) {
+  public synchronized void cacheTypeAgainstModule(final Pom pom, final JavaType javaType) {
     Validate.notNull(pom, "Pom cannot be null");
     Validate.notNull(javaType, "Java type cannot be null");
     typeNameToModuleFilePathMap.put(javaType.getFullyQualifiedTypeName(), pom.getPath());
@@ -64,30 +71,30 @@ public class TypeCacheImpl implements TypeCache {
     moduleFilePathToTypeNamesMap.get(pom.getPath()).add(javaType.getFullyQualifiedTypeName());
   }
 
-  public Set<String> getAllTypeIdentifiers() {
+  public synchronized Set<String> getAllTypeIdentifiers() {
     return new HashSet<String>(midToTypeDetailsMap.keySet());
   }
 
-  public Set<JavaType> getAllTypes() {
+  public synchronized Set<JavaType> getAllTypes() {
     return new HashSet<JavaType>(types);
   }
 
-  public String getPhysicalTypeIdentifier(final JavaType javaType) {
+  public synchronized String getPhysicalTypeIdentifier(final JavaType javaType) {
     Validate.notNull(javaType, "Java type cannot be null");
     return typeNameToMidMap.get(javaType.getFullyQualifiedTypeName());
   }
 
-  public ClassOrInterfaceTypeDetails getTypeDetails(final String mid) {
+  public synchronized ClassOrInterfaceTypeDetails getTypeDetails(final String mid) {
     Validate.notBlank(mid, "Physical type identifier required");
     return midToTypeDetailsMap.get(mid);
   }
 
-  public String getTypeIdFromTypeFilePath(final String typeFilePath) {
+  public synchronized String getTypeIdFromTypeFilePath(final String typeFilePath) {
     Validate.notBlank(typeFilePath, "Physical type file path required");
     return typeFilePathToMidMap.get(typeFilePath);
   }
 
-  public Set<String> getTypeNamesForModuleFilePath(final String moduleFilePath) {
+  public synchronized Set<String> getTypeNamesForModuleFilePath(final String moduleFilePath) {
     Validate.notBlank(moduleFilePath, "Pom file path required");
     if (!moduleFilePathToTypeNamesMap.containsKey(moduleFilePath)) {
       moduleFilePathToTypeNamesMap.put(moduleFilePath, new HashSet<String>());
@@ -95,14 +102,14 @@ public class TypeCacheImpl implements TypeCache {
     return new HashSet<String>(moduleFilePathToTypeNamesMap.get(moduleFilePath));
   }
 
-  public Set<String> getTypesForSimpleTypeName(final String simpleTypeName) {
+  public synchronized Set<String> getTypesForSimpleTypeName(final String simpleTypeName) {
     if (!simpleTypeNameTypesMap.containsKey(simpleTypeName)) {
       return new HashSet<String>();
     }
-    return simpleTypeNameTypesMap.get(simpleTypeName);
+    return new HashSet<String>(simpleTypeNameTypesMap.get(simpleTypeName));
   }
 
-  public void removeType(final String typeIdentifier) {
+  public synchronized void removeType(final String typeIdentifier) {
     Validate.notBlank(typeIdentifier, "Physical type identifier required");
     final ClassOrInterfaceTypeDetails cid = midToTypeDetailsMap.get(typeIdentifier);
     if (cid != null) {
@@ -0,0 +1,191 @@
+package org.springframework.roo.classpath;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * The project's types, indexed by the annotations and custom data tags they
+ * carry, and the project's Java source files, indexed by file name.
+ * <p>
+ * The {@link TypeLocationServiceImpl} keeps this index up to date as it
+ * caches and removes types, so that finding the types with a given annotation
+ * or tag, or the source file of a given type, doesn't have to look at every
+ * type or file in the project, nor fetch the details of each type found.
+ * <p>
+ * This class is not thread safe; the {@link TypeLocationServiceImpl} only
+ * uses it while holding its lock.
+ *
+ * @since 2.0
+ */
+class TypeIndex {
+
+  private final Map<JavaType, Map<String, ClassOrInterfaceTypeDetails>> annotationToTypes =
+      new HashMap<JavaType, Map<String, ClassOrInterfaceTypeDetails>>();
+  private final Map<String, Set<String>> fileNameToPaths = new HashMap<String, Set<String>>();
+  private final Map<String, ClassOrInterfaceTypeDetails> midToType =
+      new HashMap<String, ClassOrInterfaceTypeDetails>();
+  private final Map<Object, Map<String, ClassOrInterfaceTypeDetails>> tagToTypes =
+      new HashMap<Object, Map<String, ClassOrInterfaceTypeDetails>>();
+
+  /**
+   * Records the existence of a Java source file.
+   *
+   * @param canonicalPath the file's canonical path (required)
+   */
+  void addPath(final String canonicalPath) {
+    Validate.notBlank(canonicalPath, "Canonical path required");
+    final String fileName = getFileName(canonicalPath);
+    Set<String> paths = fileNameToPaths.get(fileName);
+    if (paths == null) {
+      paths = new LinkedHashSet<String>();
+      fileNameToPaths.put(fileName, paths);
+    }
+    paths.add(canonicalPath);
+  }
+
+  private String getFileName(final String path) {
+    return path.substring(path.lastIndexOf(File.separatorChar) + 1);
+  }
+
+  /**
+   * Returns the path of the source directory containing the given file.
+   *
+   * @param relativeFileName the file's path relative to its source directory,
+   *            e.g. "com/foo/Bar.java" (required)
+   * @return the source directory's path with a trailing separator, or
+   *         <code>null</code> if no known file has the given relative path
+   */
+  String getParentPath(final String relativeFileName) {
+    Validate.notBlank(relativeFileName, "Relative file name required");
+    final Set<String> paths = fileNameToPaths.get(getFileName(relativeFileName));
+    if (paths != null) {
+      for (final String path : paths) {
+        if (path.endsWith(relativeFileName)) {
+          return StringUtils.removeEnd(path, relativeFileName);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the indexed types annotated with the given annotation.
+   *
+   * @param annotationType the annotation type (required)
+   * @return a non-<code>null</code> copy of the matching types, in the order
+   *         they were first indexed
+   */
+  List<ClassOrInterfaceTypeDetails> getTypesWithAnnotation(final JavaType annotationType) {
+    Validate.notNull(annotationType, "Annotation type required");
+    return getTypes(annotationToTypes, annotationType);
+  }
+
+  /**
+   * Returns the indexed types carrying the given custom data tag.
+   *
+   * @param tag the tag (required)
+   * @return a non-<code>null</code> copy of the matching types, in the order
+   *         they were first indexed
+   */
+  List<ClassOrInterfaceTypeDetails> getTypesWithTag(final Object tag) {
+    Validate.notNull(tag, "Tag required");
+    return getTypes(tagToTypes, tag);
+  }
+
+  private <K> List<ClassOrInterfaceTypeDetails> getTypes(
+      final Map<K, Map<String, ClassOrInterfaceTypeDetails>> index, final K key) {
+    final Map<String, ClassOrInterfaceTypeDetails> types = index.get(key);
+    if (types == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<ClassOrInterfaceTypeDetails>(types.values());
+  }
+
+  /**
+   * Indexes the given type by its current annotations and tags, replacing
+   * any previous version of it.
+   *
+   * @param cid the type's details (required)
+   */
+  void put(final ClassOrInterfaceTypeDetails cid) {
+    Validate.notNull(cid, "Type details required");
+    final String mid = cid.getDeclaredByMetadataId();
+    remove(mid);
+    midToType.put(mid, cid);
+    for (final AnnotationMetadata annotation : cid.getAnnotations()) {
+      put(annotationToTypes, annotation.getAnnotationType(), cid);
+    }
+    for (final Object tag : cid.getCustomData().keySet()) {
+      put(tagToTypes, tag, cid);
+    }
+  }
+
+  private <K> void put(final Map<K, Map<String, ClassOrInterfaceTypeDetails>> index,
+      final K key, final ClassOrInterfaceTypeDetails cid) {
+    Map<String, ClassOrInterfaceTypeDetails> types = index.get(key);
+    if (types == null) {
+      types = new LinkedHashMap<String, ClassOrInterfaceTypeDetails>();
+      index.put(key, types);
+    }
+    types.put(cid.getDeclaredByMetadataId(), cid);
+  }
+
+  /**
+   * Removes the given type from the index, if present.
+   *
+   * @param mid the type's physical type identifier (required)
+   */
+  void remove(final String mid) {
+    final ClassOrInterfaceTypeDetails previous = midToType.remove(mid);
+    if (previous == null) {
+      return;
+    }
+    for (final AnnotationMetadata annotation : previous.getAnnotations()) {
+      remove(annotationToTypes, annotation.getAnnotationType(), mid);
+    }
+    for (final Object tag : previous.getCustomData().keySet()) {
+      remove(tagToTypes, tag, mid);
+    }
+  }
+
+  private <K> void remove(final Map<K, Map<String, ClassOrInterfaceTypeDetails>> index,
+      final K key, final String mid) {
+    final Map<String, ClassOrInterfaceTypeDetails> types = index.get(key);
+    if (types != null) {
+      types.remove(mid);
+      if (types.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Forgets a Java source file that no longer exists.
+   *
+   * @param canonicalPath the file's canonical path (required)
+   */
+  void removePath(final String canonicalPath) {
+    final String fileName = getFileName(canonicalPath);
+    final Collection<String> paths = fileNameToPaths.get(fileName);
+    if (paths != null) {
+      paths.remove(canonicalPath);
+      if (paths.isEmpty()) {
+        fileNameToPaths.remove(fileName);
+      }
+    }
+  }
+}
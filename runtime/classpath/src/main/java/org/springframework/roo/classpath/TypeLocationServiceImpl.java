@@ -9,11 +9,10 @@ import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
-import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
-import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.event.FileDetails;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
@@ -49,6 +48,11 @@ import java.util.logging.Logger;
  * <p>
  * For performance reasons automatically caches the queries. The cache is
  * invalidated on changes to the file system.
+ * <p>
+ * Metadata providers may call this service on several threads at once, so
+ * the change map, the dirty files and the {@link TypeIndex} are guarded by a
+ * lock. It is never held while calling other services, which may call back
+ * into this one from other threads.
  * 
  * @author Alan Stewart
  * @author Ben Alex
@@ -153,50 +157,80 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   private MetadataService metadataService;
   private ProjectOperations projectOperations;
   private TypeCache typeCache;
+  private TypeParsingService typeParsingService;
   private TypeResolutionService typeResolutionService;
 
-  private final Map<JavaType, Set<String>> annotationToMidMap =
-      new HashMap<JavaType, Set<String>>();
   private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
   private final Set<String> dirtyFiles = new HashSet<String>();
-  private final Set<String> discoveredTypes = new HashSet<String>();
-  private final Map<String, Set<Object>> typeCustomDataMap = new HashMap<String, Set<Object>>();
-  private final Map<Object, Set<String>> tagToMidMap = new HashMap<Object, Set<String>>();
-  private final Map<String, Set<JavaType>> typeAnnotationMap = new HashMap<String, Set<JavaType>>();
+  // Mutex for the change map, the dirty files and the type index
+  private final Object lock = new Object();
+  private final TypeIndex typeIndex = new TypeIndex();
 
   private void cacheType(final String fileCanonicalPath) {
+    cacheType(fileCanonicalPath, Collections.<String, MetadataItem>emptyMap());
+  }
+
+  /**
+   * Caches the type in the given file
+   * 
+   * @param fileCanonicalPath the canonical path of the file (required)
+   * @param physicalTypes physical type metadata that has just been resolved
+   *            afresh, by ID (required)
+   */
+  private void cacheType(final String fileCanonicalPath,
+      final Map<String, MetadataItem> physicalTypes) {
     Validate.notBlank(fileCanonicalPath, "File canonical path required");
     if (doesPathIndicateJavaType(fileCanonicalPath)) {
       final String id = getPhysicalTypeIdentifier(fileCanonicalPath);
       if (id != null && PhysicalTypeIdentifier.isValid(id)) {
         // Change to Java, so drop the cache
-        final ClassOrInterfaceTypeDetails cid = lookupClassOrInterfaceTypeDetails(id);
+        final ClassOrInterfaceTypeDetails cid;
+        if (physicalTypes.containsKey(id)) {
+          final PhysicalTypeMetadata physicalTypeMetadata =
+              (PhysicalTypeMetadata) physicalTypes.get(id);
+          cid =
+              physicalTypeMetadata == null ? null : physicalTypeMetadata
+                  .getMemberHoldingTypeDetails();
+        } else {
+          cid = lookupClassOrInterfaceTypeDetails(id);
+        }
         if (cid == null) {
           if (!getFileManager().exists(fileCanonicalPath)) {
-            getTypeCache().removeType(id);
-            final JavaType type = getTypeCache().getTypeDetails(id).getName();
-            updateChanges(type.getFullyQualifiedTypeName(), true);
+            synchronized (lock) {
+              typeIndex.remove(id);
+              typeIndex.removePath(fileCanonicalPath);
+              getTypeCache().removeType(id);
+              final JavaType type = getTypeCache().getTypeDetails(id).getName();
+              updateChanges(type.getFullyQualifiedTypeName(), true);
+            }
           }
           return;
         }
-        getTypeCache().cacheType(fileCanonicalPath, cid);
-        updateAttributeCache(cid);
-        updateChanges(cid.getName().getFullyQualifiedTypeName(), false);
+        synchronized (lock) {
+          getTypeCache().cacheType(fileCanonicalPath, cid);
+          typeIndex.put(cid);
+          updateChanges(cid.getName().getFullyQualifiedTypeName(), false);
+        }
       }
     }
   }
 
-  private Set<String> discoverTypes() {
+  private void discoverTypes() {
     // Retrieve a list of paths that have been discovered or modified since
     // the last invocation by this class
+    final List<String> changes = new ArrayList<String>();
     for (final String change : getFileMonitorService().getDirtyFiles(
         TypeLocationServiceImpl.class.getName())) {
       if (doesPathIndicateJavaType(change)) {
-        discoveredTypes.add(change);
+        changes.add(change);
+      }
+    }
+    synchronized (lock) {
+      for (final String change : changes) {
+        typeIndex.addPath(change);
         dirtyFiles.add(change);
       }
     }
-    return discoveredTypes;
   }
 
   private boolean doesPathIndicateJavaType(final String fileCanonicalPath) {
@@ -266,13 +300,10 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   private String getParentPath(final JavaType javaType) {
-    final String relativePath = javaType.getRelativeFileName();
-    for (final String typePath : discoverTypes()) {
-      if (typePath.endsWith(relativePath)) {
-        return StringUtils.removeEnd(typePath, relativePath);
-      }
+    discoverTypes();
+    synchronized (lock) {
+      return typeIndex.getParentPath(javaType.getRelativeFileName());
     }
-    return null;
   }
 
   private PhysicalPath getPhysicalPath(final JavaType javaType) {
@@ -534,36 +565,71 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     Validate.notNull(javaType, "Java type required");
 
     updateTypeCache();
-    Set<String> changesSinceLastRequest = changeMap.get(requestingClass);
-    if (changesSinceLastRequest == null) {
-      changesSinceLastRequest = new LinkedHashSet<String>();
-      for (final String typeIdentifier : getTypeCache().getAllTypeIdentifiers()) {
-        changesSinceLastRequest.add(getTypeCache().getTypeDetails(typeIdentifier).getName()
-            .getFullyQualifiedTypeName());
+    synchronized (lock) {
+      Set<String> changesSinceLastRequest = changeMap.get(requestingClass);
+      if (changesSinceLastRequest == null) {
+        changesSinceLastRequest = new LinkedHashSet<String>();
+        for (final String typeIdentifier : getTypeCache().getAllTypeIdentifiers()) {
+          changesSinceLastRequest.add(getTypeCache().getTypeDetails(typeIdentifier).getName()
+              .getFullyQualifiedTypeName());
+        }
+        changeMap.put(requestingClass, changesSinceLastRequest);
       }
-      changeMap.put(requestingClass, changesSinceLastRequest);
-    }
-    for (final String changedId : changesSinceLastRequest) {
-      if (changedId.equals(javaType.getFullyQualifiedTypeName())) {
-        changesSinceLastRequest.remove(changedId);
-        return true;
+      for (final String changedId : changesSinceLastRequest) {
+        if (changedId.equals(javaType.getFullyQualifiedTypeName())) {
+          changesSinceLastRequest.remove(changedId);
+          return true;
+        }
       }
+      return false;
     }
-    return false;
   }
 
   private void initTypeMap() {
+    final List<String> javaFiles = new ArrayList<String>();
     for (final Pom pom : getProjectOperations().getPoms()) {
       for (final PhysicalPath path : pom.getPhysicalPaths()) {
         if (path.isSource()) {
           final String allJavaFiles =
               FileUtils.ensureTrailingSeparator(path.getLocationPath()) + JAVA_FILES_ANT_PATH;
           for (final FileDetails file : getFileManager().findMatchingAntPath(allJavaFiles)) {
-            cacheType(file.getCanonicalPath());
+            javaFiles.add(file.getCanonicalPath());
           }
         }
       }
     }
+    preParse(javaFiles);
+
+    // Resolve every file's type afresh in one request, which the metadata
+    // service can fan out over several threads
+    final List<String> physicalTypeIds = new ArrayList<String>();
+    for (final String javaFile : javaFiles) {
+      if (doesPathIndicateJavaType(javaFile)) {
+        final String id = getPhysicalTypeIdentifier(javaFile);
+        if (id != null && PhysicalTypeIdentifier.isValid(id)) {
+          getMetadataService().evict(id);
+          physicalTypeIds.add(id);
+        }
+      }
+    }
+    final Map<String, MetadataItem> physicalTypes =
+        getMetadataService().getAll(physicalTypeIds);
+    for (final String javaFile : javaFiles) {
+      cacheType(javaFile, physicalTypes);
+    }
+  }
+
+  /**
+   * Parses the given Java files in parallel, so that looking up their types
+   * one at a time afterwards doesn't have to parse them.
+   * 
+   * @param javaFiles the canonical paths of the files (required)
+   */
+  private void preParse(final Collection<String> javaFiles) {
+    final TypeParsingService typeParsingService = getTypeParsingService();
+    if (typeParsingService != null) {
+      typeParsingService.preParse(javaFiles);
+    }
   }
 
   public boolean isInProject(final JavaType javaType) {
@@ -591,22 +657,18 @@ public class TypeLocationServiceImpl implements TypeLocationService {
       final LocatedTypeCallback callback) {
     Validate.notNull(annotationsToDetect, "Annotations to detect required");
     Validate.notNull(callback, "Callback required");
-    // If the cache doesn't yet contain the annotation to be found it should
-    // be added
-    for (final JavaType annotationType : annotationsToDetect) {
-      if (!annotationToMidMap.containsKey(annotationType)) {
-        annotationToMidMap.put(annotationType, new HashSet<String>());
-      }
-    }
 
     // Before processing the call any changes to the project should be
     // processed and the cache updated accordingly
     updateTypeCache();
 
     for (final JavaType annotationType : annotationsToDetect) {
-      for (final String locatedMid : annotationToMidMap.get(annotationType)) {
-        final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(locatedMid);
-        callback.process(located);
+      final List<ClassOrInterfaceTypeDetails> located;
+      synchronized (lock) {
+        located = typeIndex.getTypesWithAnnotation(annotationType);
+      }
+      for (final ClassOrInterfaceTypeDetails type : located) {
+        callback.process(type);
       }
     }
   }
@@ -614,62 +676,23 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   private void processTypesWithTag(final Object tag, final LocatedTypeCallback callback) {
     Validate.notNull(tag, "Tag required");
     Validate.notNull(callback, "Callback required");
-    // If the cache doesn't yet contain the tag it should be added
-    if (!tagToMidMap.containsKey(tag)) {
-      tagToMidMap.put(tag, new HashSet<String>());
-    }
 
     // Before processing the call any changes to the project should be
     // processed and the cache updated accordingly
     updateTypeCache();
 
-    for (final String locatedMid : tagToMidMap.get(tag)) {
-      final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(locatedMid);
-      callback.process(located);
+    final List<ClassOrInterfaceTypeDetails> located;
+    synchronized (lock) {
+      located = typeIndex.getTypesWithTag(tag);
     }
-  }
-
-  private void updateAttributeCache(final MemberHoldingTypeDetails cid) {
-    Validate.notNull(cid, "Member holding type details required");
-    if (!typeAnnotationMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeAnnotationMap.put(cid.getDeclaredByMetadataId(), new HashSet<JavaType>());
-    }
-    if (!typeCustomDataMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeCustomDataMap.put(cid.getDeclaredByMetadataId(), new HashSet<Object>());
-    }
-    final Set<JavaType> previousAnnotations = typeAnnotationMap.get(cid.getDeclaredByMetadataId());
-    for (final JavaType previousAnnotation : previousAnnotations) {
-      final Set<String> midSet = annotationToMidMap.get(previousAnnotation);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
-      }
-    }
-    previousAnnotations.clear();
-    for (final AnnotationMetadata annotationMetadata : cid.getAnnotations()) {
-      if (!annotationToMidMap.containsKey(annotationMetadata.getAnnotationType())) {
-        annotationToMidMap.put(annotationMetadata.getAnnotationType(), new HashSet<String>());
-      }
-      previousAnnotations.add(annotationMetadata.getAnnotationType());
-      annotationToMidMap.get(annotationMetadata.getAnnotationType()).add(
-          cid.getDeclaredByMetadataId());
-    }
-    final Set<Object> previousCustomDataSet = typeCustomDataMap.get(cid.getDeclaredByMetadataId());
-    for (final Object previousCustomData : previousCustomDataSet) {
-      final Set<String> midSet = tagToMidMap.get(previousCustomData);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
-      }
-    }
-    previousCustomDataSet.clear();
-    for (final Object customData : cid.getCustomData().keySet()) {
-      if (!tagToMidMap.containsKey(customData)) {
-        tagToMidMap.put(customData, new HashSet<String>());
-      }
-      previousCustomDataSet.add(customData);
-      tagToMidMap.get(customData).add(cid.getDeclaredByMetadataId());
+    for (final ClassOrInterfaceTypeDetails type : located) {
+      callback.process(type);
     }
   }
 
+  /**
+   * Must be called while holding the {@link #lock}.
+   */
   private void updateChanges(final String typeName, final boolean remove) {
     Validate.notNull(typeName, "Type name required");
     for (final String requestingClass : changeMap.keySet()) {
@@ -686,11 +709,28 @@ public class TypeLocationServiceImpl implements TypeLocationService {
       initTypeMap();
     }
     discoverTypes();
+    // Take the dirty files, so that no other thread caches them again
+    final List<String> changes;
+    synchronized (lock) {
+      changes = new ArrayList<String>(dirtyFiles);
+      dirtyFiles.clear();
+    }
+    preParse(changes);
     // Update the type cache
-    for (final String change : dirtyFiles) {
-      cacheType(change);
+    boolean cached = false;
+    try {
+      for (final String change : changes) {
+        cacheType(change);
+      }
+      cached = true;
+    } finally {
+      if (!cached) {
+        // Try again next time
+        synchronized (lock) {
+          dirtyFiles.addAll(changes);
+        }
+      }
     }
-    dirtyFiles.clear();
   }
 
   public void addDependencies(ModuleFeatureName moduleFeatureName,
@@ -884,6 +924,28 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  public TypeParsingService getTypeParsingService() {
+    if (typeParsingService == null) {
+      // Get all Services implement TypeParsingService interface
+      try {
+        ServiceReference<?>[] references =
+            context.getAllServiceReferences(TypeParsingService.class.getName(), null);
+
+        for (ServiceReference<?> ref : references) {
+          return (TypeParsingService) context.getService(ref);
+        }
+
+        return null;
+
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot load TypeParsingService on TypeLocationServiceImpl.");
+        return null;
+      }
+    } else {
+      return typeParsingService;
+    }
+  }
+
   private ModuleFeature getModuleFeature(ModuleFeatureName moduleFeatureName) {
 
     if (moduleFeatures.containsKey(moduleFeatureName)) {
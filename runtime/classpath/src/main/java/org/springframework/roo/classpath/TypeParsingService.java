@@ -1,5 +1,7 @@
 package org.springframework.roo.classpath;
 
+import java.util.Collection;
+
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.model.JavaType;
 
@@ -58,6 +60,17 @@ public interface TypeParsingService {
   ClassOrInterfaceTypeDetails getTypeFromString(String typeContents, String declaredByMetadataId,
       JavaType javaType);
 
+  /**
+   * Parses the given compilation units ahead of their types being requested
+   * via {@link #getTypeAtLocation(String, String, JavaType)}, possibly in
+   * parallel. Units that fail to parse are skipped, the failure being reported
+   * when their types are requested.
+   * 
+   * @param fileIdentifiers the canonical paths of the units to parse
+   *            (required, can be empty)
+   */
+  void preParse(Collection<String> fileIdentifiers);
+
   /**
    * Returns the compilation unit contents that represents the java file
    * updated with the passed class or interface details. The difference with
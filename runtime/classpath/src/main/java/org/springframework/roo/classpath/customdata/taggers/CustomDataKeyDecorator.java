@@ -19,6 +19,16 @@ import org.springframework.roo.model.CustomDataAccessor;
  */
 public interface CustomDataKeyDecorator extends MemberDetailsDecorator {
 
+  /**
+   * Returns a number that changes whenever a matcher is registered or
+   * unregistered, so that callers can tell when member details they have
+   * decorated before would now be tagged differently.
+   * 
+   * @return a number that only ever increases
+   * @since 2.0
+   */
+  long getMatchersVersion();
+
   /**
    * Registers the given matcher on behalf of the class with the given fully-
    * qualified name.
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -33,6 +34,7 @@ import org.springframework.roo.model.CustomDataAccessor;
 @Service
 public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
 
+  private final AtomicLong matchersVersion = new AtomicLong();
   private final Map<String, String> pluralMap = new HashMap<String, String>();
   private final Map<String, Matcher<? extends CustomDataAccessor>> taggerMap =
       new HashMap<String, Matcher<? extends CustomDataAccessor>>();
@@ -145,6 +147,10 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
     }
   }
 
+  public long getMatchersVersion() {
+    return matchersVersion.get();
+  }
+
   public List<MethodMatcher> getMethodTaggers() {
     final List<MethodMatcher> methodTaggers = new ArrayList<MethodMatcher>();
     for (final Matcher<? extends CustomDataAccessor> matcher : taggerMap.values()) {
@@ -170,6 +176,7 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
     Validate.notNull(addingClass, "The calling class must be specified");
     Validate.notNull(matcher, "The matcher must be specified");
     taggerMap.put(addingClass + matcher.getCustomDataKey(), matcher);
+    matchersVersion.incrementAndGet();
   }
 
   public void registerMatchers(final Class<?> addingClass,
@@ -197,5 +204,8 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
     for (final String taggerKey : toRemove) {
       taggerMap.remove(taggerKey);
     }
+    if (!toRemove.isEmpty()) {
+      matchersVersion.incrementAndGet();
+    }
   }
 }
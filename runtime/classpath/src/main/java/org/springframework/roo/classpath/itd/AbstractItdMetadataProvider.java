@@ -2,6 +2,9 @@ package org.springframework.roo.classpath.itd;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
@@ -26,8 +29,11 @@ import org.springframework.roo.metadata.AbstractHashCodeTrackingMetadataNotifier
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataPhase;
 import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.metadata.MetadataWeigher;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.LogicalPath;
@@ -66,10 +72,16 @@ import org.springframework.roo.support.logging.HandlerUtils;
  */
 @Component(componentAbstract = true)
 public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTrackingMetadataNotifier
-    implements ItdTriggerBasedMetadataProvider, MetadataNotificationListener {
+    implements ItdTriggerBasedMetadataProvider, MetadataNotificationListener, MetadataWeigher {
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(AbstractItdMetadataProvider.class);
 
+  /**
+   * Composes ITD sources, which depend on nothing but their
+   * {@link ItdTypeDetails}, in parallel with metadata resolution
+   */
+  private static final ForkJoinPool COMPOSING_POOL = new ForkJoinPool();
+
   protected void activate(final ComponentContext cContext) {
     super.activate(cContext);
   }
@@ -96,6 +108,8 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
    */
   private final List<JavaType> metadataTriggers = new ArrayList<JavaType>();
 
+  private final MetadataWeigher weigher = new MemberHoldingTypeDetailsWeigher();
+
   /**
    * Registers an additional {@link JavaType} that will trigger metadata
    * registration.
@@ -134,6 +148,26 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
    */
   protected abstract String createLocalIdentifier(JavaType javaType, LogicalPath path);
 
+  /**
+   * Composes the source of the given ITD on the {@link #COMPOSING_POOL}.
+   *
+   * @param itdTypeDetails the ITD to compose (required)
+   * @return the pending source
+   */
+  private Future<String> compose(final ItdTypeDetails itdTypeDetails) {
+    final MetadataLogger metadataLogger = getMetadataLogger();
+    return COMPOSING_POOL.submit(new Callable<String>() {
+      public String call() {
+        metadataLogger.startPhase(MetadataPhase.ITD_COMPOSE);
+        try {
+          return new ItdSourceFileComposer(itdTypeDetails).getOutput();
+        } finally {
+          metadataLogger.stopPhase();
+        }
+      }
+    });
+  }
+
   /**
    * Deletes the given ITD, either now or later.
    *
@@ -161,6 +195,10 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     // gone away?
   }
 
+  public long weigh(final MetadataItem metadataItem) {
+    return weigher.weigh(metadataItem);
+  }
+
   public final MetadataItem get(final String metadataIdentificationString) {
 
     Validate.isTrue(MetadataIdentificationUtils.getMetadataClass(metadataIdentificationString)
@@ -268,17 +306,15 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
 
       if (!deleteItdFile) {
         // We have some members in the ITD, so decide if we're to write
-        // something to disk
-        final ItdSourceFileComposer itdSourceFileComposer =
-            new ItdSourceFileComposer(metadata.getMemberHoldingTypeDetails());
-
-        // Decide whether the get an ITD on-disk based on whether there
-        // is physical content to write
-        if (itdSourceFileComposer.isContent()) {
-          // We have content to write
+        // something to disk based on whether there is physical content to
+        // write
+        if (ItdSourceFileComposer.isContent(itdTypeDetails)) {
+          // We have content to write, which is composed in the background
+          // while metadata resolution carries on, and written when the file
+          // manager commits
           getItdDiscoveryService().addItdTypeDetails(itdTypeDetails);
-          final String itd = itdSourceFileComposer.getOutput();
-          getFileManager().createOrUpdateTextFileIfRequired(itdFilename, itd, false);
+          getFileManager().createOrUpdateTextFileIfRequired(itdFilename,
+              compose(itdTypeDetails));
         } else {
           // We don't have content to write
           deleteItdFile = true;
@@ -663,6 +699,10 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     return getServiceManager().getServiceInstance(this, ItdDiscoveryService.class);
   }
 
+  protected MetadataLogger getMetadataLogger() {
+    return getServiceManager().getServiceInstance(this, MetadataLogger.class);
+  }
+
   protected MemberDetailsScanner getMemberDetailsScanner() {
     return getServiceManager().getServiceInstance(this, MemberDetailsScanner.class);
   }
@@ -2,6 +2,7 @@ package org.springframework.roo.classpath.itd;
 
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
@@ -39,12 +40,43 @@ import org.springframework.roo.model.JavaType;
  */
 public class ItdSourceFileComposer {
 
+  /**
+   * The largest buffer kept for reuse, in chars; the odd larger ITD gets a
+   * buffer of its own rather than pinning that much memory to a thread
+   */
+  private static final int MAX_POOLED_BUFFER_CAPACITY = 1 << 20;
+
+  /**
+   * A buffer per thread that ITDs are composed into, so that composing one
+   * doesn't grow a new buffer through every size up to the ITD's own
+   */
+  private static final ThreadLocal<StringBuilder> POOLED_BUFFERS =
+      new ThreadLocal<StringBuilder>();
+
+  private static StringBuilder acquireBuffer() {
+    final StringBuilder buffer = POOLED_BUFFERS.get();
+    if (buffer == null) {
+      return new StringBuilder();
+    }
+    // Taken out of the pool while in use, in case of nested composers
+    POOLED_BUFFERS.remove();
+    buffer.setLength(0);
+    return buffer;
+  }
+
+  private static void releaseBuffer(final StringBuilder buffer) {
+    if (buffer.capacity() <= MAX_POOLED_BUFFER_CAPACITY) {
+      POOLED_BUFFERS.set(buffer);
+    }
+  }
+
   private final JavaType aspect;
   private boolean content;
   private int indentLevel = 0;
   private final JavaType introductionTo;
   private final ItdTypeDetails itdTypeDetails;
-  private StringBuilder pw = new StringBuilder();
+  private final String output;
+  private final StringBuilder pw;
   private final ImportRegistrationResolver resolver;
 
   /**
@@ -72,25 +104,33 @@ public class ItdSourceFileComposer {
       }
     }
 
-    appendTypeDeclaration();
-    appendDeclarePrecedence();
-    appendExtendsTypes();
-    appendImplementsTypes();
-    appendTypeAnnotations();
-    appendFieldAnnotations();
-    appendMethodAnnotations();
-    appendFields();
-    appendConstructors();
-    appendMethods(itdTypeDetails.getGovernor().getPhysicalTypeCategory()
-        .equals(PhysicalTypeCategory.INTERFACE));
-    appendInnerTypes();
-    appendTerminator();
-
-    // Now prepend the package declaration and any imports
-    // We need to do this ** at the end ** so we can ensure our compilation
-    // unit imports are correct, as they're built as we traverse over the
-    // other members
-    prependCompilationUnitDetails();
+    pw = acquireBuffer();
+    try {
+      appendTypeDeclaration();
+      appendDeclarePrecedence();
+      appendExtendsTypes();
+      appendImplementsTypes();
+      appendTypeAnnotations();
+      appendFieldAnnotations();
+      appendMethodAnnotations();
+      appendFields();
+      appendConstructors();
+      appendMethods(itdTypeDetails.getGovernor().getPhysicalTypeCategory()
+          .equals(PhysicalTypeCategory.INTERFACE));
+      appendInnerTypes();
+      appendTerminator();
+
+      // Now prepend the package declaration and any imports
+      // We need to do this ** at the end ** so we can ensure our compilation
+      // unit imports are correct, as they're built as we traverse over the
+      // other members
+      prependCompilationUnitDetails();
+
+      // The only copy of the composed ITD that outlives this constructor
+      output = pw.toString();
+    } finally {
+      releaseBuffer(pw);
+    }
   }
 
   /**
@@ -528,7 +568,7 @@ public class ItdSourceFileComposer {
   }
 
   public String getOutput() {
-    return pw.toString();
+    return output;
   }
 
   /**
@@ -557,6 +597,33 @@ public class ItdSourceFileComposer {
     return content;
   }
 
+  /**
+   * Indicates whether composing the given ITD would add any content to it,
+   * aside from the formal ITD declaration, without actually composing it.
+   *
+   * @param itdTypeDetails the ITD to check (required)
+   * @return the value {@link #isContent()} would return for an
+   *         {@link ItdSourceFileComposer} constructed for the given ITD
+   * @since 2.0
+   */
+  public static boolean isContent(final ItdTypeDetails itdTypeDetails) {
+    Validate.notNull(itdTypeDetails, "ITD type details required");
+    return isNotEmpty(itdTypeDetails.getDeclarePrecedence())
+        || isNotEmpty(itdTypeDetails.getExtendsTypes())
+        || isNotEmpty(itdTypeDetails.getImplementsTypes())
+        || isNotEmpty(itdTypeDetails.getAnnotations())
+        || isNotEmpty(itdTypeDetails.getFieldAnnotations())
+        || isNotEmpty(itdTypeDetails.getMethodAnnotations())
+        || isNotEmpty(itdTypeDetails.getDeclaredFields())
+        || isNotEmpty(itdTypeDetails.getDeclaredConstructors())
+        || isNotEmpty(itdTypeDetails.getDeclaredMethods())
+        || isNotEmpty(itdTypeDetails.getInnerTypes());
+  }
+
+  private static boolean isNotEmpty(final Collection<?> collection) {
+    return collection != null && !collection.isEmpty();
+  }
+
   /**
    * Prints a blank line, ensuring any indent is included before doing so.
    */
@@ -617,11 +684,8 @@ public class ItdSourceFileComposer {
       topOfFile.append(getNewLine());
     }
 
-    // Now append the normal file to the bottom
-    topOfFile.append(pw.toString());
-
-    // Replace the old writer with out new writer
-    pw = topOfFile;
+    // Now insert it above the normal file, in place
+    pw.insert(0, topOfFile);
   }
 
   private void writeMethods(final List<? extends MethodMetadata> methods,
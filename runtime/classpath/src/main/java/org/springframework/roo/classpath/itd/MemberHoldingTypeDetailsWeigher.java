@@ -0,0 +1,68 @@
+package org.springframework.roo.classpath.itd;
+
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ConstructorMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.InvocableMemberMetadata;
+import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataWeigher;
+
+/**
+ * {@link MetadataWeigher} for {@link MemberHoldingTypeDetailsMetadataItem}s,
+ * which estimates an item's size from the members and annotations of its
+ * {@link MemberHoldingTypeDetails}. Method and constructor bodies are counted
+ * by length, as they dominate the size of generated ITDs.
+ *
+ * @since 2.0
+ */
+public class MemberHoldingTypeDetailsWeigher implements MetadataWeigher {
+
+  private static final long ANNOTATION_WEIGHT = 160;
+  private static final long BASE_WEIGHT = 512;
+  private static final long FIELD_WEIGHT = 256;
+  private static final long INVOCABLE_MEMBER_WEIGHT = 384;
+  private static final long PARAMETER_WEIGHT = 96;
+
+  public long weigh(final MetadataItem metadataItem) {
+    if (!(metadataItem instanceof MemberHoldingTypeDetailsMetadataItem<?>)) {
+      return BASE_WEIGHT;
+    }
+    return BASE_WEIGHT
+        + weigh(((MemberHoldingTypeDetailsMetadataItem<?>) metadataItem)
+            .getMemberHoldingTypeDetails());
+  }
+
+  private long weigh(final MemberHoldingTypeDetails details) {
+    if (details == null) {
+      return 0;
+    }
+    long weight = BASE_WEIGHT + details.getAnnotations().size() * ANNOTATION_WEIGHT;
+    for (final FieldMetadata field : details.getDeclaredFields()) {
+      weight += FIELD_WEIGHT + field.getAnnotations().size() * ANNOTATION_WEIGHT;
+    }
+    for (final ConstructorMetadata constructor : details.getDeclaredConstructors()) {
+      weight += weigh(constructor);
+    }
+    for (final MethodMetadata method : details.getDeclaredMethods()) {
+      weight += weigh(method);
+    }
+    for (final ClassOrInterfaceTypeDetails innerType : details.getDeclaredInnerTypes()) {
+      weight += weigh(innerType);
+    }
+    return weight;
+  }
+
+  private long weigh(final InvocableMemberMetadata member) {
+    long weight =
+        INVOCABLE_MEMBER_WEIGHT + member.getAnnotations().size() * ANNOTATION_WEIGHT
+            + member.getParameterTypes().size() * PARAMETER_WEIGHT;
+    final String body = member.getBody();
+    if (body != null) {
+      // Two bytes per char, plus the String and array headers
+      weight += 2L * body.length() + 56;
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,203 @@
+package org.springframework.roo.classpath.scanner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.classpath.details.ConstructorMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * A {@link MemberDetails} that indexes its members when constructed, for
+ * repeated lookups by name, annotation or custom data tag.
+ * <p>
+ * {@link MemberDetailsImpl} scans every {@link MemberHoldingTypeDetails} on
+ * each lookup and copies every member on each call to {@link #getFields()} or
+ * {@link #getMethods()}, which is fine for a one-off query but quadratic for a
+ * metadata provider that looks up each of a large type's members in turn. This
+ * variant returns the same results, in the same order, from maps built once,
+ * and its bulk accessors return unmodifiable lists that aren't copied.
+ *
+ * @since 2.0
+ */
+public class IndexedMemberDetails extends MemberDetailsImpl {
+
+  /**
+   * A method and its parameter types, as compared by
+   * {@link #getMethod(JavaSymbolName, List)}
+   */
+  private static class MethodEntry {
+    final MethodMetadata method;
+    final List<JavaType> parameterTypes;
+
+    MethodEntry(final MethodMetadata method) {
+      this.method = method;
+      parameterTypes = AnnotatedJavaType.convertFromAnnotatedJavaTypes(method.getParameterTypes());
+    }
+  }
+
+  private static <K, V> void add(final Map<K, List<V>> index, final K key, final V value) {
+    List<V> values = index.get(key);
+    if (values == null) {
+      values = new ArrayList<V>();
+      index.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private static <K, V> List<V> get(final Map<K, List<V>> index, final K key) {
+    final List<V> values = index.get(key);
+    if (values == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  private final Map<JavaType, AnnotationMetadata> annotations =
+      new HashMap<JavaType, AnnotationMetadata>();
+  private final List<ConstructorMetadata> constructors;
+  private final List<FieldMetadata> fields;
+  private final Map<JavaType, List<FieldMetadata>> fieldsByAnnotation =
+      new HashMap<JavaType, List<FieldMetadata>>();
+  private final Map<JavaSymbolName, FieldMetadata> fieldsByName =
+      new HashMap<JavaSymbolName, FieldMetadata>();
+  private final Map<Object, List<FieldMetadata>> fieldsByTag =
+      new HashMap<Object, List<FieldMetadata>>();
+  private final List<MethodMetadata> methods;
+  private final Map<JavaSymbolName, List<MethodEntry>> methodsByName =
+      new HashMap<JavaSymbolName, List<MethodEntry>>();
+  private final Map<Object, List<MethodMetadata>> methodsByTag =
+      new HashMap<Object, List<MethodMetadata>>();
+
+  /**
+   * Constructor
+   *
+   * @param details the member holders to index (required, not empty)
+   */
+  public IndexedMemberDetails(final Collection<? extends MemberHoldingTypeDetails> details) {
+    super(details);
+    final List<ConstructorMetadata> constructors = new ArrayList<ConstructorMetadata>();
+    final List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+    final List<MethodMetadata> methods = new ArrayList<MethodMetadata>();
+    for (final MemberHoldingTypeDetails memberHoldingTypeDetails : getDetails()) {
+      for (final AnnotationMetadata annotation : memberHoldingTypeDetails.getAnnotations()) {
+        if (!annotations.containsKey(annotation.getAnnotationType())) {
+          annotations.put(annotation.getAnnotationType(), annotation);
+        }
+      }
+      constructors.addAll(memberHoldingTypeDetails.getDeclaredConstructors());
+      for (final FieldMetadata field : memberHoldingTypeDetails.getDeclaredFields()) {
+        fields.add(field);
+        if (!fieldsByName.containsKey(field.getFieldName())) {
+          fieldsByName.put(field.getFieldName(), field);
+        }
+        for (final AnnotationMetadata annotation : field.getAnnotations()) {
+          final JavaType annotationType = annotation.getAnnotationType();
+          final List<FieldMetadata> annotated = fieldsByAnnotation.get(annotationType);
+          // A field annotated twice with the same type is only listed once
+          if (annotated == null || annotated.get(annotated.size() - 1) != field) {
+            add(fieldsByAnnotation, annotationType, field);
+          }
+        }
+        for (final Object tag : field.getCustomData().keySet()) {
+          add(fieldsByTag, tag, field);
+        }
+      }
+      for (final MethodMetadata method : memberHoldingTypeDetails.getDeclaredMethods()) {
+        methods.add(method);
+        add(methodsByName, method.getMethodName(), new MethodEntry(method));
+        for (final Object tag : method.getCustomData().keySet()) {
+          add(methodsByTag, tag, method);
+        }
+      }
+    }
+    this.constructors = Collections.unmodifiableList(constructors);
+    this.fields = Collections.unmodifiableList(fields);
+    this.methods = Collections.unmodifiableList(methods);
+  }
+
+  @Override
+  public AnnotationMetadata getAnnotation(final JavaType type) {
+    Validate.notNull(type, "Annotation type to locate required");
+    return annotations.get(type);
+  }
+
+  @Override
+  public List<ConstructorMetadata> getConstructors() {
+    return constructors;
+  }
+
+  @Override
+  public FieldMetadata getField(final JavaSymbolName fieldName) {
+    Validate.notNull(fieldName, "Field name required");
+    return fieldsByName.get(fieldName);
+  }
+
+  @Override
+  public List<FieldMetadata> getFields() {
+    return fields;
+  }
+
+  @Override
+  public List<FieldMetadata> getFieldsWithAnnotation(final JavaType annotationType) {
+    Validate.notNull(annotationType, "Annotation type required");
+    return get(fieldsByAnnotation, annotationType);
+  }
+
+  @Override
+  public List<FieldMetadata> getFieldsWithTag(final Object tagKey) {
+    Validate.notNull(tagKey, "Custom data key required");
+    return get(fieldsByTag, tagKey);
+  }
+
+  @Override
+  public MethodMetadata getMethod(final JavaSymbolName methodName) {
+    final List<MethodEntry> entries = methodsByName.get(methodName);
+    return entries == null ? null : entries.get(0).method;
+  }
+
+  @Override
+  public MethodMetadata getMethod(final JavaSymbolName methodName, final List<JavaType> parameters) {
+    return getMethod(methodName, parameters, null);
+  }
+
+  @Override
+  public MethodMetadata getMethod(final JavaSymbolName methodName, List<JavaType> parameters,
+      final String excludingMid) {
+    final List<MethodEntry> entries = methodsByName.get(methodName);
+    if (entries == null) {
+      return null;
+    }
+    if (parameters == null) {
+      parameters = Collections.emptyList();
+    }
+    for (final MethodEntry entry : entries) {
+      if (entry.parameterTypes.equals(parameters)
+          && !entry.method.getDeclaredByMetadataId().equals(excludingMid)) {
+        return entry.method;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<MethodMetadata> getMethods() {
+    return methods;
+  }
+
+  @Override
+  public List<MethodMetadata> getMethodsWithTag(final Object tagKey) {
+    Validate.notNull(tagKey, "Custom data key required");
+    return get(methodsByTag, tagKey);
+  }
+}
@@ -89,6 +89,37 @@ public interface MemberDetails {
    */
   List<FieldMetadata> getFields();
 
+  /**
+   * Locates a field with the name presented. Searches all
+   * {@link MemberHoldingTypeDetails} until the first such field is located or
+   * none can be found.
+   * 
+   * @param fieldName the field name to locate (required)
+   * @return the first located field, or <code>null</code> if not found
+   * @since 2.0
+   */
+  FieldMetadata getField(JavaSymbolName fieldName);
+
+  /**
+   * Searches all {@link MemberHoldingTypeDetails} and returns all fields
+   * annotated with the given type of annotation.
+   * 
+   * @param annotationType the type of annotation to look for (required)
+   * @return zero or more fields (never null)
+   * @since 2.0
+   */
+  List<FieldMetadata> getFieldsWithAnnotation(JavaType annotationType);
+
+  /**
+   * Searches all {@link MemberHoldingTypeDetails} and returns all fields
+   * which contain a given {@link CustomData} tag.
+   * 
+   * @param tagKey the {@link CustomData} key to search for (required)
+   * @return zero or more fields (never null)
+   * @since 2.0
+   */
+  List<FieldMetadata> getFieldsWithTag(Object tagKey);
+
   /**
    * Locates a method with the name presented. Searches all
    * {@link MemberDetails} until the first such method is located or none can
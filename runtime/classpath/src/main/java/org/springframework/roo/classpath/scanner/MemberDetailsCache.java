@@ -0,0 +1,148 @@
+package org.springframework.roo.classpath.scanner;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * The {@link MemberDetails} the {@link MemberDetailsScannerImpl} last built
+ * for each governor and requesting class.
+ * <p>
+ * An entry is only returned for the very same class hierarchy it was built
+ * from, so a governor or superclass that has been parsed again misses.
+ * Changes that don't show in the hierarchy itself, such as an ITD of one of
+ * its classes being regenerated, have to be reported via
+ * {@link #invalidate(JavaType)}.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @since 2.0
+ */
+class MemberDetailsCache {
+
+  private static class Entry {
+    final List<ClassOrInterfaceTypeDetails> hierarchy;
+    final MemberDetails memberDetails;
+
+    Entry(final List<ClassOrInterfaceTypeDetails> hierarchy, final MemberDetails memberDetails) {
+      this.hierarchy = hierarchy;
+      this.memberDetails = memberDetails;
+    }
+  }
+
+  private final Map<JavaType, Set<String>> dependentGovernors =
+      new HashMap<JavaType, Set<String>>();
+  private final Map<String, Map<String, Entry>> entries = new HashMap<String, Map<String, Entry>>();
+  private long hits;
+  private long invalidations;
+  private long misses;
+
+  /**
+   * Forgets every entry.
+   */
+  void clear() {
+    entries.clear();
+    dependentGovernors.clear();
+  }
+
+  /**
+   * Returns the member details built for the given requesting class and
+   * class hierarchy.
+   *
+   * @param requestingClass the class that requested the member details
+   * @param hierarchy the governor's class hierarchy, starting with the
+   *            absolute superclass and ending with the governor (required)
+   * @return the cached member details, or <code>null</code> if none were
+   *         built from this hierarchy
+   */
+  MemberDetails get(final String requestingClass,
+      final List<ClassOrInterfaceTypeDetails> hierarchy) {
+    final Map<String, Entry> governorEntries = entries.get(getGovernorId(hierarchy));
+    final Entry entry = governorEntries == null ? null : governorEntries.get(requestingClass);
+    if (entry == null || !isSame(entry.hierarchy, hierarchy)) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.memberDetails;
+  }
+
+  private String getGovernorId(final List<ClassOrInterfaceTypeDetails> hierarchy) {
+    return hierarchy.get(hierarchy.size() - 1).getDeclaredByMetadataId();
+  }
+
+  /**
+   * Forgets the member details of every governor whose hierarchy includes
+   * the given type.
+   *
+   * @param type the type that has changed (required)
+   */
+  void invalidate(final JavaType type) {
+    final Set<String> governors = dependentGovernors.remove(type);
+    if (governors != null) {
+      for (final String governor : governors) {
+        if (entries.remove(governor) != null) {
+          invalidations++;
+        }
+      }
+    }
+  }
+
+  private boolean isSame(final List<ClassOrInterfaceTypeDetails> cached,
+      final List<ClassOrInterfaceTypeDetails> current) {
+    if (cached.size() != current.size()) {
+      return false;
+    }
+    for (int i = 0; i < cached.size(); i++) {
+      if (cached.get(i) != current.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Caches the member details built for the given requesting class and
+   * class hierarchy.
+   *
+   * @param requestingClass the class that requested the member details
+   * @param hierarchy the class hierarchy they were built from (required)
+   * @param memberDetails the member details (required)
+   */
+  void put(final String requestingClass, final List<ClassOrInterfaceTypeDetails> hierarchy,
+      final MemberDetails memberDetails) {
+    final String governorId = getGovernorId(hierarchy);
+    Map<String, Entry> governorEntries = entries.get(governorId);
+    if (governorEntries == null) {
+      governorEntries = new HashMap<String, Entry>();
+      entries.put(governorId, governorEntries);
+    }
+    governorEntries.put(requestingClass, new Entry(hierarchy, memberDetails));
+    for (final ClassOrInterfaceTypeDetails cid : hierarchy) {
+      Set<String> governors = dependentGovernors.get(cid.getName());
+      if (governors == null) {
+        governors = new HashSet<String>();
+        dependentGovernors.put(cid.getName(), governors);
+      }
+      governors.add(governorId);
+    }
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("governors", entries.size());
+    builder.append("hits", hits);
+    builder.append("misses", misses);
+    final long lookups = hits + misses;
+    builder.append("hitRate", (lookups == 0 ? 0 : Math.round(100.0 * hits / lookups)) + "%");
+    builder.append("invalidations", invalidations);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
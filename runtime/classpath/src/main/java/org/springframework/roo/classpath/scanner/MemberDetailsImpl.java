@@ -83,6 +83,39 @@ public class MemberDetailsImpl implements MemberDetails {
     return result;
   }
 
+  public FieldMetadata getField(final JavaSymbolName fieldName) {
+    Validate.notNull(fieldName, "Field name required");
+    for (final MemberHoldingTypeDetails memberHoldingTypeDetails : details) {
+      final FieldMetadata field = memberHoldingTypeDetails.getDeclaredField(fieldName);
+      if (field != null) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  public List<FieldMetadata> getFieldsWithAnnotation(final JavaType annotationType) {
+    Validate.notNull(annotationType, "Annotation type required");
+    final List<FieldMetadata> result = new ArrayList<FieldMetadata>();
+    for (final FieldMetadata field : getFields()) {
+      if (MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), annotationType) != null) {
+        result.add(field);
+      }
+    }
+    return result;
+  }
+
+  public List<FieldMetadata> getFieldsWithTag(final Object tagKey) {
+    Validate.notNull(tagKey, "Custom data key required");
+    final List<FieldMetadata> result = new ArrayList<FieldMetadata>();
+    for (final FieldMetadata field : getFields()) {
+      if (field.getCustomData().keySet().contains(tagKey)) {
+        result.add(field);
+      }
+    }
+    return result;
+  }
+
   public MethodMetadata getMethod(final JavaSymbolName methodName) {
     for (final MemberHoldingTypeDetails memberHoldingTypeDetails : details) {
       final MethodMetadata md =
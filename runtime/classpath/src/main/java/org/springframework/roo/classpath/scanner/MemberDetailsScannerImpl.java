@@ -1,8 +1,11 @@
 package org.springframework.roo.classpath.scanner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Logger;
@@ -16,6 +19,9 @@ import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.ItdDiscoveryService;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.customdata.taggers.CustomDataKeyDecorator;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.itd.ItdMetadataProvider;
@@ -24,6 +30,7 @@ import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -42,6 +49,17 @@ import org.springframework.roo.support.logging.HandlerUtils;
  * the metadata infrastructure does not require special type naming approaches
  * to be employed. The ordering behaviour exists solely to simplify debugging
  * for add-on developers and log comparison between invocations.
+ * <p>
+ * The decorated {@link MemberDetails} are cached per requesting class and
+ * governor until the {@link TypeLocationService} or the
+ * {@link ItdDiscoveryService} report a change to a type in the governor's
+ * hierarchy, or until a {@link CustomDataKeyDecorator} reports that its
+ * matchers have changed.
+ * <p>
+ * Metadata providers may ask for member details on several threads at once.
+ * The lock guarding the cache, the providers and the decorators is never
+ * held while calling other services, as they may need member details
+ * themselves on another thread.
  * 
  * @author Ben Alex
  * @since 1.1
@@ -55,7 +73,9 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
+  protected ItdDiscoveryService itdDiscoveryService;
   protected MetadataService metadataService;
+  protected TypeLocationService typeLocationService;
 
   protected void activate(final ComponentContext context) {
     this.context = context.getBundleContext();
@@ -68,9 +88,19 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         }
       });
 
+  // Incremented whenever cached member details are dropped, so that member
+  // details built from an older state aren't cached
+  private long cacheGeneration;
+
   // Mutex
   private final Object lock = new Object();
 
+  private final MemberDetailsCache memberDetailsCache = new MemberDetailsCache();
+
+  // The matchers version of the custom data key decorators the cached member
+  // details were tagged with
+  private long matchersVersion;
+
   private final SortedSet<MetadataProvider> providers = new TreeSet<MetadataProvider>(
       new Comparator<MetadataProvider>() {
         public int compare(final MetadataProvider o1, final MetadataProvider o2) {
@@ -88,6 +118,8 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
           MemberDetailsDecorator decorator = (MemberDetailsDecorator) this.context.getService(ref);
           decorators.add(decorator);
         }
+        memberDetailsCache.clear();
+        cacheGeneration++;
       } catch (InvalidSyntaxException e) {
         LOGGER.warning("Cannot load MemberDetailsDecorator on MemberDetailsScannerImpl.");
       }
@@ -110,6 +142,8 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
                   mid);
           providers.add(provider);
         }
+        memberDetailsCache.clear();
+        cacheGeneration++;
       } catch (InvalidSyntaxException e) {
         LOGGER.warning("Cannot load MetadataProvider on MemberDetailsScannerImpl.");
       }
@@ -127,95 +161,184 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       metadataService = getMetadataService();
     }
 
-    if (providers.isEmpty()) {
-      bindProviders();
+    if (typeLocationService == null) {
+      typeLocationService = getTypeLocationService();
     }
 
-    if (decorators.isEmpty()) {
-      bindDecorators();
+    if (itdDiscoveryService == null) {
+      itdDiscoveryService = getItdDiscoveryService();
+    }
+
+    synchronized (lock) {
+      if (providers.isEmpty()) {
+        bindProviders();
+      }
+
+      if (decorators.isEmpty()) {
+        bindDecorators();
+      }
     }
 
     if (cid == null) {
       return null;
     }
+
+    // Create a list of discovered members
+    final List<MemberHoldingTypeDetails> memberHoldingTypeDetails =
+        new ArrayList<MemberHoldingTypeDetails>();
+
+    // Build a List representing the class hierarchy, where the first
+    // element is the absolute superclass
+    final List<ClassOrInterfaceTypeDetails> cidHierarchy =
+        new ArrayList<ClassOrInterfaceTypeDetails>();
+    while (cid != null) {
+      cidHierarchy.add(0, cid); // Note to the top of the list
+      cid = cid.getSuperclass();
+    }
+
+    final boolean cacheable = typeLocationService != null && itdDiscoveryService != null;
+    final Set<JavaType> changedTypes =
+        cacheable ? getChangedTypes(cidHierarchy) : Collections.<JavaType>emptySet();
+    final List<MetadataProvider> currentProviders;
+    final List<MemberDetailsDecorator> currentDecorators;
+    final long generation;
     synchronized (lock) {
-      // Create a list of discovered members
-      final List<MemberHoldingTypeDetails> memberHoldingTypeDetails =
-          new ArrayList<MemberHoldingTypeDetails>();
-
-      // Build a List representing the class hierarchy, where the first
-      // element is the absolute superclass
-      final List<ClassOrInterfaceTypeDetails> cidHierarchy =
-          new ArrayList<ClassOrInterfaceTypeDetails>();
-      while (cid != null) {
-        cidHierarchy.add(0, cid); // Note to the top of the list
-        cid = cid.getSuperclass();
+      if (cacheable) {
+        invalidateChangedMatchers();
+        if (!changedTypes.isEmpty()) {
+          for (final JavaType changedType : changedTypes) {
+            memberDetailsCache.invalidate(changedType);
+          }
+          cacheGeneration++;
+        }
+        final MemberDetails cached = memberDetailsCache.get(requestingClass, cidHierarchy);
+        if (cached != null) {
+          return cached;
+        }
       }
+      currentProviders = new ArrayList<MetadataProvider>(providers);
+      currentDecorators = new ArrayList<MemberDetailsDecorator>(decorators);
+      generation = cacheGeneration;
+    }
 
-      // Now we add this governor, plus all of its superclasses
-      for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
-        memberHoldingTypeDetails.add(currentClass);
+    // Now we add this governor, plus all of its superclasses
+    for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
+      memberHoldingTypeDetails.add(currentClass);
 
-        // Locate all MetadataProvider instances that provide ITDs and
-        // thus MemberHoldingTypeDetails information
-        for (final MetadataProvider mp : providers) {
-          // Skip non-ITD providers
-          if (!(mp instanceof ItdMetadataProvider)) {
-            continue;
-          }
+      // Locate all MetadataProvider instances that provide ITDs and
+      // thus MemberHoldingTypeDetails information
+      for (final MetadataProvider mp : currentProviders) {
+        // Skip non-ITD providers
+        if (!(mp instanceof ItdMetadataProvider)) {
+          continue;
+        }
 
-          // Skip myself
-          if (mp.getClass().getName().equals(requestingClass)) {
-            continue;
-          }
+        // Skip myself
+        if (mp.getClass().getName().equals(requestingClass)) {
+          continue;
+        }
 
-          // Determine the key the ITD provider uses for this
-          // particular type
-          final String key =
-              ((ItdMetadataProvider) mp).getIdForPhysicalJavaType(currentClass
-                  .getDeclaredByMetadataId());
-          Validate.isTrue(MetadataIdentificationUtils.isIdentifyingInstance(key),
-              "ITD metadata provider '%s' returned an illegal key ('%s')", mp, key);
-
-          // Get the metadata and ensure we have ITD type details
-          // available
-          final MetadataItem metadataItem = metadataService.get(key);
-          if (metadataItem == null || !metadataItem.isValid()) {
-            continue;
-          }
-          Validate.isInstanceOf(ItdTypeDetailsProvidingMetadataItem.class, metadataItem,
-              "ITD metadata provider '%s' failed to return the correct metadata type", mp);
-          final ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd =
-              (ItdTypeDetailsProvidingMetadataItem) metadataItem;
-          if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
-            continue;
-          }
+        // Determine the key the ITD provider uses for this
+        // particular type
+        final String key =
+            ((ItdMetadataProvider) mp).getIdForPhysicalJavaType(currentClass
+                .getDeclaredByMetadataId());
+        Validate.isTrue(MetadataIdentificationUtils.isIdentifyingInstance(key),
+            "ITD metadata provider '%s' returned an illegal key ('%s')", mp, key);
+
+        // Get the metadata and ensure we have ITD type details
+        // available
+        final MetadataItem metadataItem = metadataService.get(key);
+        if (metadataItem == null || !metadataItem.isValid()) {
+          continue;
+        }
+        Validate.isInstanceOf(ItdTypeDetailsProvidingMetadataItem.class, metadataItem,
+            "ITD metadata provider '%s' failed to return the correct metadata type", mp);
+        final ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd =
+            (ItdTypeDetailsProvidingMetadataItem) metadataItem;
+        if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
+          continue;
+        }
+
+        // Capture the member details
+        memberHoldingTypeDetails.add(itdTypeDetailsMd.getMemberHoldingTypeDetails());
+      }
+    }
 
-          // Capture the member details
-          memberHoldingTypeDetails.add(itdTypeDetailsMd.getMemberHoldingTypeDetails());
+    // Turn out list of discovered members into a result
+    MemberDetails result = new MemberDetailsImpl(memberHoldingTypeDetails);
+
+    // Loop until such time as we complete a full loop where no changes
+    // are made to the result
+    boolean additionalLoopRequired = true;
+    while (additionalLoopRequired) {
+      additionalLoopRequired = false;
+      for (final MemberDetailsDecorator decorator : currentDecorators) {
+        final MemberDetails newResult = decorator.decorate(requestingClass, result);
+        Validate.isTrue(newResult != null, "Decorator '%s' returned an illegal result", decorator
+            .getClass().getName());
+        if (newResult != null && !newResult.equals(result)) {
+          additionalLoopRequired = true;
         }
+        result = newResult;
       }
+    }
 
-      // Turn out list of discovered members into a result
-      MemberDetails result = new MemberDetailsImpl(memberHoldingTypeDetails);
-
-      // Loop until such time as we complete a full loop where no changes
-      // are made to the result
-      boolean additionalLoopRequired = true;
-      while (additionalLoopRequired) {
-        additionalLoopRequired = false;
-        for (final MemberDetailsDecorator decorator : decorators) {
-          final MemberDetails newResult = decorator.decorate(requestingClass, result);
-          Validate.isTrue(newResult != null, "Decorator '%s' returned an illegal result", decorator
-              .getClass().getName());
-          if (newResult != null && !newResult.equals(result)) {
-            additionalLoopRequired = true;
-          }
-          result = newResult;
+    // Index the final result, as callers look up its members repeatedly
+    if (result.getClass() == MemberDetailsImpl.class) {
+      result = new IndexedMemberDetails(result.getDetails());
+    }
+
+    if (cacheable) {
+      synchronized (lock) {
+        // Unless something changed while these were being built
+        if (generation == cacheGeneration) {
+          memberDetailsCache.put(requestingClass, cidHierarchy, result);
         }
       }
+    }
+    return result;
+  }
 
-      return result;
+  /**
+   * Returns the types in the given hierarchy that have changed, or whose
+   * ITDs have changed, since they were last checked.
+   * 
+   * @param cidHierarchy the class hierarchy about to be scanned (required)
+   * @return a non-<code>null</code> set
+   */
+  private Set<JavaType> getChangedTypes(final List<ClassOrInterfaceTypeDetails> cidHierarchy) {
+    final String changeTracker = MemberDetailsScannerImpl.class.getName();
+    final Set<JavaType> changedTypes = new LinkedHashSet<JavaType>();
+    for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
+      final JavaType type = currentClass.getName();
+      // Ask both services, so that each forgets the change it reported
+      final boolean typeChanged = typeLocationService.hasTypeChanged(changeTracker, type);
+      final boolean itdsChanged = itdDiscoveryService.haveItdsChanged(changeTracker, type);
+      if (typeChanged || itdsChanged) {
+        changedTypes.add(type);
+      }
+    }
+    return changedTypes;
+  }
+
+  /**
+   * Drops every cached member details if a matcher has been registered or
+   * unregistered with any {@link CustomDataKeyDecorator} since they were
+   * cached, as they would be tagged differently now. Must be called while
+   * holding the {@link #lock}.
+   */
+  private void invalidateChangedMatchers() {
+    long currentMatchersVersion = 0;
+    for (final MemberDetailsDecorator decorator : decorators) {
+      if (decorator instanceof CustomDataKeyDecorator) {
+        currentMatchersVersion += ((CustomDataKeyDecorator) decorator).getMatchersVersion();
+      }
+    }
+    if (currentMatchersVersion != matchersVersion) {
+      memberDetailsCache.clear();
+      matchersVersion = currentMatchersVersion;
+      cacheGeneration++;
     }
   }
 
@@ -236,4 +359,47 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       return null;
     }
   }
+
+  public TypeLocationService getTypeLocationService() {
+    // Get all Services implement TypeLocationService interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(TypeLocationService.class.getName(), null);
+
+      for (ServiceReference<?> ref : references) {
+        return (TypeLocationService) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load TypeLocationService on MemberDetailsScannerImpl.");
+      return null;
+    }
+  }
+
+  public ItdDiscoveryService getItdDiscoveryService() {
+    // Get all Services implement ItdDiscoveryService interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(ItdDiscoveryService.class.getName(), null);
+
+      for (ServiceReference<?> ref : references) {
+        return (ItdDiscoveryService) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load ItdDiscoveryService on MemberDetailsScannerImpl.");
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return memberDetailsCache.toString();
+    }
+  }
 }
@@ -0,0 +1,96 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ItdTypeDetails;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Unit test of {@link ItdDiscoveryServiceImpl}
+ *
+ * @since 2.0
+ */
+public class ItdDiscoveryServiceImplTest {
+
+  private static final int ITDS_PER_THREAD = 500;
+  private static final String REQUESTING_CLASS = "com.example.Requester";
+  private static final int THREADS = 8;
+
+  private ItdDiscoveryServiceImpl itdDiscoveryService;
+
+  private ItdTypeDetails getItd(final String governorTypeName, final String itdId) {
+    final JavaType governorType = new JavaType(governorTypeName);
+    final ClassOrInterfaceTypeDetails governor =
+        (ClassOrInterfaceTypeDetails) Proxy.newProxyInstance(
+            ClassOrInterfaceTypeDetails.class.getClassLoader(),
+            new Class<?>[] {ClassOrInterfaceTypeDetails.class}, new InvocationHandler() {
+              public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                return "getName".equals(method.getName()) ? governorType : null;
+              }
+            });
+    return (ItdTypeDetails) Proxy.newProxyInstance(ItdTypeDetails.class.getClassLoader(),
+        new Class<?>[] {ItdTypeDetails.class}, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            if ("getGovernor".equals(method.getName())) {
+              return governor;
+            }
+            return "getDeclaredByMetadataId".equals(method.getName()) ? itdId : null;
+          }
+        });
+  }
+
+  @Before
+  public void setUp() {
+    itdDiscoveryService = new ItdDiscoveryServiceImpl();
+  }
+
+  @Test
+  public void testConcurrentAddingAndAsking() throws Exception {
+    // Set up
+    itdDiscoveryService.haveItdsChanged(REQUESTING_CLASS, new JavaType("com.example.Unknown"));
+    final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < THREADS; i++) {
+      final String packageName = "com.example.p" + i;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          for (int j = 0; j < ITDS_PER_THREAD; j++) {
+            final String typeName = packageName + ".Type" + j;
+            itdDiscoveryService.addItdTypeDetails(getItd(typeName, "MID:" + typeName));
+            itdDiscoveryService.haveItdsChanged(REQUESTING_CLASS, new JavaType(packageName
+                + ".Type" + (ITDS_PER_THREAD - j)));
+          }
+          return null;
+        }
+      });
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    // Invoke
+    try {
+      for (final Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Check
+    final JavaType lastType = new JavaType("com.example.p0.Type" + (ITDS_PER_THREAD - 1));
+    assertTrue(itdDiscoveryService.haveItdsChanged(REQUESTING_CLASS, lastType));
+    assertFalse(itdDiscoveryService.haveItdsChanged(REQUESTING_CLASS, lastType));
+  }
+}
@@ -0,0 +1,85 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link TypeCacheImpl}
+ *
+ * @since 2.0
+ */
+public class TypeCacheImplTest {
+
+  private static final int THREADS = 8;
+  private static final int TYPES_PER_THREAD = 500;
+
+  private TypeCacheImpl typeCache;
+
+  private ClassOrInterfaceTypeDetails getType(final String typeName) {
+    final JavaType type = new JavaType(typeName);
+    final String mid =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    return new ClassOrInterfaceTypeDetailsBuilder(mid, Modifier.PUBLIC, type,
+        PhysicalTypeCategory.CLASS).build();
+  }
+
+  @Before
+  public void setUp() {
+    typeCache = new TypeCacheImpl();
+  }
+
+  @Test
+  public void testConcurrentCachingAndReading() throws Exception {
+    // Set up
+    final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < THREADS; i++) {
+      final String packageName = "com.example.p" + i;
+      tasks.add(new Callable<Integer>() {
+        public Integer call() {
+          int seen = 0;
+          for (int j = 0; j < TYPES_PER_THREAD; j++) {
+            typeCache.cacheType("/src/" + packageName + "/Type" + j + ".java",
+                getType(packageName + ".Type" + j));
+            // Iterating what's returned must not trip over other threads' caching
+            for (final String typeName : typeCache.getTypesForSimpleTypeName("Type" + j)) {
+              seen += typeName.length() > 0 ? 1 : 0;
+            }
+            seen += typeCache.getAllTypes().isEmpty() ? 0 : 1;
+          }
+          return seen;
+        }
+      });
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    // Invoke
+    try {
+      for (final Future<Integer> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Check
+    assertEquals(THREADS * TYPES_PER_THREAD, typeCache.getAllTypes().size());
+    assertEquals(THREADS * TYPES_PER_THREAD, typeCache.getAllTypeIdentifiers().size());
+    assertEquals(THREADS, typeCache.getTypesForSimpleTypeName("Type0").size());
+  }
+}
@@ -0,0 +1,129 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link TypeIndex}
+ *
+ * @since 2.0
+ */
+public class TypeIndexTest {
+
+  private static final JavaType ENTITY = new JavaType("com.example.Entity");
+  private static final JavaType SERVICE = new JavaType("com.example.Service");
+  private static final String SOURCE_DIRECTORY = File.separator + "project" + File.separator
+      + "src" + File.separator + "main" + File.separator + "java" + File.separator;
+  private static final Object TAG = "tag";
+
+  private TypeIndex typeIndex;
+
+  private ClassOrInterfaceTypeDetails getType(final String typeName, final Object tag,
+      final JavaType... annotationTypes) {
+    final JavaType type = new JavaType(typeName);
+    final String mid =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    final ClassOrInterfaceTypeDetailsBuilder builder =
+        new ClassOrInterfaceTypeDetailsBuilder(mid, Modifier.PUBLIC, type,
+            PhysicalTypeCategory.CLASS);
+    for (final JavaType annotationType : annotationTypes) {
+      builder.addAnnotation(new AnnotationMetadataBuilder(annotationType));
+    }
+    if (tag != null) {
+      builder.putCustomData(tag, null);
+    }
+    return builder.build();
+  }
+
+  @Before
+  public void setUp() {
+    typeIndex = new TypeIndex();
+  }
+
+  @Test
+  public void testGetParentPath() {
+    // Set up
+    final JavaType type = new JavaType("com.example.Foo");
+    typeIndex.addPath(SOURCE_DIRECTORY + "com" + File.separator + "other" + File.separator
+        + "Foo.java");
+    typeIndex.addPath(SOURCE_DIRECTORY + type.getRelativeFileName());
+
+    // Invoke and check
+    assertEquals(SOURCE_DIRECTORY, typeIndex.getParentPath(type.getRelativeFileName()));
+    assertNull(typeIndex.getParentPath(new JavaType("com.example.Bar").getRelativeFileName()));
+  }
+
+  @Test
+  public void testGetParentPathOfRemovedFile() {
+    // Set up
+    final JavaType type = new JavaType("com.example.Foo");
+    typeIndex.addPath(SOURCE_DIRECTORY + type.getRelativeFileName());
+
+    // Invoke
+    typeIndex.removePath(SOURCE_DIRECTORY + type.getRelativeFileName());
+
+    // Check
+    assertNull(typeIndex.getParentPath(type.getRelativeFileName()));
+  }
+
+  @Test
+  public void testGetTypesWithAnnotationAndTag() {
+    // Set up
+    final ClassOrInterfaceTypeDetails foo = getType("com.example.Foo", TAG, ENTITY);
+    final ClassOrInterfaceTypeDetails bar = getType("com.example.Bar", null, ENTITY, SERVICE);
+
+    // Invoke
+    typeIndex.put(foo);
+    typeIndex.put(bar);
+
+    // Check
+    assertEquals(Arrays.asList(foo, bar), typeIndex.getTypesWithAnnotation(ENTITY));
+    assertEquals(Arrays.asList(bar), typeIndex.getTypesWithAnnotation(SERVICE));
+    assertEquals(Arrays.asList(foo), typeIndex.getTypesWithTag(TAG));
+    assertTrue(typeIndex.getTypesWithTag("other").isEmpty());
+  }
+
+  @Test
+  public void testPutReplacesPreviousVersion() {
+    // Set up
+    typeIndex.put(getType("com.example.Foo", TAG, ENTITY));
+    final ClassOrInterfaceTypeDetails updated = getType("com.example.Foo", null, SERVICE);
+
+    // Invoke
+    typeIndex.put(updated);
+
+    // Check
+    assertTrue(typeIndex.getTypesWithAnnotation(ENTITY).isEmpty());
+    assertTrue(typeIndex.getTypesWithTag(TAG).isEmpty());
+    assertEquals(Arrays.asList(updated), typeIndex.getTypesWithAnnotation(SERVICE));
+  }
+
+  @Test
+  public void testRemove() {
+    // Set up
+    final ClassOrInterfaceTypeDetails foo = getType("com.example.Foo", TAG, ENTITY);
+    typeIndex.put(foo);
+
+    // Invoke
+    typeIndex.remove(foo.getDeclaredByMetadataId());
+
+    // Check
+    assertTrue(typeIndex.getTypesWithAnnotation(ENTITY).isEmpty());
+    assertTrue(typeIndex.getTypesWithTag(TAG).isEmpty());
+  }
+}
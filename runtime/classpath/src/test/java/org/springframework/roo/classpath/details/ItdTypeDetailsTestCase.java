@@ -27,5 +27,6 @@ public abstract class ItdTypeDetailsTestCase {
 
     // Check
     assertEquals(expectedOutput, actualOutput);
+    assertEquals(composer.isContent(), ItdSourceFileComposer.isContent(itd));
   }
 }
@@ -0,0 +1,129 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.MethodMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link IndexedMemberDetails}, checking that it answers as
+ * {@link MemberDetailsImpl} does.
+ *
+ * @since 2.0
+ */
+public class IndexedMemberDetailsTest {
+
+  private static final JavaType ANNOTATION = new JavaType("com.example.Annotation");
+  private static final JavaSymbolName FIELD = new JavaSymbolName("field");
+  private static final JavaSymbolName METHOD = new JavaSymbolName("method");
+  private static final Object TAG = "tag";
+
+  private MemberDetails expected;
+  private IndexedMemberDetails indexed;
+
+  private ClassOrInterfaceTypeDetails getType(final String typeName, final JavaType parameterType) {
+    final JavaType type = new JavaType(typeName);
+    final String mid =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    final ClassOrInterfaceTypeDetailsBuilder builder =
+        new ClassOrInterfaceTypeDetailsBuilder(mid, Modifier.PUBLIC, type,
+            PhysicalTypeCategory.CLASS);
+
+    final FieldMetadataBuilder field =
+        new FieldMetadataBuilder(mid, Modifier.PRIVATE, FIELD, JavaType.STRING, null);
+    field.addAnnotation(new AnnotationMetadataBuilder(ANNOTATION));
+    field.putCustomData(TAG, null);
+    builder.addField(field);
+
+    final MethodMetadataBuilder method =
+        new MethodMetadataBuilder(mid, Modifier.PUBLIC, METHOD, JavaType.VOID_PRIMITIVE,
+            AnnotatedJavaType.convertFromJavaTypes(parameterType),
+            Arrays.asList(new JavaSymbolName("value")), null);
+    method.putCustomData(TAG, null);
+    builder.addMethod(method);
+
+    builder.addAnnotation(new AnnotationMetadataBuilder(ANNOTATION));
+    return builder.build();
+  }
+
+  @Before
+  public void setUp() {
+    final List<ClassOrInterfaceTypeDetails> details =
+        Arrays.asList(getType("com.example.Parent", JavaType.STRING),
+            getType("com.example.Child", JavaType.LONG_OBJECT));
+    expected = new MemberDetailsImpl(details);
+    indexed = new IndexedMemberDetails(details);
+  }
+
+  @Test
+  public void testBulkAccessors() {
+    assertEquals(expected.getConstructors(), indexed.getConstructors());
+    assertEquals(expected.getFields(), indexed.getFields());
+    assertEquals(expected.getMethods(), indexed.getMethods());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testFieldsAreUnmodifiable() {
+    indexed.getFields().clear();
+  }
+
+  @Test
+  public void testGetAnnotation() {
+    assertSame(expected.getAnnotation(ANNOTATION), indexed.getAnnotation(ANNOTATION));
+    assertNull(indexed.getAnnotation(JavaType.STRING));
+  }
+
+  @Test
+  public void testGetField() {
+    assertSame(expected.getField(FIELD), indexed.getField(FIELD));
+    assertNull(indexed.getField(new JavaSymbolName("missing")));
+  }
+
+  @Test
+  public void testGetFieldsWithAnnotationAndTag() {
+    assertEquals(expected.getFieldsWithAnnotation(ANNOTATION),
+        indexed.getFieldsWithAnnotation(ANNOTATION));
+    assertEquals(expected.getFieldsWithTag(TAG), indexed.getFieldsWithTag(TAG));
+    assertEquals(2, indexed.getFieldsWithTag(TAG).size());
+  }
+
+  @Test
+  public void testGetMethod() {
+    final List<JavaType> longParameter = Arrays.asList(JavaType.LONG_OBJECT);
+    final String parentMid = indexed.getDetails().get(0).getDeclaredByMetadataId();
+
+    assertSame(expected.getMethod(METHOD), indexed.getMethod(METHOD));
+    assertSame(expected.getMethod(METHOD, longParameter), indexed.getMethod(METHOD, longParameter));
+    assertNull(indexed.getMethod(METHOD, Collections.<JavaType>emptyList()));
+    assertNull(indexed.getMethod(METHOD, null));
+    assertSame(expected.getMethod(METHOD, Arrays.asList(JavaType.STRING), parentMid),
+        indexed.getMethod(METHOD, Arrays.asList(JavaType.STRING), parentMid));
+  }
+
+  @Test
+  public void testGetMethodsWithTag() {
+    assertEquals(expected.getMethodsWithTag(TAG), indexed.getMethodsWithTag(TAG));
+    assertSame(expected.getMostConcreteMethodWithTag(TAG),
+        indexed.getMostConcreteMethodWithTag(TAG));
+  }
+}
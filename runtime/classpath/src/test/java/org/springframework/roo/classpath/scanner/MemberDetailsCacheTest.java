@@ -0,0 +1,76 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link MemberDetailsCache}
+ *
+ * @since 2.0
+ */
+public class MemberDetailsCacheTest {
+
+  private static final String REQUESTING_CLASS = "com.example.Provider";
+
+  private MemberDetailsCache cache;
+  private List<ClassOrInterfaceTypeDetails> hierarchy;
+  private MemberDetails memberDetails;
+  private ClassOrInterfaceTypeDetails parent;
+
+  private ClassOrInterfaceTypeDetails getType(final JavaType type) {
+    final String mid =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    return new ClassOrInterfaceTypeDetailsBuilder(mid, Modifier.PUBLIC, type,
+        PhysicalTypeCategory.CLASS).build();
+  }
+
+  @Before
+  public void setUp() {
+    cache = new MemberDetailsCache();
+    parent = getType(new JavaType("com.example.Parent"));
+    hierarchy = Arrays.asList(parent, getType(new JavaType("com.example.Child")));
+    memberDetails = new MemberDetailsImpl(hierarchy);
+    cache.put(REQUESTING_CLASS, hierarchy, memberDetails);
+  }
+
+  @Test
+  public void testGetForSameHierarchy() {
+    assertSame(memberDetails, cache.get(REQUESTING_CLASS, hierarchy));
+  }
+
+  @Test
+  public void testGetForOtherRequestingClass() {
+    assertNull(cache.get("com.example.OtherProvider", hierarchy));
+  }
+
+  @Test
+  public void testGetForReparsedSuperclass() {
+    final List<ClassOrInterfaceTypeDetails> reparsed =
+        Arrays.asList(getType(parent.getName()), hierarchy.get(1));
+    assertNull(cache.get(REQUESTING_CLASS, reparsed));
+  }
+
+  @Test
+  public void testInvalidateSuperclass() {
+    // Invoke
+    cache.invalidate(parent.getName());
+
+    // Check
+    assertNull(cache.get(REQUESTING_CLASS, hierarchy));
+  }
+}
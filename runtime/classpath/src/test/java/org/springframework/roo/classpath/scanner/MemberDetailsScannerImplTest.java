@@ -0,0 +1,193 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.ItdDiscoveryService;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.customdata.CustomDataKeys;
+import org.springframework.roo.classpath.customdata.taggers.CustomDataKeyDecoratorImpl;
+import org.springframework.roo.classpath.customdata.taggers.MidTypeMatcher;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link MemberDetailsScannerImpl}
+ *
+ * @since 2.0
+ */
+public class MemberDetailsScannerImplTest {
+
+  private static final String REQUESTING_CLASS = "com.example.Provider";
+
+  /**
+   * Returns an implementation of the given interface whose methods return
+   * the given value if it's of their return type, otherwise the default one
+   */
+  private static <T> T stub(final Class<T> type, final Object returnValue) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final Class<?> returnType = method.getReturnType();
+            if (returnValue != null && returnType.isInstance(returnValue)) {
+              return returnValue;
+            }
+            if (returnType == boolean.class) {
+              return false;
+            }
+            return returnType.isArray() ? Array.newInstance(returnType.getComponentType(), 0) : null;
+          }
+        }));
+  }
+
+  private ClassOrInterfaceTypeDetails cid;
+  private CustomDataKeyDecoratorImpl decorator;
+  private MemberDetailsScannerImpl scanner;
+
+  @Before
+  public void setUp() {
+    decorator = new CustomDataKeyDecoratorImpl();
+    final ServiceReference<?> decoratorReference = stub(ServiceReference.class, null);
+    final ServiceReference<?> providerReference = stub(ServiceReference.class, null);
+    final MetadataProvider provider =
+        stub(MetadataProvider.class, MetadataIdentificationUtils.create("com.example.Other"));
+    final BundleContext bundleContext =
+        (BundleContext) Proxy.newProxyInstance(BundleContext.class.getClassLoader(),
+            new Class<?>[] {BundleContext.class}, new InvocationHandler() {
+              public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ("getAllServiceReferences".equals(method.getName())) {
+                  if (MemberDetailsDecorator.class.getName().equals(args[0])) {
+                    return new ServiceReference<?>[] {decoratorReference};
+                  }
+                  return new ServiceReference<?>[] {providerReference};
+                }
+                if ("getService".equals(method.getName())) {
+                  return args[0] == decoratorReference ? decorator : provider;
+                }
+                return null;
+              }
+            });
+
+    scanner = new MemberDetailsScannerImpl();
+    scanner.activate(stub(ComponentContext.class, bundleContext));
+    scanner.itdDiscoveryService = stub(ItdDiscoveryService.class, null);
+    scanner.metadataService = stub(MetadataService.class, null);
+    scanner.typeLocationService = stub(TypeLocationService.class, null);
+
+    final JavaType type = new JavaType("com.example.Child");
+    final String mid =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    cid =
+        new ClassOrInterfaceTypeDetailsBuilder(mid, Modifier.PUBLIC, type,
+            PhysicalTypeCategory.CLASS).build();
+  }
+
+  @Test
+  public void testGetMemberDetailsIsCached() {
+    final MemberDetails memberDetails = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+
+    assertSame(memberDetails, scanner.getMemberDetails(REQUESTING_CLASS, cid));
+  }
+
+  @Test
+  public void testOtherThreadsGetMemberDetailsWhileServicesAreAsked() throws Exception {
+    final AtomicBoolean asked = new AtomicBoolean();
+    final AtomicReference<MemberDetails> otherMemberDetails =
+        new AtomicReference<MemberDetails>();
+    scanner.typeLocationService =
+        (TypeLocationService) Proxy.newProxyInstance(TypeLocationService.class.getClassLoader(),
+            new Class<?>[] {TypeLocationService.class}, new InvocationHandler() {
+              public Object invoke(final Object proxy, final Method method, final Object[] args)
+                  throws InterruptedException {
+                if (asked.compareAndSet(false, true)) {
+                  // As if answering needed member details built on another
+                  // thread, e.g. by a provider running on a fork-join pool
+                  final Thread other = new Thread() {
+                    @Override
+                    public void run() {
+                      otherMemberDetails.set(scanner.getMemberDetails("com.example.Other", cid));
+                    }
+                  };
+                  other.setDaemon(true);
+                  other.start();
+                  other.join(10000);
+                }
+                return method.getReturnType() == boolean.class ? false : null;
+              }
+            });
+
+    // Invoke
+    scanner.getMemberDetails(REQUESTING_CLASS, cid);
+
+    // Check
+    assertTrue(asked.get());
+    assertNotNull(otherMemberDetails.get());
+  }
+
+  @Test
+  public void testRegisteringMatcherInvalidatesCache() {
+    final MemberDetails untagged = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+
+    // Invoke
+    decorator.registerMatchers(getClass(), new MidTypeMatcher(CustomDataKeys.LAYER_TYPE,
+        PhysicalTypeIdentifier.class));
+
+    // Check
+    final MemberDetails tagged = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+    assertNotSame(untagged, tagged);
+    assertTrue(tagged.getDetails().get(0).getCustomData().keySet()
+        .contains(CustomDataKeys.LAYER_TYPE));
+  }
+
+  @Test
+  public void testUnregisteringMatcherInvalidatesCache() {
+    decorator.registerMatchers(getClass(), new MidTypeMatcher(CustomDataKeys.LAYER_TYPE,
+        PhysicalTypeIdentifier.class));
+    final MemberDetails tagged = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+
+    // Invoke
+    decorator.unregisterMatchers(getClass());
+
+    // Check
+    final MemberDetails untagged = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+    assertNotSame(tagged, untagged);
+    assertFalse(untagged.getDetails().get(0).getCustomData().keySet()
+        .contains(CustomDataKeys.LAYER_TYPE));
+  }
+
+  @Test
+  public void testUnregisteringUnknownMatchersKeepsCache() {
+    final MemberDetails memberDetails = scanner.getMemberDetails(REQUESTING_CLASS, cid);
+
+    // Invoke
+    decorator.unregisterMatchers(MetadataProvider.class);
+
+    // Check
+    assertSame(memberDetails, scanner.getMemberDetails(REQUESTING_CLASS, cid));
+  }
+}
@@ -0,0 +1,139 @@
+package org.springframework.roo.file.monitor.polling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The monitorable entries of a directory, listed in parallel with those of its
+ * sub-directories by a {@link ForkJoinPool}.
+ * <p>
+ * Each entry's type and last modified time come from a single read of its
+ * {@link BasicFileAttributes}, and its canonical path is resolved by the
+ * listing thread, as these dominate the time taken to walk a project.
+ *
+ * @since 2.0
+ */
+class DirectoryListing extends RecursiveAction {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool();
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Lists the given directory, and its sub-directories if requested.
+   *
+   * @param directory the directory to list (required)
+   * @param includeSubtree whether to list sub-directories too
+   * @return the completed listing
+   */
+  static DirectoryListing list(final File directory, final boolean includeSubtree) {
+    final DirectoryListing listing = new DirectoryListing(directory, includeSubtree);
+    POOL.invoke(listing);
+    return listing;
+  }
+
+  /**
+   * Returns the last modified time of the given file, as recorded by the
+   * listings.
+   *
+   * @param file the file (required)
+   * @return the time, or 0 if the file doesn't exist
+   */
+  static long lastModified(final File file) {
+    try {
+      return Files.getLastModifiedTime(file.toPath()).toMillis();
+    } catch (final IOException e) {
+      return 0;
+    }
+  }
+
+  private final File directory;
+  private final List<Entry> entries = new ArrayList<Entry>();
+  private final boolean includeSubtree;
+
+  private DirectoryListing(final File directory, final boolean includeSubtree) {
+    this.directory = directory;
+    this.includeSubtree = includeSubtree;
+  }
+
+  @Override
+  protected void compute() {
+    final List<DirectoryListing> subdirectories = new ArrayList<DirectoryListing>();
+    try {
+      final DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath());
+      try {
+        for (final Path path : stream) {
+          final Entry entry = list(path);
+          if (entry != null) {
+            entries.add(entry);
+            if (entry.listing != null) {
+              subdirectories.add(entry.listing);
+            }
+          }
+        }
+      } finally {
+        stream.close();
+      }
+    } catch (final IOException ignored) {
+      // The directory has gone, or can't be read
+    }
+    invokeAll(subdirectories);
+  }
+
+  File getDirectory() {
+    return directory;
+  }
+
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  private Entry list(final Path path) {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (final IOException e) {
+      return null;
+    }
+    final String name = path.getFileName().toString();
+    final File file = new File(directory, name);
+    if (!(attributes.isRegularFile() || includeSubtree)
+        || !PollingFileMonitorService.isMonitorable(file, attributes.isDirectory())) {
+      return null;
+    }
+    String canonicalPath = null;
+    try {
+      canonicalPath = file.getCanonicalPath();
+    } catch (final IOException ignored) {
+    }
+    final DirectoryListing listing =
+        attributes.isDirectory() ? new DirectoryListing(file, includeSubtree) : null;
+    return new Entry(name, attributes.lastModifiedTime().toMillis(), canonicalPath, listing);
+  }
+
+  /**
+   * An entry of a directory
+   */
+  static class Entry {
+
+    final String canonicalPath;
+    final long lastModified;
+    final DirectoryListing listing;
+    final String name;
+
+    Entry(final String name, final long lastModified, final String canonicalPath,
+        final DirectoryListing listing) {
+      this.name = name;
+      this.lastModified = lastModified;
+      this.canonicalPath = canonicalPath;
+      this.listing = listing;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.springframework.roo.file.monitor.polling;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches individually registered directories through a {@link WatchService},
+ * reporting the files whose directory entries changed since the last
+ * {@link #poll()}.
+ * <p>
+ * Directories are not registered recursively by this class, as the caller
+ * decides which sub-directories are worth watching. Each reported file is
+ * built from its watched directory, so it has the same path form as the
+ * {@link File}s the caller registered.
+ *
+ * @since 2.0
+ */
+class DirectoryWatcher {
+
+  private final Map<File, WatchKey> keys = new HashMap<File, WatchKey>();
+  private final Map<WatchKey, File> directories = new HashMap<WatchKey, File>();
+  private final WatchService watchService;
+
+  DirectoryWatcher() throws IOException {
+    watchService = FileSystems.getDefault().newWatchService();
+  }
+
+  void close() {
+    try {
+      watchService.close();
+    } catch (final IOException ignored) {
+    }
+    keys.clear();
+    directories.clear();
+  }
+
+  /**
+   * Indicates whether the given directory is currently being watched.
+   *
+   * @param directory the directory to check (can be null)
+   * @return false if the directory was never registered, or its watch was
+   *         cancelled because it was deleted
+   */
+  boolean isWatching(final File directory) {
+    final WatchKey key = keys.get(directory);
+    return key != null && key.isValid();
+  }
+
+  /**
+   * Returns the files created, updated or deleted within the watched
+   * directories since the last invocation. The watched directories holding
+   * them are included too, as their own timestamps will have changed.
+   *
+   * @return the changed files (may be empty), or null if events were lost and
+   *         the caller must rescan the disk to find out what changed
+   */
+  Set<File> poll() {
+    final Set<File> changed = new LinkedHashSet<File>();
+    boolean overflow = false;
+    WatchKey key;
+    while ((key = watchService.poll()) != null) {
+      final File directory = directories.get(key);
+      if (directory == null) {
+        key.cancel();
+        continue;
+      }
+      for (final WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          overflow = true;
+        } else {
+          changed.add(new File(directory, ((Path) event.context()).toString()));
+        }
+      }
+      changed.add(directory);
+      if (!key.reset()) {
+        // The directory is gone (or no longer accessible)
+        directories.remove(key);
+        if (keys.get(directory) == key) {
+          keys.remove(directory);
+        }
+      }
+    }
+    return overflow ? null : changed;
+  }
+
+  /**
+   * Starts watching the given directory for entries being created, modified
+   * or deleted. Registering a directory again has no effect, unless its
+   * previous watch was cancelled.
+   *
+   * @param directory the directory to watch (required)
+   */
+  void register(final File directory) {
+    if (isWatching(directory)) {
+      return;
+    }
+    try {
+      final WatchKey key =
+          directory.toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      keys.put(directory, key);
+      directories.put(key, directory);
+    } catch (final IOException ignored) {
+      // The directory will still be picked up by the next full scan
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package org.springframework.roo.file.monitor.polling;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The last modified times of the files and directories within a monitored
+ * location, held as a tree of path segments rather than as {@link File}s.
+ * <p>
+ * Each node stores its parent, its first child, its next sibling, its name and
+ * its last modified time in parallel arrays, and names are shared through a
+ * pool of segments, so that the many "src", "main" or "java" directories of a
+ * project cost one {@link String} between them. Nodes are looked up by parent
+ * and name through an open addressing hash table. Two indexes of the same
+ * location can therefore be compared one directory at a time, without building
+ * a {@link File} for every entry.
+ * <p>
+ * Nodes are never unlinked; an entry that is removed keeps its node with a
+ * last modified time of {@link #ABSENT}, ready to be reused if it reappears.
+ * Node 0 is the monitored location itself. This class is not thread safe.
+ *
+ * @since 2.0
+ */
+class PathIndex {
+
+  /**
+   * The last modified time of a node that isn't an entry of the index
+   */
+  static final long ABSENT = Long.MIN_VALUE;
+
+  /**
+   * The index of a node that doesn't exist
+   */
+  static final int NONE = -1;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private int[] firstChildren;
+  private long[] modified;
+  private String[] names;
+  private int[] nextSiblings;
+  private int nodes;
+  private int[] parents;
+  private final String rootPath;
+  private final ConcurrentMap<String, String> segments;
+  private int size;
+  private int[] table;
+
+  /**
+   * Constructor
+   *
+   * @param root the monitored location (required)
+   * @param segments the pool of path segments to share names through
+   *            (required, and can be shared by other indexes and threads)
+   */
+  PathIndex(final File root, final ConcurrentMap<String, String> segments) {
+    Validate.notNull(root, "Root required");
+    Validate.notNull(segments, "Segments required");
+    rootPath = root.getPath();
+    this.segments = segments;
+    firstChildren = new int[INITIAL_CAPACITY];
+    modified = new long[INITIAL_CAPACITY];
+    names = new String[INITIAL_CAPACITY];
+    nextSiblings = new int[INITIAL_CAPACITY];
+    parents = new int[INITIAL_CAPACITY];
+    table = new int[INITIAL_CAPACITY * 2];
+    Arrays.fill(table, NONE);
+    newNode(NONE, rootPath);
+  }
+
+  /**
+   * Returns the child of the given node with the given name, creating it (as
+   * an {@link #ABSENT} node) if necessary.
+   *
+   * @param parent the parent node
+   * @param name the child's name (required)
+   * @return the child node
+   */
+  int addChild(final int parent, final String name) {
+    final int child = getChild(parent, name);
+    if (child != NONE) {
+      return child;
+    }
+    final int node = newNode(parent, name);
+    nextSiblings[node] = firstChildren[parent];
+    firstChildren[parent] = node;
+    return node;
+  }
+
+  /**
+   * Returns the node for the given file, creating it and any missing
+   * ancestors (as {@link #ABSENT} nodes) if necessary.
+   *
+   * @param file the file to add (required)
+   * @return the node, or {@link #NONE} if the file isn't within the root
+   */
+  int addNode(final File file) {
+    return locate(file, true);
+  }
+
+  /**
+   * Returns the node for the given file.
+   *
+   * @param file the file to look for (required)
+   * @return the node, or {@link #NONE} if the index has never held the file
+   */
+  int find(final File file) {
+    return locate(file, false);
+  }
+
+  /**
+   * Returns the child of the given node with the given name.
+   *
+   * @param parent the parent node, or {@link #NONE}
+   * @param name the child's name (required)
+   * @return the child node, or {@link #NONE} if there is none
+   */
+  int getChild(final int parent, final String name) {
+    if (parent == NONE) {
+      return NONE;
+    }
+    final int mask = table.length - 1;
+    for (int slot = hash(parent, name) & mask;; slot = slot + 1 & mask) {
+      final int node = table[slot];
+      if (node == NONE) {
+        return NONE;
+      }
+      if (parents[node] == parent && names[node].equals(name)) {
+        return node;
+      }
+    }
+  }
+
+  /**
+   * Builds the {@link File} a node represents, in the same form as the root
+   * and the files a directory lists.
+   *
+   * @param node the node
+   * @return a new {@link File}
+   */
+  File getFile(final int node) {
+    if (node == 0) {
+      return new File(rootPath);
+    }
+    final StringBuilder path = new StringBuilder();
+    for (int current = node; current != 0; current = parents[current]) {
+      path.insert(0, names[current]).insert(0, File.separatorChar);
+    }
+    if (rootPath.endsWith(File.separator)) {
+      path.deleteCharAt(0);
+    }
+    return new File(path.insert(0, rootPath).toString());
+  }
+
+  int getFirstChild(final int node) {
+    return node == NONE ? NONE : firstChildren[node];
+  }
+
+  /**
+   * @param node the node, or {@link #NONE}
+   * @return the node's last modified time, or {@link #ABSENT} if it isn't an
+   *         entry of the index
+   */
+  long getModified(final int node) {
+    return node == NONE ? ABSENT : modified[node];
+  }
+
+  String getName(final int node) {
+    return names[node];
+  }
+
+  int getNextSibling(final int node) {
+    return nextSiblings[node];
+  }
+
+  /**
+   * @return the number of nodes ever created, all of them being numbered
+   *         below this
+   */
+  int getNodeCount() {
+    return nodes;
+  }
+
+  private int hash(final int parent, final String name) {
+    final int hash = parent * 0x9E3779B9 ^ name.hashCode();
+    return hash ^ hash >>> 16;
+  }
+
+  private String intern(final String segment) {
+    final String existing = segments.putIfAbsent(segment, segment);
+    return existing == null ? segment : existing;
+  }
+
+  private int locate(final File file, final boolean create) {
+    final String path = file.getPath();
+    if (path.equals(rootPath)) {
+      return 0;
+    }
+    int start = rootPath.length();
+    if (!rootPath.endsWith(File.separator)) {
+      if (!path.startsWith(rootPath) || path.length() <= start
+          || path.charAt(start) != File.separatorChar) {
+        return NONE;
+      }
+      start++;
+    } else if (!path.startsWith(rootPath)) {
+      return NONE;
+    }
+    int node = 0;
+    while (node != NONE && start < path.length()) {
+      int end = path.indexOf(File.separatorChar, start);
+      if (end < 0) {
+        end = path.length();
+      }
+      final String name = path.substring(start, end);
+      node = create ? addChild(node, name) : getChild(node, name);
+      start = end + 1;
+    }
+    return node;
+  }
+
+  private int newNode(final int parent, final String name) {
+    if (nodes == parents.length) {
+      final int capacity = nodes * 2;
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      modified = Arrays.copyOf(modified, capacity);
+      names = Arrays.copyOf(names, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+    }
+    final int node = nodes++;
+    firstChildren[node] = NONE;
+    modified[node] = ABSENT;
+    names[node] = intern(name);
+    nextSiblings[node] = NONE;
+    parents[node] = parent;
+    if (parent != NONE) {
+      if (nodes * 2 > table.length) {
+        rehash(table.length * 2);
+      }
+      insert(node);
+    }
+    return node;
+  }
+
+  private void insert(final int node) {
+    final int mask = table.length - 1;
+    int slot = hash(parents[node], names[node]) & mask;
+    while (table[slot] != NONE) {
+      slot = slot + 1 & mask;
+    }
+    table[slot] = node;
+  }
+
+  private void rehash(final int capacity) {
+    table = new int[capacity];
+    Arrays.fill(table, NONE);
+    for (int node = 1; node < nodes - 1; node++) {
+      insert(node);
+    }
+  }
+
+  /**
+   * Makes the given node and every node below it {@link #ABSENT}.
+   *
+   * @param node the node to remove
+   */
+  void removeTree(final int node) {
+    setModified(node, ABSENT);
+    for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+      removeTree(child);
+    }
+  }
+
+  /**
+   * Sets the last modified time of a node, making it an entry of the index
+   * unless the time is {@link #ABSENT}.
+   *
+   * @param node the node
+   * @param lastModified the last modified time
+   */
+  void setModified(final int node, final long lastModified) {
+    if (modified[node] == ABSENT && lastModified != ABSENT) {
+      size++;
+    } else if (modified[node] != ABSENT && lastModified == ABSENT) {
+      size--;
+    }
+    modified[node] = lastModified;
+  }
+
+  /**
+   * @return the number of entries in the index
+   */
+  int size() {
+    return size;
+  }
+}
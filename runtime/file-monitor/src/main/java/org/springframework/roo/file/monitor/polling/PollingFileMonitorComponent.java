@@ -6,6 +6,7 @@ import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.event.FileEventListener;
 import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
 
@@ -13,6 +14,9 @@ import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
  * Extends {@link PollingFileMonitorService} by making it available as an OSGi
  * component that automatically monitors the environment's
  * {@link FileEventListener} components.
+ * <p>
+ * Setting the {@value #WATCH_PROPERTY} framework property to true makes it
+ * watch the monitored directories instead of polling them.
  * 
  * @author Ben Alex
  * @since 1.1
@@ -24,10 +28,24 @@ import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
     cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
 public class PollingFileMonitorComponent extends PollingFileMonitorService {
 
+  /**
+   * The framework property that enables watching the monitored directories
+   * through a {@link java.nio.file.WatchService}.
+   */
+  public static final String WATCH_PROPERTY = "roo.file.monitor.watch";
+
+  protected void activate(final ComponentContext context) {
+    setWatching(Boolean.valueOf(context.getBundleContext().getProperty(WATCH_PROPERTY)));
+  }
+
   protected void bindFileEventListener(final FileEventListener listener) {
     add(listener);
   }
 
+  protected void deactivate(final ComponentContext context) {
+    setWatching(false);
+  }
+
   protected void unbindFileEventListener(final FileEventListener listener) {
     remove(listener);
   }
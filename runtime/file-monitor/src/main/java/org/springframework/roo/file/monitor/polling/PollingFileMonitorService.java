@@ -15,11 +15,12 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Logger;
@@ -59,6 +60,12 @@ import org.w3c.dom.Element;
  * present in the {@link FileEvent} times equal to the last time a deleted file
  * was modified. The time does NOT represent the deletion time nor the time the
  * deletion was first detected.
+ * <p>
+ * Polling can optionally be replaced by watching the monitored directories
+ * through a {@link java.nio.file.WatchService} (see {@link #setWatching(boolean)}
+ * ). Each scan then only re-examines the files the operating system reported
+ * as changed, and only walks the monitored locations again when it reports
+ * that events were lost. Either way the same {@link FileEvent}s are published.
  * 
  * @author Ben Alex
  * @author Juan Carlos García
@@ -75,10 +82,12 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   private final Set<String> notifyChanged = new HashSet<String>();
   private final Set<String> notifyCreated = new HashSet<String>();
   private final Set<String> notifyDeleted = new HashSet<String>();
-  private final Map<MonitoringRequest, Map<File, Long>> priorExecution =
-      new WeakHashMap<MonitoringRequest, Map<File, Long>>();
+  private final Map<MonitoringRequest, PathIndex> priorExecution =
+      new WeakHashMap<MonitoringRequest, PathIndex>();
   private final Set<MonitoringRequest> requests = new LinkedHashSet<MonitoringRequest>();
+  private final ConcurrentMap<String, String> segments = new ConcurrentHashMap<String, String>();
   private final List<FileEvent> eventsPendingToPublish = new ArrayList<FileEvent>();
+  private DirectoryWatcher watcher;
 
   public final void add(final FileEventListener e) {
     synchronized (lock) {
@@ -135,47 +144,159 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   /**
-   * Adds one or more entries into the Map. The key of the Map is the File
-   * object, and the value is the {@link File#lastModified()} time.
-   * <p>
-   * Specifically:
-   * <ul>
-   * <li>If invoked with a File that is actually a File, only the file is
-   * added.</li>
-   * <li>If invoked with a File that is actually a Directory, all files and
-   * directories are added.</li>
-   * <li>If invoked with a File that is actually a Directory, subdirectories
-   * will be added only if "includeSubtree" is true.</li>
-   * </ul>
+   * Applies the changed files reported by the {@link DirectoryWatcher} to a
+   * monitored directory's prior contents in place, re-examining only those
+   * files (and the contents of directories that are new or no longer
+   * watched).
+   *
+   * @param priorFiles the directory's contents at the last execution
+   * @param changedFiles the files reported as changed (required)
+   * @param directory the monitored directory
+   * @param includeSubtree whether sub-directories are monitored
+   * @param events to append the resulting events to
    */
-  private void computeEntries(final Map<File, Long> map, final File currentFile,
-      final boolean includeSubtree) {
-    Validate.notNull(map, "Map required");
-    Validate.notNull(currentFile, "Current file is required");
-
-    if (!currentFile.exists() || currentFile.getName().length() > 1
-        && currentFile.getName().startsWith(".") || currentFile.getName().equals("log.roo")
-        || currentFile.isDirectory() && isExcludedDirectory(currentFile.getPath())) {
+  private void applyChanges(final PathIndex priorFiles, final Set<File> changedFiles,
+      final File directory, final boolean includeSubtree, final List<FileEvent> events) {
+    for (final File changedFile : changedFiles) {
+      final boolean isDirectory = changedFile.equals(directory);
+      if (!isDirectory && !(watcher.isWatching(changedFile.getParentFile())
+          && isWithin(directory, changedFile, includeSubtree))) {
+        continue;
+      }
+      if (!isMonitorable(changedFile)) {
+        final int node = priorFiles.find(changedFile);
+        if (node != PathIndex.NONE) {
+          compare(priorFiles, node, null, PathIndex.NONE, events);
+          priorFiles.removeTree(node);
+        }
+      } else if (!changedFile.isDirectory() || watcher.isWatching(changedFile)) {
+        final int node = priorFiles.addNode(changedFile);
+        final long currentTimestamp = DirectoryListing.lastModified(changedFile);
+        addEvent(changedFile, priorFiles.getModified(node), currentTimestamp, events);
+        priorFiles.setModified(node, currentTimestamp);
+      } else if (isDirectory || includeSubtree) {
+        // A new (or recreated) directory, whose contents we know nothing
+        // about
+        final int node = priorFiles.addNode(changedFile);
+        final PathIndex currentFiles = computeEntries(changedFile, includeSubtree);
+        compare(priorFiles, node, currentFiles, 0, events);
+        priorFiles.removeTree(node);
+        copy(currentFiles, 0, priorFiles, node);
+      }
+    }
+  }
+
+  /**
+   * Appends the event describing a change of the given file's last modified
+   * time, if it changed, to the given list.
+   *
+   * @param file the file
+   * @param previousTimestamp its last modified time at the last execution,
+   *            or {@link PathIndex#ABSENT} if it wasn't there
+   * @param currentTimestamp its current last modified time, or
+   *            {@link PathIndex#ABSENT} if it's gone
+   * @param events to append the event to
+   */
+  private void addEvent(final File file, final long previousTimestamp,
+      final long currentTimestamp, final List<FileEvent> events) {
+    if (currentTimestamp == previousTimestamp) {
       return;
     }
+    if (previousTimestamp == PathIndex.ABSENT) {
+      // This file did not exist last execution, so it must be new
+      events.add(new FileEvent(new FileDetails(file, currentTimestamp), FileOperation.CREATED,
+          null));
+    } else if (currentTimestamp == PathIndex.ABSENT) {
+      events.add(new FileEvent(new FileDetails(file, previousTimestamp), FileOperation.DELETED,
+          null));
+    } else {
+      // Modified
+      events.add(new FileEvent(new FileDetails(file, currentTimestamp), FileOperation.UPDATED,
+          null));
+      try {
+        // If this file was already going to be notified, there is no
+        // need to do it twice
+        notifyChanged.remove(file.getCanonicalPath());
+      } catch (final IOException ignored) {
+      }
+    }
+  }
+
+  /**
+   * Appends the events that turn one node of an index into a node of another
+   * to the given list, doing the same for their children with matching
+   * names. Either node can be {@link PathIndex#NONE}.
+   *
+   * @param priorFiles the prior index
+   * @param priorNode the node of the prior index
+   * @param currentFiles the current index (can be null if currentNode is
+   *            {@link PathIndex#NONE})
+   * @param currentNode the node of the current index
+   * @param events to append the events to
+   */
+  private void compare(final PathIndex priorFiles, final int priorNode,
+      final PathIndex currentFiles, final int currentNode, final List<FileEvent> events) {
+    final long previousTimestamp = priorFiles.getModified(priorNode);
+    final long currentTimestamp =
+        currentNode == PathIndex.NONE ? PathIndex.ABSENT : currentFiles.getModified(currentNode);
+    if (currentTimestamp != previousTimestamp) {
+      addEvent(currentTimestamp == PathIndex.ABSENT ? priorFiles.getFile(priorNode)
+          : currentFiles.getFile(currentNode), previousTimestamp, currentTimestamp, events);
+    }
+
+    for (int child = currentFiles == null ? PathIndex.NONE : currentFiles
+        .getFirstChild(currentNode); child != PathIndex.NONE; child =
+        currentFiles.getNextSibling(child)) {
+      compare(priorFiles, priorFiles.getChild(priorNode, currentFiles.getName(child)),
+          currentFiles, child, events);
+    }
+    for (int child = priorFiles.getFirstChild(priorNode); child != PathIndex.NONE; child =
+        priorFiles.getNextSibling(child)) {
+      if (currentFiles == null
+          || currentFiles.getChild(currentNode, priorFiles.getName(child)) == PathIndex.NONE) {
+        compare(priorFiles, child, null, PathIndex.NONE, events);
+      }
+    }
+  }
 
-    map.put(currentFile, currentFile.lastModified());
+  /**
+   * Builds an index of the given file, or of a directory and its contents.
+   * Directories are listed in parallel, and any sub-directories are only
+   * included if "includeSubtree" is true.
+   *
+   * @param file the file or directory to index (required)
+   * @param includeSubtree whether to index sub-directories
+   * @return the index, which is empty if the file doesn't exist or isn't
+   *         monitorable
+   */
+  private PathIndex computeEntries(final File file, final boolean includeSubtree) {
+    Validate.notNull(file, "File is required");
+    final PathIndex index = new PathIndex(file, segments);
+    if (!isMonitorable(file)) {
+      return index;
+    }
 
+    index.setModified(0, DirectoryListing.lastModified(file));
     try {
-      allFiles.add(currentFile.getCanonicalPath());
+      allFiles.add(file.getCanonicalPath());
     } catch (final IOException ignored) {
     }
 
-    if (currentFile.isDirectory()) {
-      final File[] files = currentFile.listFiles();
-      if (files == null || files.length == 0) {
-        return;
-      }
-      for (final File file : files) {
-        if (file.isFile() || includeSubtree) {
-          computeEntries(map, file, includeSubtree);
-        }
-      }
+    if (file.isDirectory()) {
+      merge(DirectoryListing.list(file, includeSubtree), index, 0);
+    }
+    return index;
+  }
+
+  /**
+   * Copies the entries below one node of an index below a node of another.
+   */
+  private void copy(final PathIndex from, final int fromNode, final PathIndex to,
+      final int toNode) {
+    to.setModified(toNode, from.getModified(fromNode));
+    for (int child = from.getFirstChild(fromNode); child != PathIndex.NONE; child =
+        from.getNextSibling(child)) {
+      copy(from, child, to, to.addChild(toNode, from.getName(child)));
     }
   }
 
@@ -224,7 +345,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileCreationEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> createEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyCreated.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -238,7 +359,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               FileOperation.CREATED, null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.put(thisFile, thisFile.lastModified());
+          record(priorFiles, thisFile, DirectoryListing.lastModified(thisFile));
         }
       }
     }
@@ -246,7 +367,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileDeletionEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> deleteEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyDeleted.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -261,7 +382,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.remove(thisFile);
+          record(priorFiles, thisFile, PathIndex.ABSENT);
         }
       }
     }
@@ -269,7 +390,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileUpdateEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> updateEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyChanged.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -283,7 +404,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               FileOperation.UPDATED, null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.put(thisFile, thisFile.lastModified());
+          record(priorFiles, thisFile, DirectoryListing.lastModified(thisFile));
           // Also remove it from the created list, if it's in there
           if (notifyCreated.contains(filePath)) {
             notifyCreated.remove(filePath);
@@ -303,9 +424,12 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
       for (final MonitoringRequest request : requests) {
         if (priorExecution.containsKey(request)) {
-          final Map<File, Long> priorFiles = priorExecution.get(request);
-          for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-            monitored.add(new FileDetails(entry.getKey(), entry.getValue()));
+          final PathIndex priorFiles = priorExecution.get(request);
+          for (int node = 0; node < priorFiles.getNodeCount(); node++) {
+            final long lastModified = priorFiles.getModified(node);
+            if (lastModified != PathIndex.ABSENT) {
+              monitored.add(new FileDetails(priorFiles.getFile(node), lastModified));
+            }
           }
         }
       }
@@ -320,7 +444,30 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
-  private boolean isExcludedDirectory(final String path) {
+  /**
+   * Indicates whether the given file or directory exists and should be
+   * included in the monitored locations' contents
+   */
+  private boolean isMonitorable(final File file) {
+    return file.exists() && isMonitorable(file, file.isDirectory());
+  }
+
+  /**
+   * Indicates whether the given existing file or directory should be
+   * included in the monitored locations' contents
+   */
+  static boolean isMonitorable(final File file, final boolean isDirectory) {
+    return !(file.getName().length() > 1 && file.getName().startsWith(".")
+        || file.getName().equals("log.roo") || isDirectory && isExcludedDirectory(file.getPath()));
+  }
+
+  public boolean isWatching() {
+    synchronized (lock) {
+      return watcher != null;
+    }
+  }
+
+  private static boolean isExcludedDirectory(final String path) {
     final boolean hasSrc = path.contains(File.separator + "src");
     return !hasSrc
         && (path.contains(File.separator + "target") || path.contains(File.separator + "bin"))
@@ -346,6 +493,20 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     return false;
   }
 
+  /**
+   * Indicates whether the given file is within the given directory, in the
+   * same path form
+   */
+  private boolean isWithin(final File directory, final File file, final boolean includeSubtree) {
+    String directoryPath = directory.getPath();
+    if (!directoryPath.endsWith(File.separator)) {
+      directoryPath += File.separator;
+    }
+    final String filePath = file.getPath();
+    return filePath.startsWith(directoryPath)
+        && (includeSubtree || filePath.indexOf(File.separatorChar, directoryPath.length()) < 0);
+  }
+
   private boolean isWithin(final MonitoringRequest request, final String filePath) {
     String requestCanonicalPath;
     try {
@@ -428,15 +589,31 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Records the given file's last modified time in an index, if the file is
+   * within the indexed location.
+   *
+   * @param index the index to update
+   * @param file the file
+   * @param lastModified the last modified time, or {@link PathIndex#ABSENT}
+   *            to remove the file
+   */
+  private void record(final PathIndex index, final File file, final long lastModified) {
+    final int node = lastModified == PathIndex.ABSENT ? index.find(file) : index.addNode(file);
+    if (node != PathIndex.NONE) {
+      index.setModified(node, lastModified);
+    }
+  }
+
   private int publishRequestedFileEvents() {
     int eventsPublished = 0;
     for (final MonitoringRequest request : requests) {
       final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
       // See when each file was last checked
-      Map<File, Long> priorFiles = priorExecution.get(request);
+      PathIndex priorFiles = priorExecution.get(request);
       if (priorFiles == null) {
-        priorFiles = new HashMap<File, Long>();
+        priorFiles = new PathIndex(request.getFile(), segments);
         priorExecution.put(request, priorFiles);
       }
 
@@ -486,6 +663,26 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Adds the entries of a directory listing below the given node of an
+   * index, watching the directories it includes.
+   */
+  private void merge(final DirectoryListing listing, final PathIndex index, final int node) {
+    if (watcher != null) {
+      watcher.register(listing.getDirectory());
+    }
+    for (final DirectoryListing.Entry entry : listing.getEntries()) {
+      final int child = index.addChild(node, entry.name);
+      index.setModified(child, entry.lastModified);
+      if (entry.canonicalPath != null) {
+        allFiles.add(entry.canonicalPath);
+      }
+      if (entry.listing != null) {
+        merge(entry.listing, index, child);
+      }
+    }
+  }
+
   public final void remove(final FileEventListener e) {
     synchronized (lock) {
       fileEventListeners.remove(e);
@@ -500,12 +697,13 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       if (priorExecution.containsKey(request)) {
         final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
-        final Map<File, Long> priorFiles = priorExecution.get(request);
-        for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-          final File thisFile = entry.getKey();
-          final Long lastModified = entry.getValue();
-          eventsToPublish.add(new FileEvent(new FileDetails(thisFile, lastModified),
-              FileOperation.MONITORING_FINISH, null));
+        final PathIndex priorFiles = priorExecution.get(request);
+        for (int node = 0; node < priorFiles.getNodeCount(); node++) {
+          final long lastModified = priorFiles.getModified(node);
+          if (lastModified != PathIndex.ABSENT) {
+            eventsToPublish.add(new FileEvent(new FileDetails(priorFiles.getFile(node),
+                lastModified), FileOperation.MONITORING_FINISH, null));
+          }
         }
         publish(eventsToPublish);
       }
@@ -524,6 +722,25 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
       int changes = 0;
 
+      // Find out what the watched directories reported, if anything
+      Set<File> changedFiles = null;
+      if (watcher != null) {
+        changedFiles = watcher.poll();
+        if (changedFiles == null) {
+          LOGGER.fine("File system events were lost; rescanning monitored locations");
+        } else {
+          for (final String canonicalPath : notifyCreated) {
+            changedFiles.add(new File(canonicalPath));
+          }
+          for (final String canonicalPath : notifyChanged) {
+            changedFiles.add(new File(canonicalPath));
+          }
+          for (final String canonicalPath : notifyDeleted) {
+            changedFiles.add(new File(canonicalPath));
+          }
+        }
+      }
+
       for (final MonitoringRequest request : requests) {
         boolean includeSubtree = false;
         if (request instanceof DirectoryMonitoringRequest) {
@@ -534,75 +751,35 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
           continue;
         }
 
-        // Build contents of the monitored location
-        final Map<File, Long> currentExecution = new HashMap<File, Long>();
-        computeEntries(currentExecution, request.getFile(), includeSubtree);
-
+        // Build contents of the monitored location, and compare them with
+        // the previous execution's
         final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
-
-        if (priorExecution.containsKey(request)) {
-          // Need to perform a comparison, as we have data from a
-          // previous execution
-          final Map<File, Long> priorFiles = priorExecution.get(request);
-
-          // Locate created and modified files
-          for (final Entry<File, Long> entry : currentExecution.entrySet()) {
-            final File thisFile = entry.getKey();
-            final Long currentTimestamp = entry.getValue();
-            if (!priorFiles.containsKey(thisFile)) {
-              // This file did not exist last execution, so it
-              // must be new
-              eventsToPublish.add(new FileEvent(new FileDetails(thisFile, currentTimestamp),
-                  FileOperation.CREATED, null));
-              try {
-                // If this file was already going to be
-                // notified, there is no need to do it twice
-                notifyCreated.remove(thisFile.getCanonicalPath());
-              } catch (final IOException ignored) {
-              }
-              continue;
-            }
-
-            final Long previousTimestamp = priorFiles.get(thisFile);
-            if (!currentTimestamp.equals(previousTimestamp)) {
-              // Modified
-              eventsToPublish.add(new FileEvent(new FileDetails(thisFile, currentTimestamp),
-                  FileOperation.UPDATED, null));
-              try {
-                // If this file was already going to be
-                // notified, there is no need to do it twice
-                notifyChanged.remove(thisFile.getCanonicalPath());
-              } catch (final IOException ignored) {
-              }
-            }
-          }
-
-          // Now locate deleted files
-          priorFiles.keySet().removeAll(currentExecution.keySet());
-          for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-            final File deletedFile = entry.getKey();
-            eventsToPublish.add(new FileEvent(new FileDetails(deletedFile, entry.getValue()),
-                FileOperation.DELETED, null));
-            try {
-              // If this file was already going to be notified,
-              // there is no need to do it twice
-              notifyDeleted.remove(deletedFile.getCanonicalPath());
-            } catch (final IOException ignored) {
-            }
-          }
-        } else {
+        final PathIndex priorFiles = priorExecution.get(request);
+        if (priorFiles == null) {
           // No data from previous execution, so it's a
           // newly-monitored location
-          for (final Entry<File, Long> entry : currentExecution.entrySet()) {
-            eventsToPublish.add(new FileEvent(new FileDetails(entry.getKey(), entry.getValue()),
-                FileOperation.MONITORING_START, null));
+          final PathIndex currentExecution = computeEntries(request.getFile(), includeSubtree);
+          for (int node = 0; node < currentExecution.getNodeCount(); node++) {
+            final long lastModified = currentExecution.getModified(node);
+            if (lastModified != PathIndex.ABSENT) {
+              eventsToPublish.add(new FileEvent(new FileDetails(currentExecution.getFile(node),
+                  lastModified), FileOperation.MONITORING_START, null));
+            }
           }
+          priorExecution.put(request, currentExecution);
+        } else if (changedFiles != null && request.getFile().isDirectory()) {
+          // Only look at what the watched directories reported, updating
+          // the previous execution's contents
+          applyChanges(priorFiles, changedFiles, request.getFile(), includeSubtree,
+              eventsToPublish);
+        } else {
+          final PathIndex currentExecution = computeEntries(request.getFile(), includeSubtree);
+          compare(priorFiles, 0, currentExecution, 0, eventsToPublish);
+          // Record the monitored location's contents, ready for next
+          // execution
+          priorExecution.put(request, currentExecution);
         }
 
-        // Record the monitored location's contents, ready for next
-        // execution
-        priorExecution.put(request, currentExecution);
-
         // We can discard the created and deleted notifications, as they
         // would have been correctly discovered in the above loop
         notifyCreated.clear();
@@ -727,6 +904,41 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Sets whether the monitored directories are watched for changes through a
+   * {@link java.nio.file.WatchService} instead of being walked by every
+   * {@link #scanAll()}. Monitoring falls back to polling if the platform
+   * provides no such service.
+   *
+   * @param watching whether to watch the monitored directories
+   */
+  public void setWatching(final boolean watching) {
+    synchronized (lock) {
+      if (watching && watcher == null) {
+        try {
+          watcher = new DirectoryWatcher();
+        } catch (final IOException e) {
+          LOGGER.warning("Unable to watch the file system, polling it instead: " + e.getMessage());
+          return;
+        }
+        // Watch the directories already known from previous executions
+        for (final PathIndex priorFiles : priorExecution.values()) {
+          for (int node = 0; node < priorFiles.getNodeCount(); node++) {
+            if (priorFiles.getModified(node) != PathIndex.ABSENT) {
+              final File file = priorFiles.getFile(node);
+              if (file.isDirectory()) {
+                watcher.register(file);
+              }
+            }
+          }
+        }
+      } else if (!watching && watcher != null) {
+        watcher.close();
+        watcher = null;
+      }
+    }
+  }
+
   private void updateChanges(final String fileCanonicalPath, final boolean remove) {
     for (final String requestingClass : changeMap.keySet()) {
       if (remove) {
@@ -0,0 +1,76 @@
+package org.springframework.roo.file.monitor.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link PathIndex}
+ * 
+ * @since 2.0
+ */
+public class PathIndexTest {
+
+  private static final File ROOT = new File(File.separator + "project");
+
+  private PathIndex index;
+
+  @Before
+  public void setUp() {
+    index = new PathIndex(ROOT, new ConcurrentHashMap<String, String>());
+  }
+
+  @Test
+  public void testAddedNodeBuildsTheSameFile() {
+    final File file = new File(new File(new File(ROOT, "src"), "main"), "Foo.java");
+    final int node = index.addNode(file);
+    index.setModified(node, 42);
+
+    assertEquals(node, index.find(file));
+    assertEquals(file, index.getFile(node));
+    assertEquals(42, index.getModified(node));
+    assertEquals(1, index.size());
+    assertEquals(PathIndex.ABSENT, index.getModified(index.find(file.getParentFile())));
+  }
+
+  @Test
+  public void testFilesOutsideTheRootAreNotIndexed() {
+    assertEquals(PathIndex.NONE, index.addNode(new File(File.separator + "projects")));
+    assertEquals(PathIndex.NONE, index.find(new File(File.separator + "other")));
+    assertEquals(0, index.find(ROOT));
+  }
+
+  @Test
+  public void testRemovedTreeKeepsItsNodes() {
+    final File directory = new File(ROOT, "src");
+    final int directoryNode = index.addNode(directory);
+    index.setModified(directoryNode, 1);
+    for (int i = 0; i < 1000; i++) {
+      index.setModified(index.addChild(directoryNode, "File" + i + ".java"), i);
+    }
+    assertEquals(1001, index.size());
+
+    index.removeTree(directoryNode);
+
+    assertEquals(0, index.size());
+    assertEquals(1002, index.getNodeCount());
+    assertEquals(directoryNode, index.find(directory));
+  }
+
+  @Test
+  public void testSegmentsAreShared() {
+    final ConcurrentHashMap<String, String> segments = new ConcurrentHashMap<String, String>();
+    index = new PathIndex(ROOT, segments);
+    final PathIndex sharing = new PathIndex(ROOT, segments);
+
+    final int node = index.addNode(new File(ROOT, new String("src")));
+    final int sharingNode = sharing.addNode(new File(ROOT, new String("src")));
+
+    assertSame(index.getName(node), sharing.getName(sharingNode));
+  }
+}
@@ -20,6 +20,8 @@ import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
 @Service
 public class DefaultUndoManager implements UndoManager {
 
+  private UndoJournal journal;
+  private final boolean journalEnabled = !"false".equals(System.getProperty("roo.undo.journal"));
   private final Set<UndoListener> listeners = new HashSet<UndoListener>();
   private final Stack<UndoableOperation> stack = new Stack<UndoableOperation>();
   private boolean undoEnabled = true;
@@ -39,6 +41,13 @@ public class DefaultUndoManager implements UndoManager {
     notifyListeners(UndoOperation.FLUSH);
   }
 
+  public synchronized UndoJournal getJournal() {
+    if (journal == null && journalEnabled) {
+      journal = new UndoJournal();
+    }
+    return journal;
+  }
+
   private void notifyListeners(final UndoOperation operation) {
     for (final UndoListener listener : listeners) {
       listener.onUndoEvent(new UndoEvent(operation));
@@ -59,6 +68,7 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    resetJournal();
     notifyListeners(UndoOperation.RESET);
   }
 
@@ -89,7 +99,14 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    resetJournal();
     notifyListeners(UndoOperation.UNDO);
     return undoMode;
   }
+
+  private synchronized void resetJournal() {
+    if (journal != null) {
+      journal.reset();
+    }
+  }
 }
@@ -0,0 +1,80 @@
+package org.springframework.roo.file.undo;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The original contents of a file that an {@link UndoableOperation} is about
+ * to change, kept in the {@link UndoManager}'s {@link UndoJournal} if it has
+ * one, otherwise in a temporary file of its own.
+ *
+ * @since 2.0
+ */
+class FileBackup {
+
+  private final File backup;
+  private final UndoJournal journal;
+  private final UndoJournal.Entry journalEntry;
+
+  /**
+   * Constructor
+   *
+   * @param undoManager the undo manager whose journal to use, if any
+   *            (required)
+   * @param actual the existing file to back up (required)
+   * @param prefix the prefix of any temporary file's name (required)
+   * @param deleting whether the file is about to be deleted, rather than
+   *            written to
+   * @throws IOException if the file could not be backed up
+   */
+  FileBackup(final UndoManager undoManager, final File actual, final String prefix,
+      final boolean deleting) throws IOException {
+    journal = undoManager.getJournal();
+    UndoJournal.Entry entry = null;
+    if (journal != null) {
+      try {
+        entry = journal.record(actual, deleting);
+      } catch (final IOException ignored) {
+        // Fall back to a backup file
+      }
+    }
+    journalEntry = entry;
+    if (journalEntry == null) {
+      backup = File.createTempFile(prefix, "tmp");
+      FileUtils.copyFile(actual, backup);
+    } else {
+      backup = null;
+    }
+  }
+
+  /**
+   * Discards this backup, unless it's in the journal, which the undo manager
+   * resets as a whole.
+   *
+   * @return the backup file that could not be deleted, otherwise
+   *         <code>null</code>
+   */
+  File discard() {
+    if (backup == null || backup.delete()) {
+      return null;
+    }
+    backup.deleteOnExit();
+    return backup;
+  }
+
+  /**
+   * Restores the given file to its backed up contents.
+   *
+   * @param actual the file to restore (required)
+   * @throws IOException if it could not be restored
+   */
+  void restore(final File actual) throws IOException {
+    if (backup == null) {
+      journal.restore(journalEntry, actual);
+    } else {
+      FileUtils.copyFile(backup, actual);
+    }
+  }
+}
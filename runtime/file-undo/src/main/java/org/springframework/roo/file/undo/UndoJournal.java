@@ -0,0 +1,200 @@
+package org.springframework.roo.file.undo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Keeps the original contents of the files changed since the last reset or
+ * undo, for {@link UpdateFile} and {@link DeleteFile} to restore them from.
+ * <p>
+ * Rather than copying each file to a temporary file of its own, contents are
+ * appended to a single journal file, by the operating system where it
+ * supports channel to channel transfers. A file about to be deleted is
+ * instead kept by a hard link, where the file system allows one, so that its
+ * contents aren't copied at all. {@link #reset()} truncates the journal
+ * rather than deleting a backup per file.
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 2.0
+ */
+public class UndoJournal {
+
+  /**
+   * The original contents of one file, either as a region of the journal or
+   * as a hard link to the original file
+   */
+  public static class Entry {
+    final long length;
+    final File link;
+    final long offset;
+
+    Entry(final long offset, final long length, final File link) {
+      this.length = length;
+      this.link = link;
+      this.offset = offset;
+    }
+  }
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(UndoJournal.class);
+
+  private FileChannel channel;
+  private File directory;
+  private long journaledBytes;
+  private long linkedFiles;
+  private final List<File> links = new ArrayList<File>();
+  private long resets;
+  private long size;
+
+  private FileChannel getChannel() throws IOException {
+    if (channel == null) {
+      final File file = new File(getDirectory(), "journal");
+      file.deleteOnExit();
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      channel.truncate(0);
+      size = 0;
+    }
+    return channel;
+  }
+
+  private File getDirectory() throws IOException {
+    if (directory == null) {
+      directory = Files.createTempDirectory("roo-undo").toFile();
+      directory.deleteOnExit();
+    }
+    return directory;
+  }
+
+  /**
+   * Records the current contents of the given file.
+   *
+   * @param file the existing file to record (required)
+   * @param link whether to keep the contents by a hard link if possible,
+   *            which is only correct if the file is going to be deleted
+   *            rather than written to
+   * @return the entry to pass to {@link #restore(Entry, File)}
+   * @throws IOException if the contents could not be recorded
+   */
+  public synchronized Entry record(final File file, final boolean link) throws IOException {
+    Validate.notNull(file, "File required");
+    if (link) {
+      final File linkFile = new File(getDirectory(), String.valueOf(links.size()));
+      try {
+        Files.createLink(linkFile.toPath(), file.toPath());
+        linkFile.deleteOnExit();
+        links.add(linkFile);
+        linkedFiles++;
+        return new Entry(0, 0, linkFile);
+      } catch (final IOException e) {
+        // e.g. another file system, so journal a copy instead
+      } catch (final UnsupportedOperationException e) {
+        // Hard links aren't supported
+      }
+    }
+    final FileChannel journal = getChannel();
+    final FileInputStream inputStream = new FileInputStream(file);
+    try {
+      final FileChannel source = inputStream.getChannel();
+      final long offset = size;
+      final long length = source.size();
+      long transferred = 0;
+      while (transferred < length) {
+        final long count =
+            journal.transferFrom(source, offset + transferred, length - transferred);
+        if (count <= 0) {
+          throw new IOException("Could not journal all of '" + file + "'");
+        }
+        transferred += count;
+      }
+      size += length;
+      journaledBytes += length;
+      return new Entry(offset, length, null);
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Forgets every entry, truncating the journal and deleting any hard links.
+   * Entries recorded before must not be restored afterwards.
+   */
+  public synchronized void reset() {
+    resets++;
+    if (channel != null) {
+      try {
+        channel.truncate(0);
+        size = 0;
+      } catch (final IOException e) {
+        // Start a new journal next time
+        LOGGER.fine("Could not truncate undo journal: " + e.getMessage());
+        IOUtils.closeQuietly(channel);
+        channel = null;
+      }
+    }
+    for (final File linkFile : links) {
+      if (!linkFile.delete()) {
+        LOGGER.fine("Could not delete undo link '" + linkFile + "'");
+      }
+    }
+    links.clear();
+  }
+
+  /**
+   * Restores the given recorded contents to the given file.
+   *
+   * @param entry the entry returned when the contents were recorded
+   *            (required)
+   * @param file the file to restore (required)
+   * @throws IOException if the contents could not be restored
+   */
+  public synchronized void restore(final Entry entry, final File file) throws IOException {
+    Validate.notNull(entry, "Entry required");
+    Validate.notNull(file, "File required");
+    if (entry.link != null) {
+      FileUtils.forceMkdir(file.getParentFile());
+      Files.copy(entry.link.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+    Validate.validState(channel != null && entry.offset + entry.length <= size,
+        "Entry was recorded before the journal was last reset");
+    final FileOutputStream outputStream = new FileOutputStream(file);
+    try {
+      final FileChannel target = outputStream.getChannel();
+      long transferred = 0;
+      while (transferred < entry.length) {
+        final long count =
+            channel.transferTo(entry.offset + transferred, entry.length - transferred, target);
+        if (count <= 0) {
+          throw new IOException("Could not restore all of '" + file + "'");
+        }
+        transferred += count;
+      }
+    } finally {
+      IOUtils.closeQuietly(outputStream);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("journaledBytes", journaledBytes);
+    builder.append("linkedFiles", linkedFiles);
+    builder.append("resets", resets);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
@@ -36,6 +36,17 @@ public interface UndoManager {
    */
   void flush();
 
+  /**
+   * Returns the journal in which {@link UndoableOperation}s can record the
+   * original contents of the files they change, until the next
+   * {@link #reset()} or {@link #undo()}.
+   * 
+   * @return <code>null</code> if there is none, in which case operations
+   *         have to keep their own backups
+   * @since 2.0
+   */
+  UndoJournal getJournal();
+
   /**
    * @param undoListener removes a previously-registered undo listener
    *            (required)
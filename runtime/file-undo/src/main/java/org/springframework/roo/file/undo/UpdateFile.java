@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Validate;
 import org.springframework.roo.support.logging.HandlerUtils;
 
@@ -19,7 +18,7 @@ public class UpdateFile implements UndoableOperation {
   private static final Logger LOGGER = HandlerUtils.getLogger(UpdateFile.class);
 
   private final File actual;
-  private final File backup;
+  private final FileBackup backup;
   private final FilenameResolver filenameResolver;
 
   /**
@@ -39,8 +38,7 @@ public class UpdateFile implements UndoableOperation {
     Validate.notNull(filenameResolver, "Filename resolver required");
     this.filenameResolver = filenameResolver;
     try {
-      backup = File.createTempFile("UpdateFile", "tmp");
-      FileUtils.copyFile(actual, backup);
+      backup = new FileBackup(undoManager, actual, "UpdateFile", false);
     } catch (final IOException ioe) {
       throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
     }
@@ -51,21 +49,20 @@ public class UpdateFile implements UndoableOperation {
   public void reset() {
     // Fix for ROO-1555
     try {
-      if (backup.delete()) {
-        LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(backup));
+      final File undeleted = backup.discard();
+      if (undeleted == null) {
+        LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(actual));
       } else {
-        backup.deleteOnExit();
-        LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
+        LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(undeleted));
       }
     } catch (final Throwable e) {
-      backup.deleteOnExit();
-      LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
+      LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(actual));
     }
   }
 
   public boolean undo() {
     try {
-      FileUtils.copyFile(backup, actual);
+      backup.restore(actual);
       LOGGER.fine("Undo manage " + filenameResolver.getMeaningfulName(actual));
       return true;
     } catch (final IOException ioe) {
@@ -0,0 +1,132 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DefaultUndoManager}
+ *
+ * @since 2.0
+ */
+public class DefaultUndoManagerTest {
+
+  private static final String ENCODING = "UTF-8";
+
+  private File deletedFile;
+  private final FilenameResolver filenameResolver = new DefaultFilenameResolver();
+  private File testDirectory;
+  private File updatedFile;
+
+  /**
+   * Updates and deletes the test files via the given undo manager
+   */
+  private void changeFiles(final UndoManager undoManager) throws IOException {
+    new UpdateFile(undoManager, filenameResolver, updatedFile);
+    FileUtils.writeStringToFile(updatedFile, "changed", ENCODING);
+    new DeleteFile(undoManager, filenameResolver, deletedFile, null);
+    assertFalse(deletedFile.exists());
+  }
+
+  private String read(final File file) throws IOException {
+    return FileUtils.readFileToString(file, ENCODING);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    testDirectory = Files.createTempDirectory("undo-manager-test").toFile();
+    deletedFile = new File(testDirectory, "deleted.txt");
+    FileUtils.writeStringToFile(deletedFile, "deleted", ENCODING);
+    updatedFile = new File(testDirectory, "updated.txt");
+    FileUtils.writeStringToFile(updatedFile, "updated", ENCODING);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(testDirectory);
+  }
+
+  @Test
+  public void testGetJournalReturnsSameJournal() {
+    final DefaultUndoManager undoManager = new DefaultUndoManager();
+
+    assertSame(undoManager.getJournal(), undoManager.getJournal());
+  }
+
+  @Test
+  public void testResetKeepsChanges() throws Exception {
+    final DefaultUndoManager undoManager = new DefaultUndoManager();
+    changeFiles(undoManager);
+
+    // Invoke
+    undoManager.reset();
+
+    // Check
+    assertTrue(undoManager.undo());
+    assertEquals("changed", read(updatedFile));
+    assertFalse(deletedFile.exists());
+    assertTrue(undoManager.getJournal().toString().contains("resets=2"));
+  }
+
+  @Test
+  public void testUndoDisabledOnlyResets() throws Exception {
+    final DefaultUndoManager undoManager = new DefaultUndoManager();
+    undoManager.setUndoEnabled(false);
+    changeFiles(undoManager);
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertFalse(undone);
+    assertEquals("changed", read(updatedFile));
+    assertFalse(deletedFile.exists());
+  }
+
+  @Test
+  public void testUndoRestoresChangedFiles() throws Exception {
+    final DefaultUndoManager undoManager = new DefaultUndoManager();
+    changeFiles(undoManager);
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertTrue(undone);
+    assertEquals("updated", read(updatedFile));
+    assertEquals("deleted", read(deletedFile));
+    assertTrue(undoManager.getJournal().toString().contains("resets=1"));
+  }
+
+  @Test
+  public void testUndoRestoresChangedFilesWithoutJournal() throws Exception {
+    System.setProperty("roo.undo.journal", "false");
+    final DefaultUndoManager undoManager;
+    try {
+      undoManager = new DefaultUndoManager();
+    } finally {
+      System.clearProperty("roo.undo.journal");
+    }
+    changeFiles(undoManager);
+
+    // Invoke
+    final boolean undone = undoManager.undo();
+
+    // Check
+    assertNull(undoManager.getJournal());
+    assertTrue(undone);
+    assertEquals("updated", read(updatedFile));
+    assertEquals("deleted", read(deletedFile));
+  }
+}
@@ -0,0 +1,108 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link FileBackup}
+ *
+ * @since 2.0
+ */
+public class FileBackupTest {
+
+  /**
+   * An undo manager with the given journal
+   */
+  private static class JournalUndoManager extends DefaultUndoManager {
+
+    private final UndoJournal journal;
+
+    JournalUndoManager(final UndoJournal journal) {
+      this.journal = journal;
+    }
+
+    @Override
+    public synchronized UndoJournal getJournal() {
+      return journal;
+    }
+  }
+
+  private static final String ENCODING = "UTF-8";
+
+  private File file;
+  private File testDirectory;
+
+  private void assertRestores(final FileBackup backup) throws IOException {
+    FileUtils.writeStringToFile(file, "changed", ENCODING);
+    backup.restore(file);
+    assertEquals("original", FileUtils.readFileToString(file, ENCODING));
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    testDirectory = Files.createTempDirectory("file-backup-test").toFile();
+    file = new File(testDirectory, "file.txt");
+    FileUtils.writeStringToFile(file, "original", ENCODING);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(testDirectory);
+  }
+
+  @Test
+  public void testBackupToJournal() throws Exception {
+    final UndoJournal journal = new UndoJournal();
+
+    // Invoke
+    final FileBackup backup =
+        new FileBackup(new JournalUndoManager(journal), file, "FileBackupTest", false);
+
+    // Check
+    assertTrue(journal.toString().contains("journaledBytes=8"));
+    assertRestores(backup);
+    // Nothing to discard, as the journal is reset as a whole
+    assertNull(backup.discard());
+    journal.reset();
+  }
+
+  @Test
+  public void testBackupToTemporaryFileIfJournalFails() throws Exception {
+    final UndoJournal journal = new UndoJournal() {
+      @Override
+      public synchronized Entry record(final File file, final boolean link) throws IOException {
+        throw new IOException("Journal full");
+      }
+    };
+
+    // Invoke
+    final FileBackup backup =
+        new FileBackup(new JournalUndoManager(journal), file, "FileBackupTest", false);
+
+    // Check
+    assertRestores(backup);
+    assertNull(backup.discard());
+  }
+
+  @Test
+  public void testBackupToTemporaryFileWithoutJournal() throws Exception {
+    // Invoke
+    final FileBackup backup =
+        new FileBackup(new JournalUndoManager(null), file, "FileBackupTest", true);
+
+    // Check
+    assertTrue(file.delete());
+    assertRestores(backup);
+    assertNull(backup.discard());
+  }
+}
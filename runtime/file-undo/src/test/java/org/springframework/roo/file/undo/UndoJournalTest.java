@@ -0,0 +1,134 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link UndoJournal}
+ *
+ * @since 2.0
+ */
+public class UndoJournalTest {
+
+  private static final String ENCODING = "UTF-8";
+
+  private UndoJournal journal;
+  private File testDirectory;
+
+  private File getJournalDirectory() throws Exception {
+    final Field directory = UndoJournal.class.getDeclaredField("directory");
+    directory.setAccessible(true);
+    return (File) directory.get(journal);
+  }
+
+  private File newFile(final String name, final String contents) throws IOException {
+    final File file = new File(testDirectory, name);
+    FileUtils.writeStringToFile(file, contents, ENCODING);
+    return file;
+  }
+
+  private String read(final File file) throws IOException {
+    return FileUtils.readFileToString(file, ENCODING);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    journal = new UndoJournal();
+    testDirectory = Files.createTempDirectory("undo-journal-test").toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    journal.reset();
+    FileUtils.deleteDirectory(testDirectory);
+  }
+
+  @Test
+  public void testRecordAndRestoreJournaledFiles() throws Exception {
+    final File first = newFile("first.txt", "first");
+    final File second = newFile("second.txt", "second contents");
+    final UndoJournal.Entry firstEntry = journal.record(first, false);
+    final UndoJournal.Entry secondEntry = journal.record(second, false);
+    FileUtils.writeStringToFile(first, "changed", ENCODING);
+    FileUtils.writeStringToFile(second, "changed too", ENCODING);
+
+    // Invoke
+    journal.restore(secondEntry, second);
+    journal.restore(firstEntry, first);
+
+    // Check
+    assertNull(firstEntry.link);
+    assertEquals("first", read(first));
+    assertEquals("second contents", read(second));
+    assertTrue(journal.toString().contains("journaledBytes=20"));
+  }
+
+  @Test
+  public void testRecordByHardLinkRestoresDeletedFile() throws Exception {
+    final File file = newFile("deleted.txt", "deleted");
+    final UndoJournal.Entry entry = journal.record(file, true);
+    assertTrue(file.delete());
+
+    // Invoke
+    journal.restore(entry, file);
+
+    // Check
+    assertNotNull(entry.link);
+    assertEquals("deleted", read(file));
+    assertTrue(journal.toString().contains("journaledBytes=0"));
+    assertTrue(journal.toString().contains("linkedFiles=1"));
+  }
+
+  @Test
+  public void testRecordFallsBackToJournalIfFileCannotBeLinked() throws Exception {
+    // Occupy the name of the first link, so that creating it fails
+    journal.record(newFile("journaled.txt", "journaled"), false);
+    assertTrue(new File(getJournalDirectory(), "0").createNewFile());
+    final File file = newFile("deleted.txt", "deleted");
+
+    // Invoke
+    final UndoJournal.Entry entry = journal.record(file, true);
+
+    // Check
+    assertNull(entry.link);
+    assertTrue(file.delete());
+    journal.restore(entry, file);
+    assertEquals("deleted", read(file));
+    assertTrue(journal.toString().contains("linkedFiles=0"));
+  }
+
+  @Test
+  public void testResetDeletesLinks() throws Exception {
+    final UndoJournal.Entry entry = journal.record(newFile("deleted.txt", "deleted"), true);
+
+    // Invoke
+    journal.reset();
+
+    // Check
+    assertFalse(entry.link.exists());
+    assertTrue(journal.toString().contains("resets=1"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRestoreAfterResetIsRejected() throws Exception {
+    final File file = newFile("updated.txt", "updated");
+    final UndoJournal.Entry entry = journal.record(file, false);
+
+    // Invoke
+    journal.reset();
+    journal.restore(entry, file);
+  }
+}
@@ -1,20 +1,36 @@
 package org.springframework.roo.metadata;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.metadata.internal.LatencyHistogram;
+import org.springframework.roo.metadata.internal.StandardMetadataLatencyStatistic;
+import org.springframework.roo.metadata.internal.StandardMetadataScanProfile;
 import org.springframework.roo.metadata.internal.StandardMetadataTimingStatistic;
 
 /**
  * Default implementation of {@link MetadataLogger}.
+ * <p>
+ * Trace output is handed to a background thread, which appends it to
+ * <code>metadata.log</code> and flushes whenever it catches up, so that
+ * tracing doesn't block metadata resolution on disk I/O.
  * 
  * @author Ben Alex
  * @since 1.1.2
@@ -26,19 +42,50 @@ public class DefaultMetadataLogger implements MetadataLogger {
   private static class TimerEntry {
     long clockStartedOrResumed; // nanos
     long duration; // nanos
+    MetadataPhase phase;
     String responsibleClass;
   }
 
-  private long eventNumber = 0;
-  private final Stack<Long> eventStack = new Stack<Long>();
-  private FileWriter fileLog;
+  /** The number of completed scans whose profiles are kept */
+  private static final int MAXIMUM_SCAN_PROFILES = 20;
+
+  private final AtomicLong eventNumber = new AtomicLong();
+  // Stacks are per thread, as metadata may be resolved concurrently
+  private final ThreadLocal<Stack<Long>> eventStacks = new ThreadLocal<Stack<Long>>() {
+    @Override
+    protected Stack<Long> initialValue() {
+      return new Stack<Long>();
+    }
+  };
+  private StandardMetadataScanProfile currentScan;
+  private final BlockingQueue<String> fileLog = new LinkedBlockingQueue<String>();
+  private Thread fileLogWriter;
   /**
    * key: responsible class, value: number of times a timing record was
    * created for the responsible class
    */
   private final Map<String, Long> invocations = new HashMap<String, Long>();
+  /** key: responsible class, value: the distribution of its timings */
+  private final Map<String, LatencyHistogram> latencies = new HashMap<String, LatencyHistogram>();
   private final Class<DefaultMetadataLogger> mutex = DefaultMetadataLogger.class;
-  private final Stack<TimerEntry> timerStack = new Stack<TimerEntry>();
+  private final ThreadLocal<Stack<TimerEntry>> phaseStacks =
+      new ThreadLocal<Stack<TimerEntry>>() {
+        @Override
+        protected Stack<TimerEntry> initialValue() {
+          return new Stack<TimerEntry>();
+        }
+      };
+  private int scanDepth;
+  private long scanNumber;
+  private final LinkedList<MetadataScanProfile> scanProfiles =
+      new LinkedList<MetadataScanProfile>();
+  private final ThreadLocal<Stack<TimerEntry>> timerStacks =
+      new ThreadLocal<Stack<TimerEntry>>() {
+        @Override
+        protected Stack<TimerEntry> initialValue() {
+          return new Stack<TimerEntry>();
+        }
+      };
   /** key: responsible class, value: nanos occupied */
   private final Map<String, Long> timings = new HashMap<String, Long>();
 
@@ -50,6 +97,22 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
   }
 
+  public SortedSet<MetadataLatencyStatistic> getLatencies() {
+    final SortedSet<MetadataLatencyStatistic> result = new TreeSet<MetadataLatencyStatistic>();
+    synchronized (mutex) {
+      for (final Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+        result.add(new StandardMetadataLatencyStatistic(entry.getKey(), entry.getValue()));
+      }
+    }
+    return result;
+  }
+
+  public List<MetadataScanProfile> getScanProfiles() {
+    synchronized (mutex) {
+      return new ArrayList<MetadataScanProfile>(scanProfiles);
+    }
+  }
+
   public SortedSet<MetadataTimingStatistic> getTimings() {
     final SortedSet<MetadataTimingStatistic> result = new TreeSet<MetadataTimingStatistic>();
     synchronized (mutex) {
@@ -65,8 +128,18 @@ public class DefaultMetadataLogger implements MetadataLogger {
     return traceLevel;
   }
 
+  private boolean isActive(final MetadataScanProfile scanProfile) {
+    for (final MetadataPhase phase : MetadataPhase.values()) {
+      if (scanProfile.getInvocations(phase) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void log(final String message) {
     Validate.notBlank(message, "Message to log required");
+    final Stack<Long> eventStack = eventStacks.get();
     Validate.isTrue(eventStack.size() > 0,
         "Event stack is empty, so no logging should have been requested at this time");
     final StringBuilder sb = new StringBuilder("00000000");
@@ -83,22 +156,46 @@ public class DefaultMetadataLogger implements MetadataLogger {
     logToFile(sb.toString());
   }
 
-  private void logToFile(final String line) {
-    if (fileLog == null) {
+  private synchronized void logToFile(final String line) {
+    if (fileLogWriter == null) {
+      final Writer writer;
       try {
         // Overwrite existing (don't append)
-        fileLog = new FileWriter("metadata.log", false);
-      } catch (final IOException ignore) {
-      }
-      if (fileLog == null) {
-        // Still failing, so give up
+        writer = new BufferedWriter(new FileWriter("metadata.log", false));
+      } catch (final IOException e) {
+        // Give up on this line; the next one will try again
         return;
       }
+      fileLogWriter = new Thread(new Runnable() {
+        public void run() {
+          writeFileLog(writer);
+        }
+      }, "Spring Roo Metadata Log Writer");
+      fileLogWriter.setDaemon(true);
+      fileLogWriter.start();
     }
+    fileLog.add(line);
+  }
+
+  /**
+   * Writes queued log lines until interrupted, flushing whenever the queue
+   * has been drained so that tail -f will show it's working.
+   */
+  private void writeFileLog(final Writer writer) {
     try {
-      fileLog.write(line + "\n"); // Unix line endings only from Roo
-      fileLog.flush(); // So tail -f will show it's working
+      while (true) {
+        String line = fileLog.take();
+        while (line != null) {
+          writer.write(line + "\n"); // Unix line endings only from Roo
+          line = fileLog.poll();
+        }
+        writer.flush();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
     } catch (final IOException ignoreIt) {
+    } finally {
+      IOUtils.closeQuietly(writer);
     }
   }
 
@@ -107,12 +204,34 @@ public class DefaultMetadataLogger implements MetadataLogger {
   }
 
   public void startEvent() {
-    eventNumber++;
-    eventStack.push(eventNumber);
+    eventStacks.get().push(eventNumber.incrementAndGet());
+  }
+
+  public void startPhase(final MetadataPhase phase) {
+    Validate.notNull(phase, "Phase required");
+    final TimerEntry timerEntry = start(phaseStacks.get());
+    timerEntry.phase = phase;
+    synchronized (mutex) {
+      if (currentScan != null) {
+        currentScan.addInvocation(phase);
+      }
+    }
+  }
+
+  public void startScan() {
+    synchronized (mutex) {
+      if (scanDepth++ == 0) {
+        currentScan = new StandardMetadataScanProfile(++scanNumber);
+      }
+    }
   }
 
   public void startTimer(final String responsibleClass) {
     Validate.notBlank(responsibleClass, "Responsible class required");
+    start(timerStacks.get()).responsibleClass = responsibleClass;
+  }
+
+  private TimerEntry start(final Stack<TimerEntry> timerStack) {
     final long now = System.nanoTime();
     if (timerStack.size() > 0) {
       // There is an existing timer on the stack, so we need to stop the
@@ -124,23 +243,65 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
     // Start a new timer
     final TimerEntry timerEntry = new TimerEntry();
-    timerEntry.responsibleClass = responsibleClass;
     timerEntry.clockStartedOrResumed = now;
     timerStack.push(timerEntry);
+    return timerEntry;
+  }
+
+  private TimerEntry stop(final Stack<TimerEntry> timerStack) {
+    final long now = System.nanoTime();
+    final TimerEntry timerEntry = timerStack.pop();
+    timerEntry.duration = timerEntry.duration + now - timerEntry.clockStartedOrResumed;
+    if (timerStack.size() > 0) {
+      // Resume the clock of the timer this one was nested in
+      timerStack.get(timerStack.size() - 1).clockStartedOrResumed = now;
+    }
+    return timerEntry;
   }
 
   public void stopEvent() {
+    final Stack<Long> eventStack = eventStacks.get();
     Validate.isTrue(eventStack.size() > 0,
         "Event stack is empty, indicating a mismatched number of timer start/stop calls");
     eventStack.pop();
   }
 
+  public void stopPhase() {
+    final Stack<TimerEntry> phaseStack = phaseStacks.get();
+    Validate.isTrue(phaseStack.size() > 0,
+        "Phase stack is empty, indicating a mismatched number of phase start/stop calls");
+    final TimerEntry timerEntry = stop(phaseStack);
+    synchronized (mutex) {
+      if (currentScan != null) {
+        currentScan.addTime(timerEntry.phase, timerEntry.duration);
+      }
+    }
+  }
+
+  public void stopScan() {
+    synchronized (mutex) {
+      Validate.isTrue(scanDepth > 0,
+          "No scan in progress, indicating a mismatched number of scan start/stop calls");
+      if (--scanDepth == 0) {
+        currentScan.stop();
+        // Only keep scans that did something, as idle background scans
+        // would otherwise push them out
+        if (isActive(currentScan)) {
+          scanProfiles.add(currentScan);
+          if (scanProfiles.size() > MAXIMUM_SCAN_PROFILES) {
+            scanProfiles.removeFirst();
+          }
+        }
+        currentScan = null;
+      }
+    }
+  }
+
   public void stopTimer() {
+    final Stack<TimerEntry> timerStack = timerStacks.get();
     Validate.isTrue(timerStack.size() > 0,
         "Timer stack is empty, indicating a mismatched number of timer start/stop calls");
-    final long now = System.nanoTime();
-    final TimerEntry timerEntry = timerStack.pop();
-    timerEntry.duration = timerEntry.duration + now - timerEntry.clockStartedOrResumed;
+    final TimerEntry timerEntry = stop(timerStack);
     final String responsibleClass = timerEntry.responsibleClass;
 
     // Update the timings summary
@@ -160,6 +321,14 @@ public class DefaultMetadataLogger implements MetadataLogger {
       }
       existingInvocations++;
       invocations.put(responsibleClass, existingInvocations);
+
+      // Update the latency distribution
+      LatencyHistogram histogram = latencies.get(responsibleClass);
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        latencies.put(responsibleClass, histogram);
+      }
+      histogram.record(timerEntry.duration);
     }
   }
 }
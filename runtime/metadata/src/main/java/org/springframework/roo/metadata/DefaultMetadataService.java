@@ -1,13 +1,22 @@
 package org.springframework.roo.metadata;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
@@ -23,9 +32,13 @@ import org.springframework.roo.metadata.internal.MetadataDependencyRegistryTrack
 /**
  * Default implementation of {@link MetadataService}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * By default every request is resolved under a single lock, as the process
+ * manager semantics already guarantee single-threaded access. When the
+ * {@value #CONCURRENT_RESOLUTION_PROPERTY} framework property is set to "true",
+ * providers run outside that lock: each MID being resolved is tracked as an
+ * in-flight future that other threads wait on, recursive requests (including
+ * those spanning threads) are still blocked and retried, and
+ * {@link #getAll(Collection)} resolves independent MIDs on a fork-join pool.
  *
  * @author Ben Alex
  * @author Enrique Ruiz at DISID Corporation S.L.
@@ -38,16 +51,52 @@ import org.springframework.roo.metadata.internal.MetadataDependencyRegistryTrack
     cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
 public class DefaultMetadataService extends AbstractMetadataCache implements MetadataService {
 
+  /**
+   * Framework property that, when set to "true" at startup, enables the
+   * concurrent resolution mode.
+   */
+  public static final String CONCURRENT_RESOLUTION_PROPERTY = "roo.metadata.concurrent";
+
+  /**
+   * A metadata request that is currently being resolved by its owner thread.
+   * Other threads asking for the same MID wait on it instead of invoking the
+   * provider a second time.
+   */
+  private class InFlightRequest extends FutureTask<MetadataItem> {
+
+    private final Thread owner = Thread.currentThread();
+
+    InFlightRequest(final MetadataProvider provider, final String metadataIdentificationString) {
+      super(new Callable<MetadataItem>() {
+        public MetadataItem call() {
+          try {
+            metadataLogger.startTimer(provider.getClass().getName());
+            metadataLogger.startPhase(MetadataPhase.METADATA_BUILD);
+            return provider.get(metadataIdentificationString);
+          } finally {
+            metadataLogger.stopPhase();
+            metadataLogger.stopTimer();
+          }
+        }
+      });
+    }
+  }
+
   @Reference
   private MetadataLogger metadataLogger;
 
   // Request control
-  // List to assist output "stacks"which show the order of requests
-  private final List<String> activeRequests = new ArrayList<String>();
-  private int cacheEvictions = 0;
-  private int cacheHits = 0;
-  private int cacheMisses = 0;
-  private int cachePuts = 0;
+  // Requests currently being resolved, in the order they were made, to
+  // assist output "stacks" which show the order of requests
+  private final Map<String, InFlightRequest> inFlightRequests =
+      new LinkedHashMap<String, InFlightRequest>();
+  // key: waiting thread, value: the in-flight request it is waiting for
+  private final Map<Thread, InFlightRequest> waitingRequests =
+      new HashMap<Thread, InFlightRequest>();
+  private final AtomicInteger cacheEvictions = new AtomicInteger();
+  private final AtomicInteger cacheHits = new AtomicInteger();
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+  private final AtomicInteger cachePuts = new AtomicInteger();
   // List to help us verify correct operation through logs (predictable
   // ordering)
   private final List<String> keysToRetry = new ArrayList<String>();
@@ -55,8 +104,11 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
   private final Object lock = new Object();
   private final Map<String, MetadataProvider> providerMap = new HashMap<String, MetadataProvider>();
   private final Set<MetadataProvider> providers = new HashSet<MetadataProvider>();
-  private int recursiveGets = 0;
-  private int validGets = 0;
+  private final AtomicInteger recursiveGets = new AtomicInteger();
+  private final AtomicInteger validGets = new AtomicInteger();
+
+  private boolean concurrentResolution;
+  private ForkJoinPool forkJoinPool;
 
   protected MetadataDependencyRegistryTracker registryTracker = null;
 
@@ -64,11 +116,15 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
    * This service is being activated so setup it:
    * <ul>
    * <li>Create and open the {@link MetadataDependencyRegistryTracker}.</li>
+   * <li>Select the resolution mode from the
+   * {@link #CONCURRENT_RESOLUTION_PROPERTY} framework property.</li>
    * </ul>
    */
   protected void activate(final ComponentContext context) {
     this.registryTracker = new MetadataDependencyRegistryTracker(context.getBundleContext(), this);
     this.registryTracker.open();
+    setConcurrentResolution(Boolean.valueOf(context.getBundleContext().getProperty(
+        CONCURRENT_RESOLUTION_PROPERTY)));
   }
 
   /**
@@ -81,6 +137,27 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     MetadataDependencyRegistry registry = this.registryTracker.getService();
     registry.removeNotificationListener(this);
     this.registryTracker.close();
+    setConcurrentResolution(false);
+  }
+
+  /**
+   * Switches between sequential resolution (every provider invocation
+   * serialized under one lock) and concurrent resolution (providers for
+   * different MIDs run in parallel, and {@link #getAll(Collection)} fans out
+   * over a fork-join pool).
+   *
+   * @param concurrentResolution <code>true</code> to resolve concurrently
+   */
+  void setConcurrentResolution(final boolean concurrentResolution) {
+    synchronized (lock) {
+      if (concurrentResolution && forkJoinPool == null) {
+        forkJoinPool = new ForkJoinPool();
+      } else if (!concurrentResolution && forkJoinPool != null) {
+        forkJoinPool.shutdown();
+        forkJoinPool = null;
+      }
+      this.concurrentResolution = concurrentResolution;
+    }
   }
 
   protected void bindMetadataProvider(final MetadataProvider mp) {
@@ -154,79 +231,116 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         "Metadata identification string '%s' does not identify a metadata instance",
         metadataIdentificationString);
 
+    if (concurrentResolution) {
+      return resolve(metadataIdentificationString, evictCache, cacheRetrievalAllowed);
+    }
     synchronized (lock) {
-      validGets++;
+      return resolve(metadataIdentificationString, evictCache, cacheRetrievalAllowed);
+    }
+  }
 
-      try {
-        metadataLogger.startEvent();
+  /**
+   * Resolves the given metadata instance. In sequential mode the caller holds
+   * the {@link #lock} for the whole call; in concurrent mode the lock only
+   * guards the cache, the in-flight requests and the retry list, so
+   * providers run without it.
+   */
+  private MetadataItem resolve(final String metadataIdentificationString,
+      final boolean evictCache, final boolean cacheRetrievalAllowed) {
+    validGets.incrementAndGet();
 
-        // Do some cache eviction if the caller requested it
-        if (evictCache) {
-          evict(metadataIdentificationString);
-          if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log("Evicting " + metadataIdentificationString);
-          }
-          cacheEvictions++;
+    InFlightRequest request = null;
+    try {
+      metadataLogger.startEvent();
+
+      // Do some cache eviction if the caller requested it
+      if (evictCache) {
+        evict(metadataIdentificationString);
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Evicting " + metadataIdentificationString);
         }
+        cacheEvictions.incrementAndGet();
+      }
 
-        // We can use the cache even for a recursive get (unless of
-        // course the caller has prevented it)
-        if (cacheRetrievalAllowed) {
-          // Try the cache first
-          final MetadataItem result = getFromCache(metadataIdentificationString);
-          if (result != null) {
-            cacheHits++;
-            if (metadataLogger.getTraceLevel() > 0) {
-              metadataLogger.log("Cache hit " + metadataIdentificationString);
-            }
-            return result;
+      // We can use the cache even for a recursive get (unless of
+      // course the caller has prevented it)
+      if (cacheRetrievalAllowed) {
+        // Try the cache first
+        final MetadataItem result;
+        synchronized (lock) {
+          result = getFromCache(metadataIdentificationString);
+        }
+        if (result != null) {
+          cacheHits.incrementAndGet();
+          if (metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log("Cache hit " + metadataIdentificationString);
           }
+          return result;
         }
+      }
 
-        if (metadataLogger.getTraceLevel() > 0) {
-          metadataLogger.log("Cache miss " + metadataIdentificationString);
-        }
-        cacheMisses++;
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Cache miss " + metadataIdentificationString);
+      }
+      cacheMisses.incrementAndGet();
+
+      // Get the destination
+      final String mdClassId =
+          MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
+      final MetadataProvider p;
+      final InFlightRequest inFlight;
+      synchronized (lock) {
+        p = providerMap.get(mdClassId);
 
         // Determine if this MID was already requested earlier. We need
-        // to stop these infinite requests from occurring.
-        if (activeRequests.contains(metadataIdentificationString)) {
-          recursiveGets++;
-          if (!keysToRetry.contains(metadataIdentificationString)) {
-            if (metadataLogger.getTraceLevel() > 0) {
-              metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
+        // to stop these infinite requests from occurring. A request
+        // being resolved by another thread is awaited instead, unless
+        // waiting for it would close a cycle back to this thread.
+        inFlight = inFlightRequests.get(metadataIdentificationString);
+        if (inFlight != null) {
+          if (inFlight.owner == Thread.currentThread() || isWaitingOn(inFlight.owner)) {
+            recursiveGets.incrementAndGet();
+            if (!keysToRetry.contains(metadataIdentificationString)) {
+              if (metadataLogger.getTraceLevel() > 0) {
+                metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
+              }
+              keysToRetry.add(metadataIdentificationString);
             }
-            keysToRetry.add(metadataIdentificationString);
+            return null;
           }
-          return null;
+          waitingRequests.put(Thread.currentThread(), inFlight);
+        } else {
+          Validate
+              .notNull(
+                  p,
+                  "No metadata provider is currently registered to provide metadata for identifier '%s' (class '%s')",
+                  metadataIdentificationString, mdClassId);
+
+          // Infinite loop management
+          request = new InFlightRequest(p, metadataIdentificationString);
+          inFlightRequests.put(metadataIdentificationString, request);
         }
+      }
 
-        // Get the destination
-        final String mdClassId =
-            MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
-        final MetadataProvider p = providerMap.get(mdClassId);
-        Validate
-            .notNull(
-                p,
-                "No metadata provider is currently registered to provide metadata for identifier '%s' (class '%s')",
-                metadataIdentificationString, mdClassId);
-
-        // Infinite loop management
-        activeRequests.add(metadataIdentificationString);
-
-        // Obtain the item
-        if (metadataLogger.getTraceLevel() > 0) {
-          metadataLogger.log("Get " + metadataIdentificationString + " from "
-              + p.getClass().getName());
-        }
-        MetadataItem result = null;
+      if (inFlight != null) {
         try {
-          metadataLogger.startTimer(p.getClass().getName());
-          result = p.get(metadataIdentificationString);
+          return inFlight.get();
         } finally {
-          metadataLogger.stopTimer();
+          synchronized (lock) {
+            waitingRequests.remove(Thread.currentThread());
+          }
         }
+      }
+
+      // Obtain the item
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Get " + metadataIdentificationString + " from "
+            + p.getClass().getName());
+      }
+      request.run();
+      final MetadataItem result = request.get();
 
+      synchronized (lock) {
         // If the item isn't available, evict it from the cache (unless
         // we did so at the start of the method already)
         if (result == null && !evictCache) {
@@ -234,7 +348,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
             metadataLogger.log("Evicting unavailable item " + metadataIdentificationString);
           }
           evict(metadataIdentificationString);
-          cacheEvictions++;
+          cacheEvictions.incrementAndGet();
         }
 
         // Put into the cache, provided it isn't null
@@ -243,57 +357,144 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
             metadataLogger.log("Caching " + metadataIdentificationString);
           }
           super.put(result);
-          cachePuts++;
+          cachePuts.incrementAndGet();
         }
 
-        activeRequests.remove(metadataIdentificationString);
+        inFlightRequests.remove(metadataIdentificationString);
+        request = null;
+      }
 
-        if (metadataLogger.getTraceLevel() > 0) {
-          metadataLogger.log("Returning " + metadataIdentificationString);
-        }
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Returning " + metadataIdentificationString);
+      }
 
-        return result;
-      } catch (final Exception e) {
-        activeRequests.remove(metadataIdentificationString);
-        throw new IllegalStateException(e);
-      } finally {
-        // We use another try..finally block as we want to ensure
-        // exceptions don't prevent our metadataLogger.stopEvent()
-        try {
-          // Have we processed all requests? If so, handle any retries
-          // we recorded
-          if (activeRequests.isEmpty()) {
-            final List<String> thisRetry = new ArrayList<String>();
+      return result;
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    } finally {
+      // We use another try..finally block as we want to ensure
+      // exceptions don't prevent our metadataLogger.stopEvent()
+      try {
+        // Have we processed all requests? If so, handle any retries
+        // we recorded
+        final List<String> thisRetry = new ArrayList<String>();
+        synchronized (lock) {
+          if (request != null) {
+            inFlightRequests.remove(metadataIdentificationString);
+          }
+          if (inFlightRequests.isEmpty()) {
             thisRetry.addAll(keysToRetry);
             keysToRetry.clear();
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
-              metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
-            }
-            for (final String retryMid : thisRetry) {
-              // Important: we should not evict any prior version
-              // from the cache (an interim version is
-              // acceptable).
-              // We discard the result of the get; this is purely
-              // to facilitate updating metadata stored in memory
-              // and on-disk
-              if (metadataLogger.getTraceLevel() > 0) {
-                metadataLogger.log("Retrying " + retryMid);
-              }
-              if (ObjectUtils.equals(retryMid, metadataIdentificationString)) {
-                // Avoid infinite recursion loop
-                continue;
-              }
-              getInternal(retryMid, false, false);
-            }
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
-              metadataLogger.log("Retry group completed " + metadataIdentificationString);
+          }
+        }
+        if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+          metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
+        }
+        // Avoid infinite recursion loop
+        thisRetry.remove(metadataIdentificationString);
+        // Important: we should not evict any prior version from the
+        // cache (an interim version is acceptable). We discard the
+        // result of the get; this is purely to facilitate updating
+        // metadata stored in memory and on-disk
+        if (concurrentResolution && thisRetry.size() > 1) {
+          resolveAll(thisRetry, false);
+        } else {
+          for (final String retryMid : thisRetry) {
+            if (metadataLogger.getTraceLevel() > 0) {
+              metadataLogger.log("Retrying " + retryMid);
             }
+            getInternal(retryMid, false, false);
           }
-        } finally {
-          metadataLogger.stopEvent();
         }
+        if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+          metadataLogger.log("Retry group completed " + metadataIdentificationString);
+        }
+      } finally {
+        metadataLogger.stopEvent();
+      }
+    }
+  }
+
+  /**
+   * Indicates whether the given thread is, directly or through a chain of
+   * other in-flight requests, waiting for a request owned by the current
+   * thread. Must be called while holding the {@link #lock}.
+   */
+  private boolean isWaitingOn(final Thread owner) {
+    final Set<Thread> visited = new HashSet<Thread>();
+    Thread thread = owner;
+    while (thread != null && visited.add(thread)) {
+      final InFlightRequest awaited = waitingRequests.get(thread);
+      if (awaited == null) {
+        return false;
+      }
+      if (awaited.owner == Thread.currentThread()) {
+        return true;
+      }
+      thread = awaited.owner;
+    }
+    return false;
+  }
+
+  public Map<String, MetadataItem> getAll(final Collection<String> metadataIdentificationStrings) {
+    Validate.notNull(metadataIdentificationStrings, "Metadata identification strings required");
+    return resolveAll(metadataIdentificationStrings, true);
+  }
+
+  /**
+   * Indicates whether the current thread owns a request that is being
+   * resolved. Must be called while holding the {@link #lock}.
+   */
+  private boolean ownsInFlightRequest() {
+    for (final InFlightRequest request : inFlightRequests.values()) {
+      if (request.owner == Thread.currentThread()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Resolves the given MIDs, on the fork-join pool if resolving concurrently.
+   * They're resolved on the current thread instead if it holds the
+   * {@link #lock}, which the pool's threads would need, or owns an in-flight
+   * request, which they might wait on without it being seen as a cycle.
+   */
+  private Map<String, MetadataItem> resolveAll(final Collection<String> mids,
+      final boolean cacheRetrievalAllowed) {
+    final Map<String, MetadataItem> results = new LinkedHashMap<String, MetadataItem>();
+    ForkJoinPool pool = null;
+    if (concurrentResolution && mids.size() > 1 && !Thread.holdsLock(lock)) {
+      synchronized (lock) {
+        if (!ownsInFlightRequest()) {
+          pool = forkJoinPool;
+        }
+      }
+    }
+    if (pool == null) {
+      for (final String mid : mids) {
+        results.put(mid, getInternal(mid, false, cacheRetrievalAllowed));
       }
+      return results;
     }
+
+    final Map<String, ForkJoinTask<MetadataItem>> tasks =
+        new LinkedHashMap<String, ForkJoinTask<MetadataItem>>();
+    for (final String mid : mids) {
+      if (!tasks.containsKey(mid)) {
+        tasks.put(mid, pool.submit(new Callable<MetadataItem>() {
+          public MetadataItem call() {
+            return getInternal(mid, false, cacheRetrievalAllowed);
+          }
+        }));
+      }
+    }
+    for (final Entry<String, ForkJoinTask<MetadataItem>> task : tasks.entrySet()) {
+      results.put(task.getKey(), task.getValue().join());
+    }
+    return results;
   }
 
   public void notify(final String upstreamDependency, final String downstreamDependency) {
@@ -304,44 +505,86 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    MetadataDependencyRegistry registry = this.registryTracker.getService();
-
+    // Get the destination
+    final String mdClassId = MetadataIdentificationUtils.getMetadataClassId(downstreamDependency);
+    final MetadataProvider p;
     synchronized (lock) {
-      // Get the destination
-      final String mdClassId = MetadataIdentificationUtils.getMetadataClassId(downstreamDependency);
-      final MetadataProvider p = providerMap.get(mdClassId);
+      p = providerMap.get(mdClassId);
+    }
 
-      if (p == null) {
-        // No known provider that can consume this notification, so just
-        // return as per the interface contract
-        return;
+    if (p == null) {
+      // No known provider that can consume this notification, so just
+      // return as per the interface contract
+      return;
+    }
+
+    // Providers only run outside the lock when resolving concurrently, so
+    // that the requests they make can be resolved on other threads
+    if (concurrentResolution) {
+      notify(p, upstreamDependency, downstreamDependency);
+    } else {
+      synchronized (lock) {
+        notify(p, upstreamDependency, downstreamDependency);
       }
+    }
+  }
 
-      if (p instanceof MetadataNotificationListener) {
-        // The provider can directly handle this notification, so we
-        // just need to delegate directly to it.
-        // We rely on the provider to evict items from the cache if
-        // applicable.
-        ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
-      } else {
-        // As per interface contract, we just ensure we evict the item
-        // and recreate it
-        // However, we only do this if the destination is an instance -
-        // if it's a class, "get" is not a meaningful operation.
-        if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
-          get(downstreamDependency, true);
-        }
-        // As per interface contract, we now notify any listeners this
-        // downstream instance has probably now changed
-        registry.notifyDownstream(downstreamDependency);
+  private void notify(final MetadataProvider p, final String upstreamDependency,
+      final String downstreamDependency) {
+    if (p instanceof MetadataNotificationListener) {
+      // The provider can directly handle this notification, so we
+      // just need to delegate directly to it.
+      // We rely on the provider to evict items from the cache if
+      // applicable.
+      ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
+    } else {
+      // As per interface contract, we just ensure we evict the item
+      // and recreate it
+      // However, we only do this if the destination is an instance -
+      // if it's a class, "get" is not a meaningful operation.
+      if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
+        get(downstreamDependency, true);
       }
+      // As per interface contract, we now notify any listeners this
+      // downstream instance has probably now changed
+      MetadataDependencyRegistry registry = this.registryTracker.getService();
+      registry.notifyDownstream(downstreamDependency);
     }
   }
 
   @Override
   public void put(final MetadataItem metadataItem) {
-    super.put(metadataItem);
-    cachePuts++;
+    synchronized (lock) {
+      super.put(metadataItem);
+    }
+    cachePuts.incrementAndGet();
+  }
+
+  @Override
+  public SortedSet<MetadataCacheStatistic> getCacheStatistics() {
+    synchronized (lock) {
+      return super.getCacheStatistics();
+    }
+  }
+
+  @Override
+  public void setMaxWeight(final long maxWeight) {
+    synchronized (lock) {
+      super.setMaxWeight(maxWeight);
+    }
+  }
+
+  /**
+   * Delegates to the item's provider if it is a {@link MetadataWeigher}.
+   */
+  @Override
+  protected long weigh(final MetadataItem metadataItem) {
+    final MetadataProvider provider =
+        providerMap.get(MetadataIdentificationUtils.getMetadataClassId(metadataItem.getId()));
+    if (provider instanceof MetadataWeigher) {
+      return ((MetadataWeigher) provider).weigh(metadataItem);
+    }
+    return super.weigh(metadataItem);
   }
 
   @Override
@@ -1,5 +1,7 @@
 package org.springframework.roo.metadata;
 
+import java.util.SortedSet;
+
 /**
  * Indicates a cache is maintained by the implementation.
  * <p>
@@ -7,7 +9,9 @@ package org.springframework.roo.metadata;
  * every item of metadata. Implementations should take care to ensure excessive
  * memory consumption does not occur as a result of their operation. It is
  * recommended that least recently used metadata instances are automatically
- * removed should consumption exceed an implementation-defined threshold.
+ * removed should consumption exceed an implementation-defined threshold,
+ * measured in number of items and/or approximate bytes (see
+ * {@link MetadataWeigher}).
  * 
  * @author Ben Alex
  * @since 1.0
@@ -47,10 +51,26 @@ public interface MetadataCache {
    */
   void put(MetadataItem metadataItem);
 
+  /**
+   * Returns the cache counters collected so far, per class of metadata.
+   * 
+   * @return a snapshot of the counters (never null, but may be empty)
+   */
+  SortedSet<MetadataCacheStatistic> getCacheStatistics();
+
   /**
    * Modifies the metadata cache maximum capacity.
    * 
    * @param maxCapacity the new maximum capacity
    */
   void setMaxCapacity(int maxCapacity);
+
+  /**
+   * Modifies the approximate number of bytes of metadata the cache may
+   * strongly reference. Items beyond this budget are only softly referenced,
+   * so the garbage collector may reclaim them.
+   * 
+   * @param maxWeight the new budget in bytes
+   */
+  void setMaxWeight(long maxWeight);
 }
@@ -0,0 +1,43 @@
+package org.springframework.roo.metadata;
+
+/**
+ * Represents an immutable representation of the {@link MetadataCache}
+ * counters for one class of metadata.
+ *
+ * @since 2.0
+ */
+public interface MetadataCacheStatistic extends Comparable<MetadataCacheStatistic> {
+
+  /**
+   * @return the number of items of this class moved out of the strongly
+   *         referenced cache tier to stay within the cache's budget
+   */
+  long getEvictions();
+
+  /**
+   * @return the number of lookups answered by the cache (includes
+   *         {@link #getSoftHits()})
+   */
+  long getHits();
+
+  /**
+   * @return the number of lookups the cache could not answer
+   */
+  long getMisses();
+
+  /**
+   * @return the metadata class these counters apply to (never null or empty)
+   */
+  String getName();
+
+  /**
+   * @return the number of lookups answered by the softly referenced cache
+   *         tier
+   */
+  long getSoftHits();
+
+  /**
+   * @return the approximate bytes held in the strongly referenced cache tier
+   */
+  long getWeight();
+}
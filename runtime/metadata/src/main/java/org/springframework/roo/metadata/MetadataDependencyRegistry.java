@@ -53,6 +53,21 @@ public interface MetadataDependencyRegistry {
    */
   void addNotificationListener(MetadataNotificationListener listener);
 
+  /**
+   * Starts a notification batch, if this registry supports batching. Until
+   * the matching {@link #endNotificationBatch()}, calls to
+   * {@link #notifyDownstream(String)} are recorded rather than dispatched, so
+   * that repeated notifications can be coalesced and each affected downstream
+   * notified once, in dependency order, when the batch is flushed.
+   * <p>
+   * Batches may be nested; only the outermost one is flushed on completion.
+   * Every call must be paired with a call to {@link #endNotificationBatch()}
+   * in a <code>finally</code> block.
+   * 
+   * @since 2.0
+   */
+  void beginNotificationBatch();
+
   /**
    * Removes all upstream dependencies that were previously registered for the
    * specified downstream dependency. This is useful if rebuilding the
@@ -83,6 +98,24 @@ public interface MetadataDependencyRegistry {
    */
   void deregisterDependency(String upstreamDependency, String downstreamDependency);
 
+  /**
+   * Ends the innermost notification batch started by
+   * {@link #beginNotificationBatch()}. Ending the outermost batch flushes any
+   * notifications it still holds, as per {@link #flushNotifications()}.
+   * 
+   * @since 2.0
+   */
+  void endNotificationBatch();
+
+  /**
+   * Dispatches the notifications recorded by the current batch, including
+   * those raised while they are being dispatched, and returns once none
+   * remain. The batch itself stays open. Does nothing if no batch is open.
+   * 
+   * @since 2.0
+   */
+  void flushNotifications();
+
   /**
    * Obtains the list of the immediate downstream dependencies of the
    * indicated metadata item.
@@ -149,7 +182,8 @@ public interface MetadataDependencyRegistry {
    * <p>
    * Notifications are delivered to the {@link MetadataService} initially,
    * followed by all {@link MetadataNotificationListener}s registered against
-   * the instance.
+   * the instance. While a notification batch is open, delivery is deferred
+   * until the batch is flushed.
    * 
    * @param upstreamDependency that is generating the notification (required).
    */
@@ -0,0 +1,35 @@
+package org.springframework.roo.metadata;
+
+/**
+ * An immutable summary of the distribution of the times recorded by the
+ * {@link MetadataLogger} against a single responsible class.
+ *
+ * @since 2.0
+ */
+public interface MetadataLatencyStatistic extends Comparable<MetadataLatencyStatistic> {
+
+  /**
+   * @return the number of invocations recorded against {@link #getName()}
+   */
+  long getInvocations();
+
+  /**
+   * @return the longest time recorded, in nanoseconds
+   */
+  long getMaximum();
+
+  /**
+   * @return an identifier to differentiate this statistic from another
+   *         (never null or empty)
+   */
+  String getName();
+
+  /**
+   * Returns the time that the given percentage of invocations completed
+   * within. The result is accurate to within an eighth of its value.
+   *
+   * @param percentile the percentage of invocations, between 0 and 100
+   * @return the time in nanoseconds (zero if nothing has been recorded)
+   */
+  long getPercentile(double percentile);
+}
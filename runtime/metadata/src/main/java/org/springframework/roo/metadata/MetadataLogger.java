@@ -1,5 +1,6 @@
 package org.springframework.roo.metadata;
 
+import java.util.List;
 import java.util.SortedSet;
 
 /**
@@ -35,12 +36,32 @@ import java.util.SortedSet;
  * <p>
  * Implementations are free to store metadata logging output in any file they
  * wish. This file should be created on the first call to {@link #log(String)}.
+ * <p>
+ * Besides totals, implementations keep the distribution of the times recorded
+ * against each responsible class (see {@link #getLatencies()}). Callers can
+ * also mark a {@link MetadataPhase} of work with {@link #startPhase(MetadataPhase)}
+ * so that each scan, delimited by {@link #startScan()} and {@link #stopScan()},
+ * can be broken down by phase (see {@link #getScanProfiles()}).
  * 
  * @author Ben Alex
  * @since 1.1.2
  */
 public interface MetadataLogger {
 
+  /**
+   * @return a snapshot of the latency distribution of each responsible class
+   *         timed so far (never null, but may be empty)
+   * @since 2.0
+   */
+  SortedSet<MetadataLatencyStatistic> getLatencies();
+
+  /**
+   * @return the breakdowns of the most recently completed scans, oldest first
+   *         (never null, but may be empty)
+   * @since 2.0
+   */
+  List<MetadataScanProfile> getScanProfiles();
+
   /**
    * @return a snapshot of timing statistics that have been collated so far
    *         (never null, but may be empty)
@@ -68,6 +89,25 @@ public interface MetadataLogger {
    */
   void setTraceLevel(int trace);
 
+  /**
+   * Starts timing the given phase of work on the current thread, pausing the
+   * phase it is nested in, if any. Time is only recorded while a scan is in
+   * progress. The phase must eventually be stopped via {@link #stopPhase()}.
+   * 
+   * @param phase the phase being started (required)
+   * @since 2.0
+   */
+  void startPhase(MetadataPhase phase);
+
+  /**
+   * Starts a scan, against which phase times are recorded until
+   * {@link #stopScan()} is called. Scans may nest, in which case the
+   * outermost scan is the one recorded.
+   * 
+   * @since 2.0
+   */
+  void startScan();
+
   /**
    * Increments the current stack level. The current stack level determines
    * the indentation of logged messages. It is required that for every
@@ -90,6 +130,21 @@ public interface MetadataLogger {
    */
   void stopEvent();
 
+  /**
+   * Stops the phase most recently started on the current thread, resuming
+   * the one it was nested in.
+   * 
+   * @since 2.0
+   */
+  void stopPhase();
+
+  /**
+   * Stops the scan started by the matching call to {@link #startScan()}.
+   * 
+   * @since 2.0
+   */
+  void stopScan();
+
   /**
    * Stops the most recently started timer. This is mandatory and must be in
    * the reverse order timers were started. When a timer stops is also when we
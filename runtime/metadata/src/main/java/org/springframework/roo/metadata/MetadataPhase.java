@@ -0,0 +1,36 @@
+package org.springframework.roo.metadata;
+
+/**
+ * The phases that the time spent in a scan is broken down into by the
+ * {@link MetadataLogger}.
+ *
+ * @since 2.0
+ * @see MetadataScanProfile
+ */
+public enum MetadataPhase {
+
+  /** Parsing Java sources into type details */
+  PARSE("parse"),
+
+  /** Building metadata in {@link MetadataProvider}s, excluding nested phases */
+  METADATA_BUILD("metadata build"),
+
+  /** Composing the source of inter-type declarations (ITDs) */
+  ITD_COMPOSE("ITD compose"),
+
+  /** Writing files to disk */
+  DISK_WRITE("disk write");
+
+  private final String label;
+
+  private MetadataPhase(final String label) {
+    this.label = label;
+  }
+
+  /**
+   * @return a human readable name for this phase (never blank)
+   */
+  public String getLabel() {
+    return label;
+  }
+}
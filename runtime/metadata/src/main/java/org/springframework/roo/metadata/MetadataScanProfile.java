@@ -0,0 +1,40 @@
+package org.springframework.roo.metadata;
+
+/**
+ * An immutable breakdown of where the time went during a single scan, i.e.
+ * the processing of a command or of a batch of file system changes.
+ *
+ * @since 2.0
+ * @see MetadataLogger#getScanProfiles()
+ */
+public interface MetadataScanProfile {
+
+  /**
+   * @return the elapsed time of the whole scan, in nanoseconds
+   */
+  long getDuration();
+
+  /**
+   * @return the number of times the given phase was entered during the scan
+   */
+  long getInvocations(MetadataPhase phase);
+
+  /**
+   * @return the sequence number of this scan, starting at 1
+   */
+  long getNumber();
+
+  /**
+   * @return when the scan started, in milliseconds since the epoch
+   */
+  long getStarted();
+
+  /**
+   * Returns the time spent in the given phase, excluding any phases nested
+   * within it.
+   *
+   * @param phase the phase (required)
+   * @return the time in nanoseconds
+   */
+  long getTime(MetadataPhase phase);
+}
@@ -1,5 +1,8 @@
 package org.springframework.roo.metadata;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Indicates a service which is aware of all {@link MetadataProvider}s in the
  * system and can provide access to their respective capabilities.
@@ -53,6 +56,19 @@ public interface MetadataService extends MetadataNotificationListener, MetadataC
    */
   <T extends MetadataItem> T evictAndGet(String metadataIdentificationString);
 
+  /**
+   * Returns the {@link MetadataItem}s with the given IDs, from the cache if
+   * possible. Implementations may resolve independent items concurrently.
+   *
+   * @param metadataIdentificationStrings the IDs of the {@link MetadataItem}s
+   *            to acquire (required); each must identify a metadata instance
+   * @return the metadata keyed by ID, in the iteration order of the given
+   *         IDs; a value is <code>null</code> if that metadata is not
+   *         currently available
+   * @throws an exception if any given type of metadata is not supported
+   */
+  Map<String, MetadataItem> getAll(Collection<String> metadataIdentificationStrings);
+
   /**
    * Returns the {@link MetadataItem} with the given ID, from the cache if
    * possible.
@@ -0,0 +1,24 @@
+package org.springframework.roo.metadata;
+
+/**
+ * Estimates how much memory a {@link MetadataItem} retains, so that caches
+ * can be bounded by size rather than by number of items.
+ * <p>
+ * A {@link MetadataProvider} can implement this interface to have the
+ * {@link MetadataService} weigh the items it provides; items from other
+ * providers are given a default weight.
+ *
+ * @since 2.0
+ */
+public interface MetadataWeigher {
+
+  /**
+   * Returns the approximate number of bytes retained by the given item. The
+   * estimate only needs to be good enough to compare items with each other;
+   * it is called once each time the item is cached, so it should be cheap.
+   *
+   * @param metadataItem the item to weigh (never null)
+   * @return the approximate retained size in bytes (should be positive)
+   */
+  long weigh(MetadataItem metadataItem);
+}
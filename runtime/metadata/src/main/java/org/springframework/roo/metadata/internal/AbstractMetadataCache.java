@@ -1,26 +1,71 @@
 package org.springframework.roo.metadata.internal;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.commons.lang3.Validate;
 import org.springframework.roo.metadata.MetadataCache;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
 
 /**
- * Basic {@link MetadataCache} that stores elements on a least recently used
- * (LRU) basis.
- * 
+ * {@link MetadataCache} with two tiers.
+ * <p>
+ * The first tier strongly references the most recently used items, and is
+ * bounded both by a number of items and by a byte budget, using the
+ * approximate size each item is given by {@link #weigh(MetadataItem)}. Items
+ * evicted from it on a least recently used (LRU) basis move to a second tier
+ * that only references them softly, so the garbage collector can reclaim cold
+ * items under memory pressure while they remain available until it does.
+ * <p>
+ * Hits, misses and evictions are counted per class of metadata.
+ *
  * @author Ben Alex
  * @since 1.0
  */
 public abstract class AbstractMetadataCache implements MetadataCache {
 
+  /**
+   * The weight given to items whose size can't be estimated
+   */
+  protected static final long DEFAULT_ITEM_WEIGHT = 2048;
+
   private static final float hashTableLoadFactor = 0.75f;
 
-  private LinkedHashMap<String, MetadataItem> map;
+  private static class CacheEntry {
+    final MetadataItem item;
+    final long weight;
+
+    CacheEntry(final MetadataItem item, final long weight) {
+      this.item = item;
+      this.weight = weight;
+    }
+  }
+
+  private static class SoftEntry extends SoftReference<MetadataItem> {
+    final String id;
+
+    SoftEntry(final MetadataItem item, final ReferenceQueue<MetadataItem> queue) {
+      super(item, queue);
+      id = item.getId();
+    }
+  }
+
+  private LinkedHashMap<String, CacheEntry> map;
   private int maxCapacity = 100000;
+  private long maxWeight = Runtime.getRuntime().maxMemory() / 4;
+  private Map<String, SoftEntry> softMap;
+  private ReferenceQueue<MetadataItem> softQueue;
+  private final Map<String, StandardMetadataCacheStatistic> statistics =
+      new HashMap<String, StandardMetadataCacheStatistic>();
+  private long weight;
 
   protected AbstractMetadataCache() {
     init();
@@ -30,43 +75,135 @@ public abstract class AbstractMetadataCache implements MetadataCache {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
-    map.remove(metadataIdentificationString);
+    remove(metadataIdentificationString);
+    softMap.remove(metadataIdentificationString);
   }
 
   public void evictAll() {
     init();
   }
 
+  public SortedSet<MetadataCacheStatistic> getCacheStatistics() {
+    final SortedSet<MetadataCacheStatistic> result = new TreeSet<MetadataCacheStatistic>();
+    for (final StandardMetadataCacheStatistic statistic : statistics.values()) {
+      result.add(new StandardMetadataCacheStatistic(statistic));
+    }
+    return result;
+  }
+
   protected int getCacheSize() {
     return map.size();
   }
 
+  /**
+   * @return the approximate bytes held in the strongly referenced tier
+   */
+  protected long getCacheWeight() {
+    return weight;
+  }
+
   protected MetadataItem getFromCache(final String metadataIdentificationString) {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
-    return map.get(metadataIdentificationString);
+    final StandardMetadataCacheStatistic statistic = getStatistic(metadataIdentificationString);
+    final CacheEntry entry = map.get(metadataIdentificationString);
+    if (entry != null) {
+      statistic.recordHit(false);
+      return entry.item;
+    }
+
+    // Fall back to the soft tier, promoting the item if it's still there
+    purgeCollected();
+    final SoftEntry softEntry = softMap.remove(metadataIdentificationString);
+    final MetadataItem item = softEntry == null ? null : softEntry.get();
+    if (item == null) {
+      statistic.recordMiss();
+      return null;
+    }
+    statistic.recordHit(true);
+    insert(item);
+    return item;
   }
 
   public int getMaxCapacity() {
     return maxCapacity;
   }
 
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  private StandardMetadataCacheStatistic getStatistic(final String metadataIdentificationString) {
+    final String metadataClass =
+        MetadataIdentificationUtils.getMetadataClass(metadataIdentificationString);
+    StandardMetadataCacheStatistic statistic = statistics.get(metadataClass);
+    if (statistic == null) {
+      statistic = new StandardMetadataCacheStatistic(metadataClass);
+      statistics.put(metadataClass, statistic);
+    }
+    return statistic;
+  }
+
   private void init() {
-    final int hashTableCapacity = (int) Math.ceil(maxCapacity / hashTableLoadFactor) + 1;
-    map = new LinkedHashMap<String, MetadataItem>(hashTableCapacity, hashTableLoadFactor, true) {
-      private static final long serialVersionUID = 1;
+    final int hashTableCapacity =
+        (int) Math.ceil(Math.min(maxCapacity, 1024) / hashTableLoadFactor) + 1;
+    map = new LinkedHashMap<String, CacheEntry>(hashTableCapacity, hashTableLoadFactor, true);
+    softMap = new HashMap<String, SoftEntry>();
+    softQueue = new ReferenceQueue<MetadataItem>();
+    weight = 0;
+    for (final StandardMetadataCacheStatistic statistic : statistics.values()) {
+      statistic.addWeight(-statistic.getWeight());
+    }
+  }
 
-      @Override
-      protected boolean removeEldestEntry(final Map.Entry<String, MetadataItem> eldest) {
-        return size() > maxCapacity;
+  /**
+   * Drops soft tier entries whose items have been garbage collected.
+   */
+  private void purgeCollected() {
+    SoftEntry collected;
+    while ((collected = (SoftEntry) softQueue.poll()) != null) {
+      if (softMap.get(collected.id) == collected) {
+        softMap.remove(collected.id);
       }
-    };
+    }
   }
 
   public void put(final MetadataItem metadataItem) {
     Validate.notNull(metadataItem, "A metadata item is required");
-    map.put(metadataItem.getId(), metadataItem);
+    insert(metadataItem);
+  }
+
+  private void insert(final MetadataItem metadataItem) {
+    final String id = metadataItem.getId();
+    final long itemWeight = Math.max(1, weigh(metadataItem));
+    remove(id);
+    softMap.remove(id);
+    map.put(id, new CacheEntry(metadataItem, itemWeight));
+    weight += itemWeight;
+    getStatistic(id).addWeight(itemWeight);
+
+    // Demote least recently used items until we're within budget, always
+    // keeping the item just added
+    final Iterator<CacheEntry> iterator = map.values().iterator();
+    while ((map.size() > maxCapacity || weight > maxWeight) && map.size() > 1) {
+      final CacheEntry eldest = iterator.next();
+      iterator.remove();
+      weight -= eldest.weight;
+      final StandardMetadataCacheStatistic statistic = getStatistic(eldest.item.getId());
+      statistic.addWeight(-eldest.weight);
+      statistic.recordEviction();
+      softMap.put(eldest.item.getId(), new SoftEntry(eldest.item, softQueue));
+    }
+    purgeCollected();
+  }
+
+  private void remove(final String metadataIdentificationString) {
+    final CacheEntry removed = map.remove(metadataIdentificationString);
+    if (removed != null) {
+      weight -= removed.weight;
+      getStatistic(metadataIdentificationString).addWeight(-removed.weight);
+    }
   }
 
   public void setMaxCapacity(int maxCapacity) {
@@ -76,4 +213,23 @@ public abstract class AbstractMetadataCache implements MetadataCache {
     this.maxCapacity = maxCapacity;
     init();
   }
+
+  public void setMaxWeight(long maxWeight) {
+    if (maxWeight < 1024 * 1024) {
+      maxWeight = 1024 * 1024;
+    }
+    this.maxWeight = maxWeight;
+    init();
+  }
+
+  /**
+   * Returns the approximate number of bytes retained by the given item.
+   * Subclasses able to estimate it should override this method.
+   *
+   * @param metadataItem the item being cached (never null)
+   * @return {@value #DEFAULT_ITEM_WEIGHT} by default
+   */
+  protected long weigh(final MetadataItem metadataItem) {
+    return DEFAULT_ITEM_WEIGHT;
+  }
 }
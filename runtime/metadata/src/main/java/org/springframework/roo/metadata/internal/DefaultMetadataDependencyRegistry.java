@@ -1,17 +1,23 @@
 package org.springframework.roo.metadata.internal;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataLogger;
@@ -21,9 +27,20 @@ import org.springframework.roo.metadata.MetadataService;
 /**
  * Default implementation of {@link MetadataDependencyRegistry}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * The dependency graph is guarded by this instance's monitor, as providers may
+ * register dependencies from several threads when the {@link MetadataService}
+ * resolves metadata concurrently. Notification dispatch is deliberately not
+ * synchronized, so that listeners are free to block on other threads.
+ * <p>
+ * The sets returned by {@link #getDownstream(String)} and
+ * {@link #getUpstream(String)} are read-only views that don't reflect later
+ * changes to the graph, so they can safely be iterated while notifying.
+ * <p>
+ * When the {@value #BATCH_NOTIFICATIONS_PROPERTY} framework property is set to
+ * "true", notifications raised during a batch are deferred and coalesced, so
+ * that each affected downstream is notified once per batch rather than once
+ * per upstream change. {@link #toString()} reports how many notifications and
+ * deliveries were batched and how many of them were coalesced away.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -32,11 +49,74 @@ import org.springframework.roo.metadata.MetadataService;
 @Service
 public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegistry {
 
-  /** key: downstream dependency; value: list<upstream dependencies> */
-  private final Map<String, Set<String>> downstreamKeyed = new HashMap<String, Set<String>>();
+  /**
+   * A notification deferred by a batch: either an upstream whose downstreams
+   * are still to be worked out, or a delivery to one of those downstreams.
+   */
+  private static class PendingNotification implements Comparable<PendingNotification> {
+
+    final String downstream;
+    final int position;
+    long sequence;
+    final String upstream;
+    final boolean viaClass;
+
+    PendingNotification(final String upstream, final String downstream,
+        final boolean viaClass, final int position) {
+      this.downstream = downstream;
+      this.position = position;
+      this.upstream = upstream;
+      this.viaClass = viaClass;
+    }
+
+    public int compareTo(final PendingNotification other) {
+      if (position != other.position) {
+        return position < other.position ? -1 : 1;
+      }
+      // A delivery to a MID comes before the dispatch of that MID's own
+      // notification, which the delivery might raise again
+      if ((downstream == null) != (other.downstream == null)) {
+        return downstream == null ? 1 : -1;
+      }
+      return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+
+    /**
+     * Deliveries to the same instance are interchangeable, whereas class
+     * level ones are resolved to an instance using the upstream MID.
+     */
+    String getDeliveryKey() {
+      if (MetadataIdentificationUtils.isIdentifyingClass(downstream)) {
+        return downstream + " <- " + upstream;
+      }
+      return downstream;
+    }
+  }
 
-  /** key: upstream dependency; value: list<downstream dependencies> */
-  private final Map<String, Set<String>> upstreamKeyed = new HashMap<String, Set<String>>();
+  /**
+   * Framework property that, when set to "true" at startup, enables the
+   * batching of notifications between {@link #beginNotificationBatch()} and
+   * {@link #endNotificationBatch()}.
+   */
+  public static final String BATCH_NOTIFICATIONS_PROPERTY = "roo.metadata.batch-notifications";
+
+  private final MetadataDependencyGraph graph = new MetadataDependencyGraph();
+
+  // Batch state and statistics, all guarded by batchLock
+  private final Object batchLock = new Object();
+  private int batchDepth;
+  private long batchedDeliveries;
+  private long batchedNotifications;
+  private boolean batchingEnabled;
+  private long coalescedDeliveries;
+  private long coalescedNotifications;
+  private boolean flushing;
+  private final PriorityQueue<PendingNotification> pending =
+      new PriorityQueue<PendingNotification>();
+  private final Set<String> pendingDeliveries = new HashSet<String>();
+  private final Set<String> pendingListenerNotifications = new LinkedHashSet<String>();
+  private final Set<String> pendingUpstreams = new HashSet<String>();
+  private long sequence;
 
   private final Set<MetadataNotificationListener> listeners =
       new HashSet<MetadataNotificationListener>();
@@ -45,6 +125,11 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
   protected volatile MetadataLogger metadataLogger;
   protected MetadataService metadataService;
 
+  protected void activate(final ComponentContext context) {
+    setBatchingEnabled(Boolean.valueOf(context.getBundleContext().getProperty(
+        BATCH_NOTIFICATIONS_PROPERTY)));
+  }
+
   public void addNotificationListener(final MetadataNotificationListener listener) {
     Validate.notNull(listener, "Metadata notification listener required");
 
@@ -57,39 +142,37 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
     listeners.add(listener);
   }
 
-  private void buildSetOfAllUpstreamDependencies(final Set<String> results,
-      final String downstreamDependency) {
-    final Set<String> upstreams = downstreamKeyed.get(downstreamDependency);
-    if (upstreams == null) {
-      return;
+  public void beginNotificationBatch() {
+    synchronized (batchLock) {
+      batchDepth++;
     }
+  }
 
-    for (final String upstream : upstreams) {
-      results.add(upstream);
-      buildSetOfAllUpstreamDependencies(results, upstream);
+  private void deliver(final String upstreamDependency, final String downstreamDependency,
+      final boolean viaClass) {
+    if (metadataLogger.getTraceLevel() > 0) {
+      metadataLogger.log(upstreamDependency + " -> " + downstreamDependency
+          + (viaClass ? " [via class]" : ""));
+    }
+    try {
+      final String responsibleClass =
+          MetadataIdentificationUtils.getMetadataClass(downstreamDependency);
+      metadataLogger.startTimer(responsibleClass);
+      metadataService.notify(upstreamDependency, downstreamDependency);
+    } finally {
+      metadataLogger.stopTimer();
     }
   }
 
-  public void deregisterDependencies(final String downstreamDependency) {
+  public synchronized void deregisterDependencies(final String downstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    // Acquire the keys to delete
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      return;
-    }
-
-    final Set<String> upstreamToDelete = new HashSet<String>(upstream);
-
-    // Delete them normally
-    for (final String deleteUpstream : upstreamToDelete) {
-      deregisterDependency(deleteUpstream, downstreamDependency);
-    }
+    graph.removeUpstream(downstreamDependency);
   }
 
-  public void deregisterDependency(final String upstreamDependency,
+  public synchronized void deregisterDependency(final String upstreamDependency,
       final String downstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
         "Upstream dependency is an invalid metadata identification string ('%s')",
@@ -98,46 +181,161 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    // Maintain the upstream-keyed map, if it even exists
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream != null) {
-      downstream.remove(downstreamDependency);
-    }
-
-    // Maintain the downstream-keyed map, if it even exists
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream != null) {
-      upstream.remove(upstreamDependency);
-    }
+    graph.remove(upstreamDependency, downstreamDependency);
   }
 
-  public Set<String> getDownstream(final String upstreamDependency) {
+  public synchronized Set<String> getDownstream(final String upstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
         "Upstream dependency is an invalid metadata identification string ('%s')",
         upstreamDependency);
 
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream == null) {
-      return new HashSet<String>();
+    return graph.getDownstream(upstreamDependency);
+  }
+
+  /**
+   * Adds a notification to the batch; the caller must hold the batch lock.
+   */
+  private void enqueue(final PendingNotification notification) {
+    notification.sequence = sequence++;
+    pending.add(notification);
+  }
+
+  public void endNotificationBatch() {
+    synchronized (batchLock) {
+      Validate.isTrue(batchDepth > 0, "No notification batch to end");
+      if (batchDepth > 1) {
+        batchDepth--;
+        return;
+      }
+    }
+    try {
+      flushNotifications();
+    } finally {
+      synchronized (batchLock) {
+        batchDepth--;
+        pending.clear();
+        pendingDeliveries.clear();
+        pendingListenerNotifications.clear();
+        pendingUpstreams.clear();
+      }
+    }
+  }
+
+  /**
+   * Dispatches the pending notifications in the order of their position in
+   * the dependency graph. As every MID comes after its upstream
+   * dependencies, the notifications about all of a downstream's upstreams
+   * have been dispatched by the time it is delivered, so a delivery raised
+   * by several of them only needs to happen once. The additional listeners
+   * are notified once the {@link MetadataService} has received everything.
+   */
+  public void flushNotifications() {
+    synchronized (batchLock) {
+      if (batchDepth == 0 || flushing) {
+        return;
+      }
+      flushing = true;
     }
+    try {
+      while (true) {
+        final PendingNotification next;
+        final List<String> listenerNotifications;
+        synchronized (batchLock) {
+          next = pending.poll();
+          if (next == null) {
+            if (pendingListenerNotifications.isEmpty()) {
+              return;
+            }
+            listenerNotifications = new ArrayList<String>(pendingListenerNotifications);
+            pendingListenerNotifications.clear();
+          } else {
+            listenerNotifications = null;
+            if (next.downstream == null) {
+              pendingUpstreams.remove(next.upstream);
+            } else {
+              pendingDeliveries.remove(next.getDeliveryKey());
+              batchedDeliveries++;
+            }
+          }
+        }
 
-    return Collections.unmodifiableSet(new CopyOnWriteArraySet<String>(downstream));
+        if (next == null) {
+          for (final String upstreamDependency : listenerNotifications) {
+            notifyListeners(upstreamDependency);
+          }
+        } else if (next.downstream == null) {
+          queueDeliveries(next.upstream);
+        } else {
+          try {
+            metadataLogger.startEvent();
+            deliver(next.upstream, next.downstream, next.viaClass);
+          } finally {
+            metadataLogger.stopEvent();
+          }
+        }
+      }
+    } finally {
+      synchronized (batchLock) {
+        flushing = false;
+      }
+    }
   }
 
-  public Set<String> getUpstream(final String downstreamDependency) {
+  /**
+   * Returns the downstream dependencies to notify of a change to the given
+   * upstream dependency.
+   * 
+   * @param upstreamDependency the upstream dependency
+   * @return a map whose values indicate whether the key was reached via the
+   *         upstream's metadata class rather than directly
+   */
+  private Map<String, Boolean> getDownstreamsToNotify(final String upstreamDependency) {
+    final Map<String, Boolean> result = new LinkedHashMap<String, Boolean>();
+
+    // First the fine-grained, instance-specific dependencies. No need to
+    // ensure upstreamDependency is different from downstream, as that's
+    // taken care of in the isValidDependency() method
+    for (final String downstream : getDownstream(upstreamDependency)) {
+      result.put(downstream, false);
+    }
+
+    // Next the coarse-grained, class-specific dependencies. We only do it if
+    // the upstream is not class specific, as otherwise we'd have handled
+    // class-specific dispatch in previous loop
+    if (!MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
+      final String asClass = MetadataIdentificationUtils.getMetadataClassId(upstreamDependency);
+      for (final String downstream : getDownstream(asClass)) {
+        // We don't notify a downstream if it had a direct
+        // instance-specific dependency and was already notified
+        // in previous loop
+        // We also don't notify if upstream is the same as
+        // downstream, as it doesn't make sense to notify
+        // yourself of an event
+        // (such a condition is only possible if an instance
+        // registered to receive class-specific notifications
+        // and that instance
+        // caused an event to fire)
+        if (!result.containsKey(downstream) && !upstreamDependency.equals(downstream)) {
+          result.put(downstream, true);
+        }
+      }
+    }
+    return result;
+  }
+
+  private synchronized int getPosition(final String mid) {
+    return graph.getPosition(mid);
+  }
+
+  public synchronized Set<String> getUpstream(final String downstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
         "Downstream dependency is an invalid metadata identification string ('%s')",
         downstreamDependency);
 
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      return new HashSet<String>();
-    }
-
-    return Collections.unmodifiableSet(upstream);
+    return graph.getUpstream(downstreamDependency);
   }
 
-  public boolean isValidDependency(final String upstreamDependency,
+  public synchronized boolean isValidDependency(final String upstreamDependency,
       final String downstreamDependency) {
     Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
         "Upstream dependency is an invalid metadata identification string ('%s')",
@@ -149,133 +347,97 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         "Upstream dependency cannot be the same as the downstream dependency ('%s')",
         downstreamDependency);
 
-    // The simplest possible outcome is the relationship already exists, so
-    // quickly return in that case
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream != null && downstream.contains(downstreamDependency)) {
-      return true;
-    }
-    // Don't need the variable anymore, as we don't care about the other
-    // downstream dependencies
-    downstream = null;
-
-    // Need to walk the upstream dependency's parent dependency graph,
-    // verifying no presence of the proposed downstream dependency
-
-    // Need to build a set representing every eventual upstream dependency
-    // of the indicated upstream dependency
-    final Set<String> allUpstreams = new HashSet<String>();
-    buildSetOfAllUpstreamDependencies(allUpstreams, upstreamDependency);
-
-    // The dependency is valid if none of the upstreams depend on the
-    // proposed downstream
-    return !allUpstreams.contains(downstreamDependency);
+    return !graph.isCyclic(upstreamDependency, downstreamDependency);
   }
 
   public void notifyDownstream(final String upstreamDependency) {
+    synchronized (batchLock) {
+      if (batchingEnabled && batchDepth > 0) {
+        batchedNotifications++;
+        if (pendingUpstreams.add(upstreamDependency)) {
+          enqueue(new PendingNotification(upstreamDependency, null, false,
+              getPosition(upstreamDependency)));
+        } else {
+          coalescedNotifications++;
+        }
+        return;
+      }
+    }
+
     try {
       metadataLogger.startEvent();
 
       if (metadataService != null) {
-        // First dispatch the fine-grained, instance-specific
-        // dependencies.
-        Set<String> notifiedDownstreams = new HashSet<String>();
-        Set<String> downstreams = getDownstream(upstreamDependency);
-        for (final String downstream : downstreams) {
-          if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log(upstreamDependency + " -> " + downstream);
-          }
-          // No need to ensure upstreamDependency is different from
-          // downstream, as that's taken care of in the
-          // isValidDependency() method
-          try {
-            final String responsibleClass =
-                MetadataIdentificationUtils.getMetadataClass(downstream);
-            metadataLogger.startTimer(responsibleClass);
-            metadataService.notify(upstreamDependency, downstream);
-          } finally {
-            metadataLogger.stopTimer();
-          }
-          notifiedDownstreams.add(downstream);
+        for (final Entry<String, Boolean> entry : getDownstreamsToNotify(upstreamDependency)
+            .entrySet()) {
+          deliver(upstreamDependency, entry.getKey(), entry.getValue());
         }
-
-        // Next dispatch the coarse-grained, class-specific
-        // dependencies.
-        // We only do it if the upstream is not class specific, as
-        // otherwise we'd have handled class-specific dispatch in
-        // previous loop
-        if (!MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
-          final String asClass = MetadataIdentificationUtils.getMetadataClassId(upstreamDependency);
-          downstreams = getDownstream(asClass);
-          for (final String downstream : downstreams) {
-            // We don't notify a downstream if it had a direct
-            // instance-specific dependency and was already notified
-            // in previous loop
-            // We also don't notify if upstream is the same as
-            // downstream, as it doesn't make sense to notify
-            // yourself of an event
-            // (such a condition is only possible if an instance
-            // registered to receive class-specific notifications
-            // and that instance
-            // caused an event to fire)
-            if (!notifiedDownstreams.contains(downstream) && !upstreamDependency.equals(downstream)) {
-              if (metadataLogger.getTraceLevel() > 0) {
-                metadataLogger.log(upstreamDependency + " -> " + downstream + " [via class]");
-              }
-              try {
-                final String responsibleClass =
-                    MetadataIdentificationUtils.getMetadataClass(downstream);
-                metadataLogger.startTimer(responsibleClass);
-                metadataService.notify(upstreamDependency, downstream);
-              } finally {
-                metadataLogger.stopTimer();
-              }
-            }
-          }
-        }
-
-        notifiedDownstreams = null;
       }
 
       // Finally dispatch the general-purpose additional listeners
-      for (final MetadataNotificationListener listener : listeners) {
-        if (metadataLogger.getTraceLevel() > 1) {
-          metadataLogger.log(upstreamDependency + " -> " + upstreamDependency + " ["
-              + listener.getClass().getSimpleName() + "]");
-        }
-        try {
-          final String responsibleClass = listener.getClass().getName();
-          metadataLogger.startTimer(responsibleClass);
-          listener.notify(upstreamDependency, null);
-        } finally {
-          metadataLogger.stopTimer();
-        }
-      }
+      notifyListeners(upstreamDependency);
     } finally {
       metadataLogger.stopEvent();
     }
   }
 
-  public void registerDependency(final String upstreamDependency, final String downstreamDependency) {
-    Validate.isTrue(isValidDependency(upstreamDependency, downstreamDependency),
+  private void notifyListeners(final String upstreamDependency) {
+    for (final MetadataNotificationListener listener : listeners) {
+      if (metadataLogger.getTraceLevel() > 1) {
+        metadataLogger.log(upstreamDependency + " -> " + upstreamDependency + " ["
+            + listener.getClass().getSimpleName() + "]");
+      }
+      try {
+        final String responsibleClass = listener.getClass().getName();
+        metadataLogger.startTimer(responsibleClass);
+        listener.notify(upstreamDependency, null);
+      } finally {
+        metadataLogger.stopTimer();
+      }
+    }
+  }
+
+  public synchronized void registerDependency(final String upstreamDependency,
+      final String downstreamDependency) {
+    Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
+        "Upstream dependency is an invalid metadata identification string ('%s')",
+        upstreamDependency);
+    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
+        "Downstream dependency is an invalid metadata identification string ('%s')",
+        downstreamDependency);
+    Validate.isTrue(!upstreamDependency.equals(downstreamDependency),
+        "Upstream dependency cannot be the same as the downstream dependency ('%s')",
+        downstreamDependency);
+
+    // The graph checks for cycles as it adds the dependency
+    Validate.isTrue(graph.add(upstreamDependency, downstreamDependency),
         "Invalid dependency between upstream '%s' and downstream '%s'", upstreamDependency,
         downstreamDependency);
+  }
 
-    // Maintain the upstream-keyed map
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream == null) {
-      downstream = new HashSet<String>();
-      upstreamKeyed.put(upstreamDependency, downstream);
+  /**
+   * Queues the deliveries for a notification from the given upstream,
+   * coalescing them with those already pending.
+   */
+  private void queueDeliveries(final String upstreamDependency) {
+    final Map<String, Boolean> downstreams =
+        metadataService == null ? Collections.<String, Boolean>emptyMap()
+            : getDownstreamsToNotify(upstreamDependency);
+    final List<PendingNotification> deliveries = new ArrayList<PendingNotification>();
+    for (final Entry<String, Boolean> entry : downstreams.entrySet()) {
+      deliveries.add(new PendingNotification(upstreamDependency, entry.getKey(), entry
+          .getValue(), getPosition(entry.getKey())));
     }
-    downstream.add(downstreamDependency);
-
-    // Maintain the downstream-keyed map
-    Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      upstream = new HashSet<String>();
-      downstreamKeyed.put(downstreamDependency, upstream);
+    synchronized (batchLock) {
+      for (final PendingNotification delivery : deliveries) {
+        if (pendingDeliveries.add(delivery.getDeliveryKey())) {
+          enqueue(delivery);
+        } else {
+          coalescedDeliveries++;
+        }
+      }
+      pendingListenerNotifications.add(upstreamDependency);
     }
-    upstream.add(upstreamDependency);
   }
 
   public void removeNotificationListener(final MetadataNotificationListener listener) {
@@ -288,4 +450,28 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
 
     listeners.remove(listener);
   }
+
+  /**
+   * Enables or disables the batching of notifications. While disabled,
+   * batches are still tracked but notifications are dispatched immediately.
+   * 
+   * @param batchingEnabled whether to defer notifications during a batch
+   */
+  public void setBatchingEnabled(final boolean batchingEnabled) {
+    synchronized (batchLock) {
+      this.batchingEnabled = batchingEnabled;
+    }
+  }
+
+  @Override
+  public final String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    synchronized (batchLock) {
+      builder.append("batchedNotifications", batchedNotifications);
+      builder.append("coalescedNotifications", coalescedNotifications);
+      builder.append("batchedDeliveries", batchedDeliveries);
+      builder.append("coalescedDeliveries", coalescedDeliveries);
+    }
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
 }
@@ -0,0 +1,112 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A histogram of non-negative durations with a fixed memory footprint.
+ * <p>
+ * Values below 16 have a bucket each; larger values share a bucket with those
+ * having the same highest set bit and the same three bits after it. Every
+ * bucket therefore spans at most an eighth of the values it holds, whatever
+ * their magnitude. This class is not thread safe.
+ *
+ * @since 2.0
+ */
+public class LatencyHistogram {
+
+  private static final int EXACT_BUCKETS = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = EXACT_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+  static int getBucket(final long value) {
+    if (value < EXACT_BUCKETS) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKETS - 1;
+    return EXACT_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+  }
+
+  static long getHighestValue(final int bucket) {
+    if (bucket < EXACT_BUCKETS) {
+      return bucket;
+    }
+    final int exponent = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + 4;
+    final int subBucket = (bucket - EXACT_BUCKETS) % SUB_BUCKETS;
+    final long width = 1L << exponent - SUB_BUCKET_BITS;
+    return (SUB_BUCKETS + subBucket) * width + width - 1;
+  }
+
+  private final long[] counts;
+  private long count;
+  private long maximum;
+  private long total;
+
+  public LatencyHistogram() {
+    counts = new long[BUCKETS];
+  }
+
+  /**
+   * Copy constructor
+   *
+   * @param other the histogram to copy (required)
+   */
+  public LatencyHistogram(final LatencyHistogram other) {
+    Validate.notNull(other, "Histogram to copy required");
+    counts = Arrays.copyOf(other.counts, BUCKETS);
+    count = other.count;
+    maximum = other.maximum;
+    total = other.total;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * Returns the value that the given percentage of recorded values are less
+   * than or equal to, rounded up to the end of its bucket.
+   *
+   * @param percentile between 0 and 100
+   * @return zero if nothing has been recorded
+   */
+  public long getPercentile(final double percentile) {
+    Validate.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+    if (count == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return Math.min(getHighestValue(bucket), maximum);
+      }
+    }
+    return maximum;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value the value to record; negative values are recorded as zero
+   */
+  public void record(final long value) {
+    final long recorded = Math.max(0, value);
+    counts[getBucket(recorded)]++;
+    count++;
+    maximum = Math.max(maximum, recorded);
+    total += recorded;
+  }
+}
@@ -0,0 +1,444 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The directed acyclic graph behind {@link DefaultMetadataDependencyRegistry}.
+ * <p>
+ * Each MID is interned to an <code>int</code> the first time it takes part in
+ * a dependency, and edges are kept in primitive adjacency arrays in both
+ * directions. The part of an adjacency array that has been handed out is
+ * never modified: additions are appended after it and removals replace the
+ * array. This allows {@link #getDownstream(String)} and
+ * {@link #getUpstream(String)} to return read-only views without copying,
+ * which remain stable while the graph changes underneath them.
+ * <p>
+ * Cycles are detected incrementally by maintaining a topological order of the
+ * nodes, as described by Pearce and Kelly. Adding an edge that agrees with the
+ * current order costs nothing; otherwise only the nodes ordered between its
+ * two ends are visited.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @since 2.0
+ */
+class MetadataDependencyGraph {
+
+  /**
+   * A read-only view of part of an adjacency array.
+   */
+  private static class NodeSet extends AbstractSet<String> {
+
+    private final String[] names;
+    private final int[] nodes;
+    private final int size;
+
+    NodeSet(final int[] nodes, final int size, final String[] names) {
+      this.names = names;
+      this.nodes = nodes;
+      this.size = size;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      for (int i = 0; i < size; i++) {
+        if (names[nodes[i]].equals(o)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int index;
+
+        public boolean hasNext() {
+          return index < size;
+        }
+
+        public String next() {
+          if (index >= size) {
+            throw new NoSuchElementException();
+          }
+          return names[nodes[index++]];
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private static final int[] NO_NODES = new int[0];
+
+  /**
+   * Encodes an edge as a single non-zero <code>long</code>.
+   */
+  private static long edge(final int upstream, final int downstream) {
+    return (long) (upstream + 1) << 32 | downstream;
+  }
+
+  private static int[] remove(final int[] nodes, final int size, final int node) {
+    for (int i = 0; i < size; i++) {
+      if (nodes[i] == node) {
+        final int[] result = new int[size - 1];
+        System.arraycopy(nodes, 0, result, 0, i);
+        System.arraycopy(nodes, i + 1, result, i, size - i - 1);
+        return result;
+      }
+    }
+    return nodes;
+  }
+
+  /** Open addressing set of the encoded edges, for constant time lookups */
+  private long[] edges = new long[64];
+  private int edgeCount;
+
+  private final Map<String, Integer> ids = new HashMap<String, Integer>();
+  private String[] names = new String[64];
+  private int nodeCount;
+
+  /** index: node, value: its downstream nodes */
+  private int[][] downstream = new int[64][];
+  private int[] downstreamSize = new int[64];
+
+  /** index: node, value: its upstream nodes */
+  private int[][] upstream = new int[64][];
+  private int[] upstreamSize = new int[64];
+
+  /** index: node, value: its position in the topological order */
+  private int[] order = new int[64];
+  /** index: position in the topological order, value: node */
+  private int[] nodeAt = new int[64];
+
+  // Scratch space for the searches
+  private int[] mark = new int[64];
+  private int markEpoch;
+  private int[] stack = new int[16];
+  private int[] visited = new int[16];
+
+  /**
+   * Adds an edge, unless it would create a cycle.
+   *
+   * @param upstreamMid the upstream MID (required)
+   * @param downstreamMid a different downstream MID (required)
+   * @return <code>false</code> if the edge would create a cycle, otherwise
+   *         <code>true</code> (including when it already exists)
+   */
+  boolean add(final String upstreamMid, final String downstreamMid) {
+    final int from = intern(upstreamMid);
+    final int to = intern(downstreamMid);
+    if (containsEdge(edge(from, to))) {
+      return true;
+    }
+    if (order[to] < order[from] && !reorder(from, to)) {
+      return false;
+    }
+    downstream[from] = append(downstream[from], downstreamSize[from]++, to);
+    upstream[to] = append(upstream[to], upstreamSize[to]++, from);
+    addEdge(edge(from, to));
+    return true;
+  }
+
+  private void addEdge(final long edge) {
+    if ((edgeCount + 1) * 2 > edges.length) {
+      final long[] old = edges;
+      edges = new long[old.length * 2];
+      for (final long existing : old) {
+        if (existing != 0) {
+          edges[slotOf(existing)] = existing;
+        }
+      }
+    }
+    edges[slotOf(edge)] = edge;
+    edgeCount++;
+  }
+
+  private int[] append(final int[] nodes, final int size, final int node) {
+    int[] result = nodes == null ? NO_NODES : nodes;
+    if (size == result.length) {
+      result = Arrays.copyOf(result, Math.max(4, size * 2));
+    }
+    result[size] = node;
+    return result;
+  }
+
+  /**
+   * Indicates whether the given edge exists.
+   */
+  boolean contains(final String upstreamMid, final String downstreamMid) {
+    final int from = idOf(upstreamMid);
+    final int to = idOf(downstreamMid);
+    return from >= 0 && to >= 0 && containsEdge(edge(from, to));
+  }
+
+  private boolean containsEdge(final long edge) {
+    return edges[slotOf(edge)] == edge;
+  }
+
+  /**
+   * Returns the downstream MIDs of the given MID, as a read-only view that
+   * doesn't reflect later changes.
+   *
+   * @param upstreamMid the upstream MID
+   * @return a non-<code>null</code> set
+   */
+  Set<String> getDownstream(final String upstreamMid) {
+    final int node = idOf(upstreamMid);
+    if (node < 0 || downstreamSize[node] == 0) {
+      return Collections.emptySet();
+    }
+    return new NodeSet(downstream[node], downstreamSize[node], names);
+  }
+
+  /**
+   * Returns the upstream MIDs of the given MID, as a read-only view that
+   * doesn't reflect later changes.
+   *
+   * @param downstreamMid the downstream MID
+   * @return a non-<code>null</code> set
+   */
+  Set<String> getUpstream(final String downstreamMid) {
+    final int node = idOf(downstreamMid);
+    if (node < 0 || upstreamSize[node] == 0) {
+      return Collections.emptySet();
+    }
+    return new NodeSet(upstream[node], upstreamSize[node], names);
+  }
+
+  /**
+   * Returns the position of the given MID in the current topological order,
+   * in which every MID comes after all of its upstream dependencies.
+   *
+   * @param mid the MID to locate
+   * @return the position, or -1 if the MID has never had a dependency
+   */
+  int getPosition(final String mid) {
+    final int node = idOf(mid);
+    return node < 0 ? -1 : order[node];
+  }
+
+  private int idOf(final String mid) {
+    final Integer id = ids.get(mid);
+    return id == null ? -1 : id;
+  }
+
+  private int intern(final String mid) {
+    final Integer id = ids.get(mid);
+    if (id != null) {
+      return id;
+    }
+    final int node = nodeCount++;
+    if (node == names.length) {
+      final int capacity = node * 2;
+      names = Arrays.copyOf(names, capacity);
+      downstream = Arrays.copyOf(downstream, capacity);
+      downstreamSize = Arrays.copyOf(downstreamSize, capacity);
+      upstream = Arrays.copyOf(upstream, capacity);
+      upstreamSize = Arrays.copyOf(upstreamSize, capacity);
+      order = Arrays.copyOf(order, capacity);
+      nodeAt = Arrays.copyOf(nodeAt, capacity);
+      mark = Arrays.copyOf(mark, capacity);
+    }
+    names[node] = mid;
+    order[node] = node;
+    nodeAt[node] = node;
+    ids.put(mid, node);
+    return node;
+  }
+
+  /**
+   * Indicates whether adding the given edge would create a cycle, i.e.
+   * whether the upstream MID is already reachable from the downstream one.
+   */
+  boolean isCyclic(final String upstreamMid, final String downstreamMid) {
+    final int from = idOf(upstreamMid);
+    final int to = idOf(downstreamMid);
+    if (from < 0 || to < 0 || order[from] < order[to]) {
+      return false;
+    }
+    return search(to, order[from], true, from) < 0;
+  }
+
+  /**
+   * Removes the given edge, if it exists.
+   */
+  void remove(final String upstreamMid, final String downstreamMid) {
+    final int from = idOf(upstreamMid);
+    final int to = idOf(downstreamMid);
+    if (from < 0 || to < 0 || !removeEdge(edge(from, to))) {
+      return;
+    }
+    downstream[from] = remove(downstream[from], downstreamSize[from]--, to);
+    upstream[to] = remove(upstream[to], upstreamSize[to]--, from);
+  }
+
+  /**
+   * Removes every edge into the given MID.
+   */
+  void removeUpstream(final String downstreamMid) {
+    final int to = idOf(downstreamMid);
+    if (to < 0) {
+      return;
+    }
+    for (int i = 0; i < upstreamSize[to]; i++) {
+      final int from = upstream[to][i];
+      removeEdge(edge(from, to));
+      downstream[from] = remove(downstream[from], downstreamSize[from]--, to);
+    }
+    upstream[to] = NO_NODES;
+    upstreamSize[to] = 0;
+  }
+
+  private boolean removeEdge(final long edge) {
+    int slot = slotOf(edge);
+    if (edges[slot] != edge) {
+      return false;
+    }
+    // Shift later entries of the probe sequence back into the gap
+    final int mask = edges.length - 1;
+    int next = slot;
+    while (true) {
+      next = next + 1 & mask;
+      final long candidate = edges[next];
+      if (candidate == 0) {
+        break;
+      }
+      final int home = hash(candidate);
+      if ((next - home & mask) >= (next - slot & mask)) {
+        edges[slot] = candidate;
+        slot = next;
+      }
+    }
+    edges[slot] = 0;
+    edgeCount--;
+    return true;
+  }
+
+  /**
+   * Restores the topological order after an edge from a node to one ordered
+   * before it, or detects that the edge would close a cycle.
+   *
+   * @return <code>false</code> if the edge would create a cycle
+   */
+  private boolean reorder(final int from, final int to) {
+    final int lower = order[to];
+    final int upper = order[from];
+
+    // Nodes reachable from "to" that are ordered no later than "from"
+    final int forwardCount = search(to, upper, true, from);
+    if (forwardCount < 0) {
+      return false;
+    }
+    final int[] forward = new int[forwardCount];
+    for (int i = 0; i < forwardCount; i++) {
+      forward[i] = order[visited[i]];
+    }
+
+    // Nodes that reach "from" that are ordered no earlier than "to"
+    final int backwardCount = search(from, lower, false, -1);
+    final int[] backward = new int[backwardCount];
+    for (int i = 0; i < backwardCount; i++) {
+      backward[i] = order[visited[i]];
+    }
+
+    // Reuse the same positions, putting the backward nodes first
+    Arrays.sort(forward);
+    Arrays.sort(backward);
+    final int[] nodes = new int[backwardCount + forwardCount];
+    for (int i = 0; i < backwardCount; i++) {
+      nodes[i] = nodeAt[backward[i]];
+    }
+    for (int i = 0; i < forwardCount; i++) {
+      nodes[backwardCount + i] = nodeAt[forward[i]];
+    }
+    final int[] positions = new int[nodes.length];
+    System.arraycopy(backward, 0, positions, 0, backwardCount);
+    System.arraycopy(forward, 0, positions, backwardCount, forwardCount);
+    Arrays.sort(positions);
+    for (int i = 0; i < nodes.length; i++) {
+      order[nodes[i]] = positions[i];
+      nodeAt[positions[i]] = nodes[i];
+    }
+    return true;
+  }
+
+  /**
+   * Performs a depth first search from the given node, only visiting nodes
+   * ordered within the given bound. On return the visited nodes are at the
+   * start of {@link #visited}.
+   *
+   * @param start the node to search from
+   * @param bound the last (when searching forward) or first (when searching
+   *            backward) position in the topological order to visit
+   * @param forward whether to follow downstream or upstream edges
+   * @param target a node whose discovery ends the search, or -1
+   * @return the number of visited nodes, or -1 if the target was discovered
+   */
+  private int search(final int start, final int bound, final boolean forward, final int target) {
+    if (++markEpoch == 0) {
+      Arrays.fill(mark, 0);
+      markEpoch = 1;
+    }
+    int visitedCount = 0;
+    int pending = 0;
+    stack = ensureCapacity(stack, 1);
+    stack[pending++] = start;
+    mark[start] = markEpoch;
+    while (pending > 0) {
+      final int node = stack[--pending];
+      visited = ensureCapacity(visited, visitedCount + 1);
+      visited[visitedCount++] = node;
+      final int[] next = forward ? downstream[node] : upstream[node];
+      final int size = forward ? downstreamSize[node] : upstreamSize[node];
+      for (int i = 0; i < size; i++) {
+        final int candidate = next[i];
+        if (candidate == target) {
+          return -1;
+        }
+        if (mark[candidate] != markEpoch
+            && (forward ? order[candidate] <= bound : order[candidate] >= bound)) {
+          mark[candidate] = markEpoch;
+          stack = ensureCapacity(stack, pending + 1);
+          stack[pending++] = candidate;
+        }
+      }
+    }
+    return visitedCount;
+  }
+
+  private int[] ensureCapacity(final int[] array, final int capacity) {
+    if (capacity > array.length) {
+      return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+    return array;
+  }
+
+  private int hash(final long edge) {
+    return (int) (edge * 0x9E3779B97F4A7C15L >>> 33) & edges.length - 1;
+  }
+
+  private int slotOf(final long edge) {
+    final int mask = edges.length - 1;
+    int slot = hash(edge);
+    while (edges[slot] != 0 && edges[slot] != edge) {
+      slot = slot + 1 & mask;
+    }
+    return slot;
+  }
+}
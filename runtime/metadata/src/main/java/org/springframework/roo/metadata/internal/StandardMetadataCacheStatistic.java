@@ -0,0 +1,103 @@
+package org.springframework.roo.metadata.internal;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
+
+/**
+ * Standard implementation of {@link MetadataCacheStatistic}, as maintained by
+ * {@link AbstractMetadataCache}. Instances handed out to callers are copies.
+ *
+ * @since 2.0
+ */
+public class StandardMetadataCacheStatistic implements MetadataCacheStatistic {
+
+  private long evictions;
+  private long hits;
+  private long misses;
+  private final String name;
+  private long softHits;
+  private long weight;
+
+  /**
+   * Constructor
+   *
+   * @param name the metadata class these counters apply to (required)
+   */
+  StandardMetadataCacheStatistic(final String name) {
+    Validate.notBlank(name, "Name required");
+    this.name = name;
+  }
+
+  StandardMetadataCacheStatistic(final StandardMetadataCacheStatistic other) {
+    this(other.name);
+    evictions = other.evictions;
+    hits = other.hits;
+    misses = other.misses;
+    softHits = other.softHits;
+    weight = other.weight;
+  }
+
+  public int compareTo(final MetadataCacheStatistic o) {
+    return name.compareTo(o.getName());
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof MetadataCacheStatistic
+        && name.equals(((MetadataCacheStatistic) obj).getName());
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getSoftHits() {
+    return softHits;
+  }
+
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  void recordEviction() {
+    evictions++;
+  }
+
+  void recordHit(final boolean soft) {
+    hits++;
+    if (soft) {
+      softHits++;
+    }
+  }
+
+  void recordMiss() {
+    misses++;
+  }
+
+  void addWeight(final long delta) {
+    weight += delta;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%8d hits (%d soft) %8d misses %8d evictions %10d bytes  %s", hits,
+        softHits, misses, evictions, weight, name);
+  }
+}
@@ -0,0 +1,88 @@
+package org.springframework.roo.metadata.internal;
+
+import static org.springframework.roo.metadata.internal.StandardMetadataTimingStatistic.NANOSECONDS_IN_MILLISECOND;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.metadata.MetadataLatencyStatistic;
+
+/**
+ * Standard implementation of {@link MetadataLatencyStatistic}, backed by a
+ * copy of a {@link LatencyHistogram}.
+ *
+ * @since 2.0
+ */
+public class StandardMetadataLatencyStatistic implements MetadataLatencyStatistic {
+
+  private static String format(final long nanoseconds) {
+    if (nanoseconds < NANOSECONDS_IN_MILLISECOND) {
+      return String.format("%6d ns", nanoseconds);
+    }
+    return String.format("%6d ms", nanoseconds / NANOSECONDS_IN_MILLISECOND);
+  }
+
+  private final LatencyHistogram histogram;
+  private final String name;
+
+  /**
+   * Constructor
+   *
+   * @param name (required)
+   * @param histogram the recorded times, which are copied (required)
+   */
+  public StandardMetadataLatencyStatistic(final String name, final LatencyHistogram histogram) {
+    Validate.notBlank(name, "Name required");
+    Validate.notNull(histogram, "Histogram required");
+    this.histogram = new LatencyHistogram(histogram);
+    this.name = name;
+  }
+
+  /**
+   * Orders by the 99th percentile, then by name.
+   */
+  public int compareTo(final MetadataLatencyStatistic o) {
+    int result = Long.valueOf(getPercentile(99)).compareTo(o.getPercentile(99));
+    if (result == 0) {
+      result = name.compareTo(o.getName());
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof MetadataLatencyStatistic
+        && compareTo((MetadataLatencyStatistic) obj) == 0;
+  }
+
+  public long getInvocations() {
+    return histogram.getCount();
+  }
+
+  public long getMaximum() {
+    return histogram.getMaximum();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getPercentile(final double percentile) {
+    return histogram.getPercentile(percentile);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("p50 ").append(format(getPercentile(50)));
+    sb.append("; p95 ").append(format(getPercentile(95)));
+    sb.append("; p99 ").append(format(getPercentile(99)));
+    sb.append("; max ").append(format(getMaximum()));
+    sb.append("; ").append(String.format("%5d", getInvocations())).append(" call(s): ");
+    sb.append(name);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,95 @@
+package org.springframework.roo.metadata.internal;
+
+import static org.springframework.roo.metadata.internal.StandardMetadataTimingStatistic.NANOSECONDS_IN_MILLISECOND;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.metadata.MetadataPhase;
+import org.springframework.roo.metadata.MetadataScanProfile;
+
+/**
+ * Standard implementation of {@link MetadataScanProfile}. Instances are
+ * mutable until {@link #stop()} is called, and are only handed out after
+ * that.
+ *
+ * @since 2.0
+ */
+public class StandardMetadataScanProfile implements MetadataScanProfile {
+
+  private long duration;
+  private final long[] invocations = new long[MetadataPhase.values().length];
+  private final long number;
+  private final long started = System.currentTimeMillis();
+  private final long startedNanos = System.nanoTime();
+  private final long[] times = new long[MetadataPhase.values().length];
+
+  /**
+   * Constructor for a scan that starts now
+   *
+   * @param number the sequence number of the scan
+   */
+  public StandardMetadataScanProfile(final long number) {
+    this.number = number;
+  }
+
+  /**
+   * Adds time to the given phase.
+   *
+   * @param phase the phase (required)
+   * @param nanoseconds the time spent in it
+   */
+  public void addTime(final MetadataPhase phase, final long nanoseconds) {
+    Validate.notNull(phase, "Phase required");
+    times[phase.ordinal()] += nanoseconds;
+  }
+
+  /**
+   * Records that the given phase was entered.
+   *
+   * @param phase the phase (required)
+   */
+  public void addInvocation(final MetadataPhase phase) {
+    Validate.notNull(phase, "Phase required");
+    invocations[phase.ordinal()]++;
+  }
+
+  public long getDuration() {
+    return duration;
+  }
+
+  public long getInvocations(final MetadataPhase phase) {
+    Validate.notNull(phase, "Phase required");
+    return invocations[phase.ordinal()];
+  }
+
+  public long getNumber() {
+    return number;
+  }
+
+  public long getStarted() {
+    return started;
+  }
+
+  public long getTime(final MetadataPhase phase) {
+    Validate.notNull(phase, "Phase required");
+    return times[phase.ordinal()];
+  }
+
+  /**
+   * Records the end of the scan.
+   */
+  public void stop() {
+    duration = System.nanoTime() - startedNanos;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Scan %d: %d ms", number, duration / NANOSECONDS_IN_MILLISECOND));
+    for (final MetadataPhase phase : MetadataPhase.values()) {
+      sb.append("; ").append(phase.getLabel()).append(' ');
+      sb.append(times[phase.ordinal()] / NANOSECONDS_IN_MILLISECOND).append(" ms");
+      sb.append(" (").append(invocations[phase.ordinal()]).append(')');
+    }
+    return sb.toString();
+  }
+}
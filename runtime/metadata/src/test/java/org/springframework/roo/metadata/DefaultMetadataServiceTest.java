@@ -1,16 +1,203 @@
 package org.springframework.roo.metadata;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 public class DefaultMetadataServiceTest {
 
+  /**
+   * Provides items whose resolution requests the items they depend on, and
+   * which requests an item when notified of a change to it
+   */
+  private static class TestProvider implements MetadataProvider, MetadataNotificationListener {
+
+    private final Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+    private final Map<String, AtomicInteger> gets = new ConcurrentHashMap<String, AtomicInteger>();
+    private MetadataService metadataService;
+
+    public MetadataItem get(final String metadataIdentificationString) {
+      gets.putIfAbsent(metadataIdentificationString, new AtomicInteger());
+      gets.get(metadataIdentificationString).incrementAndGet();
+      final List<String> upstreams = dependencies.get(metadataIdentificationString);
+      if (upstreams != null) {
+        for (final String upstream : upstreams) {
+          metadataService.get(upstream);
+        }
+      }
+      return new TestItem(metadataIdentificationString);
+    }
+
+    int getGets(final String metadataIdentificationString) {
+      final AtomicInteger count = gets.get(metadataIdentificationString);
+      return count == null ? 0 : count.get();
+    }
+
+    public String getProvidesType() {
+      return MetadataIdentificationUtils.create(METADATA_CLASS);
+    }
+
+    public void notify(final String upstreamDependency, final String downstreamDependency) {
+      metadataService.get(downstreamDependency);
+    }
+  }
+
+  private static class TestItem extends AbstractMetadataItem {
+
+    TestItem(final String id) {
+      super(id);
+    }
+  }
+
+  private static final String METADATA_CLASS = "com.Itd";
+
+  private static final long TIMEOUT_SECONDS = 10;
+
   private static final String TO_STRING_FOR_NEW_INSTANCE =
       "org.springframework.roo.metadata.DefaultMetadataService:" + "[validGets=0,"
           + "recursiveGets=0," + "cachePuts=0," + "cacheHits=0," + "cacheMisses=0,"
           + "cacheEvictions=0," + "cacheCurrentSize=0," + "cacheMaximumSize=100000]";
 
+  private static final String X = MetadataIdentificationUtils.create(METADATA_CLASS, "x");
+  private static final String Y = MetadataIdentificationUtils.create(METADATA_CLASS, "y");
+  private static final String Z = MetadataIdentificationUtils.create(METADATA_CLASS, "z");
+
+  /**
+   * Runs the given action on another thread, failing if it doesn't complete
+   * in time, e.g. because it's deadlocked
+   */
+  private static void runWithTimeout(final Runnable action) throws Exception {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          action.run();
+        } catch (final Throwable t) {
+          failure.set(t);
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+    assertFalse("Timed out, probably deadlocked", thread.isAlive());
+    if (failure.get() != null) {
+      throw new IllegalStateException(failure.get());
+    }
+  }
+
+  private TestProvider provider;
+  private DefaultMetadataService service;
+
+  private void assertRetryGroupResolved() {
+    assertEquals(1, provider.getGets(X));
+    // Y and Z were blocked while being resolved, so were retried together
+    final int yGets = provider.getGets(Y);
+    final int zGets = provider.getGets(Z);
+    assertTrue(yGets > 1);
+    assertTrue(zGets > 1);
+
+    // Every item has been cached
+    for (final String mid : Arrays.asList(X, Y, Z)) {
+      assertNotNull(mid, service.get(mid));
+    }
+    assertEquals(1, provider.getGets(X));
+    assertEquals(yGets, provider.getGets(Y));
+    assertEquals(zGets, provider.getGets(Z));
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    service = new DefaultMetadataService();
+    final Field metadataLogger = DefaultMetadataService.class.getDeclaredField("metadataLogger");
+    metadataLogger.setAccessible(true);
+    metadataLogger.set(service, new DefaultMetadataLogger());
+
+    // X needs Y, which needs Z, which needs Y and itself, so that resolving
+    // X blocks two recursive requests, for Y and Z
+    provider = new TestProvider();
+    provider.metadataService = service;
+    provider.dependencies.put(X, Collections.singletonList(Y));
+    provider.dependencies.put(Y, Collections.singletonList(Z));
+    provider.dependencies.put(Z, Arrays.asList(Y, Z));
+    service.bindMetadataProvider(provider);
+  }
+
+  @After
+  public void tearDown() {
+    service.setConcurrentResolution(false);
+  }
+
+  @Test
+  public void testConcurrentGetAllResolvesEveryItem() throws Exception {
+    service.setConcurrentResolution(true);
+    final Map<String, MetadataItem> items = new HashMap<String, MetadataItem>();
+
+    runWithTimeout(new Runnable() {
+      public void run() {
+        items.putAll(service.getAll(Arrays.asList(X, Y, Z)));
+      }
+    });
+
+    assertEquals(3, items.size());
+    for (final String mid : Arrays.asList(X, Y, Z)) {
+      assertEquals(mid, items.get(mid).getId());
+    }
+  }
+
+  @Test
+  public void testConcurrentGetResolvesMultiKeyRetryGroup() throws Exception {
+    service.setConcurrentResolution(true);
+
+    runWithTimeout(new Runnable() {
+      public void run() {
+        service.get(X);
+      }
+    });
+
+    assertRetryGroupResolved();
+  }
+
+  @Test
+  public void testConcurrentNotifyResolvesMultiKeyRetryGroup() throws Exception {
+    service.setConcurrentResolution(true);
+
+    runWithTimeout(new Runnable() {
+      public void run() {
+        service.notify(MetadataIdentificationUtils.create("com.Upstream", "u"), X);
+      }
+    });
+
+    assertRetryGroupResolved();
+  }
+
+  @Test
+  public void testSequentialNotifyResolvesMultiKeyRetryGroup() throws Exception {
+    runWithTimeout(new Runnable() {
+      public void run() {
+        service.notify(MetadataIdentificationUtils.create("com.Upstream", "u"), X);
+      }
+    });
+
+    assertRetryGroupResolved();
+  }
+
   @Test
   public void testToStringOfNewInstance() {
     assertEquals(TO_STRING_FOR_NEW_INSTANCE, new DefaultMetadataService().toString());
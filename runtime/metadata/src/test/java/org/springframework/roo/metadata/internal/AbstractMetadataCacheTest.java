@@ -0,0 +1,75 @@
+package org.springframework.roo.metadata.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.metadata.AbstractMetadataItem;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+
+/**
+ * Unit test of {@link AbstractMetadataCache}
+ */
+public class AbstractMetadataCacheTest {
+
+  private static final long ITEM_WEIGHT = 512 * 1024;
+  private static final String METADATA_CLASS = "com.Itd";
+
+  private static class TestItem extends AbstractMetadataItem {
+
+    TestItem(final String id) {
+      super(id);
+    }
+  }
+
+  private AbstractMetadataCache cache;
+
+  private MetadataItem item(final String instance) {
+    return new TestItem(MetadataIdentificationUtils.create(METADATA_CLASS, instance));
+  }
+
+  @Before
+  public void setUp() {
+    cache = new AbstractMetadataCache() {
+      @Override
+      protected long weigh(final MetadataItem metadataItem) {
+        return ITEM_WEIGHT;
+      }
+    };
+    cache.setMaxWeight(2 * ITEM_WEIGHT);
+  }
+
+  @Test
+  public void testEvictedItemIsStillAvailableFromSoftTier() {
+    final MetadataItem first = item("first");
+    cache.put(first);
+    cache.put(item("second"));
+    cache.put(item("third"));
+
+    assertEquals(2, cache.getCacheSize());
+    assertEquals(2 * ITEM_WEIGHT, cache.getCacheWeight());
+    assertSame(first, cache.getFromCache(first.getId()));
+
+    final MetadataCacheStatistic statistic = cache.getCacheStatistics().first();
+    assertEquals(METADATA_CLASS, statistic.getName());
+    assertEquals(2, statistic.getEvictions());
+    assertEquals(1, statistic.getHits());
+    assertEquals(1, statistic.getSoftHits());
+    assertEquals(2 * ITEM_WEIGHT, statistic.getWeight());
+  }
+
+  @Test
+  public void testExplicitlyEvictedItemIsNotAvailable() {
+    final MetadataItem item = item("evicted");
+    cache.put(item);
+    cache.evict(item.getId());
+
+    assertNull(cache.getFromCache(item.getId()));
+    assertEquals(0, cache.getCacheWeight());
+    assertEquals(1, cache.getCacheStatistics().first().getMisses());
+  }
+}
@@ -1,9 +1,19 @@
 package org.springframework.roo.metadata.internal;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataService;
 
 public class DefaultMetadataDependencyRegistryTest {
 
@@ -53,4 +63,102 @@ public class DefaultMetadataDependencyRegistryTest {
     Assert.assertEquals(0, reg.getDownstream(JAVA_TYPE_PERSON).size());
     Assert.assertEquals(2, reg.getDownstream(MVC_CONTROLLER).size());
   }
+
+  @Test
+  public void testCycleDetectionAfterRegistrationOutOfOrder() {
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+
+    // Register the chain from its far end, so each edge contradicts the
+    // order in which the MIDs were first seen
+    reg.registerDependency(JSP_PAGE_1, JSP_PAGE_2);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    reg.registerDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_PERSON);
+
+    Assert.assertFalse(reg.isValidDependency(JSP_PAGE_2, DISK_FILE));
+    Assert.assertFalse(reg.isValidDependency(JSP_PAGE_1, JAVA_TYPE_PERSON));
+    Assert.assertTrue(reg.isValidDependency(DISK_FILE, JSP_PAGE_2));
+    Assert.assertTrue(reg.isValidDependency(JAVA_TYPE_OBJECT, DISK_FILE));
+
+    reg.deregisterDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    Assert.assertTrue(reg.isValidDependency(JSP_PAGE_2, DISK_FILE));
+    reg.registerDependency(JSP_PAGE_2, DISK_FILE);
+    Assert.assertFalse(reg.isValidDependency(JAVA_TYPE_PERSON, JSP_PAGE_1));
+  }
+
+  @Test
+  public void testReturnedSetsAreUnaffectedByLaterChanges() {
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_2);
+
+    final Set<String> downstream = reg.getDownstream(MVC_CONTROLLER);
+    reg.deregisterDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    reg.registerDependency(MVC_CONTROLLER, DISK_FILE);
+
+    Assert.assertEquals(2, downstream.size());
+    Assert.assertTrue(downstream.contains(JSP_PAGE_1));
+    Assert.assertTrue(downstream.contains(JSP_PAGE_2));
+    Assert.assertFalse(downstream.contains(DISK_FILE));
+    Assert.assertEquals(2, reg.getDownstream(MVC_CONTROLLER).size());
+    Assert.assertTrue(reg.getDownstream(MVC_CONTROLLER).contains(DISK_FILE));
+  }
+
+  /**
+   * Returns a registry whose {@link MetadataService} records the downstreams
+   * it is notified of and, like a provider whose metadata changed, notifies
+   * their own downstreams in turn.
+   */
+  private DefaultMetadataDependencyRegistry getRecordingRegistry(final List<String> notified) {
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.metadataLogger = (MetadataLogger) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {MetadataLogger.class}, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return method.getReturnType() == int.class ? 0 : null;
+          }
+        });
+    reg.addNotificationListener((MetadataService) Proxy.newProxyInstance(getClass()
+        .getClassLoader(), new Class<?>[] {MetadataService.class}, new InvocationHandler() {
+      public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        if (method.getName().equals("notify")) {
+          notified.add((String) args[1]);
+          reg.notifyDownstream((String) args[1]);
+        }
+        return null;
+      }
+    }));
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_PERSON);
+    reg.registerDependency(DISK_FILE, MVC_CONTROLLER);
+    reg.registerDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+    return reg;
+  }
+
+  @Test
+  public void testNotificationsWithoutBatching() {
+    final List<String> notified = new ArrayList<String>();
+    final DefaultMetadataDependencyRegistry reg = getRecordingRegistry(notified);
+
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+    reg.endNotificationBatch();
+
+    Assert.assertEquals(Arrays.asList(JAVA_TYPE_PERSON, MVC_CONTROLLER, MVC_CONTROLLER), notified);
+  }
+
+  @Test
+  public void testBatchedNotificationsAreCoalesced() {
+    final List<String> notified = new ArrayList<String>();
+    final DefaultMetadataDependencyRegistry reg = getRecordingRegistry(notified);
+    reg.setBatchingEnabled(true);
+
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+    reg.notifyDownstream(DISK_FILE);
+    Assert.assertTrue(notified.isEmpty());
+    reg.endNotificationBatch();
+
+    Assert.assertEquals(Arrays.asList(JAVA_TYPE_PERSON, MVC_CONTROLLER), notified);
+    Assert.assertTrue(reg.toString().contains("coalescedNotifications=1"));
+    Assert.assertTrue(reg.toString().contains("coalescedDeliveries=1"));
+  }
 }
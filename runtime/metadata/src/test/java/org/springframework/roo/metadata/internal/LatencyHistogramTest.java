@@ -0,0 +1,54 @@
+package org.springframework.roo.metadata.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsCoverEveryValueInOrder() {
+    long previousHighest = -1;
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+      final int bucket = LatencyHistogram.getBucket(value);
+      final long highest = LatencyHistogram.getHighestValue(bucket);
+      assertTrue(value <= highest);
+      assertTrue(highest >= previousHighest);
+      // Each bucket spans at most an eighth of its values
+      assertTrue(highest - value <= value / 8);
+      previousHighest = highest;
+    }
+  }
+
+  @Test
+  public void testEmptyHistogram() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void testPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000L);
+    }
+    histogram.record(5000000L);
+
+    assertEquals(101, histogram.getCount());
+    assertEquals(5000000L, histogram.getMaximum());
+    assertEquals(5000000L, histogram.getPercentile(100));
+    assertWithinAnEighth(51000L, histogram.getPercentile(50));
+    assertWithinAnEighth(96000L, histogram.getPercentile(95));
+    assertWithinAnEighth(100000L, histogram.getPercentile(99));
+  }
+
+  private void assertWithinAnEighth(final long expected, final long actual) {
+    assertTrue("Expected about " + expected + " but was " + actual, actual >= expected
+        && actual <= expected + expected / 8);
+  }
+}
@@ -2,6 +2,7 @@ package org.springframework.roo.process.manager;
 
 import java.io.InputStream;
 import java.util.SortedSet;
+import java.util.concurrent.Future;
 
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
@@ -129,6 +130,43 @@ public interface FileManager {
   void createOrUpdateTextFileIfRequired(String fileIdentifier, String newContents,
       String descriptionOfChange, boolean writeImmediately);
 
+  /**
+   * Defers the creation or update of a text file whose contents are still
+   * being produced, for example by another thread, until {@link #commit()}.
+   * At that point the contents are waited for and treated as by
+   * {@link #createOrUpdateTextFileIfRequired(String, String, boolean)}.
+   * <p>
+   * Implementations that don't defer writes wait for the contents straight
+   * away. Otherwise the given contents are cancelled once they are no longer
+   * pending, i.e. once they've been written, or if they're replaced by other
+   * contents for the same file (other than themselves) or discarded by
+   * {@link #clear()}. This lets the producer of contents that are still
+   * being changed know when to stop changing them.
+   * 
+   * @param fileIdentifier the file to create or update as appropriate
+   *            (required)
+   * @param newContents the pending replacement contents (required; their
+   *            value can be zero bytes if the file should be deleted)
+   * @since 2.0
+   */
+  void createOrUpdateTextFileIfRequired(String fileIdentifier, Future<String> newContents);
+
+  /**
+   * As {@link #createOrUpdateTextFileIfRequired(String, Future)}, with a
+   * description of the change, as for
+   * {@link #createOrUpdateTextFileIfRequired(String, String, String, boolean)}
+   * .
+   * 
+   * @param fileIdentifier the file to create or update as appropriate
+   *            (required)
+   * @param newContents the pending replacement contents (required)
+   * @param descriptionOfChange a description of the change to the file (can
+   *            be blank)
+   * @since 2.0
+   */
+  void createOrUpdateTextFileIfRequired(String fileIdentifier, Future<String> newContents,
+      String descriptionOfChange);
+
   /**
    * Attempts to delete a file or directory on the disk. The path should be in
    * canonical file name format.
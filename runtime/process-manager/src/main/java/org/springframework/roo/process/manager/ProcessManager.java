@@ -76,6 +76,13 @@ public interface ProcessManager extends ProcessManagerStatusProvider {
 
   long getLastScanDuration();
 
+  /**
+   * @return whether commands executed while another command is executing
+   *         join its "transaction" (defaults to false)
+   * @since 2.0
+   */
+  boolean isBatchMode();
+
   long getMinimumDelayBetweenScan();
 
   /**
@@ -85,6 +92,19 @@ public interface ProcessManager extends ProcessManagerStatusProvider {
    */
   boolean isDevelopmentMode();
 
+  /**
+   * Sets whether commands executed while another command is executing, such
+   * as the lines of a script, join that command's "transaction" rather than
+   * running in one of their own. A joining command's changes are written and
+   * scanned when it completes, so that later commands can see them, but they
+   * stay in the outer command's undo history and are undone along with it if
+   * it fails.
+   * 
+   * @param batchMode whether to join nested commands
+   * @since 2.0
+   */
+  void setBatchMode(boolean batchMode);
+
   void setDevelopmentMode(boolean developmentMode);
 
   void setMinimumDelayBetweenScan(long minimumDelayBetweenScan);
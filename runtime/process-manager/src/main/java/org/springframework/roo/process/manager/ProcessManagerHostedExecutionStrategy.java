@@ -55,6 +55,12 @@ public class ProcessManagerHostedExecutionStrategy implements ExecutionStrategy
     }
   }
 
+  public boolean isBatchMode() {
+    synchronized (mutex) {
+      return processManager != null && processManager.isBatchMode();
+    }
+  }
+
   public boolean isReadyForCommands() {
     synchronized (mutex) {
       if (processManager != null) {
@@ -71,6 +77,13 @@ public class ProcessManagerHostedExecutionStrategy implements ExecutionStrategy
     return false;
   }
 
+  public void setBatchMode(final boolean batchMode) {
+    synchronized (mutex) {
+      Validate.notNull(processManager, "ProcessManager required");
+      processManager.setBatchMode(batchMode);
+    }
+  }
+
   public void terminate() {
     synchronized (mutex) {
       if (processManager != null) {
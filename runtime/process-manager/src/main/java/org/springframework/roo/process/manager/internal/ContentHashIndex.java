@@ -0,0 +1,125 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.support.util.ContentHashUtils;
+
+/**
+ * Remembers the length and {@link ContentHashUtils hash} of the text files the
+ * {@link DefaultFileManager} last wrote or read, so that it can tell whether
+ * new contents differ from a file's without reading it again.
+ * <p>
+ * An entry is only trusted while the file's size and last modified time are
+ * still those recorded with it, so a file changed by anything else (an editor,
+ * a version control system, or an undo) is read again. As last modified times
+ * can be as coarse as {@value #TIMESTAMP_RESOLUTION} ms, an entry recorded
+ * within that time of the file's last modification isn't trusted either: the
+ * file could still change without its size or time changing.
+ *
+ * @since 2.0
+ */
+class ContentHashIndex {
+
+  private static class Entry {
+    final int chars;
+    final long hash;
+    final long lastModified;
+    final long length;
+    final boolean racy;
+
+    Entry(final int chars, final long hash, final long lastModified, final long length,
+        final boolean racy) {
+      this.chars = chars;
+      this.hash = hash;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.racy = racy;
+    }
+  }
+
+  // The coarsest resolution of last modified times, that of FAT file systems
+  private static final long TIMESTAMP_RESOLUTION = 2000;
+
+  private long avoidedReadBytes;
+  private long avoidedReads;
+  private long avoidedWriteBytes;
+  private long avoidedWrites;
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  /**
+   * Forgets the contents of every file.
+   */
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Indicates whether the given file is known to hold the given contents.
+   *
+   * @param file the existing file (required)
+   * @param contents the contents to compare with the file's (required)
+   * @return true or false if the file's contents are known, otherwise null,
+   *         meaning the caller has to read the file to find out
+   */
+  synchronized Boolean hasContents(final File file, final String contents) {
+    final Entry entry = entries.get(file.getPath());
+    if (entry == null || entry.racy || entry.lastModified != file.lastModified()
+        || entry.length != file.length()) {
+      return null;
+    }
+    avoidedReads++;
+    avoidedReadBytes += entry.length;
+    final boolean same = entry.chars == contents.length()
+        && entry.hash == ContentHashUtils.hash(contents);
+    if (same) {
+      recordAvoidedWrite(entry.length);
+    }
+    return same;
+  }
+
+  /**
+   * Records the contents a file was just read or written with.
+   *
+   * @param file the file (required)
+   * @param contents its contents (required)
+   */
+  synchronized void put(final File file, final String contents) {
+    final long lastModified = file.lastModified();
+    final boolean racy = System.currentTimeMillis() < lastModified + TIMESTAMP_RESOLUTION;
+    entries.put(file.getPath(), new Entry(contents.length(), ContentHashUtils.hash(contents),
+        lastModified, file.length(), racy));
+  }
+
+  /**
+   * Counts a write that was avoided as the file already held the contents.
+   *
+   * @param length the number of bytes not written
+   */
+  synchronized void recordAvoidedWrite(final long length) {
+    avoidedWrites++;
+    avoidedWriteBytes += length;
+  }
+
+  /**
+   * Forgets the given file's contents, if recorded.
+   *
+   * @param file the file (required)
+   */
+  synchronized void remove(final File file) {
+    entries.remove(file.getPath());
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("files", entries.size());
+    builder.append("avoidedReads", avoidedReads);
+    builder.append("avoidedReadBytes", avoidedReadBytes);
+    builder.append("avoidedWrites", avoidedWrites);
+    builder.append("avoidedWriteBytes", avoidedWriteBytes);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
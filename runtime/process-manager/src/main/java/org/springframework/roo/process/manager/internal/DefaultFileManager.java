@@ -7,13 +7,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -41,6 +45,15 @@ import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of {@link FileManager}.
+ * <p>
+ * The contents of the text files it writes or reads are remembered by a
+ * {@link ContentHashIndex}, so that unchanged outputs can be detected without
+ * reading the existing files again. {@link #toString()} reports the reads and
+ * writes this avoided.
+ * <p>
+ * Metadata providers may run on several threads at once, so the deferred
+ * writes are guarded by a lock. It is never held while waiting for deferred
+ * contents or while touching the disk.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -55,7 +68,12 @@ public class DefaultFileManager implements FileManager, UndoListener {
   private final Map<String, String> deferredDescriptionOfChanges =
       new LinkedHashMap<String, String>();
   /** key: file identifier, value: new textual content */
-  private final Map<String, String> deferredFileWrites = new LinkedHashMap<String, String>();
+  private final Map<String, DeferredContents> deferredFileWrites =
+      new LinkedHashMap<String, DeferredContents>();
+  private final ContentHashIndex contentHashIndex = new ContentHashIndex();
+  // Mutex for the deferred writes and descriptions of changes
+  private final Object lock = new Object();
+  private final FileWritePipeline writePipeline = new FileWritePipeline();
 
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
@@ -74,28 +92,75 @@ public class DefaultFileManager implements FileManager, UndoListener {
   }
 
   public void clear() {
-    deferredFileWrites.clear();
-    deferredDescriptionOfChanges.clear();
+    synchronized (lock) {
+      for (final DeferredContents contents : deferredFileWrites.values()) {
+        contents.cancel();
+      }
+      deferredFileWrites.clear();
+      deferredDescriptionOfChanges.clear();
+    }
   }
 
   public void commit() {
-    final Map<String, String> toRemove = new LinkedHashMap<String, String>(deferredFileWrites);
+    final Map<String, DeferredContents> toRemove;
+    // key: file identifier, value: its description of change
+    final Map<String, String> descriptionsOfChanges;
+    synchronized (lock) {
+      toRemove = new LinkedHashMap<String, DeferredContents>(deferredFileWrites);
+      descriptionsOfChanges = new LinkedHashMap<String, String>(deferredDescriptionOfChanges);
+    }
+    // The directories whose entries changed, so that each is synced once
+    final Set<File> changedDirectories = new LinkedHashSet<File>();
+    // key: file written by the pipeline, value: its new contents
+    final Map<File, String> writtenFiles = new LinkedHashMap<File, String>();
     try {
-      for (final Entry<String, String> entry : toRemove.entrySet()) {
+      // The undo backups are made here, in order, while the pipeline writes
+      // the files already backed up
+      for (final Entry<String, DeferredContents> entry : toRemove.entrySet()) {
         final String fileIdentifier = entry.getKey();
-        final String newContents = entry.getValue();
+        final String newContents = entry.getValue().get();
+        final boolean existed = exists(fileIdentifier);
         if (StringUtils.isNotBlank(newContents)) {
-          createOrUpdateTextFileIfRequired(fileIdentifier, newContents,
-              StringUtils.stripToEmpty(deferredDescriptionOfChanges.get(fileIdentifier)));
-        } else if (exists(fileIdentifier)) {
+          final DefaultMutableFile mutableFile =
+              getFileToWrite(fileIdentifier, newContents,
+                  StringUtils.stripToEmpty(descriptionsOfChanges.get(fileIdentifier)));
+          if (mutableFile != null) {
+            writePipeline.submit(mutableFile, newContents);
+            writtenFiles.put(mutableFile.getFile(), newContents);
+          }
+          if (!existed) {
+            changedDirectories.add(new File(fileIdentifier).getParentFile());
+          }
+        } else if (existed) {
           delete(fileIdentifier, "empty");
+          changedDirectories.add(new File(fileIdentifier).getParentFile());
         }
       }
+      writePipeline.flush();
+      for (final Entry<File, String> writtenFile : writtenFiles.entrySet()) {
+        contentHashIndex.put(writtenFile.getKey(), writtenFile.getValue());
+      }
+      syncDirectories(changedDirectories);
     } finally {
-      for (final String remove : toRemove.keySet()) {
-        deferredFileWrites.remove(remove);
+      // Never leave writes running behind, even if this commit failed
+      writePipeline.abandon();
+      synchronized (lock) {
+        for (final Entry<String, DeferredContents> entry : toRemove.entrySet()) {
+          // Keep contents deferred again by another thread in the meantime
+          final DeferredContents current = deferredFileWrites.get(entry.getKey());
+          if (current == entry.getValue()) {
+            deferredFileWrites.remove(entry.getKey());
+            entry.getValue().cancel();
+          } else if (current == null || !current.isSameAs(entry.getValue())) {
+            entry.getValue().cancel();
+          }
+        }
+        for (final Entry<String, String> entry : descriptionsOfChanges.entrySet()) {
+          if (entry.getValue().equals(deferredDescriptionOfChanges.get(entry.getKey()))) {
+            deferredDescriptionOfChanges.remove(entry.getKey());
+          }
+        }
       }
-      deferredDescriptionOfChanges.clear();
     }
   }
 
@@ -165,32 +230,16 @@ public class DefaultFileManager implements FileManager, UndoListener {
 
   private void createOrUpdateTextFileIfRequired(final String fileIdentifier,
       final String newContents, final String descriptionOfChange) {
-    MutableFile mutableFile = null;
-    if (exists(fileIdentifier)) {
-      // First verify if the file has even changed
-      final File file = new File(fileIdentifier);
-      String existing = null;
-      try {
-        existing = FileUtils.readFileToString(file);
-      } catch (final IOException ignored) {
-      }
-
-      if (!newContents.equals(existing)) {
-        mutableFile = updateFile(fileIdentifier);
-      }
-    } else {
-      mutableFile = createFile(fileIdentifier);
-      Validate.notNull(mutableFile, "Could not create file '%s'", fileIdentifier);
-    }
-
+    final MutableFile mutableFile =
+        getFileToWrite(fileIdentifier, newContents, descriptionOfChange);
     if (mutableFile != null) {
       OutputStream outputStream = null;
       try {
-        if (StringUtils.isNotBlank(descriptionOfChange)) {
-          mutableFile.setDescriptionOfChange(descriptionOfChange);
-        }
         outputStream = mutableFile.getOutputStream();
         IOUtils.write(newContents, outputStream);
+        outputStream.close();
+        outputStream = null;
+        contentHashIndex.put(new File(fileIdentifier), newContents);
       } catch (final IOException e) {
         throw new IllegalStateException(
             "Could not output '" + mutableFile.getCanonicalPath() + "'", e);
@@ -200,21 +249,107 @@ public class DefaultFileManager implements FileManager, UndoListener {
     }
   }
 
+  /**
+   * Prepares the given file for being written with the given contents, by
+   * creating it or backing it up for undo, unless it has those contents
+   * already.
+   *
+   * @param fileIdentifier the file to create or update
+   * @param newContents its new contents
+   * @param descriptionOfChange the additional information about the change
+   *            (can be blank)
+   * @return the file to write, or <code>null</code> if it's unchanged
+   */
+  private DefaultMutableFile getFileToWrite(final String fileIdentifier,
+      final String newContents, final String descriptionOfChange) {
+    DefaultMutableFile mutableFile = null;
+    if (exists(fileIdentifier)) {
+      // First verify if the file has even changed, reading it only if we
+      // don't know its contents already, and then only up to the first
+      // difference
+      final File file = new File(fileIdentifier);
+      Boolean unchanged = contentHashIndex.hasContents(file, newContents);
+      if (unchanged == null) {
+        try {
+          unchanged = TextFileComparator.hasContents(file, newContents);
+        } catch (final IOException ignored) {
+          unchanged = false;
+        }
+        if (unchanged) {
+          contentHashIndex.put(file, newContents);
+          contentHashIndex.recordAvoidedWrite(file.length());
+        }
+      }
+
+      if (!unchanged) {
+        mutableFile = (DefaultMutableFile) updateFile(fileIdentifier);
+      }
+    } else {
+      mutableFile = (DefaultMutableFile) createFile(fileIdentifier);
+      Validate.notNull(mutableFile, "Could not create file '%s'", fileIdentifier);
+    }
+    if (mutableFile != null && StringUtils.isNotBlank(descriptionOfChange)) {
+      mutableFile.setDescriptionOfChange(descriptionOfChange);
+    }
+    return mutableFile;
+  }
+
   public void createOrUpdateTextFileIfRequired(final String fileIdentifier,
       final String newContents, final String descriptionOfChange, final boolean writeImmediately) {
     if (writeImmediately) {
       createOrUpdateTextFileIfRequired(fileIdentifier, newContents, descriptionOfChange);
     } else {
-      deferredFileWrites.put(fileIdentifier, newContents);
-
-      String deferredDescriptionOfChange =
-          StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
-      if (StringUtils.isNotBlank(deferredDescriptionOfChange)
-          && !deferredDescriptionOfChange.trim().endsWith(";")) {
-        deferredDescriptionOfChange += "; ";
+      synchronized (lock) {
+        defer(fileIdentifier, new DeferredContents(newContents));
+        addDescriptionOfChange(fileIdentifier, descriptionOfChange);
       }
-      deferredDescriptionOfChanges.put(fileIdentifier,
-          deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
+    }
+  }
+
+  public void createOrUpdateTextFileIfRequired(final String fileIdentifier,
+      final Future<String> newContents) {
+    Validate.notBlank(fileIdentifier, "File identifier required");
+    synchronized (lock) {
+      defer(fileIdentifier, new DeferredContents(newContents));
+    }
+  }
+
+  public void createOrUpdateTextFileIfRequired(final String fileIdentifier,
+      final Future<String> newContents, final String descriptionOfChange) {
+    Validate.notBlank(fileIdentifier, "File identifier required");
+    synchronized (lock) {
+      defer(fileIdentifier, new DeferredContents(newContents));
+      addDescriptionOfChange(fileIdentifier, descriptionOfChange);
+    }
+  }
+
+  /**
+   * Must be called while holding the {@link #lock}.
+   */
+  private void addDescriptionOfChange(final String fileIdentifier,
+      final String descriptionOfChange) {
+    String deferredDescriptionOfChange =
+        StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
+    if (StringUtils.isNotBlank(deferredDescriptionOfChange)
+        && !deferredDescriptionOfChange.trim().endsWith(";")) {
+      deferredDescriptionOfChange += "; ";
+    }
+    deferredDescriptionOfChanges.put(fileIdentifier,
+        deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
+  }
+
+  /**
+   * Defers writing the given contents to the given file until the next
+   * commit, cancelling any other contents it was going to write to it. Must
+   * be called while holding the {@link #lock}.
+   *
+   * @param fileIdentifier the file to write
+   * @param contents its new contents
+   */
+  private void defer(final String fileIdentifier, final DeferredContents contents) {
+    final DeferredContents previous = deferredFileWrites.put(fileIdentifier, contents);
+    if (previous != null && !previous.isSameAs(contents)) {
+      previous.cancel();
     }
   }
 
@@ -224,6 +359,7 @@ public class DefaultFileManager implements FileManager, UndoListener {
     }
     Validate.notNull(undoManager, "UndoManager is required");
     undoManager.removeUndoListener(this);
+    writePipeline.shutdown();
   }
 
   public void delete(final String fileIdentifier) {
@@ -249,6 +385,7 @@ public class DefaultFileManager implements FileManager, UndoListener {
 
     final File actual = new File(fileIdentifier);
     Validate.isTrue(actual.exists(), "File '%s' does not exist", fileIdentifier);
+    contentHashIndex.remove(actual);
     try {
       fileMonitorService.notifyDeleted(actual.getCanonicalPath());
     } catch (final IOException ignored) {
@@ -274,9 +411,12 @@ public class DefaultFileManager implements FileManager, UndoListener {
   }
 
   public InputStream getInputStream(final String fileIdentifier) {
-    if (deferredFileWrites.containsKey(fileIdentifier)) {
-      return new BufferedInputStream(new ByteArrayInputStream(deferredFileWrites
-          .get(fileIdentifier).getBytes()));
+    final DeferredContents deferredContents;
+    synchronized (lock) {
+      deferredContents = deferredFileWrites.get(fileIdentifier);
+    }
+    if (deferredContents != null) {
+      return new BufferedInputStream(new ByteArrayInputStream(deferredContents.get().getBytes()));
     }
 
     final File file = new File(fileIdentifier);
@@ -293,6 +433,8 @@ public class DefaultFileManager implements FileManager, UndoListener {
   public void onUndoEvent(final UndoEvent event) {
     if (event.isUndoing()) {
       clear();
+      // Restored files may keep the size and timestamp we recorded
+      contentHashIndex.clear();
     } else {
       // It's a flush or a reset event
       commit();
@@ -316,6 +458,30 @@ public class DefaultFileManager implements FileManager, UndoListener {
     return fileMonitorService.scanNotified();
   }
 
+  /**
+   * Forces the entries of the given directories to disk, so that files
+   * created or deleted in them survive a crash. This is done once per
+   * directory after a batch of writes rather than once per file.
+   *
+   * @param directories the directories to sync (required)
+   */
+  private void syncDirectories(final Set<File> directories) {
+    for (final File directory : directories) {
+      if (directory == null || !directory.isDirectory()) {
+        continue;
+      }
+      FileChannel channel = null;
+      try {
+        channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        channel.force(true);
+      } catch (final IOException ignored) {
+        // Not every platform allows a directory to be opened, e.g. Windows
+      } finally {
+        IOUtils.closeQuietly(channel);
+      }
+    }
+  }
+
   public MutableFile updateFile(final String fileIdentifier) {
     if (fileMonitorService == null) {
       fileMonitorService = getFileMonitorService();
@@ -414,4 +580,9 @@ public class DefaultFileManager implements FileManager, UndoListener {
       return null;
     }
   }
+
+  @Override
+  public String toString() {
+    return contentHashIndex + ", " + writePipeline;
+  }
 }
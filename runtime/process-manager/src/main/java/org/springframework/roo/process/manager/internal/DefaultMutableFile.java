@@ -41,6 +41,14 @@ public class DefaultMutableFile implements MutableFile {
     return FileUtils.getCanonicalPath(file);
   }
 
+  File getFile() {
+    return file;
+  }
+
+  NotifiableFileMonitorService getFileMonitorService() {
+    return fileMonitorService;
+  }
+
   public InputStream getInputStream() {
     // Do more checks, in case the file has changed since this instance was
     // constructed
@@ -54,6 +62,10 @@ public class DefaultMutableFile implements MutableFile {
     }
   }
 
+  ManagedMessageRenderer getManagedMessageRenderer() {
+    return managedMessageRenderer;
+  }
+
   public OutputStream getOutputStream() {
     // Do more checks, in case the file has changed since this instance was
     // constructed
@@ -20,6 +20,9 @@ import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.MonitoringRequest;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataPhase;
 import org.springframework.roo.process.manager.ActiveProcessManager;
 import org.springframework.roo.process.manager.CommandCallback;
 import org.springframework.roo.process.manager.ProcessManager;
@@ -45,8 +48,12 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
+  private boolean batchMode;
   private boolean developmentMode = false;
+  private boolean executing; // Whether a command's transaction is in progress
   private FileMonitorService fileMonitorService;
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+  private MetadataLogger metadataLogger;
   private long lastScanDuration = 0;
   private long lastScanTime = 0; // What time the last scan was completed
   private long minimumDelayBetweenScan = -1; // How many ms must pass at
@@ -62,13 +69,24 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       Validate.isTrue(getProcessManagerStatus() == ProcessManagerStatus.AVAILABLE
           || getProcessManagerStatus() == ProcessManagerStatus.BUSY_EXECUTING,
           "Unable to execute as another thread has set status to %s", getProcessManagerStatus());
+      if (batchMode && executing) {
+        // Join the executing command's transaction, which will undo this
+        // command's changes along with its own; they're written and scanned
+        // now, so that the commands after this one can see them
+        final T result = callback.callback();
+        flushChanges();
+        return result;
+      }
       setProcessManagerStatus(ProcessManagerStatus.BUSY_EXECUTING);
+      final boolean nested = executing;
+      executing = true;
       try {
         return doTransactionally(callback);
       } catch (final RuntimeException e) {
         logException(e);
         throw e;
       } finally {
+        executing = nested;
         setProcessManagerStatus(ProcessManagerStatus.AVAILABLE);
       }
     }
@@ -90,10 +108,18 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     return minimumDelayBetweenScan;
   }
 
+  public boolean isBatchMode() {
+    return batchMode;
+  }
+
   public boolean isDevelopmentMode() {
     return developmentMode;
   }
 
+  public void setBatchMode(final boolean batchMode) {
+    this.batchMode = batchMode;
+  }
+
   public void setDevelopmentMode(final boolean developmentMode) {
 
     if (undoManager == null) {
@@ -296,7 +322,23 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
     Validate.notNull(undoManager, "UndoManager is required");
 
+    if (metadataDependencyRegistry == null) {
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+    }
+
+    if (metadataLogger == null) {
+      metadataLogger = getMetadataLogger();
+    }
+
     T result = null;
+    if (metadataLogger != null) {
+      metadataLogger.startScan();
+    }
+    if (metadataDependencyRegistry != null) {
+      // Let the registry coalesce the metadata notifications raised by this
+      // transaction
+      metadataDependencyRegistry.beginNotificationBatch();
+    }
     try {
       ActiveProcessManager.setActiveProcessManager(this);
 
@@ -307,21 +349,7 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
         result = callback.callback();
       }
 
-      // Flush the undo manager so that any changes it has been holding
-      // are written to disk and the file monitor service
-      undoManager.flush();
-
-      // Guarantee scans repeat until there are no more changes detected
-      while (fileMonitorService.isDirty()) {
-        if (fileMonitorService instanceof NotifiableFileMonitorService) {
-          ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
-        } else {
-          fileMonitorService.scanAll();
-        }
-        // In case something else happened as a result of event
-        // notifications above
-        undoManager.flush();
-      }
+      flushChanges();
 
       // It all seems to have worked, so clear the undo history
       setProcessManagerStatus(ProcessManagerStatus.RESETTING_UNDOS);
@@ -337,6 +365,15 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
         undoManager.undo();
       }
     } finally {
+      try {
+        if (metadataDependencyRegistry != null) {
+          metadataDependencyRegistry.endNotificationBatch();
+        }
+      } finally {
+        if (metadataLogger != null) {
+          metadataLogger.stopScan();
+        }
+      }
       // TODO: Review in consultation with Christian as STS is clearing
       // active process manager itself
       // ActiveProcessManager.clearActiveProcessManager();
@@ -345,6 +382,53 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     return result;
   }
 
+  /**
+   * Writes the changes made so far by the executing transaction to disk and
+   * scans them, until no more changes are detected. The undo history is kept,
+   * so that the transaction can still undo them.
+   */
+  private void flushChanges() {
+    // Deliver any metadata notifications raised so far, so that the files
+    // they cause to be written are part of the undo flush below
+    flushNotifications();
+
+    // Flush the undo manager so that any changes it has been holding
+    // are written to disk and the file monitor service
+    flushUndoManager();
+
+    // Guarantee scans repeat until there are no more changes detected
+    while (fileMonitorService.isDirty()) {
+      if (fileMonitorService instanceof NotifiableFileMonitorService) {
+        ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
+      } else {
+        fileMonitorService.scanAll();
+      }
+      flushNotifications();
+      // In case something else happened as a result of event
+      // notifications above
+      flushUndoManager();
+    }
+  }
+
+  private void flushUndoManager() {
+    if (metadataLogger == null) {
+      undoManager.flush();
+      return;
+    }
+    metadataLogger.startPhase(MetadataPhase.DISK_WRITE);
+    try {
+      undoManager.flush();
+    } finally {
+      metadataLogger.stopPhase();
+    }
+  }
+
+  private void flushNotifications() {
+    if (metadataDependencyRegistry != null) {
+      metadataDependencyRegistry.flushNotifications();
+    }
+  }
+
   private void logException(final Throwable t) {
     final Throwable root = ObjectUtils.defaultIfNull(ExceptionUtils.getRootCause(t), t);
     if (developmentMode) {
@@ -381,6 +465,46 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+
+      if (references != null) {
+        for (ServiceReference<?> ref : references) {
+          return (MetadataDependencyRegistry) this.context.getService(ref);
+        }
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on DefaultProcessManager.");
+      return null;
+    }
+  }
+
+  public MetadataLogger getMetadataLogger() {
+    // Get all Services implement MetadataLogger interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataLogger.class.getName(), null);
+
+      if (references != null) {
+        for (ServiceReference<?> ref : references) {
+          return (MetadataLogger) this.context.getService(ref);
+        }
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataLogger on DefaultProcessManager.");
+      return null;
+    }
+  }
+
   public StartLevel getStartLevel() {
     // Get all Services implement StartLevel interface
     try {
@@ -0,0 +1,86 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The new contents of a text file whose write the {@link DefaultFileManager}
+ * has deferred, which are either known already or still being produced.
+ *
+ * @since 2.0
+ */
+class DeferredContents {
+
+  private final String contents;
+  private final Future<String> pendingContents;
+
+  /**
+   * Constructor for contents that are known already
+   *
+   * @param contents the contents (required)
+   */
+  DeferredContents(final String contents) {
+    Validate.notNull(contents, "Contents required");
+    this.contents = contents;
+    pendingContents = null;
+  }
+
+  /**
+   * Constructor for contents that are still being produced
+   *
+   * @param pendingContents the pending contents (required)
+   */
+  DeferredContents(final Future<String> pendingContents) {
+    Validate.notNull(pendingContents, "Pending contents required");
+    contents = null;
+    this.pendingContents = pendingContents;
+  }
+
+  /**
+   * Cancels any pending contents, as they won't be written, or have been
+   * already.
+   */
+  void cancel() {
+    if (pendingContents != null) {
+      pendingContents.cancel(false);
+    }
+  }
+
+  /**
+   * Returns the contents, waiting for them if they're still being produced.
+   *
+   * @return a non-<code>null</code> string
+   * @throws IllegalStateException if producing the contents failed or the
+   *             calling thread was interrupted
+   */
+  String get() {
+    if (pendingContents == null) {
+      return contents;
+    }
+    try {
+      final String result = pendingContents.get();
+      Validate.validState(result != null, "Contents were produced as null");
+      return result;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for file contents", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not produce file contents", e.getCause());
+    }
+  }
+
+  /**
+   * Indicates whether these are the same pending contents as the given ones.
+   *
+   * @param other the contents to compare with (required)
+   * @return see above
+   */
+  boolean isSameAs(final DeferredContents other) {
+    return pendingContents != null && pendingContents == other.pendingContents;
+  }
+}
@@ -0,0 +1,188 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+
+/**
+ * Writes the deferred files of a {@link DefaultFileManager#commit()} on a
+ * small pool of I/O threads, while the committing thread carries on making
+ * the undo backups of the files that follow.
+ * <p>
+ * Only the writes themselves run in parallel: {@link #flush()} waits for all
+ * of them, then logs the usual "Created"/"Updated" messages and notifies the
+ * file monitor once per file, in the order the files were submitted. As each
+ * file is submitted once per commit, and a commit doesn't return before its
+ * files are written, writes to the same file can't overtake each other.
+ * <p>
+ * At most {@value #MAX_QUEUED_WRITES} writes are queued; beyond that, the
+ * committing thread performs the write itself, which is counted as a stall.
+ * This class is not thread safe.
+ *
+ * @since 2.0
+ */
+class FileWritePipeline {
+
+  private static class PendingWrite {
+    final DefaultMutableFile file;
+    final Future<?> future;
+
+    PendingWrite(final DefaultMutableFile file, final Future<?> future) {
+      this.file = file;
+      this.future = future;
+    }
+  }
+
+  private static final int MAX_QUEUED_WRITES = 64;
+  private static final int MAX_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  private long batches;
+  private ThreadPoolExecutor executor;
+  private int maxQueueDepth;
+  private final List<PendingWrite> pendingWrites = new ArrayList<PendingWrite>();
+  private long stalls;
+  private long writes;
+
+  /**
+   * Waits for any submitted writes without reporting them, for example
+   * because the commit has failed and is going to be undone.
+   */
+  void abandon() {
+    try {
+      for (final PendingWrite pendingWrite : pendingWrites) {
+        try {
+          pendingWrite.future.get();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (final ExecutionException ignored) {
+        }
+      }
+    } finally {
+      pendingWrites.clear();
+    }
+  }
+
+  /**
+   * Waits for the submitted writes, then reports them as described in the
+   * type-level JavaDoc.
+   *
+   * @throws IllegalStateException if any file could not be written; the
+   *             other files have been written by then
+   */
+  void flush() {
+    if (pendingWrites.isEmpty()) {
+      return;
+    }
+    batches++;
+    try {
+      IllegalStateException failure = null;
+      for (final PendingWrite pendingWrite : pendingWrites) {
+        try {
+          pendingWrite.future.get();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while writing files", e);
+        } catch (final ExecutionException e) {
+          if (failure == null) {
+            failure =
+                new IllegalStateException("Could not output '"
+                    + pendingWrite.file.getCanonicalPath() + "'", e.getCause());
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+
+      final Set<String> changedPaths = new LinkedHashSet<String>();
+      NotifiableFileMonitorService fileMonitorService = null;
+      for (final PendingWrite pendingWrite : pendingWrites) {
+        pendingWrite.file.getManagedMessageRenderer().logManagedMessage();
+        if (pendingWrite.file.getFileMonitorService() != null) {
+          fileMonitorService = pendingWrite.file.getFileMonitorService();
+          changedPaths.add(pendingWrite.file.getCanonicalPath());
+        }
+      }
+      for (final String changedPath : changedPaths) {
+        fileMonitorService.notifyChanged(changedPath);
+      }
+    } finally {
+      pendingWrites.clear();
+    }
+  }
+
+  private ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      // Stalls the committing thread by having it write the file itself
+      final RejectedExecutionHandler backpressure = new RejectedExecutionHandler() {
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor pool) {
+          stalls++;
+          task.run();
+        }
+      };
+      executor =
+          new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+              new ArrayBlockingQueue<Runnable>(MAX_QUEUED_WRITES), backpressure);
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  /**
+   * Stops the I/O threads; any further writes start new ones.
+   */
+  void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Starts writing the given contents to the given file, whose undo backup
+   * must already have been made.
+   *
+   * @param file the file to write (required)
+   * @param contents its new contents (required)
+   */
+  void submit(final DefaultMutableFile file, final String contents) {
+    final Future<?> future = getExecutor().submit(new Runnable() {
+      public void run() {
+        final byte[] bytes = contents.getBytes();
+        file.getManagedMessageRenderer().setHashCode(DigestUtils.shaHex(bytes));
+        try {
+          FileUtils.writeByteArrayToFile(file.getFile(), bytes);
+        } catch (final IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    pendingWrites.add(new PendingWrite(file, future));
+    writes++;
+    maxQueueDepth = Math.max(maxQueueDepth, executor.getQueue().size());
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("batches", batches);
+    builder.append("writes", writes);
+    builder.append("maxQueueDepth", maxQueueDepth);
+    builder.append("stalls", stalls);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
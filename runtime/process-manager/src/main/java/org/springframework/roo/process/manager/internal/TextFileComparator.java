@@ -0,0 +1,92 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compares the contents of a text file with a string, as the
+ * {@link DefaultFileManager} would write it, without reading the whole file
+ * into memory.
+ * <p>
+ * The string is encoded a chunk at a time and compared with the next chunk
+ * of the file, stopping at the first difference, so an unchanged file costs
+ * two small buffers rather than a copy of its contents.
+ *
+ * @since 2.0
+ */
+class TextFileComparator {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  /**
+   * Per thread, as files may be written by several metadata threads: the
+   * encoded chunk of the string, followed by the chunk read from the file
+   */
+  private static final ThreadLocal<byte[]> POOLED_BUFFERS = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[2 * CHUNK_SIZE];
+    }
+  };
+
+  /**
+   * Indicates whether the given file holds the given contents, as encoded in
+   * the platform's default charset (as by {@link IOUtils#write(String,
+   * java.io.OutputStream)}).
+   *
+   * @param file the existing file to compare (required)
+   * @param contents the contents to compare with the file's (required)
+   * @return see above
+   * @throws IOException if the file can't be read
+   */
+  static boolean hasContents(final File file, final String contents) throws IOException {
+    final CharsetEncoder encoder =
+        Charset.defaultCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    final CharBuffer chars = CharBuffer.wrap(contents);
+    final byte[] buffers = POOLED_BUFFERS.get();
+    final ByteBuffer expected = ByteBuffer.wrap(buffers, 0, CHUNK_SIZE);
+    final InputStream inputStream = new FileInputStream(file);
+    try {
+      boolean encoded = false;
+      boolean flushed = false;
+      while (!flushed) {
+        expected.clear().limit(CHUNK_SIZE);
+        if (!encoded) {
+          encoded = !encoder.encode(chars, expected, true).isOverflow();
+        }
+        if (encoded) {
+          flushed = !encoder.flush(expected).isOverflow();
+        }
+        final int length = expected.position();
+        if (IOUtils.read(inputStream, buffers, CHUNK_SIZE, length) != length) {
+          // The file is shorter
+          return false;
+        }
+        for (int i = 0; i < length; i++) {
+          if (buffers[i] != buffers[CHUNK_SIZE + i]) {
+            return false;
+          }
+        }
+      }
+      // The file must not be any longer
+      return inputStream.read() == -1;
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Constructor is private to prevent instantiation
+   */
+  private TextFileComparator() {}
+}
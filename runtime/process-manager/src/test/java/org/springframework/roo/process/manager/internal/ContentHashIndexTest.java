@@ -0,0 +1,125 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ContentHashIndex}
+ *
+ * @since 2.0
+ */
+public class ContentHashIndexTest {
+
+  // Long enough ago for the file not to change within its timestamp
+  private static final long LONG_AGO = System.currentTimeMillis() - 60000;
+
+  private File file;
+  private ContentHashIndex index;
+
+  /**
+   * Writes the given contents to the {@link #file}, dated at the given time
+   */
+  private void write(final String contents, final long lastModified) throws IOException {
+    FileUtils.writeStringToFile(file, contents);
+    file.setLastModified(lastModified);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("ContentHashIndexTest", ".txt");
+    index = new ContentHashIndex();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(file);
+  }
+
+  @Test
+  public void testDeletedFileIsUnknown() throws Exception {
+    write("contents", LONG_AGO);
+    index.put(file, "contents");
+
+    // Invoke
+    file.delete();
+
+    // Check
+    assertNull(index.hasContents(file, "contents"));
+  }
+
+  @Test
+  public void testExternalModificationOfLengthIsUnknown() throws Exception {
+    write("contents", LONG_AGO);
+    index.put(file, "contents");
+
+    // Invoke
+    write("longer contents", LONG_AGO);
+
+    // Check
+    assertNull(index.hasContents(file, "contents"));
+  }
+
+  @Test
+  public void testExternalModificationWithinTimestampResolutionIsUnknown() throws Exception {
+    // Set up: just written, so the file's time could still be that of a
+    // later change
+    final long lastModified = System.currentTimeMillis() / 1000 * 1000;
+    write("contents", lastModified);
+    index.put(file, "contents");
+
+    // Invoke: another change of the same size, within the same second
+    write("CONTENTS", lastModified);
+
+    // Check
+    assertNull(index.hasContents(file, "contents"));
+    assertNull(index.hasContents(file, "CONTENTS"));
+  }
+
+  @Test
+  public void testFileWrittenAgainIsKnownByItsNewContents() throws Exception {
+    write("old contents", LONG_AGO);
+    index.put(file, "old contents");
+
+    // Invoke
+    write("new contents", LONG_AGO + 1000);
+    index.put(file, "new contents");
+
+    // Check
+    assertEquals(Boolean.TRUE, index.hasContents(file, "new contents"));
+    assertEquals(Boolean.FALSE, index.hasContents(file, "old contents"));
+  }
+
+  @Test
+  public void testRemovedFileIsUnknown() throws Exception {
+    write("contents", LONG_AGO);
+    index.put(file, "contents");
+
+    // Invoke
+    index.remove(file);
+
+    // Check
+    assertNull(index.hasContents(file, "contents"));
+  }
+
+  @Test
+  public void testUnchangedFileIsKnown() throws Exception {
+    write("contents", LONG_AGO);
+
+    // Invoke
+    index.put(file, "contents");
+
+    // Check
+    assertEquals(Boolean.TRUE, index.hasContents(file, "contents"));
+    assertFalse(index.hasContents(file, "CONTENTS"));
+    assertFalse(index.hasContents(file, "other contents"));
+  }
+}
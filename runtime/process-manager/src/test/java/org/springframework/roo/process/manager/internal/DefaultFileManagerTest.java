@@ -0,0 +1,344 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+import org.springframework.roo.file.undo.DefaultUndoManager;
+import org.springframework.roo.file.undo.FilenameResolver;
+import org.springframework.roo.process.manager.ProcessManager;
+
+/**
+ * Unit test of {@link DefaultFileManager}
+ *
+ * @since 2.0
+ */
+public class DefaultFileManagerTest {
+
+  private static final int FILES_PER_THREAD = 100;
+  private static final int THREADS = 8;
+
+  /**
+   * The work done on each thread by {@link #runConcurrently(ThreadTask)}
+   */
+  private interface ThreadTask {
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Returns an implementation of the given interface whose methods do
+   * nothing, returning the default value of their return type
+   */
+  private static <T> T stub(final Class<T> type) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+              return false;
+            }
+            if (returnType == int.class) {
+              return 0;
+            }
+            return returnType == long.class ? 0L : null;
+          }
+        }));
+  }
+
+  private static void setField(final Object target, final String name, final Object value)
+      throws Exception {
+    final Field field = DefaultFileManager.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  /** the canonical paths of the files the file monitor was told had changed */
+  private final List<String> changedPaths = Collections.synchronizedList(new ArrayList<String>());
+  private File directory;
+  private DefaultFileManager fileManager;
+  /** a file to make unwritable once it's handed over for writing */
+  private File unwritableFile;
+
+  private String getFileIdentifier(final int thread, final int file) {
+    return new File(directory, "thread" + thread + File.separator + "File" + file + ".txt")
+        .getPath();
+  }
+
+  private String read(final String fileIdentifier) throws IOException {
+    final InputStream inputStream = fileManager.getInputStream(fileIdentifier);
+    try {
+      return IOUtils.toString(inputStream);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Runs the given task on {@link #THREADS} threads at once, each being given
+   * its own number, rethrowing the first failure
+   */
+  private void runConcurrently(final ThreadTask task) throws Exception {
+    final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < THREADS; i++) {
+      final int thread = i;
+      tasks.add(new Callable<Void>() {
+        public Void call() throws Exception {
+          task.run(thread);
+          return null;
+        }
+      });
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (final Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("DefaultFileManagerTest", "");
+    directory.delete();
+    directory.mkdir();
+    fileManager = new DefaultFileManager();
+    final NotifiableFileMonitorService fileMonitorService =
+        stub(NotifiableFileMonitorService.class);
+    setField(fileManager, "fileMonitorService", Proxy.newProxyInstance(
+        NotifiableFileMonitorService.class.getClassLoader(),
+        new Class<?>[] {NotifiableFileMonitorService.class}, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args)
+              throws Exception {
+            if ("notifyChanged".equals(method.getName())) {
+              changedPaths.add((String) args[0]);
+            }
+            return method.invoke(fileMonitorService, args);
+          }
+        }));
+    setField(fileManager, "filenameResolver", stub(FilenameResolver.class));
+    setField(fileManager, "processManager", stub(ProcessManager.class));
+    setField(fileManager, "writePipeline", new FileWritePipeline() {
+      @Override
+      void submit(final DefaultMutableFile file, final String contents) {
+        if (file.getFile().equals(unwritableFile)) {
+          unwritableFile.delete();
+          unwritableFile.mkdir();
+        }
+        super.submit(file, contents);
+      }
+    });
+    setField(fileManager, "undoManager", new DefaultUndoManager());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void testConcurrentlyDeferredWritesAreReadable() throws Exception {
+    // Invoke
+    runConcurrently(new ThreadTask() {
+      public void run(final int thread) throws Exception {
+        for (int i = 0; i < FILES_PER_THREAD; i++) {
+          final String fileIdentifier = getFileIdentifier(thread, i);
+          fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "contents " + i,
+              "change " + i, false);
+          assertEquals("contents " + i, read(fileIdentifier));
+        }
+      }
+    });
+
+    // Check
+    for (int thread = 0; thread < THREADS; thread++) {
+      for (int i = 0; i < FILES_PER_THREAD; i++) {
+        assertEquals("contents " + i, read(getFileIdentifier(thread, i)));
+      }
+    }
+  }
+
+  @Test
+  public void testWritesDeferredDuringCommitAreKept() throws Exception {
+    // Invoke
+    runConcurrently(new ThreadTask() {
+      public void run(final int thread) throws Exception {
+        for (int i = 0; i < FILES_PER_THREAD; i++) {
+          fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(thread, i),
+              "first " + i, false);
+          fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(thread, i),
+              "second " + i, false);
+          if (thread == 0) {
+            fileManager.commit();
+          }
+        }
+      }
+    });
+    fileManager.commit();
+
+    // Check
+    for (int thread = 0; thread < THREADS; thread++) {
+      for (int i = 0; i < FILES_PER_THREAD; i++) {
+        final File file = new File(getFileIdentifier(thread, i));
+        assertEquals(file.getPath(), "second " + i, FileUtils.readFileToString(file));
+      }
+    }
+  }
+
+  @Test
+  public void testFileDeferredAgainWhileCommittingIsWrittenByTheNextCommit() throws Exception {
+    // Set up
+    final String fileIdentifier = getFileIdentifier(0, 0);
+    final Future<String> firstContents = new Future<String>() {
+      public boolean cancel(final boolean mayInterruptIfRunning) {
+        return false;
+      }
+
+      public String get() throws InterruptedException {
+        // Another provider produces newer contents while these are written
+        final Thread other = new Thread() {
+          @Override
+          public void run() {
+            fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "second", false);
+          }
+        };
+        other.start();
+        other.join();
+        return "first";
+      }
+
+      public String get(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return get();
+      }
+
+      public boolean isCancelled() {
+        return false;
+      }
+
+      public boolean isDone() {
+        return true;
+      }
+    };
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, firstContents);
+
+    // Invoke
+    fileManager.commit();
+    final String afterFirstCommit = FileUtils.readFileToString(new File(fileIdentifier));
+    fileManager.commit();
+
+    // Check
+    assertEquals("first", afterFirstCommit);
+    assertEquals("second", FileUtils.readFileToString(new File(fileIdentifier)));
+  }
+
+  @Test
+  public void testCreatingAndDeletingTheSameFile() throws Exception {
+    final String fileIdentifier = getFileIdentifier(0, 0);
+    final File file = new File(fileIdentifier);
+
+    // Invoke and check
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "contents", false);
+    fileManager.commit();
+    assertEquals("contents", FileUtils.readFileToString(file));
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "", false);
+    fileManager.commit();
+    assertFalse(file.exists());
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "contents again", false);
+    fileManager.commit();
+    assertEquals("contents again", FileUtils.readFileToString(file));
+  }
+
+  @Test
+  public void testFileCreatedThenEmptiedInOneCommitIsNotWritten() throws Exception {
+    final String fileIdentifier = getFileIdentifier(0, 0);
+
+    // Invoke
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "contents", false);
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "", false);
+    fileManager.commit();
+
+    // Check
+    assertFalse(new File(fileIdentifier).exists());
+  }
+
+  @Test
+  public void testFilesInNewDirectoriesAreWritten() throws Exception {
+    final String fileIdentifier =
+        new File(directory, "a" + File.separator + "b" + File.separator + "File.txt").getPath();
+
+    // Invoke
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "contents", false);
+    fileManager.commit();
+
+    // Check
+    assertEquals("contents", FileUtils.readFileToString(new File(fileIdentifier)));
+  }
+
+  @Test
+  public void testMoreFilesThanCanBeQueuedAreWrittenAndNotifiedInOrder() throws Exception {
+    final int files = 300;
+    final List<String> expectedChangedPaths = new ArrayList<String>();
+    for (int i = 0; i < files; i++) {
+      fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(0, i), "first " + i, false);
+      expectedChangedPaths.add(new File(getFileIdentifier(0, i)).getCanonicalPath());
+    }
+    fileManager.commit();
+
+    // Invoke
+    for (int i = 0; i < files; i++) {
+      fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(0, i), "second " + i, false);
+    }
+    fileManager.commit();
+
+    // Check
+    for (int i = 0; i < files; i++) {
+      assertEquals("second " + i, FileUtils.readFileToString(new File(getFileIdentifier(0, i))));
+    }
+    assertEquals(expectedChangedPaths, changedPaths);
+  }
+
+  @Test
+  public void testWriteFailureFailsTheCommit() throws Exception {
+    final String fileIdentifier = getFileIdentifier(0, 1);
+    fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(0, 0), "written", false);
+    fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, "not written", false);
+    fileManager.createOrUpdateTextFileIfRequired(getFileIdentifier(0, 2), "written", false);
+    unwritableFile = new File(fileIdentifier);
+
+    // Invoke
+    try {
+      fileManager.commit();
+      fail("Expected the commit to fail");
+    } catch (final IllegalStateException expected) {
+      // Check
+      assertTrue(expected.getMessage(),
+          expected.getMessage().contains(unwritableFile.getCanonicalPath()));
+    }
+    assertEquals("written", FileUtils.readFileToString(new File(getFileIdentifier(0, 0))));
+    assertEquals("written", FileUtils.readFileToString(new File(getFileIdentifier(0, 2))));
+  }
+}
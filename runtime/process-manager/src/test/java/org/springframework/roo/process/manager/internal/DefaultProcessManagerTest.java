@@ -0,0 +1,274 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+import org.springframework.roo.file.undo.DefaultUndoManager;
+import org.springframework.roo.file.undo.FilenameResolver;
+import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.file.undo.UndoableOperation;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.process.manager.CommandCallback;
+import org.springframework.roo.process.manager.ProcessManager;
+import org.springframework.roo.process.manager.event.ProcessManagerStatus;
+
+/**
+ * Unit test of {@link DefaultProcessManager}
+ *
+ * @since 2.0
+ */
+public class DefaultProcessManagerTest {
+
+  /**
+   * Records whether it has been reset or undone
+   */
+  private static class Operation implements UndoableOperation {
+
+    private boolean reset;
+    private boolean undone;
+
+    public void reset() {
+      reset = true;
+    }
+
+    public boolean undo() {
+      undone = true;
+      return true;
+    }
+  }
+
+  /**
+   * Returns an implementation of the given interface whose methods do
+   * nothing, returning the default value of their return type
+   */
+  private static <T> T stub(final Class<T> type) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+              return false;
+            }
+            if (returnType == int.class) {
+              return 0;
+            }
+            return returnType == long.class ? 0L : null;
+          }
+        }));
+  }
+
+  private static void setField(final Object target, final String name, final Object value)
+      throws Exception {
+    Class<?> type = target.getClass();
+    while (!DefaultProcessManager.class.equals(type) && !DefaultFileManager.class.equals(type)) {
+      type = type.getSuperclass();
+    }
+    final Field field = type.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private DefaultProcessManager processManager;
+  private UndoManager undoManager;
+
+  /**
+   * Returns a command that records the given operation
+   */
+  private CommandCallback<Void> add(final Operation operation) {
+    return new CommandCallback<Void>() {
+      public Void callback() {
+        undoManager.add(operation);
+        return null;
+      }
+    };
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    processManager = new DefaultProcessManager() {
+      {
+        setProcessManagerStatus(ProcessManagerStatus.AVAILABLE);
+      }
+    };
+    undoManager = new DefaultUndoManager();
+    setField(processManager, "fileMonitorService", stub(FileMonitorService.class));
+    setField(processManager, "metadataDependencyRegistry", stub(MetadataDependencyRegistry.class));
+    setField(processManager, "metadataLogger", stub(MetadataLogger.class));
+    setField(processManager, "undoManager", undoManager);
+  }
+
+  @Test
+  public void testBatchModeCommitsNestedCommandsWithOuterCommand() {
+    processManager.setBatchMode(true);
+    final Operation first = new Operation();
+    final Operation second = new Operation();
+
+    // Invoke
+    processManager.execute(new CommandCallback<Void>() {
+      public Void callback() {
+        processManager.execute(add(first));
+        processManager.execute(add(second));
+        // Still in the outer command's transaction
+        assertFalse(first.reset);
+        assertFalse(second.reset);
+        return null;
+      }
+    });
+
+    // Check
+    assertTrue(first.reset);
+    assertTrue(second.reset);
+    assertEquals(ProcessManagerStatus.AVAILABLE, processManager.getProcessManagerStatus());
+  }
+
+  /**
+   * Returns a file manager that writes its deferred files when the
+   * {@link #undoManager} is flushed, like the one in a running shell
+   */
+  private DefaultFileManager getFileManager() throws Exception {
+    final DefaultFileManager fileManager = new DefaultFileManager();
+    setField(fileManager, "fileMonitorService", stub(NotifiableFileMonitorService.class));
+    setField(fileManager, "filenameResolver", stub(FilenameResolver.class));
+    setField(fileManager, "processManager", stub(ProcessManager.class));
+    setField(fileManager, "undoManager", undoManager);
+    undoManager.addUndoListener(fileManager);
+    return fileManager;
+  }
+
+  @Test
+  public void testBatchModeWritesNestedCommandsChangesForLaterOnes() throws Exception {
+    processManager.setBatchMode(true);
+    final DefaultFileManager fileManager = getFileManager();
+    final File directory = File.createTempFile("DefaultProcessManagerTest", "");
+    directory.delete();
+    final String entity = new File(directory, "Entity.java").getPath();
+    final String finder = new File(directory, "EntityFinder.java").getPath();
+
+    // Invoke
+    try {
+      processManager.execute(new CommandCallback<Void>() {
+        public Void callback() {
+          // Like "entity jpa --class ~.Entity" followed by a script line
+          // that needs the entity
+          processManager.execute(new CommandCallback<Void>() {
+            public Void callback() {
+              fileManager.createOrUpdateTextFileIfRequired(entity, "class Entity {}", false);
+              return null;
+            }
+          });
+          processManager.execute(new CommandCallback<Void>() {
+            public Void callback() {
+              assertTrue(fileManager.exists(entity));
+              fileManager.createOrUpdateTextFileIfRequired(finder, "class EntityFinder {}",
+                  false);
+              return null;
+            }
+          });
+          return null;
+        }
+      });
+
+      // Check
+      assertEquals("class Entity {}", FileUtils.readFileToString(new File(entity)));
+      assertEquals("class EntityFinder {}", FileUtils.readFileToString(new File(finder)));
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+
+  @Test
+  public void testBatchModeUndoesWrittenNestedCommandsIfOneFails() throws Exception {
+    processManager.setBatchMode(true);
+    final DefaultFileManager fileManager = getFileManager();
+    final File directory = File.createTempFile("DefaultProcessManagerTest", "");
+    directory.delete();
+    final String entity = new File(directory, "Entity.java").getPath();
+
+    // Invoke
+    try {
+      processManager.execute(new CommandCallback<Void>() {
+        public Void callback() {
+          processManager.execute(new CommandCallback<Void>() {
+            public Void callback() {
+              fileManager.createOrUpdateTextFileIfRequired(entity, "class Entity {}", false);
+              return null;
+            }
+          });
+          processManager.execute(new CommandCallback<Void>() {
+            public Void callback() {
+              assertTrue(fileManager.exists(entity));
+              throw new IllegalStateException("Command failed");
+            }
+          });
+          return null;
+        }
+      });
+      fail("Expected the failing command to fail the outer one");
+    } catch (final IllegalStateException expected) {
+      // Check
+      assertFalse(new File(entity).exists());
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+
+  @Test
+  public void testBatchModeUndoesEarlierNestedCommandsIfOneFails() {
+    processManager.setBatchMode(true);
+    final Operation first = new Operation();
+    final Operation second = new Operation();
+
+    // Invoke
+    try {
+      processManager.execute(new CommandCallback<Void>() {
+        public Void callback() {
+          processManager.execute(add(first));
+          processManager.execute(add(second));
+          processManager.execute(new CommandCallback<Void>() {
+            public Void callback() {
+              throw new IllegalStateException("Command failed");
+            }
+          });
+          return null;
+        }
+      });
+      fail("Expected the failing command to fail the outer one");
+    } catch (final IllegalStateException expected) {
+      // Check
+      assertTrue(first.undone);
+      assertTrue(second.undone);
+      assertFalse(first.reset);
+    }
+  }
+
+  @Test
+  public void testNestedCommandsCommitSeparatelyByDefault() {
+    final Operation nested = new Operation();
+
+    // Invoke
+    processManager.execute(new CommandCallback<Void>() {
+      public Void callback() {
+        processManager.execute(add(nested));
+        assertTrue(nested.reset);
+        return null;
+      }
+    });
+
+    // Check
+    assertFalse(processManager.isBatchMode());
+  }
+}
@@ -0,0 +1,120 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link TextFileComparator}
+ *
+ * @since 2.0
+ */
+public class TextFileComparatorTest {
+
+  private static final int CHUNK_SIZE = 8192;
+  // Three bytes in UTF-8
+  private static final String EURO = "€";
+
+  private File file;
+
+  /**
+   * Writes the given contents to the {@link #file} as the
+   * {@link DefaultFileManager} would
+   */
+  private void write(final String contents) throws IOException {
+    FileUtils.writeStringToFile(file, contents);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("TextFileComparatorTest", ".txt");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(file);
+  }
+
+  @Test
+  public void testContentsSpanningSeveralChunks() throws Exception {
+    final String contents = StringUtils.repeat("0123456789abcdef", 3 * CHUNK_SIZE / 16) + "end";
+    write(contents);
+
+    // Invoke and check
+    assertTrue(TextFileComparator.hasContents(file, contents));
+    assertFalse(TextFileComparator.hasContents(file, contents.replace("end", "End")));
+  }
+
+  @Test
+  public void testContentsFillingExactlyOneChunk() throws Exception {
+    final String contents = StringUtils.repeat('x', CHUNK_SIZE);
+    write(contents);
+
+    // Invoke and check
+    assertTrue(TextFileComparator.hasContents(file, contents));
+    assertFalse(TextFileComparator.hasContents(file, contents + "x"));
+    assertFalse(TextFileComparator.hasContents(file, contents.substring(1)));
+  }
+
+  @Test
+  public void testDifferenceInALaterChunk() throws Exception {
+    final String contents = StringUtils.repeat('x', 2 * CHUNK_SIZE + 10);
+    write(contents);
+
+    // Invoke and check
+    assertFalse(TextFileComparator.hasContents(file,
+        StringUtils.repeat('x', CHUNK_SIZE + 5) + "y" + StringUtils.repeat('x', CHUNK_SIZE + 4)));
+  }
+
+  @Test
+  public void testEmptyContents() throws Exception {
+    write("");
+
+    // Invoke and check
+    assertTrue(TextFileComparator.hasContents(file, ""));
+    assertFalse(TextFileComparator.hasContents(file, "x"));
+    write("x");
+    assertFalse(TextFileComparator.hasContents(file, ""));
+  }
+
+  @Test
+  public void testFileLongerThanContents() throws Exception {
+    write("contents and more");
+
+    // Invoke and check
+    assertFalse(TextFileComparator.hasContents(file, "contents"));
+  }
+
+  @Test
+  public void testFileShorterThanContents() throws Exception {
+    write("contents");
+
+    // Invoke and check
+    assertFalse(TextFileComparator.hasContents(file, "contents and more"));
+  }
+
+  @Test
+  public void testMultiByteCharactersAcrossChunkBoundaries() throws Exception {
+    // Puts a multi-byte character across the boundary of every chunk, at
+    // every offset
+    for (int offset = 1; offset <= 3; offset++) {
+      final String contents =
+          StringUtils.repeat('x', CHUNK_SIZE - offset) + StringUtils.repeat(EURO, CHUNK_SIZE);
+      write(contents);
+
+      // Invoke and check
+      assertTrue(TextFileComparator.hasContents(file, contents));
+      assertFalse(TextFileComparator.hasContents(file, contents + EURO));
+      assertFalse(TextFileComparator.hasContents(file,
+          contents.substring(0, contents.length() - 1) + "x"));
+    }
+  }
+}
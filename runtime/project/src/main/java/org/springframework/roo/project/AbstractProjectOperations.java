@@ -59,6 +59,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
   static final String UPDATED = "updated";
 
   private final Map<String, Feature> features = new HashMap<String, Feature>();
+  private final PomDocumentCache pomDocumentCache = new PomDocumentCache();
 
   @Reference(policy = ReferencePolicy.DYNAMIC)
   protected FileManager fileManager;
@@ -141,13 +142,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = getPomDocument(pom.getPath());
     }
 
     writePluginInPom(newPlugins, parentPom, pom, parentDocument, document,
@@ -178,13 +178,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     Validate.notNull(pom, "The pom is not available, so dependencies cannot be added");
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = getPomDocument(pom.getPath());
     }
     return writeDependencyInPom(newDependencies, parentPom, pom, parentDocument, document,
         parentDocument.getDocumentElement(), document.getDocumentElement(),
@@ -271,7 +270,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element buildElement = XmlUtils.findFirstElement("/project/build", root);
@@ -288,8 +287,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       descriptionOfChange = highlight(UPDATED + " filter") + " '" + filter.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   @Override
@@ -322,13 +320,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = getPomDocument(pom.getPath());
     }
 
     final Element parentRoot = parentDocument.getDocumentElement();
@@ -377,13 +374,11 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             if (!isSamePom && addToPluginManagement) {
               packagesElement.appendChild(XmlUtils.createTextElement(parentDocument, "package",
                   packageName));
-              fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-                  XmlUtils.nodeToString(parentDocument), descriptionOfChange, false);
+              writePom(parentPom.getPath(), parentDocument, descriptionOfChange);
             } else {
               packagesElement.appendChild(XmlUtils.createTextElement(document, "package",
                   packageName));
-              fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                  XmlUtils.nodeToString(document), descriptionOfChange, false);
+              writePom(pom.getPath(), document, descriptionOfChange);
             }
           }
         }
@@ -445,7 +440,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element existing =
@@ -467,8 +462,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
               + property.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public void addRepositories(final String moduleName,
@@ -488,7 +482,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so repository addition cannot be performed");
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element repositoriesElement =
         DomUtils.createChildIfNotExists(containingPath, document.getDocumentElement(), document);
 
@@ -527,8 +521,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final String message = getDescriptionOfChange(ADDED, addedRepositories, path, containingPath);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    writePom(pom.getPath(), document, message);
   }
 
   public void addRepository(final String moduleName, final Repository repository) {
@@ -553,7 +546,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element buildElement =
         XmlUtils.findFirstElement("/project/build", document.getDocumentElement());
     final Element resourcesElement =
@@ -562,8 +555,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(ADDED + " resource") + " " + resource.getSimpleDescription();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   protected void bindFeature(final Feature feature) {
@@ -638,6 +630,16 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     return projectMetadata == null ? null : projectMetadata.getPom();
   }
 
+  /**
+   * Returns the DOM of the given POM, as changed so far by this transaction
+   *
+   * @param pomPath the canonical path of the POM (required)
+   * @return a non-<code>null</code> document
+   */
+  private Document getPomDocument(final String pomPath) {
+    return pomDocumentCache.getDocument(fileManager, pomPath);
+  }
+
   public Collection<Pom> getPoms() {
     return pomManagementService.getPoms();
   }
@@ -764,7 +766,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element pluginsElement = XmlUtils.findFirstElement("/project/build/plugins", root);
     if (pluginsElement == null) {
@@ -795,8 +797,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     DomUtils.removeTextNodes(pluginsElement);
     final String message = getDescriptionOfChange(REMOVED, removedPlugins, "plugin", "plugins");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, writeImmediately);
+    if (writeImmediately) {
+      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
+          XmlUtils.nodeToString(document), message, true);
+    } else {
+      writePom(pom.getPath(), document, message);
+    }
   }
 
   public void removeDependencies(final String moduleName,
@@ -813,7 +819,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependenciesElement = XmlUtils.findFirstElement("/project/dependencies", root);
     if (dependenciesElement == null) {
@@ -847,8 +853,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String message =
         getDescriptionOfChange(REMOVED, removedDependencies, "dependency", "dependencies");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    writePom(pom.getPath(), document, message);
   }
 
   public void removeDependency(final String moduleName, final Dependency dependency) {
@@ -876,7 +881,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -893,8 +898,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(dependenciesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public final void removeDependency(final String moduleName, final String groupId,
@@ -1004,7 +1008,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     final Element filtersElement = XmlUtils.findFirstElement("/project/build/filters", root);
@@ -1029,8 +1033,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removePluginRepository(final String moduleName, final Repository repository) {
@@ -1050,7 +1053,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element propertiesElement = XmlUtils.findFirstElement("/project/properties", root);
     String descriptionOfChange = "";
@@ -1066,8 +1069,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(propertiesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removeRepository(final String moduleName, final Repository repository) {
@@ -1091,7 +1093,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -1104,8 +1106,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removeResource(final String moduleName, final Resource resource) {
@@ -1118,7 +1119,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element resourcesElement = XmlUtils.findFirstElement("/project/build/resources", root);
     if (resourcesElement == null) {
@@ -1143,8 +1144,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   public void setModule(final Pom module) {
@@ -1189,7 +1189,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependencyElement =
         XmlUtils.findFirstElement(
@@ -1226,8 +1226,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
 
     if (descriptionOfChange != null) {
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          descriptionOfChange, false);
+      writePom(pom.getPath(), document, descriptionOfChange);
     }
   }
 
@@ -1236,7 +1235,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so the project type cannot be changed");
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = getPomDocument(pom.getPath());
     final Element packaging =
         DomUtils.createChildIfNotExists("packaging", document.getDocumentElement(), document);
     if (packaging.getTextContent().equals(projectType.getType())) {
@@ -1247,8 +1246,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(UPDATED + " project type") + " to " + projectType.getType();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    writePom(pom.getPath(), document, descriptionOfChange);
   }
 
   /**
@@ -1402,12 +1400,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       final String message =
           getPomDependenciesUpdateMessage(addedDependencies, removedDependencies,
               skippedDependencies);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      writePom(pom.getPath(), document, message);
       // If parent pom is different, is necessary to add dependencies to dependencyManagement
       if (!isSamePom && addToDependencyManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        writePom(parentPom.getPath(), parentDocument, message);
       }
     }
 
@@ -1544,14 +1540,24 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     if (!newPlugins.isEmpty()) {
       final String message = getPomPluginsUpdateMessage(addedPlugins, removedPlugins);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      writePom(pom.getPath(), document, message);
       // If parent pom is different, is necessary to add plugins to pluginManagement
       if (!isSamePom && addToPluginManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        writePom(parentPom.getPath(), parentDocument, message);
       }
     }
   }
 
+  /**
+   * Defers writing the given DOM of the given POM until the transaction
+   * commits, serializing it only then
+   *
+   * @param pomPath the canonical path of the POM (required)
+   * @param document the DOM returned by {@link #getPomDocument(String)}
+   * @param descriptionOfChange a description of the change (can be blank)
+   */
+  private void writePom(final String pomPath, final Document document,
+      final String descriptionOfChange) {
+    pomDocumentCache.write(fileManager, pomPath, document, descriptionOfChange);
+  }
 }
@@ -0,0 +1,118 @@
+package org.springframework.roo.project;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
+
+/**
+ * The DOMs of the POMs being changed by {@link AbstractProjectOperations}, so
+ * that a series of changes to the same POM parses it once and serializes it
+ * once, when the {@link FileManager} commits it, rather than once per change.
+ * Each change works on a copy of the cached DOM, so that a change that isn't
+ * written, e.g. because it fails half way, is discarded as before.
+ * <p>
+ * A DOM is handed to the {@link FileManager} as the pending contents of its
+ * POM, which the file manager cancels once they've been written, or if
+ * anything else writes to that POM in the meantime. A cancelled DOM is no
+ * longer cached, so the next change parses the POM again.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @since 2.0
+ */
+class PomDocumentCache {
+
+  /**
+   * The pending contents of a POM, serialized from its DOM whenever they're
+   * read, until they are cancelled
+   */
+  private static class PomContents implements Future<String> {
+    private boolean cancelled;
+    private final Document document;
+
+    PomContents(final Document document) {
+      this.document = document;
+    }
+
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      cancelled = true;
+      return true;
+    }
+
+    public String get() {
+      return XmlUtils.nodeToString(document);
+    }
+
+    public String get(final long timeout, final TimeUnit unit) {
+      return get();
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    public boolean isDone() {
+      return cancelled;
+    }
+  }
+
+  /** key: the path of a POM, value: its pending contents */
+  private final Map<String, PomContents> contentsByPath = new HashMap<String, PomContents>();
+  private long parses;
+  private long reuses;
+
+  /**
+   * Returns a DOM of the given POM, as last changed.
+   *
+   * @param fileManager the file manager from which to read the POM if it's
+   *            not cached (required)
+   * @param pomPath the canonical path of the POM (required)
+   * @return a non-<code>null</code> document, which must be passed to
+   *         {@link #write(FileManager, String, Document, String)} if changed
+   */
+  Document getDocument(final FileManager fileManager, final String pomPath) {
+    final PomContents contents = contentsByPath.get(pomPath);
+    if (contents != null && !contents.isCancelled()) {
+      reuses++;
+      // Copying a DOM is much cheaper than parsing it
+      return (Document) contents.document.cloneNode(true);
+    }
+    contentsByPath.remove(pomPath);
+    parses++;
+    return XmlUtils.readXml(fileManager.getInputStream(pomPath));
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("parses", parses);
+    builder.append("reuses", reuses);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
+  /**
+   * Defers writing the given DOM to the given POM, and caches it for
+   * subsequent changes.
+   *
+   * @param fileManager the file manager to write it with (required)
+   * @param pomPath the canonical path of the POM (required)
+   * @param document the changed DOM of the POM (required)
+   * @param descriptionOfChange a description of the change (can be blank)
+   */
+  void write(final FileManager fileManager, final String pomPath, final Document document,
+      final String descriptionOfChange) {
+    PomContents contents = contentsByPath.get(pomPath);
+    if (contents == null || contents.document != document) {
+      // Replaces (and so cancels) any earlier contents
+      contents = new PomContents(document);
+      contentsByPath.put(pomPath, contents);
+    }
+    fileManager.createOrUpdateTextFileIfRequired(pomPath, contents, descriptionOfChange);
+  }
+}
@@ -12,9 +12,11 @@ import static org.mockito.Mockito.when;
 import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.roo.metadata.MetadataService;
@@ -126,7 +128,8 @@ public class MavenOperationsImplTest {
   }
 
   @Test
-  public void testRemoveDependencyTwiceWhenItExistsOnce() {
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void testRemoveDependencyTwiceWhenItExistsOnce() throws Exception {
     // Set up
     when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
         new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED.getBytes()));
@@ -155,7 +158,9 @@ public class MavenOperationsImplTest {
 
     // Check
     final String expectedPom = POM_AFTER_DEPENDENCY_REMOVED.replace("\n", LINE_SEPARATOR);
-    verify(mockFileManager).createOrUpdateTextFileIfRequired(eq(POM_PATH), eq(expectedPom),
-        (String) any(), eq(false));
+    final ArgumentCaptor<Future> pomContents = ArgumentCaptor.forClass(Future.class);
+    verify(mockFileManager).createOrUpdateTextFileIfRequired(eq(POM_PATH), pomContents.capture(),
+        (String) any());
+    assertEquals(expectedPom, pomContents.getValue().get());
   }
 }
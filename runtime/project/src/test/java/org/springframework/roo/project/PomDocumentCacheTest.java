@@ -0,0 +1,136 @@
+package org.springframework.roo.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
+
+/**
+ * Unit test of {@link PomDocumentCache}
+ *
+ * @since 2.0
+ */
+public class PomDocumentCacheTest {
+
+  private static final String POM = "<project><artifactId>before</artifactId></project>";
+  private static final String POM_PATH = "/project/pom.xml";
+
+  /** the POM as on disk */
+  private String contents;
+  private FileManager fileManager;
+  /** the contents the POM's write was last deferred with */
+  private Future<?> pendingContents;
+  private PomDocumentCache pomDocumentCache;
+
+  /**
+   * Writes the pending contents as the file manager does when it commits
+   */
+  private void commit() throws Exception {
+    contents = (String) pendingContents.get();
+    pendingContents.cancel(false);
+  }
+
+  private String getArtifactId(final Document document) {
+    return document.getDocumentElement().getElementsByTagName("artifactId").item(0)
+        .getTextContent();
+  }
+
+  /**
+   * Changes the artifactId of the given DOM and has it written
+   */
+  private void setArtifactId(final Document document, final String artifactId) {
+    document.getDocumentElement().getElementsByTagName("artifactId").item(0)
+        .setTextContent(artifactId);
+    pomDocumentCache.write(fileManager, POM_PATH, document, "changed");
+  }
+
+  @Before
+  public void setUp() {
+    contents = POM;
+    fileManager =
+        (FileManager) Proxy.newProxyInstance(FileManager.class.getClassLoader(),
+            new Class<?>[] {FileManager.class}, new InvocationHandler() {
+              public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ("getInputStream".equals(method.getName())) {
+                  return new ByteArrayInputStream(contents.getBytes());
+                }
+                if ("createOrUpdateTextFileIfRequired".equals(method.getName())) {
+                  if (pendingContents != null && pendingContents != args[1]) {
+                    pendingContents.cancel(false);
+                  }
+                  pendingContents = (Future<?>) args[1];
+                }
+                return null;
+              }
+            });
+    pomDocumentCache = new PomDocumentCache();
+  }
+
+  @Test
+  public void testChangesWorkOnCopiesOfTheCachedDocument() {
+    setArtifactId(pomDocumentCache.getDocument(fileManager, POM_PATH), "written");
+
+    // Invoke
+    final Document first = pomDocumentCache.getDocument(fileManager, POM_PATH);
+    first.getDocumentElement().getElementsByTagName("artifactId").item(0)
+        .setTextContent("not written");
+    final Document second = pomDocumentCache.getDocument(fileManager, POM_PATH);
+
+    // Check
+    assertNotSame(first, second);
+    assertEquals("written", getArtifactId(second));
+  }
+
+  @Test
+  public void testCommittedDocumentIsNoLongerCached() throws Exception {
+    setArtifactId(pomDocumentCache.getDocument(fileManager, POM_PATH), "written");
+    commit();
+
+    // Invoke
+    contents = POM.replace("before", "edited externally");
+    final Document document = pomDocumentCache.getDocument(fileManager, POM_PATH);
+
+    // Check
+    assertEquals("edited externally", getArtifactId(document));
+    assertTrue(pomDocumentCache.toString(),
+        pomDocumentCache.toString().endsWith("[parses=2,reuses=0]"));
+  }
+
+  @Test
+  public void testRolledBackDocumentIsNoLongerCached() {
+    setArtifactId(pomDocumentCache.getDocument(fileManager, POM_PATH), "rolled back");
+
+    // Invoke: the file manager cancels what it's discarding
+    pendingContents.cancel(false);
+    final Document document = pomDocumentCache.getDocument(fileManager, POM_PATH);
+
+    // Check
+    assertEquals("before", getArtifactId(document));
+  }
+
+  @Test
+  public void testSuccessiveChangesParseOnceAndAreWrittenTogether() throws Exception {
+    setArtifactId(pomDocumentCache.getDocument(fileManager, POM_PATH), "first");
+    setArtifactId(pomDocumentCache.getDocument(fileManager, POM_PATH), "second");
+
+    // Invoke
+    commit();
+
+    // Check
+    assertEquals("second", getArtifactId(XmlUtils.readXml(new ByteArrayInputStream(contents
+        .getBytes()))));
+    assertTrue(pomDocumentCache.toString(),
+        pomDocumentCache.toString().endsWith("[parses=1,reuses=1]"));
+  }
+}
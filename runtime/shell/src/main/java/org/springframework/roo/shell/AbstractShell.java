@@ -480,12 +480,21 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
       help = "The file to locate and execute (mandatory)", mandatory = true) final File script,
       @CliOption(key = "lineNumbers", mandatory = false, specifiedDefaultValue = "true",
           unspecifiedDefaultValue = "false",
-          help = "Display line numbers when executing the script") final boolean lineNumbers) {
+          help = "Display line numbers when executing the script") final boolean lineNumbers,
+      @CliOption(key = "batch", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false",
+          help = "Execute the whole script as one command, undoing the changes of every line "
+              + "if any line fails") final boolean batch) {
 
     Validate.notNull(script, "Script file to parse is required");
     final double startedNanoseconds = System.nanoTime();
 
     final InputStream inputStream = openScript(script);
+    final ExecutionStrategy executionStrategy = getExecutionStrategy();
+    final boolean previousBatchMode = batch && executionStrategy.isBatchMode();
+    if (batch) {
+      executionStrategy.setBatchMode(true);
+    }
     try {
       int i = 0;
       for (final String line : IOUtils.readLines(inputStream)) {
@@ -508,6 +517,9 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
     } catch (final IOException e) {
       throw new IllegalStateException(e);
     } finally {
+      if (batch) {
+        executionStrategy.setBatchMode(previousBatchMode);
+      }
       IOUtils.closeQuietly(inputStream);
       final double executionDurationInSeconds =
           (System.nanoTime() - startedNanoseconds) / 1000000000D;
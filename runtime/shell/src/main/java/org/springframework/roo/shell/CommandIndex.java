@@ -0,0 +1,217 @@
+package org.springframework.roo.shell;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The commands of the {@link CommandMarker}s known to the {@link SimpleParser},
+ * together with the annotations the parser needs from them, reflected on once
+ * when the commands are loaded rather than on every parse and completion.
+ * <p>
+ * Commands are sorted by the first word of each of their
+ * {@link CliCommand#value() values}, so that only those whose first word
+ * starts with the first word typed need to be matched against the input.
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 2.0
+ */
+class CommandIndex {
+
+  /**
+   * A method annotated with {@link CliCommand}
+   */
+  static class Command {
+    final CliCommand cliCommand;
+    final Set<CliOption> cliOptions;
+    final Method method;
+    final Annotation[][] parameterAnnotations;
+    final CommandMarker target;
+
+    Command(final CommandMarker target, final Method method, final CliCommand cliCommand) {
+      this.cliCommand = cliCommand;
+      this.method = method;
+      this.target = target;
+      parameterAnnotations = method.getParameterAnnotations();
+      final Set<CliOption> options = new LinkedHashSet<CliOption>();
+      for (final Annotation[] annotations : parameterAnnotations) {
+        for (final Annotation annotation : annotations) {
+          if (annotation instanceof CliOption) {
+            options.add((CliOption) annotation);
+          }
+        }
+      }
+      cliOptions = Collections.unmodifiableSet(options);
+    }
+  }
+
+  /** key: the first word of a command value, value: the commands with it */
+  private final TreeMap<String, List<Command>> commandsByFirstWord =
+      new TreeMap<String, List<Command>>();
+  private final Map<Method, Command> commandsByMethod = new HashMap<Method, Command>();
+  private long completionNanos;
+  private long completions;
+  private long parseNanos;
+  private long parses;
+
+  /**
+   * Adds the commands of the given command marker.
+   *
+   * @param target the command marker (required)
+   */
+  synchronized void add(final CommandMarker target) {
+    for (final Method method : target.getClass().getMethods()) {
+      final CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+      if (cliCommand != null) {
+        final Command command = new Command(target, method, cliCommand);
+        final Command replaced = commandsByMethod.put(method, command);
+        if (replaced != null) {
+          // e.g. the same command marker added again
+          removeFirstWords(replaced);
+        }
+        for (final String value : cliCommand.value()) {
+          // As split by SimpleParser#isMatch
+          final String firstWord = StringUtils.split(value, " ")[0];
+          List<Command> commands = commandsByFirstWord.get(firstWord);
+          if (commands == null) {
+            commands = new ArrayList<Command>();
+            commandsByFirstWord.put(firstWord, commands);
+          }
+          if (!commands.contains(command)) {
+            commands.add(command);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes every command.
+   */
+  synchronized void clear() {
+    commandsByFirstWord.clear();
+    commandsByMethod.clear();
+  }
+
+  /**
+   * Returns the commands that might match the given input, i.e. all those
+   * with a value whose first word starts with the input's first word.
+   *
+   * @param buffer the input (required)
+   * @return a superset of the matching commands, each once
+   */
+  synchronized Collection<Command> getCandidates(final String buffer) {
+    if (StringUtils.isBlank(buffer) || buffer.startsWith(" ")) {
+      // Left for SimpleParser#isMatch to decide
+      return getCommands();
+    }
+    final int space = buffer.indexOf(' ');
+    final String firstWord = space < 0 ? buffer : buffer.substring(0, space);
+    final Set<Command> candidates = new LinkedHashSet<Command>();
+    for (final List<Command> commands : commandsByFirstWord.subMap(firstWord,
+        firstWord + Character.MAX_VALUE).values()) {
+      candidates.addAll(commands);
+    }
+    return candidates;
+  }
+
+  /**
+   * Returns the command implemented by the given method.
+   *
+   * @param method the method (required)
+   * @return <code>null</code> if it's not a known command
+   */
+  synchronized Command getCommand(final Method method) {
+    return commandsByMethod.get(method);
+  }
+
+  /**
+   * @return every command (never <code>null</code>)
+   */
+  synchronized Collection<Command> getCommands() {
+    return new ArrayList<Command>(commandsByMethod.values());
+  }
+
+  /**
+   * Records how long a completion took.
+   *
+   * @param nanoseconds the duration
+   */
+  synchronized void recordCompletion(final long nanoseconds) {
+    completions++;
+    completionNanos += nanoseconds;
+  }
+
+  /**
+   * Records how long a parse took.
+   *
+   * @param nanoseconds the duration
+   */
+  synchronized void recordParse(final long nanoseconds) {
+    parses++;
+    parseNanos += nanoseconds;
+  }
+
+  /**
+   * Removes the commands of the given command marker.
+   *
+   * @param target the command marker (required)
+   */
+  synchronized void remove(final CommandMarker target) {
+    for (final Iterator<Command> iterator = commandsByMethod.values().iterator(); iterator
+        .hasNext();) {
+      final Command command = iterator.next();
+      if (command.target == target) {
+        iterator.remove();
+        removeFirstWords(command);
+      }
+    }
+  }
+
+  /**
+   * Removes the given command from the commands by first word.
+   *
+   * @param command the command to remove (required)
+   */
+  private void removeFirstWords(final Command command) {
+    for (final String value : command.cliCommand.value()) {
+      final String firstWord = StringUtils.split(value, " ")[0];
+      final List<Command> commands = commandsByFirstWord.get(firstWord);
+      if (commands != null && commands.remove(command) && commands.isEmpty()) {
+        commandsByFirstWord.remove(firstWord);
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("commands", commandsByMethod.size());
+    builder.append("parses", parses);
+    builder.append("meanParseMillis", getMeanMillis(parseNanos, parses));
+    builder.append("completions", completions);
+    builder.append("meanCompletionMillis", getMeanMillis(completionNanos, completions));
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
+  private double getMeanMillis(final long nanoseconds, final long count) {
+    if (count == 0) {
+      return 0;
+    }
+    return Math.round(1000.0 * nanoseconds / count / TimeUnit.MILLISECONDS.toNanos(1)) / 1000.0;
+  }
+}
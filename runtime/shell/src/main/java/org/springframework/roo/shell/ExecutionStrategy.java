@@ -24,6 +24,15 @@ public interface ExecutionStrategy {
    */
   Object execute(ParseResult parseResult) throws RuntimeException;
 
+  /**
+   * Indicates whether commands executed while another command is executing
+   * are executed as part of it.
+   * 
+   * @return see above
+   * @since 2.0
+   */
+  boolean isBatchMode();
+
   /**
    * Indicates commands are able to be presented. This generally means all
    * important system startup activities have completed.
@@ -32,6 +41,17 @@ public interface ExecutionStrategy {
    */
   boolean isReadyForCommands();
 
+  /**
+   * Sets whether commands executed while another command is executing, such
+   * as the lines of a script, are executed as part of it, so that their
+   * changes succeed or fail along with it.
+   * 
+   * @param batchMode whether to execute nested commands as part of the
+   *            executing command
+   * @since 2.0
+   */
+  void setBatchMode(boolean batchMode);
+
   /**
    * Indicates the execution runtime should be terminated. This allows it to
    * cleanup before returning control flow to the caller. Necessary for clean
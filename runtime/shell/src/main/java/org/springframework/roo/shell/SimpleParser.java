@@ -154,6 +154,7 @@ public class SimpleParser implements Parser {
   private final Map<String, MethodTarget> optionAutocompleteIndicators =
       new HashMap<String, MethodTarget>();
   private final Set<CommandMarker> commands = new HashSet<CommandMarker>();
+  private final CommandIndex commandIndex = new CommandIndex();
   private final Set<Converter<?>> converters = new HashSet<Converter<?>>();
 
   // ROO-3697: Include global parameters in all Spring Roo commands.
@@ -164,6 +165,7 @@ public class SimpleParser implements Parser {
   public final void add(final CommandMarker command) {
     synchronized (mutex) {
       commands.add(command);
+      commandIndex.add(command);
       for (final Method method : command.getClass().getMethods()) {
 
         // Getting method availability indicators
@@ -286,7 +288,17 @@ public class SimpleParser implements Parser {
     return result;
   }
 
-  public int completeAdvanced(String buffer, int cursor, final List<Completion> candidates) {
+  public int completeAdvanced(final String buffer, final int cursor,
+      final List<Completion> candidates) {
+    final long start = System.nanoTime();
+    try {
+      return completeCommand(buffer, cursor, candidates);
+    } finally {
+      commandIndex.recordCompletion(System.nanoTime() - start);
+    }
+  }
+
+  private int completeCommand(String buffer, int cursor, final List<Completion> candidates) {
     synchronized (mutex) {
 
       // Create ShellContext
@@ -380,8 +392,7 @@ public class SimpleParser implements Parser {
       }
 
       // Lookup arguments for this target
-      final Annotation[][] parameterAnnotations =
-          methodTarget.getMethod().getParameterAnnotations();
+      final Annotation[][] parameterAnnotations = getParameterAnnotations(methodTarget.getMethod());
 
       // If there aren't any parameters for the method, at least ensure
       // they have typed the command properly
@@ -515,7 +526,7 @@ public class SimpleParser implements Parser {
                     // Find the target parameter
                     Class<?> paramType = null;
                     int index = -1;
-                    for (final Annotation[] a : methodTarget.getMethod().getParameterAnnotations()) {
+                    for (final Annotation[] a : getParameterAnnotations(methodTarget.getMethod())) {
                       index++;
                       for (final Annotation an : a) {
                         if (an instanceof CliOption) {
@@ -1007,6 +1018,14 @@ public class SimpleParser implements Parser {
     return availabilityIndicators.get(command);
   }
 
+  private Set<CliOption> getCliOptions(final Method method) {
+    final CommandIndex.Command command = commandIndex.getCommand(method);
+    if (command != null) {
+      return command.cliOptions;
+    }
+    return getCliOptions(method.getParameterAnnotations());
+  }
+
   private Set<CliOption> getCliOptions(final Annotation[][] parameterAnnotations) {
     final Set<CliOption> cliOptions = new LinkedHashSet<CliOption>();
     for (final Annotation[] annotations : parameterAnnotations) {
@@ -1020,6 +1039,14 @@ public class SimpleParser implements Parser {
     return cliOptions;
   }
 
+  private Annotation[][] getParameterAnnotations(final Method method) {
+    final CommandIndex.Command command = commandIndex.getCommand(method);
+    if (command != null) {
+      return command.parameterAnnotations;
+    }
+    return method.getParameterAnnotations();
+  }
+
   /**
    * This method loads converters and commands if needed
    */
@@ -1031,6 +1058,7 @@ public class SimpleParser implements Parser {
       if (commands.isEmpty() || hasToReloadComponents()) {
         // Cleaning commands and indicators
         commands.clear();
+        commandIndex.clear();
         availabilityIndicators.clear();
         // Get all Services implement CommandMarker interface
         try {
@@ -1084,14 +1112,8 @@ public class SimpleParser implements Parser {
 
       // Return commands list
       final SortedSet<String> result = new TreeSet<String>(COMPARATOR);
-      for (final Object o : commands) {
-        final Method[] methods = o.getClass().getMethods();
-        for (final Method m : methods) {
-          final CliCommand cmd = m.getAnnotation(CliCommand.class);
-          if (cmd != null) {
-            result.addAll(Arrays.asList(cmd.value()));
-          }
-        }
+      for (final CommandIndex.Command command : commandIndex.getCommands()) {
+        result.addAll(Arrays.asList(command.cliCommand.value()));
       }
       return result;
     }
@@ -1126,6 +1148,7 @@ public class SimpleParser implements Parser {
     if (commands.isEmpty() || hasToReloadComponents()) {
       // Cleaning commands
       commands.clear();
+      commandIndex.clear();
       availabilityIndicators.clear();
       // Get all Services implement CommandMarker interface
       try {
@@ -1147,47 +1170,43 @@ public class SimpleParser implements Parser {
     Validate.notNull(buffer, "Buffer required");
     final Collection<MethodTarget> result = new HashSet<MethodTarget>();
 
-    // The reflection could certainly be optimised, but it's good enough for
-    // now (and cached reflection
-    // is unlikely to be noticeable to a human being using the CLI)
-    for (final CommandMarker command : commands) {
-      for (final Method method : command.getClass().getMethods()) {
-        final CliCommand cmd = method.getAnnotation(CliCommand.class);
-        if (cmd != null) {
-          // We have a @CliCommand.
-          if (checkAvailabilityIndicators) {
-            // Decide if this @CliCommand is available at this
-            // moment
-            Boolean available = null;
-            for (final String value : cmd.value()) {
-              final MethodTarget mt = getAvailabilityIndicator(value);
-              if (mt != null) {
-                Validate.isTrue(
-                    available == null,
-                    "More than one availability indicator is defined for '"
-                        + method.toGenericString() + "'");
-                try {
-                  available = (Boolean) mt.getMethod().invoke(mt.getTarget());
-                  // We should "break" here, but we loop over
-                  // all to ensure no conflicting availability
-                  // indicators are defined
-                } catch (final Exception e) {
-                  available = false;
-                }
-              }
-            }
-            // Skip this @CliCommand if it's not available
-            if (available != null && !available) {
-              continue;
+    // Only the commands whose first word could match the buffer's
+    for (final CommandIndex.Command candidate : commandIndex.getCandidates(buffer)) {
+      final CommandMarker command = candidate.target;
+      final Method method = candidate.method;
+      final CliCommand cmd = candidate.cliCommand;
+      // We have a @CliCommand.
+      if (checkAvailabilityIndicators) {
+        // Decide if this @CliCommand is available at this
+        // moment
+        Boolean available = null;
+        for (final String value : cmd.value()) {
+          final MethodTarget mt = getAvailabilityIndicator(value);
+          if (mt != null) {
+            Validate.isTrue(
+                available == null,
+                "More than one availability indicator is defined for '"
+                    + method.toGenericString() + "'");
+            try {
+              available = (Boolean) mt.getMethod().invoke(mt.getTarget());
+              // We should "break" here, but we loop over
+              // all to ensure no conflicting availability
+              // indicators are defined
+            } catch (final Exception e) {
+              available = false;
             }
           }
+        }
+        // Skip this @CliCommand if it's not available
+        if (available != null && !available) {
+          continue;
+        }
+      }
 
-          for (final String value : cmd.value()) {
-            final String remainingBuffer = isMatch(buffer, value, strictMatching);
-            if (remainingBuffer != null) {
-              result.add(new MethodTarget(method, command, remainingBuffer, value));
-            }
-          }
+      for (final String value : cmd.value()) {
+        final String remainingBuffer = isMatch(buffer, value, strictMatching);
+        if (remainingBuffer != null) {
+          result.add(new MethodTarget(method, command, remainingBuffer, value));
         }
       }
     }
@@ -1206,6 +1225,15 @@ public class SimpleParser implements Parser {
   }
 
   public ParseResult parse(final String rawInput) {
+    final long start = System.nanoTime();
+    try {
+      return parseCommand(rawInput);
+    } finally {
+      commandIndex.recordParse(System.nanoTime() - start);
+    }
+  }
+
+  private ParseResult parseCommand(final String rawInput) {
     synchronized (mutex) {
 
       // Load converters and commands if needed
@@ -1240,8 +1268,7 @@ public class SimpleParser implements Parser {
       final MethodTarget methodTarget = matchingTargets.iterator().next();
 
       // Argument conversion time
-      final Annotation[][] parameterAnnotations =
-          methodTarget.getMethod().getParameterAnnotations();
+      final Annotation[][] parameterAnnotations = getParameterAnnotations(methodTarget.getMethod());
       if (parameterAnnotations.length == 0) {
         // No args
         return new ParseResult(methodTarget.getMethod(), methodTarget.getTarget(), null);
@@ -1272,7 +1299,7 @@ public class SimpleParser implements Parser {
         shellContext.setParameter(parameter, value);
       }
 
-      final Set<CliOption> cliOptions = getCliOptions(parameterAnnotations);
+      final Set<CliOption> cliOptions = getCliOptions(methodTarget.getMethod());
       for (final CliOption cliOption : cliOptions) {
         final Class<?> requiredType =
             methodTarget.getMethod().getParameterTypes()[arguments.size()];
@@ -1705,6 +1732,7 @@ public class SimpleParser implements Parser {
   public final void remove(final CommandMarker command) {
     synchronized (mutex) {
       commands.remove(command);
+      commandIndex.remove(command);
       for (final Method m : command.getClass().getMethods()) {
         final CliAvailabilityIndicator availability =
             m.getAnnotation(CliAvailabilityIndicator.class);
@@ -1851,4 +1879,13 @@ public class SimpleParser implements Parser {
 
     return sb.toString();
   }
+
+  /**
+   * Returns the number of commands this parser knows, and how many commands
+   * it has parsed and completed, and how long that took on average.
+   */
+  @Override
+  public String toString() {
+    return commandIndex.toString();
+  }
 }
@@ -1,9 +1,23 @@
 package org.springframework.roo.shell;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
 import org.junit.Test;
 
 /**
@@ -15,6 +29,90 @@ import org.junit.Test;
  */
 public class AbstractShellTest {
 
+  /**
+   * An execution strategy that only keeps its batch mode
+   */
+  private static class BatchModeExecutionStrategy implements ExecutionStrategy {
+
+    private boolean batchMode;
+
+    public Object execute(final ParseResult parseResult) {
+      throw new UnsupportedOperationException();
+    }
+
+    public boolean isBatchMode() {
+      return batchMode;
+    }
+
+    public boolean isReadyForCommands() {
+      return true;
+    }
+
+    public void setBatchMode(final boolean batchMode) {
+      this.batchMode = batchMode;
+    }
+
+    public void terminate() {}
+  }
+
+  /**
+   * A shell that records the batch mode each script line is executed in,
+   * failing the line "fail"
+   */
+  private static class ScriptShell extends AbstractShell {
+
+    private final List<Boolean> batchModes = new ArrayList<Boolean>();
+    private final BatchModeExecutionStrategy executionStrategy = new BatchModeExecutionStrategy();
+
+    @Override
+    protected boolean executeScriptLine(final String line) {
+      batchModes.add(executionStrategy.isBatchMode());
+      return !"fail".equals(line);
+    }
+
+    @Override
+    protected Collection<URL> findResources(final String path) {
+      return null;
+    }
+
+    @Override
+    protected ExecutionStrategy getExecutionStrategy() {
+      return executionStrategy;
+    }
+
+    @Override
+    protected String getHomeAsString() {
+      return null;
+    }
+
+    @Override
+    protected Parser getParser() {
+      return null;
+    }
+
+    public boolean isDevelopmentMode() {
+      return false;
+    }
+
+    public void promptLoop() {}
+
+    public void setDevelopmentMode(final boolean developmentMode) {}
+  }
+
+  private ScriptShell shell;
+
+  private File getScript(final String... lines) throws IOException {
+    final File script = File.createTempFile("AbstractShellTest", ".roo");
+    script.deleteOnExit();
+    FileUtils.writeLines(script, Arrays.asList(lines));
+    return script;
+  }
+
+  @Before
+  public void setUp() {
+    shell = new ScriptShell();
+  }
+
   @Test
   public void testProps() {
     // Set up
@@ -27,4 +125,42 @@ public class AbstractShellTest {
     // Check
     assertNotNull(props);
   }
+
+  @Test
+  public void testScriptInBatchModeExecutesEveryLineInBatchMode() throws Exception {
+    shell.script(getScript("first", "", "second"), false, true);
+
+    assertEquals(Arrays.asList(true, true), shell.batchModes);
+    assertFalse(shell.executionStrategy.isBatchMode());
+  }
+
+  @Test
+  public void testScriptInBatchModeKeepsBatchModeAlreadyOn() throws Exception {
+    shell.executionStrategy.setBatchMode(true);
+
+    // Invoke
+    shell.script(getScript("first"), false, true);
+
+    // Check
+    assertTrue(shell.executionStrategy.isBatchMode());
+  }
+
+  @Test
+  public void testScriptInBatchModeRestoresBatchModeAfterFailingLine() throws Exception {
+    try {
+      shell.script(getScript("first", "fail", "second"), false, true);
+      fail("Expected the failing line to abort the script");
+    } catch (final IllegalStateException expected) {
+      // Check
+      assertEquals(Arrays.asList(true, true), shell.batchModes);
+      assertFalse(shell.executionStrategy.isBatchMode());
+    }
+  }
+
+  @Test
+  public void testScriptWithoutBatchModeExecutesLinesOutsideBatchMode() throws Exception {
+    shell.script(getScript("first", "second"), false, false);
+
+    assertEquals(Arrays.asList(false, false), shell.batchModes);
+  }
 }
@@ -0,0 +1,114 @@
+package org.springframework.roo.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link CommandIndex}
+ *
+ * @since 2.0
+ */
+public class CommandIndexTest {
+
+  public static class Commands implements CommandMarker {
+
+    @CliCommand(value = "project setup")
+    public void setupProject(@CliOption(key = "topLevelPackage") final String topLevelPackage,
+        @CliOption(key = "projectName") final String projectName) {}
+
+    @CliCommand(value = {"entity jpa", "jpa entity"})
+    public void createEntity() {}
+
+    @CliCommand(value = "entityReport")
+    public void reportEntities() {}
+  }
+
+  private static Set<String> getValues(final Collection<CommandIndex.Command> commands) {
+    final Set<String> values = new HashSet<String>();
+    for (final CommandIndex.Command command : commands) {
+      values.add(command.cliCommand.value()[0]);
+    }
+    return values;
+  }
+
+  private Commands commands;
+  private CommandIndex index;
+
+  @Before
+  public void setUp() {
+    commands = new Commands();
+    index = new CommandIndex();
+    index.add(commands);
+  }
+
+  @Test
+  public void testBlankBufferHasEveryCandidate() {
+    assertEquals(3, index.getCandidates("").size());
+    assertEquals(3, index.getCandidates(" ").size());
+  }
+
+  @Test
+  public void testCandidatesHaveAFirstWordStartingWithThatOfTheBuffer() {
+    assertEquals(new HashSet<String>(Arrays.asList("entity jpa", "entityReport")),
+        getValues(index.getCandidates("ent")));
+    assertEquals(new HashSet<String>(Arrays.asList("entity jpa", "entityReport")),
+        getValues(index.getCandidates("entity j")));
+    assertEquals(new HashSet<String>(Arrays.asList("entity jpa")),
+        getValues(index.getCandidates("jp")));
+    assertTrue(index.getCandidates("setup").isEmpty());
+  }
+
+  @Test
+  public void testCommandOptionsAreInParameterOrder() throws Exception {
+    final CommandIndex.Command command =
+        index.getCommand(Commands.class.getMethod("setupProject", String.class, String.class));
+
+    assertNotNull(command);
+    assertEquals(2, command.cliOptions.size());
+    assertEquals("topLevelPackage", command.cliOptions.iterator().next().key()[0]);
+  }
+
+  @Test
+  public void testReaddedCommandsAreCandidatesOnce() {
+    index.add(commands);
+
+    assertEquals(3, index.getCommands().size());
+    assertEquals(2, index.getCandidates("ent").size());
+    assertEquals(1, index.getCandidates("jp").size());
+  }
+
+  @Test
+  public void testReaddedCommandsReplaceThoseOfTheSameMethods() {
+    final Commands otherCommands = new Commands();
+
+    // Invoke
+    index.add(otherCommands);
+
+    // Check
+    assertEquals(2, index.getCandidates("ent").size());
+    for (final CommandIndex.Command command : index.getCandidates("")) {
+      assertSame(otherCommands, command.target);
+    }
+    index.remove(otherCommands);
+    assertTrue(index.getCandidates("ent").isEmpty());
+  }
+
+  @Test
+  public void testRemovedCommandsAreNotCandidates() throws Exception {
+    index.remove(commands);
+
+    assertTrue(index.getCandidates("").isEmpty());
+    assertNull(index.getCommand(Commands.class.getMethod("createEntity")));
+  }
+}
@@ -0,0 +1,118 @@
+package org.springframework.roo.support.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Fast, non-cryptographic 64-bit content hashes (FNV-1a), used to detect
+ * whether a file or a generated text has changed without keeping or
+ * re-reading a full copy of it.
+ * <p>
+ * Hashes computed from a {@link CharSequence} are over its UTF-16 code units,
+ * so they are only comparable with other {@link CharSequence} hashes; use the
+ * byte-based methods when comparing against disk contents.
+ *
+ * @since 2.0
+ */
+public final class ContentHashUtils {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * The hash of empty contents.
+   */
+  public static final long EMPTY_HASH = FNV_OFFSET_BASIS;
+
+  /**
+   * Returns the hash of the given bytes.
+   *
+   * @param bytes the bytes to hash (required)
+   * @return the hash
+   */
+  public static long hash(final byte[] bytes) {
+    Validate.notNull(bytes, "Bytes required");
+    return update(EMPTY_HASH, bytes, 0, bytes.length);
+  }
+
+  /**
+   * Returns the hash of the given characters.
+   *
+   * @param contents the characters to hash (required)
+   * @return the hash
+   */
+  public static long hash(final CharSequence contents) {
+    Validate.notNull(contents, "Contents required");
+    long hash = EMPTY_HASH;
+    for (int i = 0; i < contents.length(); i++) {
+      final char c = contents.charAt(i);
+      hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+      hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the hash of the given file's contents.
+   *
+   * @param file the file to hash (required; must be readable)
+   * @return the hash
+   * @throws IOException if the file cannot be read
+   */
+  public static long hash(final File file) throws IOException {
+    Validate.notNull(file, "File required");
+    InputStream inputStream = null;
+    try {
+      inputStream = new FileInputStream(file);
+      return hash(inputStream);
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Returns the hash of the remaining contents of the given stream, which is
+   * not closed.
+   *
+   * @param inputStream the stream to hash (required)
+   * @return the hash
+   * @throws IOException if the stream cannot be read
+   */
+  public static long hash(final InputStream inputStream) throws IOException {
+    Validate.notNull(inputStream, "Input stream required");
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    long hash = EMPTY_HASH;
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      hash = update(hash, buffer, 0, read);
+    }
+    return hash;
+  }
+
+  /**
+   * Continues the given hash over a range of bytes.
+   *
+   * @param hash the hash so far ({@link #EMPTY_HASH} to start)
+   * @param bytes the bytes to add (required)
+   * @param offset the index of the first byte to add
+   * @param length the number of bytes to add
+   * @return the updated hash
+   */
+  public static long update(long hash, final byte[] bytes, final int offset, final int length) {
+    for (int i = offset; i < offset + length; i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Constructor is private to prevent instantiation
+   */
+  private ContentHashUtils() {}
+}
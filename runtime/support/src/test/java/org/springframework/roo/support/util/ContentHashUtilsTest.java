@@ -0,0 +1,42 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ContentHashUtils}
+ */
+public class ContentHashUtilsTest {
+
+  @Test
+  public void testEmptyContents() {
+    assertEquals(ContentHashUtils.EMPTY_HASH, ContentHashUtils.hash(new byte[0]));
+    assertEquals(ContentHashUtils.EMPTY_HASH, ContentHashUtils.hash(""));
+  }
+
+  @Test
+  public void testKnownValue() {
+    // FNV-1a 64-bit reference value for "a"
+    assertEquals(0xaf63dc4c8601ec8cL, ContentHashUtils.hash("a".getBytes()));
+  }
+
+  @Test
+  public void testStreamMatchesBytes() throws IOException {
+    final byte[] bytes = new byte[20000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    assertEquals(ContentHashUtils.hash(bytes),
+        ContentHashUtils.hash(new ByteArrayInputStream(bytes)));
+  }
+
+  @Test
+  public void testDifferentContents() {
+    assertTrue(ContentHashUtils.hash("class A {}") != ContentHashUtils.hash("class B {}"));
+  }
+}